@@ -5,7 +5,7 @@ echo "=================================================="
 
 # Check if Java and Maven are installed
 if ! command -v java &> /dev/null; then
-    echo "❌ Java is not installed. Please install Java 11 or higher."
+    echo "❌ Java is not installed. Please install Java 21 or higher."
     exit 1
 fi
 
@@ -0,0 +1,105 @@
+package com.musicgenerator.benchmarks;
+
+import com.musicgenerator.MusicGenerator;
+import com.musicgenerator.MusicTheory;
+import com.musicgenerator.MusicalPiece;
+import com.musicgenerator.Note;
+import com.musicgenerator.PitchKernels;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the batch analysis kernels, Vector API against the scalar path
+ * 批量分析内核的基准测试，比较Vector API与标量路径
+ *
+ * The fork adds jdk.incubator.vector, so the PitchKernels methods run vectorized and the
+ * ...Scalar methods give the baseline; consonanceNotes is the per-Note loop they replace.
+ * 分叉进程添加了jdk.incubator.vector，因此PitchKernels方法以向量方式运行，...Scalar方法作为基线；
+ * consonanceNotes是它们所取代的逐Note循环。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class AnalysisBenchmark {
+    
+    @Param({"1000", "1000000"})
+    public int pitchCount;
+    
+    private int[] pitches;
+    private int[] against;
+    private int[] transposed;
+    private boolean[] mask;
+    private long[] histogram;
+    private List<Note> notes;
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        if (!PitchKernels.isVectorized()) {
+            throw new IllegalStateException("Vector API unavailable; the kernels would run scalar");
+        }
+        MusicGenerator generator = new MusicGenerator();
+        generator.setScale(MusicTheory.ScaleType.MAJOR, 60);
+        MusicalPiece piece = generator.generatePiece(Math.max(8, pitchCount / 8), 4);
+        int[] all = piece.getAllPitches();
+        pitches = new int[pitchCount];
+        System.arraycopy(all, 0, pitches, 0, pitchCount);
+        // Pair every note with the next one for the consonance kernels
+        // 为协和内核将每个音符与下一个音符配对
+        against = new int[pitchCount];
+        System.arraycopy(all, 1, against, 0, pitchCount);
+        notes = piece.getAllNotes().subList(0, pitchCount + 1);
+        transposed = new int[pitchCount];
+        mask = new boolean[pitchCount];
+        histogram = new long[PitchKernels.INTERVAL_CLASSES];
+    }
+    
+    @Benchmark
+    public int[] transpose() {
+        PitchKernels.transpose(pitches, transposed, pitchCount, 7);
+        return transposed;
+    }
+    
+    @Benchmark
+    public int[] transposeScalar() {
+        PitchKernels.transposeScalar(pitches, transposed, pitchCount, 7);
+        return transposed;
+    }
+    
+    @Benchmark
+    public long[] intervalClassHistogram() {
+        PitchKernels.intervalClassHistogram(pitches, pitchCount, histogram);
+        return histogram;
+    }
+    
+    @Benchmark
+    public long[] intervalClassHistogramScalar() {
+        PitchKernels.intervalClassHistogramScalar(pitches, pitchCount, histogram);
+        return histogram;
+    }
+    
+    @Benchmark
+    public int consonanceMask() {
+        return PitchKernels.consonanceMask(pitches, against, pitchCount, mask);
+    }
+    
+    @Benchmark
+    public int consonanceMaskScalar() {
+        return PitchKernels.consonanceMaskScalar(pitches, against, pitchCount, mask);
+    }
+    
+    @Benchmark
+    public int consonanceNotes() {
+        int consonant = 0;
+        for (int i = 0; i < pitchCount; i++) {
+            if (MusicTheory.isConsonant(notes.get(i).getPitch(), notes.get(i + 1).getPitch())) {
+                consonant++;
+            }
+        }
+        return consonant;
+    }
+} 
\ No newline at end of file
@@ -0,0 +1,73 @@
+package com.musicgenerator.benchmarks;
+
+import com.musicgenerator.MarkovMelodyModel;
+import com.musicgenerator.MelodySearch;
+import com.musicgenerator.MusicGenerator;
+import com.musicgenerator.MusicTheory;
+import com.musicgenerator.MusicalPiece;
+import com.musicgenerator.Voice;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for complete piece generation
+ * 完整作品生成的基准测试
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GenerationBenchmark {
+    
+    @Param({"8", "100", "1000", "100000"})
+    public int measures;
+    
+    @Param({"3", "4"})
+    public int timeSignature;
+    
+    private MusicGenerator generator;
+    private MusicGenerator markovGenerator;
+    private MusicGenerator tenVoiceGenerator;
+    private MusicGenerator searchGenerator;
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        generator = new MusicGenerator();
+        generator.setScale(MusicTheory.ScaleType.MAJOR, 60);
+        markovGenerator = new MusicGenerator();
+        markovGenerator.setScale(MusicTheory.ScaleType.MAJOR, 60);
+        markovGenerator.setMelodyModel(MarkovMelodyModel.createDefault(MarkovMelodyModel.MAX_ORDER));
+        tenVoiceGenerator = new MusicGenerator();
+        tenVoiceGenerator.setScale(MusicTheory.ScaleType.MAJOR, 60);
+        tenVoiceGenerator.setVoices(Voice.Spec.parseList(
+                "COUNTER_MELODY,COUNTER_MELODY,ARPEGGIO,ARPEGGIO,ARPEGGIO,PAD,PAD,PAD,COUNTER_MELODY,PERCUSSION"));
+        searchGenerator = new MusicGenerator();
+        searchGenerator.setScale(MusicTheory.ScaleType.MAJOR, 60);
+        searchGenerator.setMelodySearch(new MelodySearch());
+    }
+    
+    @Benchmark
+    public MusicalPiece generatePiece() {
+        return generator.generatePiece(measures, timeSignature);
+    }
+    
+    @Benchmark
+    public MusicalPiece generatePieceMarkov() {
+        return markovGenerator.generatePiece(measures, timeSignature);
+    }
+    
+    // Melody, bass and ten voices generated as parallel fork-join subtasks
+    // 旋律、低音和十个声部作为并行fork-join子任务生成
+    @Benchmark
+    public MusicalPiece generatePieceTenVoices() {
+        return tenVoiceGenerator.generatePiece(measures, timeSignature);
+    }
+    
+    @Benchmark
+    public MusicalPiece generatePieceBeamSearch() {
+        return searchGenerator.generatePiece(measures, timeSignature);
+    }
+} 
\ No newline at end of file
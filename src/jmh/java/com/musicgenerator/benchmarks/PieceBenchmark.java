@@ -0,0 +1,80 @@
+package com.musicgenerator.benchmarks;
+
+import com.musicgenerator.MidiExporter;
+import com.musicgenerator.MusicGenerator;
+import com.musicgenerator.MusicTheory;
+import com.musicgenerator.MusicalPiece;
+import com.musicgenerator.SmfReader;
+import com.musicgenerator.SmfWriter;
+import org.openjdk.jmh.annotations.*;
+
+import javax.sound.midi.MidiSystem;
+import javax.sound.midi.Sequence;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for scanning, exporting and re-importing an already generated piece
+ * 扫描、导出和重新导入已生成作品的基准测试
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PieceBenchmark {
+    
+    @Param({"8", "100", "1000", "100000"})
+    public int measures;
+    
+    @Param({"3", "4"})
+    public int timeSignature;
+    
+    private MusicalPiece piece;
+    private ByteArrayOutputStream out;
+    private SmfWriter smfWriter;
+    private SmfReader smfReader;
+    private byte[] smf;
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        MusicGenerator generator = new MusicGenerator();
+        generator.setScale(MusicTheory.ScaleType.MAJOR, 60);
+        piece = generator.generatePiece(measures, timeSignature);
+        out = new ByteArrayOutputStream();
+        smfWriter = new SmfWriter();
+        smfReader = new SmfReader();
+        smf = smfWriter.toByteArray(piece);
+    }
+    
+    @Benchmark
+    public long getTotalDuration() {
+        return piece.getTotalDuration();
+    }
+    
+    @Benchmark
+    public int exportToMidi() throws Exception {
+        out.reset();
+        MidiExporter.exportToMidi(piece, out);
+        return out.size();
+    }
+    
+    @Benchmark
+    public int writeSmf() throws Exception {
+        out.reset();
+        smfWriter.write(piece, out);
+        return out.size();
+    }
+    
+    @Benchmark
+    public MusicalPiece readSmf() throws Exception {
+        return smfReader.read(smf);
+    }
+    
+    @Benchmark
+    public Sequence readSequence() throws Exception {
+        return MidiSystem.getSequence(new ByteArrayInputStream(smf));
+    }
+} 
\ No newline at end of file
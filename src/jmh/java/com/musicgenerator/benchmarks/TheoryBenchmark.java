@@ -0,0 +1,63 @@
+package com.musicgenerator.benchmarks;
+
+import com.musicgenerator.Chord;
+import com.musicgenerator.MusicTheory;
+import com.musicgenerator.TheoryTables;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the per-note music theory helpers
+ * 逐音符乐理辅助方法的基准测试
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TheoryBenchmark {
+    
+    @Param({"MAJOR", "MINOR", "PENTATONIC", "BLUES"})
+    public MusicTheory.ScaleType scaleType;
+    
+    private int[] scale;
+    private int pitch;
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        scale = MusicTheory.getScale(scaleType, 60);
+        pitch = scale[scale.length / 2];
+    }
+    
+    @Benchmark
+    public int[] getScale() {
+        return MusicTheory.getScale(scaleType, 60);
+    }
+    
+    @Benchmark
+    public int getHarmonicNote() {
+        return MusicTheory.getHarmonicNote(pitch, scale, 1);
+    }
+    
+    @Benchmark
+    public int getHarmonicNoteTable() {
+        return MusicTheory.getHarmonicNote(pitch, scaleType, 60, 1);
+    }
+    
+    @Benchmark
+    public boolean isInScale() {
+        return TheoryTables.isInScale(scaleType, 60, pitch + 1);
+    }
+    
+    @Benchmark
+    public boolean isConsonant() {
+        return MusicTheory.isConsonant(pitch, 67);
+    }
+    
+    @Benchmark
+    public Chord createMajorChord() {
+        return Chord.createMajorChord(pitch, 480, 0);
+    }
+} 
\ No newline at end of file
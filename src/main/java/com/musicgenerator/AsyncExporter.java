@@ -0,0 +1,297 @@
+package com.musicgenerator;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pipelined MIDI file exporter: generator threads encode, a few writer threads do the disk I/O
+ * 流水线式MIDI文件导出器：生成线程负责编码，少量写入线程负责磁盘I/O
+ *
+ * submit encodes the piece into a pooled buffer on the calling thread and queues it; the
+ * writer threads drain the queue in batches and write each file with one FileChannel write.
+ * The pool holds queueCapacity buffers, so when the disk falls behind, submit blocks until
+ * a buffer is returned and memory stays capped at the pool size. Buffers grow to the
+ * largest piece seen and are reused for the life of the exporter.
+ * submit在调用线程上将作品编码到池化缓冲区并放入队列；写入线程批量取出队列中的任务，
+ * 每个文件用一次FileChannel写入完成。池中共有queueCapacity个缓冲区，
+ * 因此当磁盘跟不上时submit会阻塞直到有缓冲区归还，内存始终不超过池的大小。
+ * 缓冲区会增长到见过的最大作品大小，并在导出器的整个生命周期内复用。
+ */
+public class AsyncExporter implements Closeable {
+    
+    private static final int BATCH_SIZE = 16;
+    
+    // One reusable encoder per generator thread
+    // 每个生成线程一个可复用的编码器
+    private static final ThreadLocal<SmfWriter> ENCODERS = ThreadLocal.withInitial(SmfWriter::new);
+    
+    // Permits count free buffers; a plain acquire, unlike a queue take, does not make
+    // a fork-join pool start compensating threads while a generator waits
+    // 许可数即空闲缓冲区数；与队列take不同，普通acquire在生成线程等待时不会让fork-join池启动补偿线程
+    private final Semaphore available;
+    private final Slot[] slots;         // Every buffer in the pool, free or in flight
+    private final Queue<Slot> free;
+    private final BlockingQueue<Slot> pending;
+    private final Thread[] writers;
+    private final int queueCapacity;
+    private final AtomicInteger maxQueueDepth = new AtomicInteger();
+    private volatile boolean closed;
+    
+    private final LongAdder filesWritten = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    private final LongAdder writeNanos = new LongAdder();
+    private final LongAdder stallNanos = new LongAdder();
+    private final AtomicInteger failures = new AtomicInteger();
+    private final AtomicReference<Throwable> firstFailure = new AtomicReference<>();
+    private final long startNanos = System.nanoTime();
+    private volatile long endNanos;
+    
+    public AsyncExporter() {
+        this(2, 256);
+    }
+    
+    public AsyncExporter(int writerThreads, int queueCapacity) {
+        if (writerThreads < 1) {
+            throw new IllegalArgumentException("writerThreads must be at least 1: " + writerThreads);
+        }
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("queueCapacity must be at least 1: " + queueCapacity);
+        }
+        this.queueCapacity = queueCapacity;
+        this.available = new Semaphore(queueCapacity);
+        this.slots = new Slot[queueCapacity];
+        this.free = new ConcurrentLinkedQueue<>();
+        this.pending = new ArrayBlockingQueue<>(queueCapacity + 1);
+        for (int i = 0; i < queueCapacity; i++) {
+            slots[i] = new Slot();
+            free.add(slots[i]);
+        }
+        this.writers = new Thread[writerThreads];
+        for (int i = 0; i < writerThreads; i++) {
+            writers[i] = new Thread(this::writeLoop, "midi-writer-" + i);
+            writers[i].setDaemon(true);
+            writers[i].start();
+        }
+    }
+    
+    /**
+     * Encode a piece on the calling thread and queue it to be written to a file;
+     * blocks while all buffers are in use
+     * 在调用线程上编码作品并排队写入文件；所有缓冲区都在使用时会阻塞
+     */
+    public void submit(MusicalPiece piece, Path file) throws IOException, InterruptedException {
+        if (closed) {
+            throw new IllegalStateException("Exporter is closed");
+        }
+        if (!available.tryAcquire()) {
+            long stall = System.nanoTime();
+            available.acquire();
+            stallNanos.add(System.nanoTime() - stall);
+        }
+        Slot slot = free.poll();
+        try {
+            slot.length = 0;
+            ENCODERS.get().write(piece, slot);
+        } catch (IOException | RuntimeException e) {
+            release(slot);
+            throw e;
+        }
+        slot.file = file;
+        pending.add(slot);
+        GenerationMetrics.getInstance().recordExportQueued(1);
+        maxQueueDepth.accumulateAndGet(pending.size(), Math::max);
+    }
+    
+    private void writeLoop() {
+        List<Slot> batch = new ArrayList<>(BATCH_SIZE);
+        GenerationMetrics metrics = GenerationMetrics.getInstance();
+        try {
+            while (true) {
+                batch.add(pending.take());
+                pending.drainTo(batch, BATCH_SIZE - 1);
+                for (Slot slot : batch) {
+                    if (slot.file == null) {
+                        // Shutdown marker, queued after all real work: pass it on to the next writer
+                        // 关闭标记，排在所有实际任务之后：传给下一个写入线程
+                        pending.add(slot);
+                        return;
+                    }
+                    writeAndRelease(slot, metrics);
+                }
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            // Finish a batch cut short by an interrupt
+            // 完成被中断打断的批次
+            for (Slot slot : batch) {
+                if (slot.file != null) {
+                    writeAndRelease(slot, metrics);
+                }
+            }
+        }
+    }
+    
+    private void release(Slot slot) {
+        slot.file = null;
+        free.add(slot);
+        available.release();
+    }
+    
+    /**
+     * Write a slot and always hand its buffer back, so a failed write cannot leave submitters blocked
+     * 写出一个槽位并始终归还其缓冲区，因此写入失败不会让提交者一直阻塞
+     */
+    private void writeAndRelease(Slot slot, GenerationMetrics metrics) {
+        metrics.recordExportQueued(-1);
+        try {
+            write(slot, metrics);
+        } finally {
+            release(slot);
+        }
+    }
+    
+    private void write(Slot slot, GenerationMetrics metrics) {
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(slot.file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(slot.data, 0, slot.length);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException | RuntimeException e) {
+            // E.g. a SecurityException or an unsupported file system, counted like an I/O error
+            // 例如SecurityException或不支持的文件系统，与I/O错误一样计数
+            failures.incrementAndGet();
+            firstFailure.compareAndSet(null, e);
+            return;
+        }
+        long elapsed = System.nanoTime() - start;
+        writeNanos.add(elapsed);
+        filesWritten.increment();
+        bytesWritten.add(slot.length);
+        metrics.recordFileWrite(elapsed, slot.length);
+    }
+    
+    /**
+     * Write everything still queued, then stop the writer threads
+     * 写出所有仍在队列中的作品，然后停止写入线程
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        pending.add(new Slot());
+        boolean interrupted = false;
+        for (Thread writer : writers) {
+            while (writer.isAlive()) {
+                try {
+                    writer.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        endNanos = System.nanoTime();
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    // Metrics
+    public int getWriterThreads() { return writers.length; }
+    public int getQueueCapacity() { return queueCapacity; }
+    public int getQueueDepth() { return pending.size(); }
+    public int getMaxQueueDepth() { return maxQueueDepth.get(); }
+    public long getFilesWritten() { return filesWritten.sum(); }
+    public long getBytesWritten() { return bytesWritten.sum(); }
+    public int getFailures() { return failures.get(); }
+    public Throwable getFirstFailure() { return firstFailure.get(); }
+    
+    /**
+     * Time writer threads spent in file I/O, summed over threads
+     * 写入线程在文件I/O上花费的时间（所有线程之和）
+     */
+    public long getWriteNanos() { return writeNanos.sum(); }
+    
+    /**
+     * Time submitters spent blocked waiting for a free buffer (backpressure)
+     * 提交者因等待空闲缓冲区而阻塞的时间（背压）
+     */
+    public long getStallNanos() { return stallNanos.sum(); }
+    
+    /**
+     * Bytes written per wall-clock second since the exporter was created
+     * 自导出器创建以来每秒写入的字节数
+     */
+    public double getBytesPerSecond() {
+        long end = endNanos != 0 ? endNanos : System.nanoTime();
+        return end == startNanos ? 0.0 : getBytesWritten() * 1_000_000_000.0 / (end - startNanos);
+    }
+    
+    /**
+     * Memory currently held by the buffer pool, in bytes, counting buffers in flight as well as free ones
+     * 缓冲池当前占用的内存（字节），包括正在使用的和空闲的缓冲区
+     */
+    public long getBufferBytes() {
+        long total = 0;
+        for (Slot slot : slots) {
+            total += slot.data.length;
+        }
+        return total;
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("AsyncExporter{writers=%d, files=%d, %.2f MB/s, queue=%d/%d (max %d), stalled=%.1fms, failures=%d}",
+                           writers.length, getFilesWritten(), getBytesPerSecond() / 1e6, getQueueDepth(),
+                           queueCapacity, getMaxQueueDepth(), getStallNanos() / 1e6, getFailures());
+    }
+    
+    /**
+     * One pooled, growable output buffer and the file it is destined for
+     * 一个池化的可增长输出缓冲区及其目标文件
+     */
+    private static class Slot implements WritableByteChannel {
+        private volatile byte[] data = new byte[8192];   // Volatile so getBufferBytes sees growth
+        private int length;
+        private Path file;
+        
+        @Override
+        public int write(ByteBuffer src) {
+            int count = src.remaining();
+            if (length + count > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, length + count));
+            }
+            src.get(data, length, count);
+            length += count;
+            return count;
+        }
+        
+        @Override
+        public boolean isOpen() { return true; }
+        
+        @Override
+        public void close() {
+        }
+    }
+} 
\ No newline at end of file
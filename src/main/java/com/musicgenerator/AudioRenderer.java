@@ -0,0 +1,250 @@
+package com.musicgenerator;
+
+import com.sun.media.sound.AudioSynthesizer;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MidiDevice;
+import javax.sound.midi.MidiSystem;
+import javax.sound.midi.MidiUnavailableException;
+import javax.sound.midi.Receiver;
+import javax.sound.midi.ShortMessage;
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Renders pieces straight to WAV audio with the JDK software synthesizer
+ * 使用JDK软件合成器将作品直接渲染为WAV音频
+ *
+ * The synthesizer is opened in stream mode, so every event is queued up front with
+ * its timestamp and audio is produced as fast as it can be read, not in real time.
+ * Each render opens its own synthesizer, which lets batches run on a thread pool.
+ * Needs access to com.sun.media.sound: the shaded jar's manifest grants it, otherwise
+ * run with --add-exports java.desktop/com.sun.media.sound=ALL-UNNAMED.
+ * 合成器以流模式打开，所有事件预先带时间戳排队，音频按读取速度生成而非实时生成。
+ * 每次渲染使用独立的合成器，因此批量渲染可以在线程池上运行。
+ * 需要访问com.sun.media.sound：打包的jar清单已授权，否则请使用
+ * --add-exports java.desktop/com.sun.media.sound=ALL-UNNAMED 运行。
+ */
+public class AudioRenderer {
+    
+    private static final String SYNTH_PACKAGE = "com.sun.media.sound";
+    private static final long RELEASE_TAIL_MICROS = 2_000_000;  // Let the last notes ring out
+    
+    private final AudioFormat format;
+    private final int threads;
+    
+    /**
+     * 44.1 kHz, 16-bit stereo, one thread per processor for batches
+     * 44.1 kHz、16位立体声，批量渲染时每个处理器一个线程
+     */
+    public AudioRenderer() {
+        this(new AudioFormat(44100f, 16, 2, true, false), Runtime.getRuntime().availableProcessors());
+    }
+    
+    public AudioRenderer(AudioFormat format, int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be at least 1: " + threads);
+        }
+        this.format = format;
+        this.threads = threads;
+    }
+    
+    public AudioFormat getFormat() { return format; }
+    public int getThreads() { return threads; }
+    
+    /**
+     * Render a piece to a WAV file
+     * 将作品渲染为WAV文件
+     *
+     * @return rendered length in microseconds
+     */
+    public long render(MusicalPiece piece, File wavFile) throws MidiUnavailableException, IOException {
+        AudioSynthesizer synthesizer = openSynthesizer();
+        try {
+            AudioInputStream audio = openStream(synthesizer, piece);
+            AudioSystem.write(audio, AudioFileFormat.Type.WAVE, wavFile);
+            return framesToMicros(audio.getFrameLength());
+        } finally {
+            synthesizer.close();
+        }
+    }
+    
+    /**
+     * Render a piece as WAV data to a stream (the stream is not closed)
+     * 将作品以WAV数据渲染到流中（不关闭流）
+     *
+     * @return rendered length in microseconds
+     */
+    public long render(MusicalPiece piece, OutputStream out) throws MidiUnavailableException, IOException {
+        AudioSynthesizer synthesizer = openSynthesizer();
+        try {
+            AudioInputStream audio = openStream(synthesizer, piece);
+            AudioSystem.write(audio, AudioFileFormat.Type.WAVE, out);
+            return framesToMicros(audio.getFrameLength());
+        } finally {
+            synthesizer.close();
+        }
+    }
+    
+    private static AudioSynthesizer openSynthesizer() throws MidiUnavailableException {
+        Module desktop = ModuleLayer.boot().findModule("java.desktop").orElse(null);
+        if (desktop != null && !desktop.isExported(SYNTH_PACKAGE, AudioRenderer.class.getModule())) {
+            throw new MidiUnavailableException("Offline rendering needs --add-exports java.desktop/"
+                                               + SYNTH_PACKAGE + "=ALL-UNNAMED");
+        }
+        MidiDevice device = MidiSystem.getSynthesizer();
+        if (!(device instanceof AudioSynthesizer)) {
+            throw new MidiUnavailableException("Default synthesizer cannot render offline: " + device.getDeviceInfo());
+        }
+        return (AudioSynthesizer) device;
+    }
+    
+    /**
+     * Queue all events of the piece and return its audio, sized to the piece plus release tail
+     * 将作品的所有事件排队并返回其音频，长度为作品时长加上释放尾音
+     */
+    private AudioInputStream openStream(AudioSynthesizer synthesizer, MusicalPiece piece)
+            throws MidiUnavailableException {
+        AudioInputStream stream = synthesizer.openStream(format, null);
+        Receiver receiver = synthesizer.getReceiver();
+        long ticksPerMinute = (long) piece.getTempo() * piece.getTicksPerBeat();
+        
+        try {
+            // Same channel/program layout as MidiExporter
+            // 与MidiExporter相同的通道/音色布局
+            receiver.send(new ShortMessage(ShortMessage.PROGRAM_CHANGE, EventTimeline.MELODY_CHANNEL,
+                                           EventTimeline.MELODY_PROGRAM, 0), 0);
+            receiver.send(new ShortMessage(ShortMessage.PROGRAM_CHANGE, EventTimeline.CHORD_CHANNEL,
+                                           EventTimeline.CHORD_PROGRAM, 0), 0);
+            receiver.send(new ShortMessage(ShortMessage.PROGRAM_CHANGE, EventTimeline.BASS_CHANNEL,
+                                           EventTimeline.BASS_PROGRAM, 0), 0);
+            for (Voice voice : piece.getVoices()) {
+                receiver.send(new ShortMessage(ShortMessage.PROGRAM_CHANGE, voice.getChannel(), voice.getProgram(), 0), 0);
+            }
+            
+            EventTimeline events = EventTimeline.of(piece);
+            for (int i = 0; i < events.size(); i++) {
+                receiver.send(new ShortMessage(events.getStatus(i), events.getPitch(i), events.getVelocity(i)),
+                              ticksToMicros(events.getTick(i), ticksPerMinute));
+            }
+        } catch (InvalidMidiDataException e) {
+            // Timeline data is masked to valid ranges
+            // 时间线数据已限制在有效范围内
+            throw new IllegalStateException(e);
+        }
+        
+        long lengthMicros = ticksToMicros(piece.getTotalDuration(), ticksPerMinute) + RELEASE_TAIL_MICROS;
+        long frames = (long) Math.ceil(lengthMicros * (double) format.getFrameRate() / 1_000_000.0);
+        return new AudioInputStream(stream, format, frames);
+    }
+    
+    private static long ticksToMicros(long tick, long ticksPerMinute) {
+        // micros = tick * 60e6 / (tempo * ticksPerBeat), split to avoid overflow
+        // 微秒 = tick * 60e6 / (速度 * 每拍tick数)，拆分计算以避免溢出
+        return (tick / ticksPerMinute) * 60_000_000L + (tick % ticksPerMinute) * 60_000_000L / ticksPerMinute;
+    }
+    
+    private long framesToMicros(long frames) {
+        return (long) (frames * 1_000_000.0 / format.getFrameRate());
+    }
+    
+    /**
+     * Render many pieces in parallel to prefix-00000.wav, prefix-00001.wav, ... in a directory
+     * 将多个作品并行渲染到目录中的 prefix-00000.wav、prefix-00001.wav……
+     */
+    public Result renderAll(List<MusicalPiece> pieces, File outputDir, String prefix) throws IOException {
+        if (!outputDir.isDirectory() && !outputDir.mkdirs()) {
+            throw new IOException("Cannot create output directory: " + outputDir);
+        }
+        
+        List<Callable<Long>> tasks = new ArrayList<>(pieces.size());
+        for (int i = 0; i < pieces.size(); i++) {
+            MusicalPiece piece = pieces.get(i);
+            File file = new File(outputDir, String.format("%s-%05d.wav", prefix, i));
+            tasks.add(() -> render(piece, file));
+        }
+        
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        long start = System.nanoTime();
+        int failures = 0;
+        Throwable firstFailure = null;
+        long audioMicros = 0;
+        try {
+            for (Future<Long> future : pool.invokeAll(tasks)) {
+                try {
+                    audioMicros += future.get();
+                } catch (ExecutionException e) {
+                    failures++;
+                    if (firstFailure == null) {
+                        firstFailure = e.getCause();
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Batch rendering interrupted", e);
+        } finally {
+            pool.shutdownNow();
+        }
+        long elapsed = System.nanoTime() - start;
+        
+        return new Result(pieces.size(), failures, firstFailure, threads, elapsed, audioMicros);
+    }
+    
+    /**
+     * Outcome and speed of one batch render
+     * 一次批量渲染的结果和速度
+     */
+    public static class Result {
+        private final int count;
+        private final int failures;
+        private final Throwable firstFailure;
+        private final int threads;
+        private final long elapsedNanos;
+        private final long audioMicros;
+        
+        Result(int count, int failures, Throwable firstFailure, int threads, long elapsedNanos, long audioMicros) {
+            this.count = count;
+            this.failures = failures;
+            this.firstFailure = firstFailure;
+            this.threads = threads;
+            this.elapsedNanos = elapsedNanos;
+            this.audioMicros = audioMicros;
+        }
+        
+        // Getters
+        public int getCount() { return count; }
+        public int getFailures() { return failures; }
+        public Throwable getFirstFailure() { return firstFailure; }
+        public int getThreads() { return threads; }
+        public long getElapsedNanos() { return elapsedNanos; }
+        public long getAudioMicros() { return audioMicros; }
+        
+        /**
+         * Seconds of audio rendered per wall-clock second
+         * 每秒实际时间渲染的音频秒数
+         */
+        public double getRealtimeFactor() {
+            return elapsedNanos == 0 ? 0.0 : audioMicros * 1000.0 / elapsedNanos;
+        }
+        
+        @Override
+        public String toString() {
+            return String.format("Render{pieces=%d, failures=%d, threads=%d, audio=%.1fs, elapsed=%.1fms, speed=%.1fx realtime}",
+                               count, failures, threads, audioMicros / 1_000_000.0,
+                               elapsedNanos / 1_000_000.0, getRealtimeFactor());
+        }
+    }
+} 
\ No newline at end of file
@@ -0,0 +1,434 @@
+package com.musicgenerator;
+
+import javax.management.JMException;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Non-interactive command line mode that generates and exports many pieces in parallel
+ * 非交互式命令行模式，并行生成和导出多个作品
+ *
+ * Settings come from config.properties (or --config), then from command line options;
+ * any config key the tool reads can also be given as an option, e.g. --default.tempo 100.
+ * Nothing is printed per file: one summary is written when the batch is done.
+ * 设置先来自config.properties（或--config），再由命令行选项覆盖；工具读取的任何配置键
+ * 也可以作为选项给出，例如 --default.tempo 100。不会逐个文件输出，批次结束时只输出一份汇总。
+ */
+public class BatchCli {
+    
+    private static final String DEFAULT_CONFIG = "config.properties";
+    
+    // Output keys read here; generation keys are GenerationParameters.PROPERTY_KEYS
+    // 此处读取的输出键；生成参数键见GenerationParameters.PROPERTY_KEYS
+    private static final Set<String> OUTPUT_KEYS = Collections.unmodifiableSet(new LinkedHashSet<>(Arrays.asList(
+            "output.directory", "output.filename.prefix", "output.filename.timestamp", "output.archive",
+            "output.ids", "output.dedup", "output.dedup.expected", "output.writers", "output.queue",
+            "output.metrics")));
+    
+    // Keys shipped in config.properties that no code reads yet: accepted, with a warning as options
+    // config.properties中附带但尚无代码读取的键：可以接受，作为选项给出时输出警告
+    private static final Set<String> IGNORED_KEYS = Collections.unmodifiableSet(new LinkedHashSet<>(Arrays.asList(
+            "midi.export.format", "midi.export.tracks", "midi.export.instruments",
+            "generation.max.notes.per.bar", "generation.min.note.duration", "generation.max.octave.jump",
+            "generation.chord.progression.length")));
+    
+    private static final DateTimeFormatter FILENAME_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss");
+    
+    /**
+     * Run a batch from command line arguments
+     * 根据命令行参数运行批处理
+     *
+     * @return process exit code: 0 on success, 1 if any piece failed, 2 on bad arguments
+     */
+    public static int run(String[] args, PrintStream out) {
+        Properties config;
+        try {
+            config = parseArguments(args);
+        } catch (IllegalArgumentException | IOException e) {
+            out.println("Error: " + e.getMessage());
+            printUsage(out);
+            return 2;
+        }
+        if (config == null) {
+            printUsage(out);
+            return 0;
+        }
+        for (String arg : args) {
+            String name = arg.startsWith("--") ? arg.substring(2).split("=", 2)[0] : "";
+            if (IGNORED_KEYS.contains(name)) {
+                out.println("Warning: --" + name + " is not used yet and has no effect");
+            }
+        }
+        
+        GenerationParameters params;
+        int count;
+        int threads;
+        int writers;
+        int queue;
+        int expected;
+        long seed;
+        if (config.getProperty("seed") != null && config.getProperty("generation.search.budget") == null) {
+            // A budgeted search falls back to greedy under load, so a seeded batch gets none, like the server
+            // 有预算的搜索在负载高时会退回贪心算法，因此与服务器一样，带种子的批次不设预算
+            config.setProperty("generation.search.budget", "0");
+        }
+        try {
+            params = GenerationParameters.fromProperties(config);
+            count = positive(config, "count", "1");
+            threads = positive(config, "threads", String.valueOf(Runtime.getRuntime().availableProcessors()));
+            writers = positive(config, "output.writers", "2");
+            queue = positive(config, "output.queue", "256");
+            expected = positive(config, "output.dedup.expected", String.valueOf(count));
+            String seedValue = config.getProperty("seed");
+            seed = seedValue == null ? System.nanoTime() : Long.parseLong(seedValue.trim());
+        } catch (NumberFormatException e) {
+            out.println("Error: invalid number: " + e.getMessage());
+            return 2;
+        } catch (IllegalArgumentException e) {
+            out.println("Error: " + e.getMessage());
+            return 2;
+        }
+        
+        String dedup = config.getProperty("output.dedup", "off").trim().toLowerCase();
+        if (!dedup.equals("off") && !dedup.equals("flag") && !dedup.equals("drop")) {
+            out.println("Error: --dedup must be off, flag or drop: " + dedup);
+            return 2;
+        }
+        DuplicateDetector detector = dedup.equals("off") ? null : new DuplicateDetector(expected, 0.001);
+        boolean dropDuplicates = dedup.equals("drop");
+        
+        // Long batches can be watched over JMX like the server
+        // 与服务器一样，可通过JMX观察长时间运行的批次
+        try {
+            GenerationMetrics.getInstance().registerMBean();
+        } catch (JMException e) {
+            out.println("Warning: cannot publish metrics over JMX: " + e.getMessage());
+        }
+        String metrics = config.getProperty("output.metrics");
+        Path metricsFile = metrics == null || metrics.trim().isEmpty() ? null : Paths.get(metrics.trim());
+        
+        String ids = config.getProperty("output.ids");
+        if (ids != null && !ids.trim().isEmpty()) {
+            return writeMetrics(out, metricsFile,
+                    runIds(out, Paths.get(ids.trim()), count, threads, params, seed, detector, dropDuplicates));
+        }
+        
+        String archive = config.getProperty("output.archive");
+        if (archive != null && !archive.trim().isEmpty()) {
+            return writeMetrics(out, metricsFile,
+                    runArchive(out, Paths.get(archive.trim()), count, threads, params, seed, detector, dropDuplicates));
+        }
+        
+        Path outDir = Paths.get(config.getProperty("output.directory", ".").trim());
+        // One batch start time for every file, so the batch still sorts by index
+        // 所有文件使用同一个批次开始时间，因此批次仍按序号排序
+        String prefix = config.getProperty("output.filename.prefix", "generated_music").trim()
+                      + (Boolean.parseBoolean(config.getProperty("output.filename.timestamp", "false").trim())
+                         ? "_" + LocalDateTime.now().format(FILENAME_TIMESTAMP) : "");
+        try {
+            Files.createDirectories(outDir);
+        } catch (IOException e) {
+            out.println("Error: cannot create output directory " + outDir + ": " + e.getMessage());
+            return 2;
+        }
+        
+        // Workers encode, the exporter's writer threads do the file I/O
+        // 工作线程负责编码，导出器的写入线程负责文件I/O
+        AsyncExporter exporter = new AsyncExporter(writers, queue);
+        BatchGenerator.Result result;
+        try {
+            result = new BatchGenerator(threads).generate(count, params, seed, (index, piece) -> {
+                // Flagged duplicates keep their index but get a _dup or _near suffix
+                // 被标记的重复作品保留序号，但带有_dup或_near后缀
+                DuplicateDetector.Verdict verdict = detector == null ? DuplicateDetector.Verdict.UNIQUE : detector.check(piece);
+                if (verdict != DuplicateDetector.Verdict.UNIQUE && dropDuplicates) {
+                    return;
+                }
+                String suffix = verdict == DuplicateDetector.Verdict.DUPLICATE ? "_dup"
+                              : verdict == DuplicateDetector.Verdict.NEAR_DUPLICATE ? "_near" : "";
+                exporter.submit(piece, outDir.resolve(String.format("%s_%06d%s.mid", prefix, index, suffix)));
+            });
+        } finally {
+            exporter.close();
+        }
+        
+        printSummary(out, result, params, seed, outDir, exporter.getBytesWritten(), exporter.getFailures(),
+                     detector, dropDuplicates);
+        out.printf("Export: %d writers, %.2f MB/s, queue max %d/%d, generators stalled %.1fms, %d write failures%n",
+                   exporter.getWriterThreads(), exporter.getBytesPerSecond() / 1e6, exporter.getMaxQueueDepth(),
+                   exporter.getQueueCapacity(), exporter.getStallNanos() / 1e6, exporter.getFailures());
+        if (exporter.getFirstFailure() != null) {
+            out.println("First write failure: " + exporter.getFirstFailure());
+        }
+        return writeMetrics(out, metricsFile, result.getFailures() == 0 && exporter.getFailures() == 0 ? 0 : 1);
+    }
+    
+    /**
+     * Dump the metrics registry in Prometheus text format once the batch is done
+     * 批次完成后以Prometheus文本格式导出指标注册表
+     *
+     * @return the batch exit code, or 1 if the file cannot be written
+     */
+    private static int writeMetrics(PrintStream out, Path metricsFile, int code) {
+        if (metricsFile == null) {
+            return code;
+        }
+        try {
+            GenerationMetrics.getInstance().writePrometheusFile(metricsFile);
+        } catch (IOException e) {
+            out.println("Error: cannot write metrics " + metricsFile + ": " + e.getMessage());
+            return Math.max(code, 1);
+        }
+        return code;
+    }
+    
+    /**
+     * Write the PieceId of every kept piece, one per line in index order, instead of any MIDI;
+     * flagged duplicates are followed by " dup" or " near" on their line
+     * 按序号顺序每行写出每个保留作品的PieceId，而不写出任何MIDI；
+     * 被标记的重复作品在其行尾附加" dup"或" near"
+     */
+    private static int runIds(PrintStream out, Path idFile, int count, int threads, GenerationParameters params,
+                              long seed, DuplicateDetector detector, boolean dropDuplicates) {
+        PieceId first;
+        try {
+            first = PieceId.of(params, BatchGenerator.pieceSeed(seed, 0));
+        } catch (IllegalArgumentException e) {
+            out.println("Error: " + e.getMessage());
+            return 2;
+        }
+        
+        // Pieces are only generated when duplicates have to be detected
+        // 仅在需要检测重复时才生成作品
+        DuplicateDetector.Verdict[] verdicts = new DuplicateDetector.Verdict[count];
+        Arrays.fill(verdicts, DuplicateDetector.Verdict.UNIQUE);
+        BatchGenerator.Result result = null;
+        long start = System.nanoTime();
+        if (detector != null) {
+            result = new BatchGenerator(threads).generate(count, params, seed,
+                    (index, piece) -> verdicts[index] = detector.check(piece));
+        }
+        
+        long bytes = 0;
+        try (BufferedWriter writer = Files.newBufferedWriter(idFile, StandardCharsets.US_ASCII)) {
+            for (int i = 0; i < count; i++) {
+                DuplicateDetector.Verdict verdict = verdicts[i];
+                if (verdict != DuplicateDetector.Verdict.UNIQUE && dropDuplicates) {
+                    continue;
+                }
+                String line = i == 0 ? first.toString() : PieceId.of(params, BatchGenerator.pieceSeed(seed, i)).toString();
+                if (verdict == DuplicateDetector.Verdict.DUPLICATE) {
+                    line += " dup";
+                } else if (verdict == DuplicateDetector.Verdict.NEAR_DUPLICATE) {
+                    line += " near";
+                }
+                writer.write(line);
+                writer.newLine();
+                bytes += line.length() + System.lineSeparator().length();
+            }
+        } catch (IOException e) {
+            out.println("Error: cannot write " + idFile + ": " + e.getMessage());
+            return 1;
+        }
+        if (result == null) {
+            result = new BatchGenerator.Result(count, 0, null, 1, System.nanoTime() - start);
+        }
+        printSummary(out, result, params, seed, idFile, bytes, 0, detector, dropDuplicates);
+        return result.getFailures() == 0 ? 0 : 1;
+    }
+    
+    /**
+     * Append the whole batch to one PieceArchive instead of writing a file per piece
+     * 将整个批次追加到一个PieceArchive中，而不是每个作品写一个文件
+     */
+    private static int runArchive(PrintStream out, Path archive, int count, int threads,
+                                  GenerationParameters params, long seed,
+                                  DuplicateDetector detector, boolean dropDuplicates) {
+        BatchGenerator.Result result;
+        long bytes;
+        try (PieceArchive.Writer writer = new PieceArchive.Writer(archive)) {
+            long before = Files.size(archive);
+            BatchGenerator.PieceHandler handler = (index, piece) -> writer.append(piece);
+            if (detector != null) {
+                handler = detector.filter(handler, dropDuplicates);
+            }
+            result = new BatchGenerator(threads).generate(count, params, seed, handler);
+            writer.force();
+            bytes = Files.size(archive) - before;
+        } catch (IOException e) {
+            out.println("Error: cannot write archive " + archive + ": " + e.getMessage());
+            return 1;
+        }
+        printSummary(out, result, params, seed, archive, bytes, 0, detector, dropDuplicates);
+        return result.getFailures() == 0 ? 0 : 1;
+    }
+    
+    /**
+     * Merge the config file and the options into one property set; null means --help
+     * 将配置文件和选项合并为一个属性集；返回null表示 --help
+     */
+    static Properties parseArguments(String[] args) throws IOException {
+        Properties options = new Properties();
+        String configFile = null;
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("--help") || arg.equals("-h")) {
+                return null;
+            }
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("Unexpected argument: " + arg);
+            }
+            String name = arg.substring(2);
+            String value;
+            int eq = name.indexOf('=');
+            if (eq >= 0) {
+                value = name.substring(eq + 1);
+                name = name.substring(0, eq);
+            } else if (i + 1 < args.length) {
+                value = args[++i];
+            } else {
+                throw new IllegalArgumentException("Missing value for " + arg);
+            }
+            if (name.equals("config")) {
+                configFile = value;
+            } else {
+                options.setProperty(optionKey(name, value, options), value);
+            }
+        }
+        
+        Properties config = new Properties();
+        Path configPath = Paths.get(configFile != null ? configFile : DEFAULT_CONFIG);
+        if (Files.exists(configPath)) {
+            try (InputStream in = Files.newInputStream(configPath)) {
+                config.load(in);
+            }
+        } else if (configFile != null) {
+            throw new IOException("Config file not found: " + configFile);
+        }
+        config.putAll(options);
+        return config;
+    }
+    
+    /**
+     * Map a short option to its config key
+     * 将简短选项映射到对应的配置键
+     */
+    private static String optionKey(String name, String value, Properties options) {
+        switch (name) {
+            case "count":
+            case "threads":
+            case "seed":
+                return name;
+            case "out-dir":
+                return "output.directory";
+            case "archive":
+                return "output.archive";
+            case "ids":
+                return "output.ids";
+            case "dedup":
+                return "output.dedup";
+            case "dedup-expected":
+                return "output.dedup.expected";
+            case "writers":
+                return "output.writers";
+            case "queue":
+                return "output.queue";
+            case "measures":
+                return "default.bars";
+            case "voices":
+                return "generation.voices";
+            case "metrics":
+                return "output.metrics";
+            case "beam":
+                return "generation.search.beam";
+            case "scale":
+                // --scale random, or a scale type that disables random scales
+                // --scale random，或指定音阶类型以关闭随机音阶
+                options.setProperty("default.scale.random", String.valueOf(value.equalsIgnoreCase("random")));
+                return "default.scale.type";
+            default:
+                if (GenerationParameters.PROPERTY_KEYS.contains(name) || OUTPUT_KEYS.contains(name)
+                    || IGNORED_KEYS.contains(name)) {
+                    return name; // A config.properties key
+                }
+                throw new IllegalArgumentException("Unknown option: --" + name);
+        }
+    }
+    
+    private static int positive(Properties config, String key, String defaultValue) {
+        int value = Integer.parseInt(config.getProperty(key, defaultValue).trim());
+        if (value < 1) {
+            throw new IllegalArgumentException("--" + key + " must be at least 1: " + value);
+        }
+        return value;
+    }
+    
+    private static void printSummary(PrintStream out, BatchGenerator.Result result, GenerationParameters params,
+                                     long seed, Path outDir, long bytes, int writeFailures,
+                                     DuplicateDetector detector, boolean dropDuplicates) {
+        double seconds = result.getElapsedNanos() / 1e9;
+        out.println("=== Batch Summary ===");
+        out.println("Parameters: " + params);
+        out.println("Seed: " + seed);
+        out.println("Output: " + outDir.toAbsolutePath());
+        long dropped = detector != null && dropDuplicates ? detector.getDuplicates() + detector.getNearDuplicates() : 0;
+        // Pieces that failed to generate, were dropped or failed to write never reach the output
+        // 生成失败、被丢弃或写入失败的作品不会出现在输出中
+        out.printf("Pieces: %d written, %d failed, %d failed to write, %d threads%n",
+                   result.getCount() - result.getFailures() - dropped - writeFailures, result.getFailures(),
+                   writeFailures, result.getThreads());
+        if (detector != null) {
+            out.printf("Duplicates: %d exact, %d near, %s; detector memory %.1f MB%n",
+                       detector.getDuplicates(), detector.getNearDuplicates(),
+                       dropDuplicates ? "dropped" : "flagged", detector.getMemoryBytes() / 1e6);
+        }
+        MelodySearch search = params.getMelodySearch();
+        if (search != null) {
+            out.printf("Melody search: %d measures, %d fell back to greedy within the %s budget%n",
+                       search.getSearches(), search.getFallbacks(),
+                       search.getBudgetNanos() == 0 ? "unlimited" : search.getBudgetNanos() / 1000 + "us");
+        }
+        out.printf("Elapsed: %.2fs, throughput: %.1f pieces/s, %.2f MB/s (%d bytes)%n",
+                   seconds, result.getPiecesPerSecond(), seconds == 0 ? 0.0 : bytes / seconds / 1e6, bytes);
+        if (result.getFirstFailure() != null) {
+            out.println("First failure: " + result.getFirstFailure());
+        }
+    }
+    
+    private static void printUsage(PrintStream out) {
+        out.println("Usage: MusicGeneratorApp --count N [options]");
+        out.println("  --count N          number of pieces (default 1)");
+        out.println("  --threads N        worker threads (default: available processors)");
+        out.println("  --out-dir DIR      output directory (output.directory)");
+        out.println("  --writers N        file writer threads (default 2, output.writers)");
+        out.println("  --queue N          pieces encoded ahead of the writers (default 256, output.queue)");
+        out.println("  --archive FILE     append all pieces to one .mga archive instead (output.archive)");
+        out.println("  --ids FILE         write one piece ID per line instead of MIDI (output.ids)");
+        out.println("  --dedup MODE       off, flag or drop duplicate and near-duplicate pieces (output.dedup)");
+        out.println("  --dedup-expected N unique pieces the detector is sized for (default --count,");
+        out.println("                     output.dedup.expected); allocated up front: 170 MB at 1M,");
+        out.println("                     21 MB at 100000, then about 2 more bytes per piece above 1M");
+        out.println("  --metrics FILE     write Prometheus metrics when done (output.metrics)");
+        out.println("  --measures N       bars per piece (default.bars)");
+        out.println("  --scale TYPE       MAJOR, MINOR, PENTATONIC, BLUES or random");
+        out.println("  --voices LIST      extra voices, e.g. ARPEGGIO,PAD:92,PERCUSSION (generation.voices)");
+        out.println("  --beam N           choose melody pitches by beam search of width N (generation.search.beam)");
+        out.println("  --seed N           batch seed; the same seed reproduces the same files");
+        out.println("                     (searches get no time budget unless generation.search.budget is set)");
+        out.println("  --config FILE      properties file (default ./config.properties if present)");
+        out.println("  --<key> VALUE      any config.properties key, e.g. --default.tempo 100");
+    }
+} 
\ No newline at end of file
@@ -0,0 +1,226 @@
+package com.musicgenerator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Generates many pieces in parallel on a fork-join pool
+ * 在fork-join线程池上并行生成多个作品
+ *
+ * Every piece gets its own MusicGenerator seeded from (batch seed, piece index),
+ * so workers never share a random source and a batch is reproducible regardless
+ * of the thread count.
+ * 每个作品都有由（批次种子，作品序号）确定的独立生成器，
+ * 因此工作线程之间不共享随机源，且批次结果与线程数无关。
+ */
+public class BatchGenerator {
+    
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+    
+    private final int threads;
+    
+    public BatchGenerator() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+    
+    public BatchGenerator(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be at least 1: " + threads);
+        }
+        this.threads = threads;
+    }
+    
+    public int getThreads() { return threads; }
+    
+    /**
+     * Callback receiving each piece as soon as it is generated
+     * 每个作品生成后立即接收它的回调
+     */
+    public interface PieceHandler {
+        void handle(int index, MusicalPiece piece) throws Exception;
+    }
+    
+    /**
+     * Generate a batch and keep all pieces in memory, in index order
+     * 生成一批作品并按序号保存在内存中
+     *
+     * Pieces that failed to generate are left out of getPieces, so the list has no nulls but
+     * is shorter than count; getFailedIndices tells which batch indices are missing.
+     * 生成失败的作品不会出现在getPieces中，因此列表中没有null，但长度小于count；
+     * getFailedIndices给出缺失的批次序号。
+     */
+    public Result generate(int count, GenerationParameters params, long seed) {
+        MusicalPiece[] pieces = new MusicalPiece[count];
+        Result result = generate(count, params, seed, (index, piece) -> pieces[index] = piece);
+        List<MusicalPiece> generated = new ArrayList<>(count - result.getFailures());
+        for (MusicalPiece piece : pieces) {
+            if (piece != null) {
+                generated.add(piece);
+            }
+        }
+        result.pieces = Collections.unmodifiableList(generated);
+        return result;
+    }
+    
+    /**
+     * Generate a batch and hand every piece to the handler instead of retaining it
+     * 生成一批作品并将每个作品交给处理器，而不是保留在内存中
+     */
+    public Result generate(int count, GenerationParameters params, long seed, PieceHandler handler) {
+        GenerationParameters snapshot = params.copy();
+        AtomicInteger failures = new AtomicInteger();
+        AtomicReference<Throwable> firstFailure = new AtomicReference<>();
+        Queue<Integer> failedIndices = new ConcurrentLinkedQueue<>();
+        int threshold = Math.max(1, count / (threads * 8));
+        
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        long start = System.nanoTime();
+        try {
+            pool.invoke(new GenerateTask(0, count, threshold, snapshot, seed, handler, failures, firstFailure,
+                                         failedIndices));
+        } finally {
+            pool.shutdown();
+        }
+        long elapsed = System.nanoTime() - start;
+        
+        Result result = new Result(count, failures.get(), firstFailure.get(), threads, elapsed);
+        result.failedIndices = failedIndices.stream().mapToInt(Integer::intValue).sorted().toArray();
+        return result;
+    }
+    
+    /**
+     * Generate a single piece exactly as the batch would for the given piece seed
+     * 按批次相同的方式，用指定的作品种子生成单个作品
+     */
+    public static MusicalPiece generateOne(GenerationParameters params, long pieceSeed) {
+        MusicGenerator generator = new MusicGenerator(new Random(pieceSeed));
+        generator.configure(params);
+        return generator.generatePiece(params.getMeasures(), params.getTimeSignature());
+    }
+    
+    /**
+     * Derive the independent seed of one piece in a batch (SplitMix64 finalizer)
+     * 推导批次中单个作品的独立种子（SplitMix64混合函数）
+     */
+    public static long pieceSeed(long batchSeed, int index) {
+        long z = batchSeed + (index + 1L) * GOLDEN_GAMMA;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+    
+    /**
+     * Recursively splits an index range until it is small enough to generate directly
+     * 递归拆分序号区间，直到足够小后直接生成
+     */
+    @SuppressWarnings("serial")   // Forked within one pool, never serialized
+    private static class GenerateTask extends RecursiveAction {
+        private final int from;
+        private final int to;
+        private final int threshold;
+        private final GenerationParameters params;
+        private final long seed;
+        private final PieceHandler handler;
+        private final AtomicInteger failures;
+        private final AtomicReference<Throwable> firstFailure;
+        private final Queue<Integer> failedIndices;
+        
+        GenerateTask(int from, int to, int threshold, GenerationParameters params, long seed,
+                     PieceHandler handler, AtomicInteger failures, AtomicReference<Throwable> firstFailure,
+                     Queue<Integer> failedIndices) {
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+            this.params = params;
+            this.seed = seed;
+            this.handler = handler;
+            this.failures = failures;
+            this.firstFailure = firstFailure;
+            this.failedIndices = failedIndices;
+        }
+        
+        @Override
+        protected void compute() {
+            if (to - from <= threshold) {
+                for (int i = from; i < to; i++) {
+                    try {
+                        handler.handle(i, generateOne(params, pieceSeed(seed, i)));
+                    } catch (Exception e) {
+                        failures.incrementAndGet();
+                        firstFailure.compareAndSet(null, e);
+                        failedIndices.add(i);
+                    }
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new GenerateTask(from, mid, threshold, params, seed, handler, failures, firstFailure, failedIndices),
+                      new GenerateTask(mid, to, threshold, params, seed, handler, failures, firstFailure, failedIndices));
+        }
+    }
+    
+    /**
+     * Outcome and throughput of one batch run
+     * 一次批量运行的结果和吞吐量
+     */
+    public static class Result {
+        private final int count;
+        private final int failures;
+        private final Throwable firstFailure;
+        private final int threads;
+        private final long elapsedNanos;
+        private List<MusicalPiece> pieces;
+        private int[] failedIndices;
+        
+        Result(int count, int failures, Throwable firstFailure, int threads, long elapsedNanos) {
+            this.count = count;
+            this.failures = failures;
+            this.firstFailure = firstFailure;
+            this.threads = threads;
+            this.elapsedNanos = elapsedNanos;
+            this.pieces = new ArrayList<>();
+            this.failedIndices = new int[0];
+        }
+        
+        // Getters
+        public int getCount() { return count; }
+        public int getFailures() { return failures; }
+        public Throwable getFirstFailure() { return firstFailure; }
+        public int getThreads() { return threads; }
+        public long getElapsedNanos() { return elapsedNanos; }
+        
+        /**
+         * Generated pieces in index order, without the failed ones; empty when a handler was given
+         * 按序号排列的已生成作品，不含失败的作品；指定处理器时为空
+         */
+        public List<MusicalPiece> getPieces() { return pieces; }
+        
+        /**
+         * Batch indices whose piece failed to generate or to be handled, ascending
+         * 作品生成或处理失败的批次序号，升序
+         */
+        public int[] getFailedIndices() { return failedIndices.clone(); }
+        
+        /**
+         * Successfully generated pieces per wall-clock second
+         * 每秒成功生成的作品数
+         */
+        public double getPiecesPerSecond() {
+            return elapsedNanos == 0 ? 0.0 : (count - failures) * 1_000_000_000.0 / elapsedNanos;
+        }
+        
+        @Override
+        public String toString() {
+            return String.format("Batch{pieces=%d, failures=%d, threads=%d, elapsed=%.1fms, throughput=%.1f pieces/s}",
+                               count, failures, threads, elapsedNanos / 1_000_000.0, getPiecesPerSecond());
+        }
+    }
+} 
\ No newline at end of file
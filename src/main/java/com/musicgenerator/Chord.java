@@ -1,6 +1,7 @@
 package com.musicgenerator;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -40,16 +41,8 @@ public class Chord {
      * 基于根音创建大三和弦
      */
     public static Chord createMajorChord(int rootPitch, int duration, long startTime) {
-        Chord chord = new Chord();
-        chord.startTime = startTime;
-        chord.duration = duration;
-        
         // Major chord: root, major third, perfect fifth
-        chord.addNote(new Note(rootPitch, duration, 100, startTime));
-        chord.addNote(new Note(rootPitch + 4, duration, 100, startTime));
-        chord.addNote(new Note(rootPitch + 7, duration, 100, startTime));
-        
-        return chord;
+        return ChordShape.of(ChordShape.Quality.MAJOR, rootPitch).toChord(duration, startTime);
     }
     
     /**
@@ -57,16 +50,8 @@ public class Chord {
      * 基于根音创建小三和弦
      */
     public static Chord createMinorChord(int rootPitch, int duration, long startTime) {
-        Chord chord = new Chord();
-        chord.startTime = startTime;
-        chord.duration = duration;
-        
         // Minor chord: root, minor third, perfect fifth
-        chord.addNote(new Note(rootPitch, duration, 100, startTime));
-        chord.addNote(new Note(rootPitch + 3, duration, 100, startTime));
-        chord.addNote(new Note(rootPitch + 7, duration, 100, startTime));
-        
-        return chord;
+        return ChordShape.of(ChordShape.Quality.MINOR, rootPitch).toChord(duration, startTime);
     }
     
     /**
@@ -74,24 +59,38 @@ public class Chord {
      * 基于根音创建减三和弦
      */
     public static Chord createDiminishedChord(int rootPitch, int duration, long startTime) {
-        Chord chord = new Chord();
-        chord.startTime = startTime;
-        chord.duration = duration;
-        
         // Diminished chord: root, minor third, diminished fifth
-        chord.addNote(new Note(rootPitch, duration, 100, startTime));
-        chord.addNote(new Note(rootPitch + 3, duration, 100, startTime));
-        chord.addNote(new Note(rootPitch + 6, duration, 100, startTime));
-        
-        return chord;
+        return ChordShape.of(ChordShape.Quality.DIMINISHED, rootPitch).toChord(duration, startTime);
     }
     
     // Getters
     public List<Note> getNotes() { return new ArrayList<>(notes); }
+    public List<Note> getNotesView() { return Collections.unmodifiableList(notes); }
     public int getDuration() { return duration; }
     public long getStartTime() { return startTime; }
     public int getNoteCount() { return notes.size(); }
     
+    /**
+     * Get the pitch of the first (root) note without copying the note list
+     * 获取第一个（根）音的音高，不复制音符列表
+     */
+    public int getRootPitch() {
+        if (notes.isEmpty()) {
+            throw new IllegalStateException("Chord has no notes");
+        }
+        return notes.get(0).getPitch();
+    }
+    
+    /**
+     * Visit each note of the chord without copying the note list
+     * 访问和弦的每个音符，不复制音符列表
+     */
+    public void forEachNote(NoteVisitor visitor) {
+        for (Note note : notes) {
+            visitor.visit(note.getPitch(), note.getDuration(), note.getVelocity(), note.getStartTime());
+        }
+    }
+    
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder("Chord{notes=[");
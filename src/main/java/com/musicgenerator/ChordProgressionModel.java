@@ -0,0 +1,119 @@
+package com.musicgenerator;
+
+import java.util.Random;
+
+/**
+ * Immutable first-order model of chord root movement between scale degrees
+ * 描述和弦根音在音阶级数间移动的不可变一阶模型
+ *
+ * Replaces the fixed COMMON_PROGRESSIONS table with progressions sampled from
+ * learned degree-to-degree transition counts. Like the built-in progressions,
+ * every sampled progression starts on the tonic.
+ * 用从级数间转移计数中采样的和弦进行替代固定的COMMON_PROGRESSIONS表。
+ * 与内置和弦进行一样，每个采样的和弦进行都从主音开始。
+ */
+public final class ChordProgressionModel {
+    
+    public static final int DEGREES = MarkovMelodyModel.DEGREES;
+    public static final int PROGRESSION_LENGTH = 4;    // Same length as COMMON_PROGRESSIONS
+    
+    private static final int DIATONIC_DEGREES = 7;     // Fallback when nothing was counted
+    
+    private final float[] cumulative;   // [previous * DEGREES + next], each row ends at 1.0
+    
+    private ChordProgressionModel(float[] cumulative) {
+        this.cumulative = cumulative;
+    }
+    
+    /**
+     * Build a model from transition counts laid out as [previous degree * DEGREES + next degree].
+     * Degrees that were never followed by a chord fall back to the overall next-degree counts.
+     * 根据按[前一级数 * DEGREES + 下一级数]排列的转移计数构建模型。
+     * 从未出现后续和弦的级数回退到总体的下一级数计数。
+     */
+    public static ChordProgressionModel fromCounts(long[] counts) {
+        if (counts.length != DEGREES * DEGREES) {
+            throw new IllegalArgumentException("expected " + DEGREES * DEGREES + " counts: " + counts.length);
+        }
+        long[] overall = new long[DEGREES];
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] < 0) {
+                throw new IllegalArgumentException("negative count at " + i);
+            }
+            overall[i % DEGREES] += counts[i];
+        }
+        if (rowTotal(overall, 0) == 0) {
+            for (int degree = 0; degree < DIATONIC_DEGREES; degree++) {
+                overall[degree] = 1;
+            }
+        }
+        
+        float[] cumulative = new float[DEGREES * DEGREES];
+        for (int previous = 0; previous < DEGREES; previous++) {
+            int offset = previous * DEGREES;
+            if (rowTotal(counts, offset) > 0) {
+                fillRow(cumulative, offset, counts, offset);
+            } else {
+                fillRow(cumulative, offset, overall, 0);
+            }
+        }
+        return new ChordProgressionModel(cumulative);
+    }
+    
+    private static long rowTotal(long[] counts, int offset) {
+        long total = 0;
+        for (int i = 0; i < DEGREES; i++) {
+            total += counts[offset + i];
+        }
+        return total;
+    }
+    
+    private static void fillRow(float[] cumulative, int target, long[] counts, int offset) {
+        double total = rowTotal(counts, offset);
+        long running = 0;
+        for (int i = 0; i < DEGREES; i++) {
+            running += counts[offset + i];
+            cumulative[target + i] = (float) (running / total);
+        }
+        cumulative[target + DEGREES - 1] = 1.0f;
+    }
+    
+    /**
+     * Sample the degree following a chord on the given degree from a uniform value u in [0, 1)
+     * 根据[0, 1)范围内的均匀值u，采样给定级数和弦之后的级数
+     */
+    public int sampleNext(int previous, double u) {
+        int offset = previous * DEGREES;
+        int i = 0;
+        while (i < DEGREES - 1 && u >= cumulative[offset + i]) {
+            i++;
+        }
+        return i;
+    }
+    
+    /**
+     * Sample a progression of PROGRESSION_LENGTH scale degrees starting on the tonic
+     * 采样一个从主音开始、长度为PROGRESSION_LENGTH的音阶级数和弦进行
+     */
+    public int[] sampleProgression(Random random) {
+        int[] progression = new int[PROGRESSION_LENGTH];
+        for (int i = 1; i < progression.length; i++) {
+            progression[i] = sampleNext(progression[i - 1], random.nextDouble());
+        }
+        return progression;
+    }
+    
+    /**
+     * Probability that a chord on one degree is followed by a chord on another
+     * 某级数和弦之后接另一级数和弦的概率
+     */
+    public double getProbability(int previous, int next) {
+        int index = previous * DEGREES + next;
+        return next == 0 ? cumulative[index] : cumulative[index] - cumulative[index - 1];
+    }
+    
+    @Override
+    public String toString() {
+        return "ChordProgressionModel{degrees=" + DEGREES + ", length=" + PROGRESSION_LENGTH + "}";
+    }
+} 
\ No newline at end of file
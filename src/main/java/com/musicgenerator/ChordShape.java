@@ -0,0 +1,151 @@
+package com.musicgenerator;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable, interned chord shape: a quality on a root pitch, with no timing
+ * 不可变的驻留和弦形状：根音上的某种和弦性质，不含时间信息
+ *
+ * There is exactly one shape per (quality, root) for MIDI roots 0-127, so placed
+ * chords can share it instead of each allocating a Chord and its Notes.
+ * 每个（性质，根音）组合在MIDI根音0-127范围内只有一个形状，
+ * 因此已放置的和弦可以共享它，而不必各自分配Chord及其Note对象。
+ */
+public final class ChordShape {
+    
+    public static final int VELOCITY = 100;   // Same velocity as the Chord factories
+    public static final int NO_ID = -1;       // Id of a shape outside the MIDI range, which is not interned
+    
+    /**
+     * Chord qualities and their intervals above the root
+     * 和弦性质及其相对根音的音程
+     */
+    public enum Quality {
+        MAJOR(0, 4, 7),         // Root, major third, perfect fifth
+        MINOR(0, 3, 7),         // Root, minor third, perfect fifth
+        DIMINISHED(0, 3, 6);    // Root, minor third, diminished fifth
+        
+        private final int[] intervals;
+        
+        Quality(int... intervals) {
+            this.intervals = intervals;
+        }
+    }
+    
+    private static final ChordShape[][] SHAPES = new ChordShape[Quality.values().length][128];
+    
+    static {
+        for (Quality quality : Quality.values()) {
+            for (int root = 0; root < 128; root++) {
+                SHAPES[quality.ordinal()][root] = new ChordShape(quality, root);
+            }
+        }
+    }
+    
+    private final Quality quality;
+    private final int[] pitches;
+    private final int id;
+    
+    private ChordShape(Quality quality, int rootPitch) {
+        this.quality = quality;
+        this.id = rootPitch >= 0 && rootPitch < 128 ? quality.ordinal() << 7 | rootPitch : NO_ID;
+        this.pitches = new int[quality.intervals.length];
+        for (int i = 0; i < pitches.length; i++) {
+            pitches[i] = rootPitch + quality.intervals[i];
+        }
+    }
+    
+    /**
+     * The shared shape for a quality and root (a new one outside the MIDI range)
+     * 指定性质和根音的共享形状（超出MIDI范围时创建新形状）
+     */
+    public static ChordShape of(Quality quality, int rootPitch) {
+        if (rootPitch >= 0 && rootPitch < 128) {
+            return SHAPES[quality.ordinal()][rootPitch];
+        }
+        return new ChordShape(quality, rootPitch);
+    }
+    
+    /**
+     * The interned shape with an id from getId
+     * 具有getId所返回id的驻留形状
+     */
+    public static ChordShape byId(int id) {
+        if (id < 0 || id >>> 7 >= Quality.values().length) {
+            throw new IllegalArgumentException("No chord shape with id " + id);
+        }
+        return SHAPES[id >>> 7][id & 0x7F];
+    }
+    
+    /**
+     * The shared shape whose placement at a start tick with a duration gives exactly these
+     * notes, in order, or null
+     * 放置在指定起始tick和时长时恰好按顺序产生这些音符的共享形状，否则为null
+     */
+    public static ChordShape match(List<Note> notes, long startTime, int duration) {
+        if (notes.isEmpty()) {
+            return null;
+        }
+        int root = notes.get(0).getPitch();
+        if (root < 0 || root >= 128) {
+            return null;
+        }
+        for (Quality quality : Quality.values()) {
+            ChordShape shape = SHAPES[quality.ordinal()][root];
+            if (shape.pitches.length != notes.size()) {
+                continue;
+            }
+            boolean same = true;
+            for (int k = 0; k < notes.size() && same; k++) {
+                Note note = notes.get(k);
+                same = note.getPitch() == shape.pitches[k] && note.getVelocity() == VELOCITY
+                       && note.getDuration() == duration && note.getStartTime() == startTime;
+            }
+            if (same) {
+                return shape;
+            }
+        }
+        return null;
+    }
+    
+    // Getters
+    public Quality getQuality() { return quality; }
+    
+    /**
+     * Compact id of an interned shape (quality ordinal and 7-bit root), or NO_ID
+     * 驻留形状的紧凑id（性质序号与7位根音），或NO_ID
+     */
+    public int getId() { return id; }
+
+    public int getRootPitch() { return pitches[0]; }
+    public int getNoteCount() { return pitches.length; }
+    public int getPitch(int index) { return pitches[index]; }
+    
+    /**
+     * Visit the notes of this shape placed at a start tick with a duration
+     * 访问此形状放置在指定起始tick和时长时的音符
+     */
+    public void forEachNote(long startTime, int duration, NoteVisitor visitor) {
+        for (int pitch : pitches) {
+            visitor.visit(pitch, duration, VELOCITY, startTime);
+        }
+    }
+    
+    /**
+     * Materialize this shape placed at a start tick as a new Chord
+     * 将此形状放置在指定起始tick处，实例化为新的Chord
+     */
+    public Chord toChord(int duration, long startTime) {
+        Chord chord = new Chord(Collections.emptyList(), duration, startTime);
+        for (int pitch : pitches) {
+            chord.addNote(new Note(pitch, duration, VELOCITY, startTime));
+        }
+        return chord;
+    }
+    
+    @Override
+    public String toString() {
+        return new Note(getRootPitch(), 0, 0, 0).getNoteName() + " " + quality;
+    }
+} 
\ No newline at end of file
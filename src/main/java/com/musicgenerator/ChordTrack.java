@@ -0,0 +1,328 @@
+package com.musicgenerator;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * Growable chord storage backed by primitive columns
+ * 由原始类型列支撑的可增长和弦存储
+ *
+ * Each chord is a start tick, a duration and either the id of an interned ChordShape or,
+ * for chords that match no shape, a contiguous run of note rows. Placing a shape stores
+ * only its id; its notes are produced from the shape when they are read. Chord objects
+ * are only created on demand.
+ * 每个和弦由起始tick、时长，以及驻留ChordShape的id组成；不匹配任何形状的和弦则存储
+ * 一段连续的音符行。放置形状时只存储其id，读取时再由形状生成音符。Chord对象仅在需要时创建。
+ */
+public class ChordTrack {
+    private long[] startTimes;
+    private int[] durations;
+    private int[] shapeIds;     // ChordShape id, or NO_ID for a chord stored as note rows
+    private int[] firstRows;    // Index of the chord's first row in rows (rows added so far for shapes)
+    private int size;
+    private int noteCount;      // Notes over all chords, shapes included
+    private final NoteTrack rows;
+    
+    public ChordTrack() {
+        this(16);
+    }
+    
+    public ChordTrack(int initialCapacity) {
+        int capacity = Math.max(1, initialCapacity);
+        this.startTimes = new long[capacity];
+        this.durations = new int[capacity];
+        this.shapeIds = new int[capacity];
+        this.firstRows = new int[capacity];
+        this.size = 0;
+        this.rows = new NoteTrack();
+    }
+    
+    /**
+     * Append a copy of a chord, kept as its shape when its notes are exactly one
+     * 追加一个和弦的副本；若其音符恰好构成某个形状，则以该形状保存
+     */
+    public void add(Chord chord) {
+        List<Note> notes = chord.getNotesView();
+        ChordShape shape = ChordShape.match(notes, chord.getStartTime(), chord.getDuration());
+        if (shape != null) {
+            add(shape, chord.getStartTime(), chord.getDuration());
+            return;
+        }
+        startChord(chord.getStartTime(), chord.getDuration());
+        rows.addAll(notes);
+        noteCount += notes.size();
+    }
+    
+    /**
+     * Place a shared chord shape without allocating Chord or Note objects or note rows
+     * 放置一个共享和弦形状，不分配Chord、Note对象或音符行
+     */
+    public void add(ChordShape shape, long startTime, int duration) {
+        if (shape.getId() == ChordShape.NO_ID) {
+            // Outside the MIDI range there is no interned shape to refer to
+            // 超出MIDI范围时没有可引用的驻留形状
+            startChord(startTime, duration);
+            shape.forEachNote(startTime, duration, this::addNote);
+            return;
+        }
+        append(startTime, duration, shape.getId());
+        noteCount += shape.getNoteCount();
+    }
+    
+    /**
+     * Append a copy of another track's chord at an index
+     * 追加另一轨道指定位置和弦的副本
+     */
+    public void add(ChordTrack other, int index) {
+        Objects.checkIndex(index, other.size);
+        if (other.shapeIds[index] != ChordShape.NO_ID) {
+            add(ChordShape.byId(other.shapeIds[index]), other.startTimes[index], other.durations[index]);
+            return;
+        }
+        startChord(other.startTimes[index], other.durations[index]);
+        other.forEachNote(index, this::addNote);
+    }
+    
+    /**
+     * Start a chord with no shape; notes given to addNote until the next chord belong to it
+     * 开始一个没有形状的和弦；在下一个和弦之前传给addNote的音符都属于它
+     */
+    void startChord(long startTime, int duration) {
+        append(startTime, duration, ChordShape.NO_ID);
+    }
+    
+    /**
+     * Add a note to the last chord, which must have been started with startChord
+     * 向最后一个和弦添加音符，该和弦必须由startChord开始
+     */
+    void addNote(int pitch, int duration, int velocity, long startTime) {
+        if (size == 0 || shapeIds[size - 1] != ChordShape.NO_ID) {
+            throw new IllegalStateException("The last chord is not open for notes");
+        }
+        rows.add(pitch, duration, velocity, startTime);
+        noteCount++;
+    }
+    
+    private void append(long startTime, int duration, int shapeId) {
+        if (size == startTimes.length) {
+            grow();
+        }
+        startTimes[size] = startTime;
+        durations[size] = duration;
+        shapeIds[size] = shapeId;
+        firstRows[size] = rows.size();
+        size++;
+    }
+    
+    /**
+     * Replace the contents with copies of the given chords
+     * 用给定和弦的副本替换全部内容
+     */
+    public void setAll(List<Chord> chords) {
+        if (chords instanceof ListView && ((ListView) chords).owner() == this) {
+            return; // A view of this track already holds exactly these chords
+        }
+        clear();
+        for (Chord chord : chords) {
+            add(chord);
+        }
+    }
+    
+    private void grow() {
+        int capacity = startTimes.length * 2;
+        startTimes = Arrays.copyOf(startTimes, capacity);
+        durations = Arrays.copyOf(durations, capacity);
+        shapeIds = Arrays.copyOf(shapeIds, capacity);
+        firstRows = Arrays.copyOf(firstRows, capacity);
+    }
+    
+    // Column accessors
+    public long getStartTime(int index) { return startTimes[Objects.checkIndex(index, size)]; }
+    public int getDuration(int index) { return durations[Objects.checkIndex(index, size)]; }
+    
+    /**
+     * The interned shape the chord at an index was placed from, or null for a chord of note rows
+     * 指定位置和弦所放置的驻留形状；由音符行组成的和弦返回null
+     */
+    public ChordShape getShape(int index) {
+        int id = shapeIds[Objects.checkIndex(index, size)];
+        return id == ChordShape.NO_ID ? null : ChordShape.byId(id);
+    }
+    
+    /**
+     * Number of notes in the chord at an index
+     * 指定位置和弦中的音符数
+     */
+    public int getNoteCount(int index) {
+        Objects.checkIndex(index, size);
+        if (shapeIds[index] != ChordShape.NO_ID) {
+            return ChordShape.byId(shapeIds[index]).getNoteCount();
+        }
+        int end = index + 1 < size ? firstRows[index + 1] : rows.size();
+        return end - firstRows[index];
+    }
+    
+    /**
+     * Number of notes over all chords
+     * 所有和弦的音符总数
+     */
+    public int getTotalNoteCount() { return noteCount; }
+    
+    /**
+     * Pitch of the k-th note of the chord at an index
+     * 指定位置和弦第k个音符的音高
+     */
+    public int getPitch(int index, int k) {
+        Objects.checkIndex(k, getNoteCount(index));
+        if (shapeIds[index] != ChordShape.NO_ID) {
+            return ChordShape.byId(shapeIds[index]).getPitch(k);
+        }
+        return rows.getPitch(firstRows[index] + k);
+    }
+    
+    /**
+     * Pitch of the first (root) note of the chord at an index
+     * 指定位置和弦第一个（根）音的音高
+     */
+    public int getRootPitch(int index) {
+        if (getNoteCount(index) == 0) {
+            throw new IllegalStateException("Chord " + index + " has no notes");
+        }
+        return getPitch(index, 0);
+    }
+    
+    /**
+     * Visit the notes of the chord at an index without creating Note objects
+     * 访问指定位置和弦的音符，不创建Note对象
+     */
+    public void forEachNote(int index, NoteVisitor visitor) {
+        int count = getNoteCount(index);
+        if (shapeIds[index] != ChordShape.NO_ID) {
+            ChordShape.byId(shapeIds[index]).forEachNote(startTimes[index], durations[index], visitor);
+        } else {
+            rows.forEach(firstRows[index], firstRows[index] + count, visitor);
+        }
+    }
+    
+    /**
+     * Visit the notes of all chords, in chord order
+     * 按和弦顺序访问所有和弦的音符
+     */
+    public void forEachNote(NoteVisitor visitor) {
+        for (int i = 0; i < size; i++) {
+            forEachNote(i, visitor);
+        }
+    }
+    
+    /**
+     * Copy the pitches of all chords, in chord order, into an array
+     * 按和弦顺序将所有和弦的音高复制到数组中
+     */
+    public void copyPitches(int[] target, int offset) {
+        int[] position = {offset};
+        forEachNote((pitch, duration, velocity, startTime) -> target[position[0]++] = pitch);
+    }
+    
+    /**
+     * Copy the velocities of all chords, in chord order, into an array
+     * 按和弦顺序将所有和弦的力度复制到数组中
+     */
+    public void copyVelocities(int[] target, int offset) {
+        int[] position = {offset};
+        forEachNote((pitch, duration, velocity, startTime) -> target[position[0]++] = velocity);
+    }
+    
+    /**
+     * Append the notes of all chords, in chord order, to a track
+     * 按和弦顺序将所有和弦的音符追加到一个轨道
+     */
+    public void copyNotesTo(NoteTrack target) {
+        forEachNote(target::add);
+    }
+    
+    /**
+     * A new track with the notes of all chords, in chord order
+     * 按和弦顺序包含所有和弦音符的新轨道
+     */
+    public NoteTrack getNotes() {
+        NoteTrack notes = new NoteTrack(Math.max(1, noteCount));
+        copyNotesTo(notes);
+        return notes;
+    }
+    
+    public int size() { return size; }
+    public boolean isEmpty() { return size == 0; }
+    
+    /**
+     * Remove all chords, keeping the allocated capacity
+     * 删除所有和弦，保留已分配的容量
+     */
+    public void clear() {
+        size = 0;
+        noteCount = 0;
+        rows.clear();
+    }
+    
+    /**
+     * Materialize the chord at an index as a new Chord object
+     * 将指定位置的和弦实例化为新的Chord对象
+     */
+    public Chord getChord(int index) {
+        ChordShape shape = getShape(index);
+        if (shape != null) {
+            return shape.toChord(durations[index], startTimes[index]);
+        }
+        int first = firstRows[index];
+        return new Chord(rows.toNoteList(first, first + getNoteCount(index)), durations[index], startTimes[index]);
+    }
+    
+    /**
+     * Unmodifiable live view of this track; each element is created on access
+     * 此轨道的不可修改实时视图；每个元素在访问时创建
+     */
+    public List<Chord> asList() {
+        return new ListView();
+    }
+    
+    /**
+     * Materialize all chords as new Chord objects
+     * 将所有和弦实例化为新的Chord对象
+     */
+    public List<Chord> toChordList() {
+        List<Chord> chords = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            chords.add(getChord(i));
+        }
+        return chords;
+    }
+    
+    /**
+     * Latest end tick (start + duration) over all chords, 0 when empty
+     * 所有和弦中最晚的结束tick（起始+时长），为空时返回0
+     */
+    public long getEndTime() {
+        long maxEnd = 0;
+        for (int i = 0; i < size; i++) {
+            maxEnd = Math.max(maxEnd, startTimes[i] + durations[i]);
+        }
+        return maxEnd;
+    }
+    
+    /**
+     * Read-only List adapter over the primitive columns
+     * 基于原始类型列的只读List适配器
+     */
+    private class ListView extends AbstractList<Chord> implements RandomAccess {
+        ChordTrack owner() { return ChordTrack.this; }
+        
+        @Override
+        public Chord get(int index) { return getChord(index); }
+        
+        @Override
+        public int size() { return size; }
+    }
+}
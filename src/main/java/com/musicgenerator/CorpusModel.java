@@ -0,0 +1,143 @@
+package com.musicgenerator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Melody and chord-transition counts learned from a MIDI corpus, with its file format
+ * 从MIDI语料库中学习到的旋律和和弦转移计数，以及其文件格式
+ *
+ * The file holds a small header followed by the melody and chord count tables as
+ * unsigned varints, so the mostly sparse tables take a few kilobytes and load with
+ * a single read.
+ * 文件包含一个小文件头，随后是以无符号变长整数存储的旋律和和弦计数表，
+ * 因此大多稀疏的计数表只占几KB，一次读取即可加载。
+ */
+public class CorpusModel {
+    
+    public static final String FILE_EXTENSION = ".mgm";
+    
+    private static final int MAGIC = 0x4D474D31;   // "MGM1"
+    private static final int VERSION = 1;
+    
+    private final int melodyOrder;
+    private final long[] melodyCounts;   // MarkovMelodyModel.fromCounts layout
+    private final long[] chordCounts;    // ChordProgressionModel.fromCounts layout
+    private final long pieces;
+    private final long notes;
+    private final MarkovMelodyModel melodyModel;
+    private final ChordProgressionModel progressionModel;
+    
+    public CorpusModel(int melodyOrder, long[] melodyCounts, long[] chordCounts, long pieces, long notes) {
+        this.melodyOrder = melodyOrder;
+        this.melodyCounts = melodyCounts.clone();
+        this.chordCounts = chordCounts.clone();
+        this.pieces = pieces;
+        this.notes = notes;
+        this.melodyModel = MarkovMelodyModel.fromCounts(melodyOrder, melodyCounts);
+        this.progressionModel = ChordProgressionModel.fromCounts(chordCounts);
+    }
+    
+    // Getters
+    public int getMelodyOrder() { return melodyOrder; }
+    public long getPieces() { return pieces; }
+    public long getNotes() { return notes; }
+    public MarkovMelodyModel getMelodyModel() { return melodyModel; }
+    public ChordProgressionModel getProgressionModel() { return progressionModel; }
+    public long getMelodyCount(int index) { return melodyCounts[index]; }
+    public long getChordCount(int index) { return chordCounts[index]; }
+    
+    /**
+     * Use the learned melody and progression models for pieces generated with these parameters
+     * 使用这些参数生成的作品将采用学习到的旋律和和弦进行模型
+     */
+    public void applyTo(GenerationParameters params) {
+        params.setMelodyModel(melodyModel);
+        params.setProgressionModel(progressionModel);
+    }
+    
+    /**
+     * Atomically write the model file
+     * 以原子方式写入模型文件
+     */
+    public void write(Path file) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(16 * 1024);
+        ByteBuffer header = ByteBuffer.allocate(28);
+        header.putInt(MAGIC).putInt(VERSION).putInt(melodyOrder).putLong(pieces).putLong(notes);
+        out.write(header.array(), 0, header.position());
+        writeCounts(out, melodyCounts);
+        writeCounts(out, chordCounts);
+        
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(temp, out.toByteArray());
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    
+    /**
+     * Load a model file written by write
+     * 加载由write写入的模型文件
+     */
+    public static CorpusModel read(Path file) throws IOException {
+        ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(file));
+        try {
+            if (in.getInt() != MAGIC) {
+                throw new IOException("Not a model file: " + file);
+            }
+            int version = in.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported model version " + version + ": " + file);
+            }
+            int order = in.getInt();
+            long pieces = in.getLong();
+            long notes = in.getLong();
+            if (order < 1 || order > MarkovMelodyModel.MAX_ORDER) {
+                throw new IOException("Invalid melody order " + order + ": " + file);
+            }
+            long[] melodyCounts = readCounts(in, MarkovMelodyModel.contextCount(order) * MarkovMelodyModel.INTERVALS);
+            long[] chordCounts = readCounts(in, ChordProgressionModel.DEGREES * ChordProgressionModel.DEGREES);
+            return new CorpusModel(order, melodyCounts, chordCounts, pieces, notes);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated model file: " + file);
+        }
+    }
+    
+    private static void writeCounts(ByteArrayOutputStream out, long[] counts) {
+        for (long count : counts) {
+            long value = count;
+            while ((value & ~0x7FL) != 0) {
+                out.write((int) (value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            out.write((int) value);
+        }
+    }
+    
+    private static long[] readCounts(ByteBuffer in, int length) throws IOException {
+        long[] counts = new long[length];
+        for (int i = 0; i < length; i++) {
+            long value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                if (shift > 63) {
+                    throw new IOException("Malformed count at " + i);
+                }
+                b = in.get();
+                value |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            counts[i] = value;
+        }
+        return counts;
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("CorpusModel{melodyOrder=%d, pieces=%d, notes=%d}", melodyOrder, pieces, notes);
+    }
+} 
\ No newline at end of file
@@ -0,0 +1,377 @@
+package com.musicgenerator;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Learns melody and chord-transition statistics from a directory of MIDI files
+ * 从MIDI文件目录中学习旋律和和弦转移统计
+ *
+ * Files are parsed in parallel on a fork-join pool. Each worker thread counts into its
+ * own primitive tables, so there is no sharing while training; the tables are summed
+ * once all files are done. Files are parsed by SmfReader with the channel layout
+ * MidiExporter writes: melody on channel 0, chords on channel 1 and bass on channel 2.
+ * The key of each file is estimated from its pitch classes, and notes are counted as
+ * scale degrees of it.
+ * 文件在fork-join线程池上并行解析。每个工作线程计入自己的原始类型计数表，
+ * 训练期间没有共享；所有文件处理完后再对计数表求和。文件由SmfReader按照MidiExporter写入的
+ * 声道布局解析：声道0为旋律，声道1为和弦，声道2为低音。每个文件的调性根据其音级估计，
+ * 音符按该调的音阶级数计数。
+ */
+public class CorpusTrainer {
+    
+    // One reusable parser per worker thread
+    // 每个工作线程一个可复用的解析器
+    private static final ThreadLocal<SmfReader> READERS = ThreadLocal.withInitial(SmfReader::new);
+    
+    private final int threads;
+    private final int melodyOrder;
+    
+    public CorpusTrainer() {
+        this(Runtime.getRuntime().availableProcessors(), MarkovMelodyModel.MAX_ORDER);
+    }
+    
+    public CorpusTrainer(int threads, int melodyOrder) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be at least 1: " + threads);
+        }
+        MarkovMelodyModel.contextCount(melodyOrder); // Validates the order
+        this.threads = threads;
+        this.melodyOrder = melodyOrder;
+    }
+    
+    public int getThreads() { return threads; }
+    public int getMelodyOrder() { return melodyOrder; }
+    
+    /**
+     * Train on every .mid and .midi file below a directory
+     * 使用目录下所有.mid和.midi文件进行训练
+     */
+    public Result train(Path directory) throws IOException {
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(directory)) {
+            files = walk.filter(Files::isRegularFile).filter(CorpusTrainer::isMidiFile)
+                        .sorted().collect(Collectors.toList());
+        }
+        return train(files);
+    }
+    
+    /**
+     * Train on a list of MIDI files
+     * 使用MIDI文件列表进行训练
+     */
+    public Result train(List<Path> files) {
+        Queue<Counts> allCounts = new ConcurrentLinkedQueue<>();
+        ThreadLocal<Counts> counts = ThreadLocal.withInitial(() -> {
+            Counts local = new Counts(melodyOrder);
+            allCounts.add(local);
+            return local;
+        });
+        AtomicInteger failures = new AtomicInteger();
+        AtomicReference<Throwable> firstFailure = new AtomicReference<>();
+        int threshold = Math.max(1, files.size() / (threads * 8));
+        
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        long start = System.nanoTime();
+        try {
+            pool.invoke(new TrainTask(files, 0, files.size(), threshold, counts, failures, firstFailure));
+        } finally {
+            pool.shutdown();
+        }
+        
+        Counts total = new Counts(melodyOrder);
+        for (Counts local : allCounts) {
+            total.merge(local);
+        }
+        long elapsed = System.nanoTime() - start;
+        
+        CorpusModel model = new CorpusModel(melodyOrder, total.melody, total.chords, total.pieces, total.notes);
+        return new Result(model, files.size(), failures.get(), firstFailure.get(), threads, elapsed);
+    }
+    
+    private static boolean isMidiFile(Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        return name.endsWith(".mid") || name.endsWith(".midi");
+    }
+    
+    /**
+     * Recursively splits a file range until it is small enough to parse directly
+     * 递归拆分文件区间，直到足够小后直接解析
+     */
+    @SuppressWarnings("serial")   // Forked within one pool, never serialized
+    private static class TrainTask extends RecursiveAction {
+        private final List<Path> files;
+        private final int from;
+        private final int to;
+        private final int threshold;
+        private final ThreadLocal<Counts> counts;
+        private final AtomicInteger failures;
+        private final AtomicReference<Throwable> firstFailure;
+        
+        TrainTask(List<Path> files, int from, int to, int threshold, ThreadLocal<Counts> counts,
+                  AtomicInteger failures, AtomicReference<Throwable> firstFailure) {
+            this.files = files;
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+            this.counts = counts;
+            this.failures = failures;
+            this.firstFailure = firstFailure;
+        }
+        
+        @Override
+        protected void compute() {
+            if (to - from <= threshold) {
+                Counts local = counts.get();
+                for (int i = from; i < to; i++) {
+                    try {
+                        local.count(READERS.get().read(files.get(i)));
+                    } catch (Exception e) {
+                        failures.incrementAndGet();
+                        firstFailure.compareAndSet(null, new IOException(files.get(i) + ": " + e, e));
+                    }
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new TrainTask(files, from, mid, threshold, counts, failures, firstFailure),
+                      new TrainTask(files, mid, to, threshold, counts, failures, firstFailure));
+        }
+    }
+    
+    /**
+     * One worker's primitive count tables
+     * 单个工作线程的原始类型计数表
+     */
+    static final class Counts {
+        private static final MusicTheory.ScaleType[] TYPES = MusicTheory.ScaleType.values();
+        
+        final int order;
+        final int histories;
+        final int initialHistory;
+        final long[] melody;
+        final long[] chords = new long[ChordProgressionModel.DEGREES * ChordProgressionModel.DEGREES];
+        final int[] pitchClasses = new int[12];
+        long pieces;
+        long notes;
+        
+        Counts(int order) {
+            this.order = order;
+            this.histories = MarkovMelodyModel.contextCount(order) / MarkovMelodyModel.DEGREES;
+            int initial = 0;
+            for (int i = 1; i < order; i++) {
+                initial = initial * MarkovMelodyModel.INTERVALS + MarkovMelodyModel.MAX_INTERVAL;
+            }
+            this.initialHistory = initial; // Same as MarkovMelodyModel.getInitialHistory
+            this.melody = new long[MarkovMelodyModel.contextCount(order) * MarkovMelodyModel.INTERVALS];
+        }
+        
+        /**
+         * Add the melody intervals and chord root movements of one piece
+         * 计入一个作品的旋律音程和和弦根音移动
+         */
+        void count(MusicalPiece piece) {
+            NoteTrack melodyTrack = piece.getMelodyTrack();
+            ChordTrack chordTrack = piece.getChordTrack();
+            NoteTrack bassTrack = piece.getBassTrack();
+            
+            // Estimate the key from the pitch-class histogram of all notes
+            // 根据所有音符的音级直方图估计调性
+            Arrays.fill(pitchClasses, 0);
+            addPitchClasses(melodyTrack);
+            chordTrack.forEachNote((pitch, duration, velocity, start) -> pitchClasses[pitch % 12]++);
+            addPitchClasses(bassTrack);
+            MusicTheory.ScaleType type = null;
+            int root = 0;
+            int bestScore = -1;
+            for (MusicTheory.ScaleType candidate : TYPES) {
+                for (int pc = 0; pc < 12; pc++) {
+                    int mask = TheoryTables.getScaleMask(candidate, pc);
+                    int score = 0;
+                    for (int i = 0; i < 12; i++) {
+                        if ((mask >>> i & 1) != 0) {
+                            score += pitchClasses[i];
+                        }
+                    }
+                    // Ties go to the smaller scale, then to the more frequent tonic
+                    // 得分相同时优先选择较小的音阶，其次选择出现更频繁的主音
+                    if (score > bestScore || (score == bestScore
+                            && (TheoryTables.getScaleLength(candidate) < TheoryTables.getScaleLength(type)
+                                || (TheoryTables.getScaleLength(candidate) == TheoryTables.getScaleLength(type)
+                                    && pitchClasses[pc] > pitchClasses[root])))) {
+                        bestScore = score;
+                        type = candidate;
+                        root = pc;
+                    }
+                }
+            }
+            int degrees = TheoryTables.getScaleLength(type) - 1; // The last scale entry is the octave
+            
+            // Melody: interval in scale steps, in the context of the previous degree and intervals
+            // 旋律：以音阶步数计的音程，上下文为前一个级数和之前的音程
+            int previousStep = Integer.MIN_VALUE;
+            int history = initialHistory;
+            for (int i = 0; i < melodyTrack.size(); i++) {
+                int pitch = melodyTrack.getPitch(i);
+                int degree = TheoryTables.getDegree(type, root, pitch);
+                if (degree < 0) {
+                    previousStep = Integer.MIN_VALUE; // Out of key: start a new phrase
+                    continue;
+                }
+                int step = Math.floorDiv(pitch - root, 12) * degrees + degree;
+                if (previousStep == Integer.MIN_VALUE) {
+                    history = initialHistory;
+                } else {
+                    int interval = Math.max(-MarkovMelodyModel.MAX_INTERVAL,
+                                            Math.min(MarkovMelodyModel.MAX_INTERVAL, step - previousStep));
+                    int context = Math.floorMod(previousStep, degrees) * histories + history;
+                    melody[context * MarkovMelodyModel.INTERVALS + interval + MarkovMelodyModel.MAX_INTERVAL]++;
+                    history = histories == 1 ? 0
+                            : (history * MarkovMelodyModel.INTERVALS + interval + MarkovMelodyModel.MAX_INTERVAL) % histories;
+                }
+                previousStep = step;
+            }
+            
+            // Chords: movement of the root between scale degrees
+            // 和弦：根音在音阶级数之间的移动
+            int previousDegree = -1;
+            for (int i = 0; i < chordTrack.size(); i++) {
+                int degree = TheoryTables.getDegree(type, root, chordTrack.getRootPitch(i));
+                if (degree >= 0 && previousDegree >= 0) {
+                    chords[previousDegree * ChordProgressionModel.DEGREES + degree]++;
+                }
+                previousDegree = degree;
+            }
+            
+            pieces++;
+            notes += melodyTrack.size() + chordTrack.getTotalNoteCount() + bassTrack.size();
+        }
+        
+        private void addPitchClasses(NoteTrack track) {
+            for (int i = 0; i < track.size(); i++) {
+                pitchClasses[track.getPitch(i) % 12]++;
+            }
+        }
+        
+        void merge(Counts other) {
+            for (int i = 0; i < melody.length; i++) {
+                melody[i] += other.melody[i];
+            }
+            for (int i = 0; i < chords.length; i++) {
+                chords[i] += other.chords[i];
+            }
+            pieces += other.pieces;
+            notes += other.notes;
+        }
+    }
+    
+    /**
+     * Trained model plus the throughput of one training run
+     * 训练得到的模型及一次训练的吞吐量
+     */
+    public static class Result {
+        private final CorpusModel model;
+        private final int files;
+        private final int failures;
+        private final Throwable firstFailure;
+        private final int threads;
+        private final long elapsedNanos;
+        
+        Result(CorpusModel model, int files, int failures, Throwable firstFailure, int threads, long elapsedNanos) {
+            this.model = model;
+            this.files = files;
+            this.failures = failures;
+            this.firstFailure = firstFailure;
+            this.threads = threads;
+            this.elapsedNanos = elapsedNanos;
+        }
+        
+        // Getters
+        public CorpusModel getModel() { return model; }
+        public int getFiles() { return files; }
+        public int getFailures() { return failures; }
+        public Throwable getFirstFailure() { return firstFailure; }
+        public int getThreads() { return threads; }
+        public long getElapsedNanos() { return elapsedNanos; }
+        
+        /**
+         * Successfully parsed files per wall-clock second
+         * 每秒成功解析的文件数
+         */
+        public double getFilesPerSecond() {
+            return elapsedNanos == 0 ? 0.0 : (files - failures) * 1_000_000_000.0 / elapsedNanos;
+        }
+        
+        @Override
+        public String toString() {
+            return String.format("Training{files=%d, failures=%d, threads=%d, elapsed=%.1fms, throughput=%.1f files/s}",
+                               files, failures, threads, elapsedNanos / 1_000_000.0, getFilesPerSecond());
+        }
+    }
+    
+    /**
+     * Command line entry: --train DIR [--output FILE] [--order N] [--threads N]
+     * 命令行入口：--train DIR [--output FILE] [--order N] [--threads N]
+     *
+     * @return process exit code: 0 on success, 1 if nothing could be trained, 2 on bad arguments
+     */
+    public static int run(String[] args, PrintStream out) {
+        Path directory = null;
+        Path output = Paths.get("model" + CorpusModel.FILE_EXTENSION);
+        int order = MarkovMelodyModel.MAX_ORDER;
+        int threads = Runtime.getRuntime().availableProcessors();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if (i + 1 >= args.length) {
+                    throw new IllegalArgumentException("Missing value for " + args[i]);
+                }
+                String value = args[++i];
+                switch (args[i - 1]) {
+                    case "--train": directory = Paths.get(value); break;
+                    case "--output": output = Paths.get(value); break;
+                    case "--order": order = Integer.parseInt(value); break;
+                    case "--threads": threads = Integer.parseInt(value); break;
+                    default: throw new IllegalArgumentException("Unknown option: " + args[i - 1]);
+                }
+            }
+            if (directory == null) {
+                throw new IllegalArgumentException("--train DIR is required");
+            }
+            CorpusTrainer trainer = new CorpusTrainer(threads, order);
+            Result result = trainer.train(directory);
+            if (result.getFiles() == result.getFailures()) {
+                out.println("Error: no MIDI files could be read from " + directory
+                            + (result.getFirstFailure() == null ? "" : ": " + result.getFirstFailure()));
+                return 1;
+            }
+            result.getModel().write(output);
+            out.println(result);
+            out.println(result.getModel() + " written to " + output.toAbsolutePath());
+            if (result.getFirstFailure() != null) {
+                out.println("First failure: " + result.getFirstFailure());
+            }
+            return 0;
+        } catch (NumberFormatException e) {
+            out.println("Error: invalid number: " + e.getMessage());
+            return 2;
+        } catch (IllegalArgumentException | IOException e) {
+            out.println("Error: " + e.getMessage());
+            out.println("Usage: MusicGeneratorApp --train DIR [--output FILE] [--order 1-3] [--threads N]");
+            return 2;
+        }
+    }
+} 
\ No newline at end of file
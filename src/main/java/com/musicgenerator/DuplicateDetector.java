@@ -0,0 +1,313 @@
+package com.musicgenerator;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Streaming detector of duplicate and near-duplicate pieces with bounded memory
+ * 内存有界的流式重复及近似重复作品检测器
+ *
+ * Each piece is reduced to its transposition-invariant content: the melody as semitone
+ * intervals between consecutive notes and the chords as root movements modulo 12. A hash
+ * of the whole sequence goes into a Bloom filter and an exact hash set; a piece is a
+ * duplicate when both already hold it. A MinHash signature of its 4-token shingles is
+ * split into LSH bands to catch pieces that share most of their material. All structures
+ * are sized once from the expected number of pieces and never grow. The hash and band sets
+ * are open-addressed with four slots per expected piece (at most 4M slots each), so within
+ * that number nothing is forgotten; beyond it the Bloom filter's false positive rate rises
+ * and the sets start to overwrite older pieces.
+ * 每个作品被归约为与移调无关的内容：旋律表示为相邻音符之间的半音音程，和弦表示为模12的根音移动。
+ * 整个序列的哈希放入布隆过滤器和精确哈希集合；两者都已包含时该作品为完全重复。其4记号片段的
+ * MinHash签名被划分为LSH分带，用于发现共享大部分素材的作品。所有结构都根据预期作品数量一次性分配
+ * 且不再增长。哈希集合和分带集合采用开放寻址，每个预期作品四个槽（每个集合最多4M槽），
+ * 因此在该数量以内不会遗忘任何作品；超过后布隆过滤器的误判率上升，集合开始覆盖较早的作品。
+ *
+ * Checks are serialized, so with several generator threads the first copy of a duplicate
+ * to be checked is the one that counts as unique, and which copy that is depends on thread
+ * timing. Batches that must flag or drop the same pieces on every run use one thread.
+ * 检查是串行的，因此在多个生成线程下，最先被检查的副本被视为唯一，而具体是哪一个取决于线程时序。
+ * 要求每次运行标记或丢弃相同作品的批次应使用单个线程。
+ */
+public class DuplicateDetector {
+    
+    /**
+     * Outcome of checking one piece
+     * 检查单个作品的结果
+     */
+    public enum Verdict {
+        UNIQUE,            // Not seen before
+        DUPLICATE,         // Same intervals and chord movements as an earlier piece
+        NEAR_DUPLICATE     // Shares an LSH band with an earlier piece
+    }
+    
+    public static final int SHINGLE_LENGTH = 4;
+    public static final int BANDS = 8;
+    public static final int ROWS = 8;                   // Similarity threshold about (1/8)^(1/8) = 0.77
+    private static final int HASHES = BANDS * ROWS;
+    private static final int SLOTS_PER_PIECE = 4;       // Keeps the sets at most a quarter full
+    private static final int MAX_SLOTS = 1 << 22;       // 160 MB across the hash set and all bands
+    private static final int MAX_PROBES = 8;
+    private static final int[] HASH_MULTIPLIERS = new int[HASHES];   // Odd, so each hash is a permutation
+    private static final int[] HASH_SEEDS = new int[HASHES];
+    
+    static {
+        long seed = 0x5DEECE66DL;
+        for (int i = 0; i < HASHES; i++) {
+            seed = mix(seed + 0x9E3779B97F4A7C15L);
+            HASH_MULTIPLIERS[i] = (int) seed | 1;
+            HASH_SEEDS[i] = (int) (seed >>> 32);
+        }
+    }
+    
+    // Blocked Bloom filter over whole-piece hashes: all bits of one piece fall in one 64-byte block
+    // 基于整个作品哈希的分块布隆过滤器：一个作品的所有位都落在同一个64字节块中
+    private static final int BLOCK_WORDS = 8;
+    private final long[] bloom;
+    private final int bloomBlocks;
+    private final int bloomHashes;
+    
+    // Open-addressed sets of whole-piece hashes and of band hashes per LSH band; 0 marks an empty slot
+    // 整个作品哈希以及每个LSH分带的分带哈希的开放寻址集合；0表示空槽
+    private final long[] hashes;
+    private final int[][] bands;
+    private final int slotMask;
+    
+    private final LongAdder checked = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+    private final LongAdder nearDuplicates = new LongAdder();
+    
+    public DuplicateDetector() {
+        this(1_000_000, 0.001);
+    }
+    
+    /**
+     * Size the detector for an expected number of pieces and Bloom filter false positive rate
+     * 根据预期作品数量和布隆过滤器误判率确定检测器大小
+     */
+    public DuplicateDetector(long expectedPieces, double falsePositiveRate) {
+        if (expectedPieces < 1) {
+            throw new IllegalArgumentException("expectedPieces must be at least 1: " + expectedPieces);
+        }
+        if (!(falsePositiveRate > 0.0 && falsePositiveRate < 1.0)) {
+            throw new IllegalArgumentException("falsePositiveRate must be between 0 and 1: " + falsePositiveRate);
+        }
+        // Blocking costs some accuracy, made up for with a quarter more bits than a plain filter
+        // 分块会损失一些精度，用比普通过滤器多四分之一的位来弥补
+        double ln2 = Math.log(2);
+        double bitsPerPiece = -Math.log(falsePositiveRate) / (ln2 * ln2);
+        long blocks = (long) Math.ceil(expectedPieces * bitsPerPiece * 1.25 / (BLOCK_WORDS * 64));
+        if (blocks * BLOCK_WORDS > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Bloom filter too large for " + expectedPieces + " pieces");
+        }
+        this.bloomBlocks = (int) blocks;
+        this.bloom = new long[bloomBlocks * BLOCK_WORDS];
+        this.bloomHashes = Math.max(1, Math.min(16, (int) Math.round(bitsPerPiece * ln2)));
+        
+        long slots = Math.min(MAX_SLOTS, Math.max(16, Math.min(expectedPieces, MAX_SLOTS) * SLOTS_PER_PIECE));
+        int capacity = Integer.highestOneBit((int) slots * 2 - 1);   // Next power of two
+        this.hashes = new long[capacity];
+        this.bands = new int[BANDS][capacity];
+        this.slotMask = capacity - 1;
+    }
+    
+    /**
+     * Check a piece against everything seen so far, then remember it
+     * 将作品与此前见过的所有作品比较，然后记住它
+     */
+    public Verdict check(MusicalPiece piece) {
+        // All hashing happens before taking the lock
+        // 所有哈希计算都在加锁之前完成
+        int[] signature = new int[HASHES];
+        long fingerprint = fingerprint(piece, signature);
+        int[] bandHashes = new int[BANDS];
+        for (int band = 0; band < BANDS; band++) {
+            long h = band;
+            for (int row = 0; row < ROWS; row++) {
+                h = mix(h * 31 + signature[band * ROWS + row]);
+            }
+            bandHashes[band] = (int) h == 0 ? 1 : (int) h;
+        }
+        
+        Verdict verdict;
+        synchronized (this) {
+            boolean seen = true;
+            int block = (int) Long.remainderUnsigned(fingerprint, bloomBlocks) * BLOCK_WORDS;
+            long bits = mix(fingerprint);
+            for (int i = 0; i < bloomHashes; i++) {
+                // 9 bits per probe: 3 pick the word, 6 pick the bit
+                // 每次探测使用9位：3位选择字，6位选择位
+                if (i > 0 && i % 7 == 0) {
+                    bits = mix(bits + i);
+                }
+                int word = block + (int) (bits & 7);
+                long mask = 1L << (bits >>> 3);
+                bits >>>= 9;
+                seen &= (bloom[word] & mask) != 0;
+                bloom[word] |= mask;
+            }
+            
+            long hash = fingerprint == 0 ? 1 : fingerprint;
+            boolean exact = add(hashes, (int) mix(hash), hash);
+            int matches = 0;
+            for (int band = 0; band < BANDS; band++) {
+                if (add(bands[band], (int) mix(bandHashes[band] + band), bandHashes[band])) {
+                    matches++;
+                }
+            }
+            
+            // The exact set rules out Bloom false positives. Past the sizing it may have lost the
+            // piece, and then most of the bands still matching identifies the repeat instead
+            // 精确集合排除布隆过滤器误判。超出容量后集合可能已遗忘该作品，此时由大部分分带仍匹配来识别重复
+            verdict = seen && (exact || matches >= BANDS / 2) ? Verdict.DUPLICATE
+                    : matches > 0 ? Verdict.NEAR_DUPLICATE : Verdict.UNIQUE;
+        }
+        
+        checked.increment();
+        if (verdict == Verdict.DUPLICATE) {
+            duplicates.increment();
+        } else if (verdict == Verdict.NEAR_DUPLICATE) {
+            nearDuplicates.increment();
+        }
+        return verdict;
+    }
+    
+    /**
+     * Add a value to an open-addressed set by linear probing from its home slot; true if it
+     * was already there. A value whose MAX_PROBES slots are all taken replaces the one in its
+     * home slot, so an overfull set forgets old values instead of growing.
+     * 从起始槽开始线性探测，将值加入开放寻址集合；若已存在则返回true。若MAX_PROBES个槽都已占用，
+     * 则替换起始槽中的值，因此过满的集合会遗忘旧值而不是增长。
+     */
+    private boolean add(long[] table, int home, long value) {
+        for (int i = 0; i < MAX_PROBES; i++) {
+            int slot = (home + i) & slotMask;
+            if (table[slot] == value) {
+                return true;
+            }
+            if (table[slot] == 0) {
+                table[slot] = value;
+                return false;
+            }
+        }
+        table[home & slotMask] = value;
+        return false;
+    }
+    
+    private boolean add(int[] table, int home, int value) {
+        for (int i = 0; i < MAX_PROBES; i++) {
+            int slot = (home + i) & slotMask;
+            if (table[slot] == value) {
+                return true;
+            }
+            if (table[slot] == 0) {
+                table[slot] = value;
+                return false;
+            }
+        }
+        table[home & slotMask] = value;
+        return false;
+    }
+    
+    /**
+     * Wrap a batch handler so that duplicates are dropped, or only counted when drop is false
+     * 包装批处理器：重复作品被丢弃；drop为false时只计数
+     */
+    public BatchGenerator.PieceHandler filter(BatchGenerator.PieceHandler next, boolean drop) {
+        return (index, piece) -> {
+            if (check(piece) == Verdict.UNIQUE || !drop) {
+                next.handle(index, piece);
+            }
+        };
+    }
+    
+    /**
+     * Hash of the whole transposition-invariant sequence; fills the MinHash signature of its shingles
+     * 整个与移调无关序列的哈希；同时填充其片段的MinHash签名
+     */
+    static long fingerprint(MusicalPiece piece, int[] signature) {
+        NoteTrack melody = piece.getMelodyTrack();
+        ChordTrack chords = piece.getChordTrack();
+        int[] shingles = new int[melody.size() + chords.size() + 1];
+        int count = 0;
+        
+        long whole = 0x2545F4914F6CDD1DL;
+        long shingle = 0;   // Last SHINGLE_LENGTH tokens, 16 bits each
+        int tokens = 0;
+        for (int i = 1; i < melody.size(); i++) {
+            int token = (melody.getPitch(i) - melody.getPitch(i - 1)) & 0xFF;
+            whole = mix(whole ^ token);
+            shingle = shingle << 16 | token;
+            if (++tokens >= SHINGLE_LENGTH) {
+                shingles[count++] = (int) (mix(shingle) >>> 32);
+            }
+        }
+        
+        // Chord tokens are tagged so they never collide with melody intervals
+        // 和弦记号带有标记，不会与旋律音程冲突
+        whole = mix(whole ^ 0xC0FFEE);
+        tokens = 0;
+        int previousRoot = -1;
+        for (int i = 0; i < chords.size(); i++) {
+            if (chords.getNoteCount(i) == 0) {
+                continue;
+            }
+            int root = chords.getRootPitch(i);
+            if (previousRoot >= 0) {
+                int token = 0x100 | Math.floorMod(root - previousRoot, 12);
+                whole = mix(whole ^ token);
+                shingle = shingle << 16 | token;
+                if (++tokens >= SHINGLE_LENGTH) {
+                    shingles[count++] = (int) (mix(shingle) >>> 32);
+                }
+            }
+            previousRoot = root;
+        }
+        if (count == 0) {
+            // Too short to shingle: the signature can only match an identical piece
+            // 太短无法分片：签名只能与完全相同的作品匹配
+            shingles[count++] = (int) (mix(whole) >>> 32);
+        }
+        
+        // One hash function at a time over all shingles: a min reduction the JIT vectorizes
+        // 每次用一个哈希函数遍历所有片段：JIT可向量化的最小值归约
+        for (int i = 0; i < HASHES; i++) {
+            int seed = HASH_SEEDS[i];
+            int multiplier = HASH_MULTIPLIERS[i];
+            int min = Integer.MAX_VALUE;
+            for (int j = 0; j < count; j++) {
+                int h = (shingles[j] ^ seed) * multiplier;
+                min = Math.min(min, h ^ (h >>> 15));
+            }
+            signature[i] = min;
+        }
+        return whole;
+    }
+    
+    /**
+     * SplitMix64 finalizer
+     * SplitMix64混合函数
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+    
+    // Counters
+    public long getChecked() { return checked.sum(); }
+    public long getDuplicates() { return duplicates.sum(); }
+    public long getNearDuplicates() { return nearDuplicates.sum(); }
+    
+    /**
+     * Memory held by the Bloom filter, hash set and band sets, in bytes
+     * 布隆过滤器、哈希集合和分带集合占用的内存（字节）
+     */
+    public long getMemoryBytes() {
+        return bloom.length * 8L + hashes.length * 8L + (long) BANDS * bands[0].length * 4;
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("DuplicateDetector{checked=%d, duplicates=%d, nearDuplicates=%d, memory=%.1fMB}",
+                           getChecked(), getDuplicates(), getNearDuplicates(), getMemoryBytes() / 1e6);
+    }
+} 
\ No newline at end of file
@@ -0,0 +1,142 @@
+package com.musicgenerator;
+
+import java.util.Arrays;
+
+/**
+ * Time-ordered note-on/note-off events packed into sortable primitive longs
+ * 按时间排序的音符开始/结束事件，打包为可排序的原始long值
+ *
+ * Each event is one long: tick (40 bits) | on flag | channel | pitch | velocity.
+ * Sorting the array therefore orders events by tick with note-offs before note-ons
+ * at the same tick, which is what a player or synthesizer needs.
+ * 每个事件是一个long：tick（40位）| 开始标志 | 通道 | 音高 | 力度。
+ * 因此对数组排序即可按tick排序，且同一tick内音符结束先于音符开始，符合播放器和合成器的需要。
+ */
+public class EventTimeline {
+    
+    // Track layout shared with MidiExporter: melody, chords, bass
+    // 与MidiExporter相同的轨道布局：旋律、和弦、低音
+    public static final int MELODY_CHANNEL = 0;
+    public static final int CHORD_CHANNEL = 1;
+    public static final int BASS_CHANNEL = 2;
+    public static final int MELODY_PROGRAM = 0;   // Acoustic Grand Piano
+    public static final int CHORD_PROGRAM = 48;   // String Ensemble 1
+    public static final int BASS_PROGRAM = 32;    // Acoustic Bass
+    
+    public static final long MAX_TICK = (1L << 40) - 1;
+    
+    private static final int TICK_SHIFT = 23;
+    private static final int ON_SHIFT = 22;
+    private static final int CHANNEL_SHIFT = 18;
+    private static final int PITCH_SHIFT = 11;
+    private static final int VELOCITY_SHIFT = 4;
+    
+    private long[] events;
+    private int size;
+    
+    public EventTimeline() {
+        this(64);
+    }
+    
+    public EventTimeline(int initialCapacity) {
+        this.events = new long[Math.max(2, initialCapacity)];
+        this.size = 0;
+    }
+    
+    /**
+     * Build the sorted timeline of a complete piece on the standard channels and its voices' channels
+     * 在标准通道及各附加声部的通道上构建完整作品的有序时间线
+     */
+    public static EventTimeline of(MusicalPiece piece) {
+        NoteTrack melody = piece.getMelodyTrack();
+        NoteTrack chordNotes = piece.getChordTrack().getNotes();
+        NoteTrack bass = piece.getBassTrack();
+        int notes = melody.size() + chordNotes.size() + bass.size();
+        for (Voice voice : piece.getVoices()) {
+            notes += voice.getTrack().size();
+        }
+        EventTimeline timeline = new EventTimeline(2 * notes);
+        timeline.addTrack(melody, MELODY_CHANNEL);
+        timeline.addTrack(chordNotes, CHORD_CHANNEL);
+        timeline.addTrack(bass, BASS_CHANNEL);
+        for (Voice voice : piece.getVoices()) {
+            timeline.addTrack(voice.getTrack(), voice.getChannel());
+        }
+        timeline.sort();
+        return timeline;
+    }
+    
+    /**
+     * Build the sorted timeline of a single streamed measure
+     * 构建单个流式小节的有序时间线
+     */
+    public static EventTimeline of(Measure measure) {
+        EventTimeline timeline = new EventTimeline(6 * measure.getTimeSignature() * 2);
+        timeline.addTrack(measure.getMelodyTrack(), MELODY_CHANNEL);
+        timeline.addTrack(measure.getChordTrack().getNotes(), CHORD_CHANNEL);
+        timeline.addTrack(measure.getBassTrack(), BASS_CHANNEL);
+        timeline.sort();
+        return timeline;
+    }
+    
+    /**
+     * Add the note-on and note-off of every note in a track on one channel
+     * 在一个通道上添加轨道中每个音符的开始和结束事件
+     */
+    public void addTrack(NoteTrack notes, int channel) {
+        for (int i = 0; i < notes.size(); i++) {
+            addNote(channel, notes.getPitch(i), notes.getVelocity(i), notes.getStartTime(i), notes.getDuration(i));
+        }
+    }
+    
+    /**
+     * Add one note as a note-on / note-off pair (call sort() before reading)
+     * 添加一个音符的开始/结束事件对（读取前需调用sort()）
+     */
+    public void addNote(int channel, int pitch, int velocity, long startTime, int duration) {
+        add(pack(startTime, true, channel, pitch, velocity));
+        add(pack(startTime + duration, false, channel, pitch, 0));
+    }
+    
+    private void add(long event) {
+        if (size == events.length) {
+            events = Arrays.copyOf(events, size * 2);
+        }
+        events[size++] = event;
+    }
+    
+    private static long pack(long tick, boolean on, int channel, int pitch, int velocity) {
+        if (tick < 0 || tick > MAX_TICK) {
+            throw new IllegalArgumentException("Tick out of timeline range: " + tick);
+        }
+        return (tick << TICK_SHIFT)
+                | ((on ? 1L : 0L) << ON_SHIFT)
+                | ((long) (channel & 0x0F) << CHANNEL_SHIFT)
+                | ((long) (pitch & 0x7F) << PITCH_SHIFT)
+                | ((long) (velocity & 0x7F) << VELOCITY_SHIFT);
+    }
+    
+    /**
+     * Sort events by tick, note-offs first within a tick
+     * 按tick排序事件，同一tick内音符结束在前
+     */
+    public void sort() {
+        Arrays.sort(events, 0, size);
+    }
+    
+    // Event accessors
+    public int size() { return size; }
+    public long getTick(int index) { return events[index] >>> TICK_SHIFT; }
+    public boolean isNoteOn(int index) { return ((events[index] >>> ON_SHIFT) & 1) != 0; }
+    public int getChannel(int index) { return (int) (events[index] >>> CHANNEL_SHIFT) & 0x0F; }
+    public int getPitch(int index) { return (int) (events[index] >>> PITCH_SHIFT) & 0x7F; }
+    public int getVelocity(int index) { return (int) (events[index] >>> VELOCITY_SHIFT) & 0x7F; }
+    
+    /**
+     * MIDI status byte of the event (0x90 | channel or 0x80 | channel)
+     * 事件的MIDI状态字节（0x90 | 通道 或 0x80 | 通道）
+     */
+    public int getStatus(int index) {
+        return (isNoteOn(index) ? 0x90 : 0x80) | getChannel(index);
+    }
+} 
\ No newline at end of file
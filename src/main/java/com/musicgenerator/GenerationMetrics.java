@@ -0,0 +1,318 @@
+package com.musicgenerator;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Process-wide registry of generation and export metrics
+ * 进程级的生成和导出指标注册表
+ *
+ * Phase timings go into lock-free LatencyHistograms and totals into LongAdders, so
+ * many batch threads can record at once without contention. The registry can be
+ * published as a JMX MBean and dumped in the Prometheus text format.
+ * 阶段耗时记录在无锁的LatencyHistogram中，总数记录在LongAdder中，
+ * 因此多个批处理线程可以同时记录而不会争用。注册表可发布为JMX MBean，
+ * 也可以导出为Prometheus文本格式。
+ */
+public final class GenerationMetrics {
+    
+    public static final String OBJECT_NAME = "com.musicgenerator:type=GenerationMetrics";
+    
+    private static final GenerationMetrics INSTANCE = new GenerationMetrics();
+    
+    // Generation phases
+    // 生成阶段
+    private final LatencyHistogram generatePiece = new LatencyHistogram("generate_piece");
+    private final LatencyHistogram chordPhase = new LatencyHistogram("generate_chords");
+    private final LatencyHistogram melodyPhase = new LatencyHistogram("generate_melody");
+    private final LatencyHistogram bassPhase = new LatencyHistogram("generate_bass");
+    private final LatencyHistogram melodySearch = new LatencyHistogram("generate_melody_search");   // Per measure
+    
+    // Export phases
+    // 导出阶段
+    private final LatencyHistogram sequenceBuild = new LatencyHistogram("export_sequence_build");
+    private final LatencyHistogram sequenceWrite = new LatencyHistogram("export_sequence_write");
+    private final LatencyHistogram smfWrite = new LatencyHistogram("export_smf_write");
+    private final LatencyHistogram fileWrite = new LatencyHistogram("export_file_write");
+    
+    private final LongAdder piecesGenerated = new LongAdder();
+    private final LongAdder notesGenerated = new LongAdder();
+    private final LongAdder midiEventsWritten = new LongAdder();
+    private final LongAdder midiBytesWritten = new LongAdder();
+    private final LongAdder filesWritten = new LongAdder();
+    private final LongAdder fileBytesWritten = new LongAdder();
+    private final LongAdder melodySearches = new LongAdder();
+    private final LongAdder melodySearchFallbacks = new LongAdder();
+    
+    // Pieces encoded but not yet written by AsyncExporter writer threads (a gauge)
+    // 已编码但尚未被AsyncExporter写入线程写出的作品数（计量值）
+    private final LongAdder exportQueueDepth = new LongAdder();
+    
+    private GenerationMetrics() {
+    }
+    
+    public static GenerationMetrics getInstance() {
+        return INSTANCE;
+    }
+    
+    // Histograms
+    public LatencyHistogram getGeneratePiece() { return generatePiece; }
+    public LatencyHistogram getChordPhase() { return chordPhase; }
+    public LatencyHistogram getMelodyPhase() { return melodyPhase; }
+    public LatencyHistogram getBassPhase() { return bassPhase; }
+    public LatencyHistogram getMelodySearch() { return melodySearch; }
+    public LatencyHistogram getSequenceBuild() { return sequenceBuild; }
+    public LatencyHistogram getSequenceWrite() { return sequenceWrite; }
+    public LatencyHistogram getSmfWrite() { return smfWrite; }
+    public LatencyHistogram getFileWrite() { return fileWrite; }
+    
+    // Counters
+    public long getPiecesGenerated() { return piecesGenerated.sum(); }
+    public long getNotesGenerated() { return notesGenerated.sum(); }
+    public long getMidiEventsWritten() { return midiEventsWritten.sum(); }
+    public long getMidiBytesWritten() { return midiBytesWritten.sum(); }
+    public long getFilesWritten() { return filesWritten.sum(); }
+    public long getFileBytesWritten() { return fileBytesWritten.sum(); }
+    public long getMelodySearches() { return melodySearches.sum(); }
+    public long getMelodySearchFallbacks() { return melodySearchFallbacks.sum(); }
+    public long getExportQueueDepth() { return exportQueueDepth.sum(); }
+    
+    /**
+     * Count one generated piece and its notes (melody, chord and bass)
+     * 统计一个已生成的作品及其音符（旋律、和弦和低音）
+     */
+    void recordPiece(MusicalPiece piece) {
+        piecesGenerated.increment();
+        notesGenerated.add(piece.getMelodyTrack().size() + piece.getChordTrack().getTotalNoteCount()
+                           + piece.getBassTrack().size());
+    }
+    
+    void recordMidiOutput(long events, long bytes) {
+        midiEventsWritten.add(events);
+        if (bytes > 0) {
+            midiBytesWritten.add(bytes);
+        }
+    }
+    
+    void recordFileWrite(long nanos, long bytes) {
+        fileWrite.record(nanos);
+        filesWritten.increment();
+        fileBytesWritten.add(bytes);
+    }
+    
+    void recordMelodySearch(long nanos, boolean fellBack) {
+        melodySearch.record(nanos);
+        melodySearches.increment();
+        if (fellBack) {
+            melodySearchFallbacks.increment();
+        }
+    }
+    
+    void recordExportQueued(int delta) {
+        exportQueueDepth.add(delta);
+    }
+    
+    private List<LatencyHistogram> histograms() {
+        List<LatencyHistogram> histograms = new ArrayList<>();
+        histograms.add(generatePiece);
+        histograms.add(chordPhase);
+        histograms.add(melodyPhase);
+        histograms.add(bassPhase);
+        histograms.add(melodySearch);
+        histograms.add(sequenceBuild);
+        histograms.add(sequenceWrite);
+        histograms.add(smfWrite);
+        histograms.add(fileWrite);
+        return histograms;
+    }
+    
+    private Map<String, Long> counters() {
+        Map<String, Long> counters = new LinkedHashMap<>();
+        counters.put("pieces_generated", getPiecesGenerated());
+        counters.put("notes_generated", getNotesGenerated());
+        counters.put("midi_events_written", getMidiEventsWritten());
+        counters.put("midi_bytes_written", getMidiBytesWritten());
+        counters.put("files_written", getFilesWritten());
+        counters.put("file_bytes_written", getFileBytesWritten());
+        counters.put("melody_searches", getMelodySearches());
+        counters.put("melody_search_fallbacks", getMelodySearchFallbacks());
+        return counters;
+    }
+    
+    /**
+     * Clear all histograms and counters
+     * 清除所有直方图和计数器
+     */
+    public void reset() {
+        for (LatencyHistogram histogram : histograms()) {
+            histogram.reset();
+        }
+        piecesGenerated.reset();
+        notesGenerated.reset();
+        midiEventsWritten.reset();
+        midiBytesWritten.reset();
+        filesWritten.reset();
+        fileBytesWritten.reset();
+        melodySearches.reset();
+        melodySearchFallbacks.reset();
+    }
+    
+    /**
+     * Render all metrics in the Prometheus text exposition format
+     * 以Prometheus文本格式输出所有指标
+     */
+    public String toPrometheusText() {
+        StringBuilder text = new StringBuilder();
+        for (Map.Entry<String, Long> counter : counters().entrySet()) {
+            String name = "musicgen_" + counter.getKey() + "_total";
+            text.append("# TYPE ").append(name).append(" counter\n");
+            text.append(name).append(' ').append(counter.getValue()).append('\n');
+        }
+        text.append("# TYPE musicgen_export_queue_depth gauge\n");
+        text.append("musicgen_export_queue_depth ").append(getExportQueueDepth()).append('\n');
+        double[] quantiles = {0.5, 0.9, 0.99, 0.999};
+        for (LatencyHistogram histogram : histograms()) {
+            String name = "musicgen_" + histogram.getName() + "_seconds";
+            text.append("# TYPE ").append(name).append(" summary\n");
+            for (double quantile : quantiles) {
+                text.append(name).append("{quantile=\"").append(quantile).append("\"} ")
+                    .append(histogram.getValueAtPercentile(quantile * 100) / 1e9).append('\n');
+            }
+            text.append(name).append("_sum ").append(histogram.getSum() / 1e9).append('\n');
+            text.append(name).append("_count ").append(histogram.getCount()).append('\n');
+        }
+        return text.toString();
+    }
+    
+    /**
+     * Atomically replace a file with the Prometheus text dump, e.g. for a node exporter
+     * 以原子方式用Prometheus文本替换文件，例如供node exporter读取
+     */
+    public void writePrometheusFile(Path file) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(temp, toPrometheusText().getBytes(StandardCharsets.UTF_8));
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    
+    /**
+     * Register the registry with the platform MBean server (idempotent)
+     * 将注册表注册到平台MBean服务器（可重复调用）
+     */
+    public void registerMBean() throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(OBJECT_NAME);
+        try {
+            server.registerMBean(new MetricsMBean(), name);
+        } catch (InstanceAlreadyExistsException e) {
+            // Already published
+            // 已经发布
+        }
+    }
+    
+    /**
+     * Read-only dynamic MBean: one attribute per counter, and count, mean, p50, p99,
+     * p99.9 and max (in microseconds) per histogram
+     * 只读动态MBean：每个计数器一个属性，每个直方图提供计数、平均值、p50、p99、p99.9和最大值（微秒）
+     */
+    private class MetricsMBean implements DynamicMBean {
+        
+        private final Map<String, Supplier<Object>> attributes = new LinkedHashMap<>();
+        
+        MetricsMBean() {
+            attributes.put("PiecesGenerated", GenerationMetrics.this::getPiecesGenerated);
+            attributes.put("NotesGenerated", GenerationMetrics.this::getNotesGenerated);
+            attributes.put("MidiEventsWritten", GenerationMetrics.this::getMidiEventsWritten);
+            attributes.put("MidiBytesWritten", GenerationMetrics.this::getMidiBytesWritten);
+            attributes.put("FilesWritten", GenerationMetrics.this::getFilesWritten);
+            attributes.put("FileBytesWritten", GenerationMetrics.this::getFileBytesWritten);
+            attributes.put("MelodySearches", GenerationMetrics.this::getMelodySearches);
+            attributes.put("MelodySearchFallbacks", GenerationMetrics.this::getMelodySearchFallbacks);
+            attributes.put("ExportQueueDepth", GenerationMetrics.this::getExportQueueDepth);
+            for (LatencyHistogram histogram : histograms()) {
+                String prefix = histogram.getName();
+                attributes.put(prefix + "_count", histogram::getCount);
+                attributes.put(prefix + "_mean_us", () -> histogram.getMean() / 1000.0);
+                attributes.put(prefix + "_p50_us", () -> histogram.getValueAtPercentile(50) / 1000.0);
+                attributes.put(prefix + "_p99_us", () -> histogram.getValueAtPercentile(99) / 1000.0);
+                attributes.put(prefix + "_p999_us", () -> histogram.getValueAtPercentile(99.9) / 1000.0);
+                attributes.put(prefix + "_max_us", () -> histogram.getMax() / 1000.0);
+            }
+        }
+        
+        @Override
+        public Object getAttribute(String attribute) throws AttributeNotFoundException {
+            Supplier<Object> supplier = attributes.get(attribute);
+            if (supplier == null) {
+                throw new AttributeNotFoundException(attribute);
+            }
+            return supplier.get();
+        }
+        
+        @Override
+        public AttributeList getAttributes(String[] names) {
+            AttributeList list = new AttributeList();
+            for (String name : names) {
+                Supplier<Object> supplier = attributes.get(name);
+                if (supplier != null) {
+                    list.add(new Attribute(name, supplier.get()));
+                }
+            }
+            return list;
+        }
+        
+        @Override
+        public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+            throw new AttributeNotFoundException("Metrics are read-only: " + attribute.getName());
+        }
+        
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+        
+        @Override
+        public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+            if ("reset".equals(actionName)) {
+                reset();
+                return null;
+            }
+            throw new ReflectionException(new NoSuchMethodException(actionName), "Unknown operation: " + actionName);
+        }
+        
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            List<MBeanAttributeInfo> infos = new ArrayList<>();
+            for (String name : attributes.keySet()) {
+                String type = name.endsWith("_us") ? "double" : "long";
+                infos.add(new MBeanAttributeInfo(name, type, name, true, false, false));
+            }
+            MBeanOperationInfo resetInfo = new MBeanOperationInfo("reset", "Clear all metrics",
+                    null, "void", MBeanOperationInfo.ACTION);
+            return new MBeanInfo(GenerationMetrics.class.getName(), "Music generation metrics",
+                                 infos.toArray(new MBeanAttributeInfo[0]), null,
+                                 new MBeanOperationInfo[] {resetInfo}, null);
+        }
+    }
+} 
\ No newline at end of file
@@ -0,0 +1,225 @@
+package com.musicgenerator;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * A reusable set of generation settings for one or many pieces
+ * 可复用的生成参数集，适用于单个或多个作品
+ */
+public class GenerationParameters {
+    
+    // Accepted ranges, shared by config.properties and the HTTP service
+    // 配置文件与HTTP服务共用的取值范围
+    public static final int MIN_TEMPO = 20;
+    public static final int MAX_TEMPO = 400;
+    public static final int MAX_ROOT_NOTE = 108;
+    public static final int MAX_TICKS_PER_BEAT = 32767;   // Largest SMF division in ticks per beat
+    public static final int MAX_MEASURES = 10_000;
+    public static final int MAX_TIME_SIGNATURE = 16;
+    
+    // Every config.properties key read by fromProperties
+    // fromProperties读取的所有config.properties键
+    public static final Set<String> PROPERTY_KEYS = Collections.unmodifiableSet(new LinkedHashSet<>(Arrays.asList(
+            "default.melody.complexity", "default.harmony.complexity", "default.rhythm.variation",
+            "default.tempo", "default.resolution", "default.bars", "default.timeSignature",
+            "default.scale.type", "default.scale.root", "default.scale.random",
+            "generation.model.file", "generation.search.beam", "generation.search.budget", "generation.voices")));
+    
+    private MusicTheory.ScaleType scaleType;  // null means a random scale per generator
+    private int rootNote;                     // MIDI root pitch, ignored when scaleType is null
+    private int tempo;                        // BPM
+    private int ticksPerBeat;
+    private int measures;
+    private int timeSignature;                // Beats per measure
+    private double melodyComplexity;          // 0.0 to 1.0
+    private double harmonyComplexity;         // 0.0 to 1.0
+    private double rhythmVariety;             // 0.0 to 1.0
+    private MarkovMelodyModel melodyModel;    // null means the uniform random melody
+    private ChordProgressionModel progressionModel;  // null means the common progressions
+    private List<Voice.Spec> voices;          // Extra voices beyond melody, chords and bass
+    private MelodySearch melodySearch;        // null means the per-beat random melody pitches
+    
+    public GenerationParameters() {
+        this.scaleType = null;
+        this.rootNote = 60;
+        this.tempo = 120;
+        this.ticksPerBeat = 480;
+        this.measures = 8;
+        this.timeSignature = 4;
+        this.melodyComplexity = 0.7;
+        this.harmonyComplexity = 0.6;
+        this.rhythmVariety = 0.5;
+        this.voices = Collections.emptyList();
+    }
+    
+    /**
+     * Read the default.* generation keys of config.properties; missing keys keep their defaults.
+     * Values outside the accepted ranges are rejected here rather than failing every piece later.
+     * 读取config.properties中的default.*生成参数键；缺少的键保持默认值。
+     * 超出取值范围的值在此处即被拒绝，而不是之后让每个作品都失败。
+     */
+    public static GenerationParameters fromProperties(Properties props) {
+        GenerationParameters params = new GenerationParameters();
+        params.melodyComplexity = complexityProperty(props, "default.melody.complexity", params.melodyComplexity);
+        params.harmonyComplexity = complexityProperty(props, "default.harmony.complexity", params.harmonyComplexity);
+        params.rhythmVariety = complexityProperty(props, "default.rhythm.variation", params.rhythmVariety);
+        params.tempo = intProperty(props, "default.tempo", params.tempo, MIN_TEMPO, MAX_TEMPO);
+        params.ticksPerBeat = intProperty(props, "default.resolution", params.ticksPerBeat, 1, MAX_TICKS_PER_BEAT);
+        params.measures = intProperty(props, "default.bars", params.measures, 1, MAX_MEASURES);
+        params.timeSignature = intProperty(props, "default.timeSignature", params.timeSignature, 1, MAX_TIME_SIGNATURE);
+        params.rootNote = intProperty(props, "default.scale.root", params.rootNote, 0, MAX_ROOT_NOTE);
+        
+        boolean randomScale = Boolean.parseBoolean(props.getProperty("default.scale.random", "true").trim());
+        String scaleType = props.getProperty("default.scale.type");
+        if (!randomScale && scaleType != null) {
+            try {
+                params.scaleType = MusicTheory.ScaleType.valueOf(scaleType.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("default.scale.type: unknown scale " + scaleType);
+            }
+        }
+        
+        String modelFile = props.getProperty("generation.model.file");
+        if (modelFile != null && !modelFile.trim().isEmpty()) {
+            try {
+                CorpusModel.read(Paths.get(modelFile.trim())).applyTo(params);
+            } catch (IOException e) {
+                throw new IllegalArgumentException("generation.model.file: cannot load " + modelFile + ": " + e.getMessage());
+            }
+        }
+        int beam = intProperty(props, "generation.search.beam", 0);
+        if (beam > 0) {
+            long budgetMicros = intProperty(props, "generation.search.budget",
+                                            (int) (MelodySearch.DEFAULT_BUDGET_NANOS / 1000));
+            try {
+                params.melodySearch = new MelodySearch(beam, budgetMicros * 1000);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("generation.search.budget: " + e.getMessage());
+            }
+        }
+        String voices = props.getProperty("generation.voices");
+        if (voices != null) {
+            params.setVoices(Voice.Spec.parseList(voices));
+        }
+        return params;
+    }
+    
+    private static int intProperty(Properties props, String key, int defaultValue) {
+        String value = props.getProperty(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(key + " must be an integer: " + value);
+        }
+    }
+    
+    private static int intProperty(Properties props, String key, int defaultValue, int min, int max) {
+        int value = intProperty(props, key, defaultValue);
+        if (value < min || value > max) {
+            throw new IllegalArgumentException(key + " must be between " + min + " and " + max + ": " + value);
+        }
+        return value;
+    }
+    
+    private static double complexityProperty(Properties props, String key, double defaultValue) {
+        String value = props.getProperty(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        double parsed;
+        try {
+            parsed = Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(key + " must be a number: " + value);
+        }
+        if (!(parsed >= 0.0 && parsed <= 1.0)) {
+            throw new IllegalArgumentException(key + " must be between 0.0 and 1.0: " + parsed);
+        }
+        return parsed;
+    }
+    
+    /**
+     * Create an independent copy of these parameters
+     * 创建这些参数的独立副本
+     */
+    public GenerationParameters copy() {
+        GenerationParameters copy = new GenerationParameters();
+        copy.scaleType = scaleType;
+        copy.rootNote = rootNote;
+        copy.tempo = tempo;
+        copy.ticksPerBeat = ticksPerBeat;
+        copy.measures = measures;
+        copy.timeSignature = timeSignature;
+        copy.melodyComplexity = melodyComplexity;
+        copy.harmonyComplexity = harmonyComplexity;
+        copy.rhythmVariety = rhythmVariety;
+        copy.melodyModel = melodyModel; // Immutable, so it can be shared
+        copy.progressionModel = progressionModel;
+        copy.voices = voices;
+        copy.melodySearch = melodySearch; // Shared, so its counters cover every copy
+        return copy;
+    }
+    
+    // Getters and setters
+    public MusicTheory.ScaleType getScaleType() { return scaleType; }
+    public void setScaleType(MusicTheory.ScaleType scaleType) { this.scaleType = scaleType; }
+    
+    public int getRootNote() { return rootNote; }
+    public void setRootNote(int rootNote) { this.rootNote = rootNote; }
+    
+    public int getTempo() { return tempo; }
+    public void setTempo(int tempo) { this.tempo = tempo; }
+    
+    public int getTicksPerBeat() { return ticksPerBeat; }
+    public void setTicksPerBeat(int ticksPerBeat) { this.ticksPerBeat = ticksPerBeat; }
+    
+    public int getMeasures() { return measures; }
+    public void setMeasures(int measures) { this.measures = measures; }
+    
+    public int getTimeSignature() { return timeSignature; }
+    public void setTimeSignature(int timeSignature) { this.timeSignature = timeSignature; }
+    
+    public double getMelodyComplexity() { return melodyComplexity; }
+    public void setMelodyComplexity(double melodyComplexity) { this.melodyComplexity = melodyComplexity; }
+    
+    public double getHarmonyComplexity() { return harmonyComplexity; }
+    public void setHarmonyComplexity(double harmonyComplexity) { this.harmonyComplexity = harmonyComplexity; }
+    
+    public double getRhythmVariety() { return rhythmVariety; }
+    public void setRhythmVariety(double rhythmVariety) { this.rhythmVariety = rhythmVariety; }
+    
+    public MarkovMelodyModel getMelodyModel() { return melodyModel; }
+    public void setMelodyModel(MarkovMelodyModel melodyModel) { this.melodyModel = melodyModel; }
+    
+    public ChordProgressionModel getProgressionModel() { return progressionModel; }
+    public void setProgressionModel(ChordProgressionModel progressionModel) { this.progressionModel = progressionModel; }
+    
+    public MelodySearch getMelodySearch() { return melodySearch; }
+    public void setMelodySearch(MelodySearch melodySearch) { this.melodySearch = melodySearch; }
+    
+    public List<Voice.Spec> getVoices() { return voices; }
+    public void setVoices(List<Voice.Spec> voices) { this.voices = Collections.unmodifiableList(new ArrayList<>(voices)); }
+    
+    @Override
+    public String toString() {
+        return String.format("GenerationParameters{scale=%s, root=%d, tempo=%d, measures=%d, timeSignature=%d, " +
+                           "melody=%.2f, harmony=%.2f, rhythm=%.2f%s}",
+                           scaleType == null ? "Random" : scaleType.toString(), rootNote, tempo, measures,
+                           timeSignature, melodyComplexity, harmonyComplexity, rhythmVariety,
+                           (melodyModel == null ? "" : ", markovOrder=" + melodyModel.getOrder())
+                           + (progressionModel == null ? "" : ", learnedProgressions")
+                           + (melodySearch == null ? "" : ", beam=" + melodySearch.getBeamWidth())
+                           + (voices.isEmpty() ? "" : ", voices=" + voices));
+    }
+} 
\ No newline at end of file
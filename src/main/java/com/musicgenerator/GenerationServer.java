@@ -0,0 +1,388 @@
+package com.musicgenerator;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Embedded HTTP service that generates and serves MIDI files
+ * 生成并提供MIDI文件的嵌入式HTTP服务
+ *
+ * Every request runs on its own virtual thread and is generated and encoded entirely
+ * in memory. Endpoints:
+ *   GET /generate?scale=MAJOR&amp;root=60&amp;tempo=120&amp;measures=8&amp;timeSignature=4
+ *                &amp;melody=0.7&amp;harmony=0.6&amp;rhythm=0.5&amp;seed=42   -> audio/midi
+ *                &amp;voices=ARPEGGIO,PAD,PERCUSSION adds extra voices (see Voice.Spec.parseList)
+ *                &amp;beam=8 picks melody pitches by beam search, 200 us per measure at most
+ *                unless seeded; seeded searches run without a budget so they stay deterministic
+ *   GET /piece/{id} -> audio/midi regenerated from a PieceId
+ *   GET /metrics   -> per-endpoint latency percentiles and request counts
+ *   GET /metrics/prometheus -> generation and export metrics in Prometheus text format
+ * All parameters are optional; without a seed each request gets a new random piece.
+ * Seeded requests are deterministic and are served from a MidiCache; their response
+ * carries the piece's ID in an X-Piece-Id header when the parameters can be encoded.
+ * 每个请求运行在独立的虚拟线程上，生成和编码完全在内存中进行。
+ * 所有参数均为可选；不指定种子时每个请求都会得到新的随机作品。
+ * 带种子的请求是确定性的，由MidiCache提供；参数可编码时，响应的X-Piece-Id头中包含作品ID。
+ */
+public class GenerationServer implements AutoCloseable {
+    
+    public static final int DEFAULT_PORT = 8080;
+    public static final int MAX_MEASURES = GenerationParameters.MAX_MEASURES;
+    public static final long DEFAULT_CACHE_BYTES = 64L * 1024 * 1024;
+    
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final MidiCache cache;
+    private final Map<String, EndpointStats> endpoints = new LinkedHashMap<>();
+    
+    public GenerationServer(int port) throws IOException {
+        this(port, new MidiCache(DEFAULT_CACHE_BYTES));
+    }
+    
+    public GenerationServer(int port, MidiCache cache) throws IOException {
+        this.cache = cache;
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+        register("/generate", this::handleGenerate);
+        register("/piece/", this::handlePiece);
+        register("/metrics", this::handleMetrics);
+        register("/metrics/prometheus", exchange -> new Response(200, "text/plain; version=0.0.4",
+                GenerationMetrics.getInstance().toPrometheusText().getBytes(StandardCharsets.UTF_8)));
+    }
+    
+    private void register(String path, Endpoint endpoint) {
+        EndpointStats stats = new EndpointStats(path);
+        endpoints.put(path, stats);
+        server.createContext(path, new TimedHandler(stats, endpoint));
+    }
+    
+    public void start() {
+        server.start();
+    }
+    
+    /**
+     * Stop accepting requests, waiting up to the given seconds for running ones
+     * 停止接受请求，最多等待指定秒数让正在处理的请求完成
+     */
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        executor.shutdown();
+    }
+    
+    @Override
+    public void close() {
+        stop(0);
+    }
+    
+    public int getPort() { return server.getAddress().getPort(); }
+    public MidiCache getCache() { return cache; }
+    
+    public LatencyHistogram getLatencyHistogram(String path) {
+        EndpointStats stats = endpoints.get(path);
+        return stats == null ? null : stats.latency;
+    }
+    
+    /**
+     * First exception an endpoint failed with, or null; the client only sees a 500
+     * 端点第一次失败时的异常，没有则为null；客户端只会看到500
+     */
+    public RuntimeException getFirstFailure(String path) {
+        EndpointStats stats = endpoints.get(path);
+        return stats == null ? null : stats.firstFailure.get();
+    }
+    
+    /**
+     * Generate a piece from the query parameters and return it as a MIDI file
+     * 根据查询参数生成作品并以MIDI文件返回
+     */
+    private Response handleGenerate(HttpExchange exchange) {
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+        GenerationParameters params = new GenerationParameters();
+        Long seed;
+        try {
+            seed = applyQuery(query, params);
+        } catch (IllegalArgumentException e) {
+            return Response.text(400, e.getMessage());
+        }
+        
+        if (seed != null) {
+            Response response = new Response(200, "audio/midi", cache.get(params, seed));
+            try {
+                exchange.getResponseHeaders().set("X-Piece-Id", PieceId.of(params, seed).toString());
+            } catch (IllegalArgumentException e) {
+                // Parameters outside the ID's ranges: serve the piece without an ID
+                // 参数超出ID的范围：提供作品但不附带ID
+            }
+            return response;
+        }
+        
+        MusicGenerator generator = new MusicGenerator();
+        generator.configure(params);
+        MusicalPiece piece = generator.generatePiece(params.getMeasures(), params.getTimeSignature());
+        
+        // SmfWriter produces the same bytes as MidiExporter, without a temp file or Sequence
+        // SmfWriter生成与MidiExporter相同的字节，无需临时文件或Sequence
+        byte[] midi = new SmfWriter().toByteArray(piece);
+        return new Response(200, "audio/midi", midi);
+    }
+    
+    /**
+     * Regenerate a piece from the PieceId in the path, so any node can serve any stored ID
+     * 根据路径中的PieceId重新生成作品，使任何节点都能提供任何已存储的ID
+     */
+    private Response handlePiece(HttpExchange exchange) {
+        String path = exchange.getRequestURI().getPath();
+        PieceId id;
+        try {
+            id = PieceId.parse(path.substring("/piece/".length()));
+        } catch (IllegalArgumentException e) {
+            return Response.text(400, e.getMessage());
+        }
+        if (id.getParameters().getMeasures() > MAX_MEASURES) {
+            return Response.text(400, "measures must be between 1 and " + MAX_MEASURES);
+        }
+        return new Response(200, "audio/midi", cache.get(id.getParameters(), id.getSeed()));
+    }
+    
+    private Response handleMetrics(HttpExchange exchange) {
+        StringBuilder body = new StringBuilder();
+        for (EndpointStats stats : endpoints.values()) {
+            body.append(stats.path)
+                .append(" requests=").append(stats.requests.sum())
+                .append(" errors=").append(stats.errors.sum())
+                .append(' ').append(stats.latency).append('\n');
+        }
+        body.append(cache).append('\n');
+        return Response.text(200, body.toString());
+    }
+    
+    /**
+     * Copy recognized query parameters into the parameter set, returning the seed if any
+     * 将识别的查询参数复制到参数集中，若有种子则返回种子
+     */
+    static Long applyQuery(Map<String, String> query, GenerationParameters params) {
+        for (String key : query.keySet()) {
+            switch (key) {
+                case "scale":
+                case "root":
+                case "tempo":
+                case "measures":
+                case "timeSignature":
+                case "melody":
+                case "harmony":
+                case "rhythm":
+                case "voices":
+                case "beam":
+                case "seed":
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown parameter: " + key);
+            }
+        }
+        String scale = query.get("scale");
+        if (scale != null && !scale.equalsIgnoreCase("random")) {
+            try {
+                params.setScaleType(MusicTheory.ScaleType.valueOf(scale.toUpperCase()));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown scale: " + scale);
+            }
+        }
+        params.setRootNote(intParam(query, "root", params.getRootNote(), 0, GenerationParameters.MAX_ROOT_NOTE));
+        params.setTempo(intParam(query, "tempo", params.getTempo(),
+                                      GenerationParameters.MIN_TEMPO, GenerationParameters.MAX_TEMPO));
+        params.setMeasures(intParam(query, "measures", params.getMeasures(), 1, MAX_MEASURES));
+        params.setTimeSignature(intParam(query, "timeSignature", params.getTimeSignature(),
+                                              1, GenerationParameters.MAX_TIME_SIGNATURE));
+        params.setMelodyComplexity(doubleParam(query, "melody", params.getMelodyComplexity()));
+        params.setHarmonyComplexity(doubleParam(query, "harmony", params.getHarmonyComplexity()));
+        params.setRhythmVariety(doubleParam(query, "rhythm", params.getRhythmVariety()));
+        if (query.containsKey("beam")) {
+            // A budgeted search falls back to greedy under load, so seeded (cached) requests get none
+            // 有预算的搜索在负载高时会退回贪心算法，因此带种子（会被缓存）的请求不设预算
+            long budget = query.containsKey("seed") ? 0 : MelodySearch.DEFAULT_BUDGET_NANOS;
+            params.setMelodySearch(new MelodySearch(intParam(query, "beam", MelodySearch.DEFAULT_BEAM_WIDTH, 1, 64),
+                                                    budget));
+        }
+        String voices = query.get("voices");
+        if (voices != null) {
+            params.setVoices(Voice.Spec.parseList(voices));
+        }
+        
+        String seed = query.get("seed");
+        if (seed == null) {
+            return null;
+        }
+        try {
+            return Long.parseLong(seed);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("seed must be a long: " + seed);
+        }
+    }
+    
+    private static int intParam(Map<String, String> query, String name, int defaultValue, int min, int max) {
+        String value = query.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        int parsed;
+        try {
+            parsed = Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " must be an integer: " + value);
+        }
+        if (parsed < min || parsed > max) {
+            throw new IllegalArgumentException(name + " must be between " + min + " and " + max + ": " + parsed);
+        }
+        return parsed;
+    }
+    
+    private static double doubleParam(Map<String, String> query, String name, double defaultValue) {
+        String value = query.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        double parsed;
+        try {
+            parsed = Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " must be a number: " + value);
+        }
+        if (!(parsed >= 0.0 && parsed <= 1.0)) {
+            throw new IllegalArgumentException(name + " must be between 0.0 and 1.0: " + parsed);
+        }
+        return parsed;
+    }
+    
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return query;
+        }
+        for (String pair : rawQuery.split("&")) {
+            if (pair.isEmpty()) {
+                continue;
+            }
+            int eq = pair.indexOf('=');
+            String key = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+            String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            query.put(key, value);
+        }
+        return query;
+    }
+    
+    /**
+     * Request handler body returning a complete in-memory response
+     * 返回完整内存响应的请求处理逻辑
+     */
+    private interface Endpoint {
+        Response handle(HttpExchange exchange);
+    }
+    
+    private static class Response {
+        final int status;
+        final String contentType;
+        final byte[] body;
+        
+        Response(int status, String contentType, byte[] body) {
+            this.status = status;
+            this.contentType = contentType;
+            this.body = body;
+        }
+        
+        static Response text(int status, String text) {
+            return new Response(status, "text/plain; charset=utf-8", (text + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+    }
+    
+    /**
+     * Request and error counters plus latency histogram of one endpoint
+     * 单个端点的请求数、错误数和延迟直方图
+     */
+    private static class EndpointStats {
+        final String path;
+        final LatencyHistogram latency;
+        final LongAdder requests = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        final AtomicReference<RuntimeException> firstFailure = new AtomicReference<>();
+        
+        EndpointStats(String path) {
+            this.path = path;
+            this.latency = new LatencyHistogram(path);
+        }
+    }
+    
+    /**
+     * Wraps an endpoint with method checking, error handling and latency recording
+     * 为端点添加方法检查、错误处理和延迟记录
+     */
+    private static class TimedHandler implements HttpHandler {
+        private static final Response FAILED = Response.text(500, "Generation failed");
+        private static final Response NOT_FOUND = Response.text(404, "Not found");
+        
+        private final EndpointStats stats;
+        private final Endpoint endpoint;
+        
+        TimedHandler(EndpointStats stats, Endpoint endpoint) {
+            this.stats = stats;
+            this.endpoint = endpoint;
+        }
+        
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            // Contexts match by prefix: only a path ending in '/' serves the paths below it
+            // 上下文按前缀匹配：只有以'/'结尾的路径才服务其下的路径
+            if (!stats.path.endsWith("/") && !stats.path.equals(exchange.getRequestURI().getPath())) {
+                send(exchange, NOT_FOUND);
+                return;
+            }
+            long start = System.nanoTime();
+            stats.requests.increment();
+            Response response;
+            try {
+                if (!"GET".equals(exchange.getRequestMethod())) {
+                    response = Response.text(405, "Only GET is supported");
+                } else {
+                    response = endpoint.handle(exchange);
+                }
+            } catch (RuntimeException e) {
+                // Details stay with the server (getFirstFailure), not in the response; an Error
+                // is not caught and goes to the thread's uncaught exception handler
+                // 详细信息留在服务器端（getFirstFailure），不发给客户端；Error不捕获，交给线程的未捕获异常处理器
+                stats.firstFailure.compareAndSet(null, e);
+                response = FAILED;
+            }
+            if (response.status >= 400) {
+                stats.errors.increment();
+            }
+            
+            try {
+                send(exchange, response);
+            } finally {
+                stats.latency.recordSince(start);
+            }
+        }
+        
+        private static void send(HttpExchange exchange, Response response) throws IOException {
+            try (OutputStream out = exchange.getResponseBody()) {
+                exchange.getResponseHeaders().set("Content-Type", response.contentType);
+                exchange.sendResponseHeaders(response.status, response.body.length);
+                out.write(response.body);
+            }
+        }
+    }
+} 
\ No newline at end of file
@@ -0,0 +1,138 @@
+package com.musicgenerator;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free log-linear histogram for latency values in nanoseconds
+ * 用于纳秒级延迟值的无锁对数线性直方图
+ *
+ * Values are grouped HDR-style: one range per power of two, each split into 16
+ * linear sub-buckets, so any recorded value is reported within 1/16 (6.25%) of its
+ * true value. Every bucket is a LongAdder, so concurrent recording never blocks.
+ * 按HDR方式分组：每个2的幂为一个区间，每个区间再分成16个线性子桶，
+ * 因此报告值与真实值的误差不超过1/16（6.25%）。每个桶都是LongAdder，并发记录不会阻塞。
+ */
+public class LatencyHistogram {
+    
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+    
+    private final String name;
+    private final LongAdder[] buckets;
+    private final LongAdder count;
+    private final LongAdder sum;
+    private final LongAccumulator max;
+    
+    public LatencyHistogram(String name) {
+        this.name = name;
+        this.buckets = new LongAdder[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets[i] = new LongAdder();
+        }
+        this.count = new LongAdder();
+        this.sum = new LongAdder();
+        this.max = new LongAccumulator(Math::max, 0);
+    }
+    
+    /**
+     * Record one value; negative values are recorded as 0
+     * 记录一个值；负值按0记录
+     */
+    public void record(long value) {
+        long v = Math.max(0, value);
+        buckets[bucketIndex(v)].increment();
+        count.increment();
+        sum.add(v);
+        max.accumulate(v);
+    }
+    
+    /**
+     * Record the time elapsed since a System.nanoTime() start mark
+     * 记录自System.nanoTime()起点以来经过的时间
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+    
+    private static int bucketIndex(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+    
+    /**
+     * Highest value that maps to a bucket, used when reporting percentiles
+     * 映射到某个桶的最大值，用于报告百分位数
+     */
+    private static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long subBucket = index % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        return ((SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS)) + width - 1;
+    }
+    
+    // Getters
+    public String getName() { return name; }
+    public long getCount() { return count.sum(); }
+    public long getSum() { return sum.sum(); }
+    public long getMax() { return max.get(); }
+    
+    public double getMean() {
+        long n = count.sum();
+        return n == 0 ? 0.0 : (double) sum.sum() / n;
+    }
+    
+    /**
+     * Value at a percentile (0-100), accurate to the bucket resolution
+     * 指定百分位数（0-100）处的值，精度为桶分辨率
+     */
+    public long getValueAtPercentile(double percentile) {
+        long[] counts = new long[BUCKET_COUNT];
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = buckets[i].sum();
+            total += counts[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(Math.min(100.0, Math.max(0.0, percentile)) / 100.0 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(bucketUpperBound(i), getMax());
+            }
+        }
+        return getMax();
+    }
+    
+    /**
+     * Clear all recorded values; concurrent records may land on either side
+     * 清除所有记录值；并发记录可能落在清除前或清除后
+     */
+    public void reset() {
+        for (LongAdder bucket : buckets) {
+            bucket.reset();
+        }
+        count.reset();
+        sum.reset();
+        max.reset();
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("%s{count=%d, mean=%.1fus, p50=%.1fus, p99=%.1fus, p99.9=%.1fus, max=%.1fus}",
+                           name, getCount(), getMean() / 1000.0,
+                           getValueAtPercentile(50) / 1000.0, getValueAtPercentile(99) / 1000.0,
+                           getValueAtPercentile(99.9) / 1000.0, getMax() / 1000.0);
+    }
+} 
\ No newline at end of file
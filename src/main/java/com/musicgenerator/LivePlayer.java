@@ -0,0 +1,278 @@
+package com.musicgenerator;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.Receiver;
+import javax.sound.midi.ShortMessage;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Plays generated music live through a MIDI Receiver
+ * 通过MIDI Receiver实时播放生成的音乐
+ *
+ * A generator thread produces measures ahead of time into a bounded lookahead
+ * buffer while a dedicated scheduler thread dispatches their events at the piece's
+ * tempo. The scheduler records how far each dispatch missed its target time, so it
+ * can be shown that generation never stalls playback.
+ * 生成线程提前将小节生成到有界的预读缓冲区中，专用调度线程按作品速度发送事件。
+ * 调度线程记录每次发送偏离目标时间的程度，以证明生成从不阻塞播放。
+ */
+public class LivePlayer implements AutoCloseable {
+    
+    private static final long SPIN_THRESHOLD_NANOS = 200_000;         // Busy-wait the last 0.2 ms
+    private static final long DEFAULT_LATE_THRESHOLD_NANOS = 2_000_000; // 2 ms
+    
+    private final MeasureStream measures;
+    private final Receiver receiver;
+    private final BlockingQueue<ScheduledMeasure> lookahead;
+    private final long lateThresholdNanos;
+    
+    private final LatencyHistogram jitterHistogram = new LatencyHistogram("dispatch_jitter");
+    private final LatencyHistogram generationHistogram = new LatencyHistogram("measure_generation");
+    private final AtomicLong dispatchedEvents = new AtomicLong();
+    private final AtomicLong lateEvents = new AtomicLong();
+    private final AtomicLong bufferUnderruns = new AtomicLong();
+    
+    private Thread generatorThread;
+    private Thread schedulerThread;
+    private volatile boolean running;
+    private volatile Throwable failure;
+    
+    /**
+     * Play an endless stream from the generator
+     * 播放来自生成器的无限流
+     */
+    public LivePlayer(MusicGenerator generator, Receiver receiver, int timeSignature, int lookaheadMeasures) {
+        this(generator.streamMeasures(timeSignature), receiver, lookaheadMeasures, DEFAULT_LATE_THRESHOLD_NANOS);
+    }
+    
+    /**
+     * Play the given measure stream; events later than the threshold count as late
+     * 播放给定的小节流；超过阈值的事件计为迟到
+     */
+    public LivePlayer(MeasureStream measures, Receiver receiver, int lookaheadMeasures, long lateThresholdNanos) {
+        if (lookaheadMeasures < 1) {
+            throw new IllegalArgumentException("lookaheadMeasures must be at least 1: " + lookaheadMeasures);
+        }
+        this.measures = measures;
+        this.receiver = receiver;
+        this.lookahead = new ArrayBlockingQueue<>(lookaheadMeasures);
+        this.lateThresholdNanos = lateThresholdNanos;
+    }
+    
+    /**
+     * Start generating and playing
+     * 开始生成和播放
+     */
+    public synchronized void start() throws InvalidMidiDataException {
+        if (running) {
+            throw new IllegalStateException("Player already started");
+        }
+        running = true;
+        
+        // Same channel/program layout as MidiExporter
+        // 与MidiExporter相同的通道/音色布局
+        sendProgram(EventTimeline.MELODY_CHANNEL, EventTimeline.MELODY_PROGRAM);
+        sendProgram(EventTimeline.CHORD_CHANNEL, EventTimeline.CHORD_PROGRAM);
+        sendProgram(EventTimeline.BASS_CHANNEL, EventTimeline.BASS_PROGRAM);
+        
+        generatorThread = new Thread(this::generateLoop, "live-generator");
+        generatorThread.setDaemon(true);
+        schedulerThread = new Thread(this::scheduleLoop, "live-scheduler");
+        schedulerThread.setDaemon(true);
+        schedulerThread.setPriority(Thread.MAX_PRIORITY);
+        generatorThread.start();
+        schedulerThread.start();
+    }
+    
+    private void sendProgram(int channel, int program) throws InvalidMidiDataException {
+        receiver.send(new ShortMessage(ShortMessage.PROGRAM_CHANGE, channel, program, 0), -1);
+    }
+    
+    /**
+     * Producer: keeps the lookahead buffer full, blocking while it is full
+     * 生产者：保持预读缓冲区满，缓冲区满时阻塞
+     */
+    private void generateLoop() {
+        try {
+            while (running && measures.hasNext()) {
+                long start = System.nanoTime();
+                Measure measure = measures.next();
+                ScheduledMeasure scheduled = new ScheduledMeasure(EventTimeline.of(measure),
+                        measure.getTempo(), measure.getTicksPerBeat());
+                generationHistogram.recordSince(start);
+                lookahead.put(scheduled);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            failure = e;
+        } finally {
+            // A measure without events marks the end of the stream
+            // 没有事件的小节表示流结束
+            if (running) {
+                try {
+                    lookahead.put(new ScheduledMeasure(new EventTimeline(2), 120, 480));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+    
+    /**
+     * Consumer: dispatches every event at its wall-clock time
+     * 消费者：在每个事件的实际时间发送它
+     */
+    private void scheduleLoop() {
+        try {
+            // The clock starts once the first measure is ready
+            // 第一个小节就绪后才开始计时
+            ScheduledMeasure scheduled = lookahead.take();
+            long startNanos = System.nanoTime();
+            while (running) {
+                if (scheduled == null) {
+                    bufferUnderruns.incrementAndGet();
+                    scheduled = lookahead.take();
+                }
+                EventTimeline events = scheduled.events;
+                if (events.size() == 0) {
+                    break;
+                }
+                long ticksPerMinute = (long) scheduled.tempo * scheduled.ticksPerBeat;
+                for (int i = 0; i < events.size() && running; i++) {
+                    long target = startNanos + ticksToNanos(events.getTick(i), ticksPerMinute);
+                    waitUntil(target);
+                    receiver.send(new ShortMessage(events.getStatus(i), events.getPitch(i), events.getVelocity(i)), -1);
+                    long jitter = System.nanoTime() - target;
+                    jitterHistogram.record(jitter);
+                    dispatchedEvents.incrementAndGet();
+                    if (jitter > lateThresholdNanos) {
+                        lateEvents.incrementAndGet();
+                    }
+                }
+                scheduled = lookahead.poll();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (InvalidMidiDataException | RuntimeException e) {
+            failure = e;
+        } finally {
+            running = false;
+            allNotesOff();
+        }
+    }
+    
+    private static long ticksToNanos(long tick, long ticksPerMinute) {
+        // nanos = tick * 60e9 / (tempo * ticksPerBeat), split to avoid overflow
+        // 纳秒 = tick * 60e9 / (速度 * 每拍tick数)，拆分计算以避免溢出
+        return (tick / ticksPerMinute) * 60_000_000_000L + (tick % ticksPerMinute) * 60_000_000_000L / ticksPerMinute;
+    }
+    
+    private static void waitUntil(long target) throws InterruptedException {
+        long remaining;
+        while ((remaining = target - System.nanoTime()) > SPIN_THRESHOLD_NANOS) {
+            LockSupport.parkNanos(remaining - SPIN_THRESHOLD_NANOS);
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+        while (target - System.nanoTime() > 0) {
+            Thread.onSpinWait();
+        }
+    }
+    
+    private void allNotesOff() {
+        int[] channels = {EventTimeline.MELODY_CHANNEL, EventTimeline.CHORD_CHANNEL, EventTimeline.BASS_CHANNEL};
+        for (int channel : channels) {
+            try {
+                receiver.send(new ShortMessage(ShortMessage.CONTROL_CHANGE, channel, 123, 0), -1);
+            } catch (InvalidMidiDataException e) {
+                // Constant, valid message; cannot happen
+                // 常量且有效的消息，不会发生
+            }
+        }
+    }
+    
+    /**
+     * Wait until a finite stream has been played completely
+     * 等待有限的流完全播放完毕
+     */
+    public boolean awaitCompletion(long timeout, TimeUnit unit) throws InterruptedException {
+        Thread scheduler = schedulerThread;
+        if (scheduler == null) {
+            return true;
+        }
+        scheduler.join(Math.max(1, unit.toMillis(timeout)));
+        return !scheduler.isAlive();
+    }
+    
+    /**
+     * Stop playback and silence all channels
+     * 停止播放并使所有通道静音
+     */
+    public synchronized void stop() {
+        running = false;
+        if (generatorThread != null) {
+            generatorThread.interrupt();
+        }
+        if (schedulerThread != null) {
+            schedulerThread.interrupt();
+            try {
+                schedulerThread.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+    
+    @Override
+    public void close() {
+        stop();
+    }
+    
+    // Metrics
+    public LatencyHistogram getJitterHistogram() { return jitterHistogram; }
+    public LatencyHistogram getGenerationHistogram() { return generationHistogram; }
+    public long getDispatchedEvents() { return dispatchedEvents.get(); }
+    public long getLateEvents() { return lateEvents.get(); }
+    public long getBufferUnderruns() { return bufferUnderruns.get(); }
+    public int getBufferedMeasures() { return lookahead.size(); }
+    public Throwable getFailure() { return failure; }
+    public boolean isRunning() { return running; }
+    
+    /**
+     * Human-readable playback quality report
+     * 可读的播放质量报告
+     */
+    public String getReport() {
+        StringBuilder report = new StringBuilder();
+        report.append("=== Live Playback Report ===\n");
+        report.append("Events dispatched: ").append(getDispatchedEvents()).append("\n");
+        report.append("Late events (>").append(lateThresholdNanos / 1000).append("us): ")
+              .append(getLateEvents()).append("\n");
+        report.append("Buffer underruns: ").append(getBufferUnderruns()).append("\n");
+        report.append(jitterHistogram).append("\n");
+        report.append(generationHistogram).append("\n");
+        return report.toString();
+    }
+    
+    /**
+     * One measure's events with the timing needed to schedule them
+     * 一个小节的事件及调度所需的时间信息
+     */
+    private static class ScheduledMeasure {
+        final EventTimeline events;
+        final int tempo;
+        final int ticksPerBeat;
+        
+        ScheduledMeasure(EventTimeline events, int tempo, int ticksPerBeat) {
+            this.events = events;
+            this.tempo = tempo;
+            this.ticksPerBeat = ticksPerBeat;
+        }
+    }
+} 
\ No newline at end of file
@@ -0,0 +1,200 @@
+package com.musicgenerator;
+
+import java.util.Arrays;
+
+/**
+ * Immutable order-N Markov model of melodic motion in scale steps
+ * 以音阶步进描述旋律进行的不可变N阶马尔可夫模型
+ *
+ * The state is the current scale degree plus the previous N-1 intervals; the outcome is
+ * the next interval, from -MAX_INTERVAL to +MAX_INTERVAL scale steps. Probabilities are
+ * stored as one flat float array of cumulative rows (context x interval), so sampling a
+ * note is a short scan of a single row: constant time and no allocation at any order.
+ * 状态为当前音阶级数加上之前的N-1个音程；结果为下一个音程，范围为-MAX_INTERVAL到
+ * +MAX_INTERVAL个音阶步。概率以累积行（上下文 x 音程）存储在一个扁平float数组中，
+ * 因此采样一个音符只需扫描一行：任意阶数下都是常数时间且不分配内存。
+ */
+public final class MarkovMelodyModel {
+    
+    public static final int MAX_ORDER = 3;
+    public static final int MAX_INTERVAL = 4;                   // Scale steps up or down
+    public static final int INTERVALS = 2 * MAX_INTERVAL + 1;   // -4..+4
+    public static final int DEGREES = 12;                       // Enough for any scale
+    
+    // Relative weights of the intervals -4..+4 for the default model: mostly steps
+    // 默认模型中音程-4..+4的相对权重：以级进为主
+    private static final int[] STEP_WEIGHTS = {1, 2, 4, 10, 5, 10, 4, 2, 1};
+    
+    private final int order;
+    private final int histories;        // INTERVALS^(order-1)
+    private final float[] cumulative;   // [context * INTERVALS + interval], each row ends at 1.0
+    
+    private MarkovMelodyModel(int order, float[] cumulative) {
+        this.order = order;
+        this.histories = historyCount(order);
+        this.cumulative = cumulative;
+    }
+    
+    /**
+     * Number of contexts (degree x interval history) of a model of the given order
+     * 给定阶数模型的上下文数量（级数 x 音程历史）
+     */
+    public static int contextCount(int order) {
+        return DEGREES * historyCount(order);
+    }
+    
+    private static int historyCount(int order) {
+        if (order < 1 || order > MAX_ORDER) {
+            throw new IllegalArgumentException("order must be between 1 and " + MAX_ORDER + ": " + order);
+        }
+        int histories = 1;
+        for (int i = 1; i < order; i++) {
+            histories *= INTERVALS;
+        }
+        return histories;
+    }
+    
+    /**
+     * Build a model from transition counts laid out as [context * INTERVALS + interval + MAX_INTERVAL].
+     * Contexts that were never seen fall back to the counts of their degree, then to all counts.
+     * 根据按[上下文 * INTERVALS + 音程 + MAX_INTERVAL]排列的转移计数构建模型。
+     * 从未出现的上下文依次回退到其级数的计数，再回退到全部计数。
+     */
+    public static MarkovMelodyModel fromCounts(int order, long[] counts) {
+        int contexts = contextCount(order);
+        if (counts.length != contexts * INTERVALS) {
+            throw new IllegalArgumentException("expected " + contexts * INTERVALS + " counts for order "
+                                               + order + ": " + counts.length);
+        }
+        int histories = historyCount(order);
+        long[] byDegree = new long[DEGREES * INTERVALS];
+        long[] overall = new long[INTERVALS];
+        for (int context = 0; context < contexts; context++) {
+            int degree = context / histories;
+            for (int i = 0; i < INTERVALS; i++) {
+                long count = counts[context * INTERVALS + i];
+                if (count < 0) {
+                    throw new IllegalArgumentException("negative count at " + (context * INTERVALS + i));
+                }
+                byDegree[degree * INTERVALS + i] += count;
+                overall[i] += count;
+            }
+        }
+        
+        float[] cumulative = new float[contexts * INTERVALS];
+        for (int context = 0; context < contexts; context++) {
+            int degree = context / histories;
+            if (rowTotal(counts, context * INTERVALS) > 0) {
+                fillRow(cumulative, context * INTERVALS, counts, context * INTERVALS);
+            } else if (rowTotal(byDegree, degree * INTERVALS) > 0) {
+                fillRow(cumulative, context * INTERVALS, byDegree, degree * INTERVALS);
+            } else if (rowTotal(overall, 0) > 0) {
+                fillRow(cumulative, context * INTERVALS, overall, 0);
+            } else {
+                long[] uniform = new long[INTERVALS];
+                Arrays.fill(uniform, 1);
+                fillRow(cumulative, context * INTERVALS, uniform, 0);
+            }
+        }
+        return new MarkovMelodyModel(order, cumulative);
+    }
+    
+    /**
+     * Built-in model favouring steps, that turns back after a leap at orders above 1
+     * 内置模型：偏好级进，阶数大于1时在跳进后反向进行
+     */
+    public static MarkovMelodyModel createDefault(int order) {
+        int histories = historyCount(order);
+        long[] counts = new long[contextCount(order) * INTERVALS];
+        for (int context = 0; context < counts.length / INTERVALS; context++) {
+            // The most recent interval is the lowest base-INTERVALS digit of the history
+            // 最近的音程是历史值的最低位（以INTERVALS为基数）
+            int previous = order == 1 ? 0 : context % histories % INTERVALS - MAX_INTERVAL;
+            for (int i = 0; i < INTERVALS; i++) {
+                int interval = i - MAX_INTERVAL;
+                long weight = STEP_WEIGHTS[i];
+                if (Math.abs(previous) >= 3 && interval != 0 && Integer.signum(interval) != Integer.signum(previous)
+                        && Math.abs(interval) <= 2) {
+                    weight *= 4; // Recover from a leap by step in the other direction
+                }
+                counts[context * INTERVALS + i] = weight;
+            }
+        }
+        return fromCounts(order, counts);
+    }
+    
+    private static long rowTotal(long[] counts, int offset) {
+        long total = 0;
+        for (int i = 0; i < INTERVALS; i++) {
+            total += counts[offset + i];
+        }
+        return total;
+    }
+    
+    private static void fillRow(float[] cumulative, int target, long[] counts, int offset) {
+        double total = rowTotal(counts, offset);
+        long running = 0;
+        for (int i = 0; i < INTERVALS; i++) {
+            running += counts[offset + i];
+            cumulative[target + i] = (float) (running / total);
+        }
+        cumulative[target + INTERVALS - 1] = 1.0f;
+    }
+    
+    public int getOrder() { return order; }
+    
+    /**
+     * History value for a melody that has not moved yet (all previous intervals 0)
+     * 尚未移动的旋律的历史值（之前所有音程均为0）
+     */
+    public int getInitialHistory() {
+        int history = 0;
+        for (int i = 1; i < order; i++) {
+            history = history * INTERVALS + MAX_INTERVAL;
+        }
+        return history;
+    }
+    
+    /**
+     * Context index of a scale degree (0 to DEGREES-1) and an interval history
+     * 音阶级数（0到DEGREES-1）与音程历史对应的上下文索引
+     */
+    public int context(int degree, int history) {
+        return degree * histories + history;
+    }
+    
+    /**
+     * Shift an interval into the history, dropping the oldest one
+     * 将一个音程移入历史，并丢弃最早的音程
+     */
+    public int nextHistory(int history, int interval) {
+        return histories == 1 ? 0 : (history * INTERVALS + interval + MAX_INTERVAL) % histories;
+    }
+    
+    /**
+     * Sample the next interval of a context from a uniform value u in [0, 1)
+     * 根据[0, 1)范围内的均匀值u采样上下文的下一个音程
+     */
+    public int sampleInterval(int context, double u) {
+        int offset = context * INTERVALS;
+        int i = 0;
+        while (i < INTERVALS - 1 && u >= cumulative[offset + i]) {
+            i++;
+        }
+        return i - MAX_INTERVAL;
+    }
+    
+    /**
+     * Probability of moving by an interval from a context
+     * 从某个上下文按指定音程移动的概率
+     */
+    public double getProbability(int context, int interval) {
+        int index = context * INTERVALS + interval + MAX_INTERVAL;
+        return index % INTERVALS == 0 ? cumulative[index] : cumulative[index] - cumulative[index - 1];
+    }
+    
+    @Override
+    public String toString() {
+        return "MarkovMelodyModel{order=" + order + ", contexts=" + contextCount(order) + "}";
+    }
+} 
\ No newline at end of file
@@ -0,0 +1,74 @@
+package com.musicgenerator;
+
+import java.util.List;
+
+/**
+ * One generated measure with its chords, melody and bass, at absolute tick positions
+ * 一个已生成的小节，包含和弦、旋律和低音，使用绝对tick位置
+ */
+public class Measure {
+    private final long index;
+    private final long startTime;       // Absolute start tick (long, never overflows)
+    private final long length;          // Length in ticks
+    private final int tempo;
+    private final int ticksPerBeat;
+    private final int timeSignature;
+    private final NoteTrack melody;
+    private final ChordTrack chords;
+    private final NoteTrack bassLine;
+    
+    Measure(long index, long startTime, long length, int tempo, int ticksPerBeat, int timeSignature) {
+        this.index = index;
+        this.startTime = startTime;
+        this.length = length;
+        this.tempo = tempo;
+        this.ticksPerBeat = ticksPerBeat;
+        this.timeSignature = timeSignature;
+        this.melody = new NoteTrack(timeSignature);
+        this.chords = new ChordTrack(timeSignature);
+        this.bassLine = new NoteTrack(timeSignature);
+    }
+    
+    // Getters
+    public long getIndex() { return index; }
+    public long getStartTime() { return startTime; }
+    public long getLength() { return length; }
+    public long getEndTime() { return startTime + length; }
+    public int getTempo() { return tempo; }
+    public int getTicksPerBeat() { return ticksPerBeat; }
+    public int getTimeSignature() { return timeSignature; }
+    
+    // Unmodifiable views, elements are created on access
+    // 不可修改视图，元素在访问时创建
+    public List<Note> getMelody() { return melody.asList(); }
+    public List<Chord> getChords() { return chords.asList(); }
+    public List<Note> getBassLine() { return bassLine.asList(); }
+    
+    // Direct track access for generators and exporters in this package
+    // 供本包内生成器和导出器直接访问轨道
+    NoteTrack getMelodyTrack() { return melody; }
+    ChordTrack getChordTrack() { return chords; }
+    NoteTrack getBassTrack() { return bassLine; }
+    
+    public void forEachMelodyNote(NoteVisitor visitor) { melody.forEach(visitor); }
+    public void forEachChordNote(NoteVisitor visitor) { chords.forEachNote(visitor); }
+    public void forEachBassNote(NoteVisitor visitor) { bassLine.forEach(visitor); }
+    
+    /**
+     * Append this measure's notes to a piece, e.g. to collect a finite stream
+     * 将本小节的音符追加到作品中，例如用于收集有限的流
+     */
+    public void appendTo(MusicalPiece piece) {
+        melody.forEach(piece.getMelodyTrack()::add);
+        for (int i = 0; i < chords.size(); i++) {
+            piece.getChordTrack().add(chords, i);
+        }
+        bassLine.forEach(piece.getBassTrack()::add);
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("Measure{index=%d, startTime=%d, melody=%d notes, chords=%d, bass=%d notes}",
+                           index, startTime, melody.size(), chords.size(), bassLine.size());
+    }
+} 
\ No newline at end of file
@@ -0,0 +1,66 @@
+package com.musicgenerator;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Lazily generates measures one at a time from a MusicGenerator
+ * 从MusicGenerator逐个惰性生成小节
+ *
+ * Nothing is retained between measures, so memory stays constant no matter how long
+ * the stream runs. The chord progression is chosen once when the stream is created.
+ * Not thread-safe: it shares the generator's random source.
+ * 小节之间不保留任何数据，因此无论流运行多久内存都保持恒定。
+ * 和弦进行在创建流时确定一次。不是线程安全的：它共享生成器的随机源。
+ */
+public class MeasureStream implements Iterator<Measure> {
+    private final MusicGenerator generator;
+    private final int[] progression;
+    private final int timeSignature;
+    private final long measures;
+    private long nextIndex;
+    
+    MeasureStream(MusicGenerator generator, int[] progression, int timeSignature, long measures) {
+        this.generator = generator;
+        this.progression = progression;
+        this.timeSignature = timeSignature;
+        this.measures = measures;
+        this.nextIndex = 0;
+    }
+    
+    @Override
+    public boolean hasNext() {
+        return nextIndex < measures;
+    }
+    
+    @Override
+    public Measure next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException("Measure stream exhausted after " + measures + " measures");
+        }
+        return generator.generateMeasure(progression, nextIndex++, timeSignature);
+    }
+    
+    /**
+     * Number of measures generated so far
+     * 目前已生成的小节数
+     */
+    public long getGeneratedCount() { return nextIndex; }
+    
+    /**
+     * Sequential java.util.stream view of the remaining measures
+     * 剩余小节的顺序java.util.stream视图
+     */
+    public Stream<Measure> stream() {
+        long remaining = measures - nextIndex;
+        int characteristics = Spliterator.ORDERED | Spliterator.NONNULL;
+        Spliterator<Measure> spliterator = measures == Long.MAX_VALUE
+                ? Spliterators.spliteratorUnknownSize(this, characteristics)
+                : Spliterators.spliterator(this, remaining, characteristics);
+        return StreamSupport.stream(spliterator, false);
+    }
+} 
\ No newline at end of file
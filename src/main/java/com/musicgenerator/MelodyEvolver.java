@@ -0,0 +1,650 @@
+package com.musicgenerator;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Genetic-algorithm melody: evolves a population of melodies over a fixed chord progression
+ * 遗传算法旋律：在固定的和弦进行之上演化一个旋律种群
+ *
+ * A genome holds two genes per beat: a pitch, as an index into the scale notes from an octave
+ * below to an octave above the root, and a rhythm code (a whole, half or quarter beat note, or
+ * holding the previous note). Fitness rewards chord tones and notes MusicTheory.isConsonant
+ * finds consonant with the chord root, a singable contour (steps, leaps answered by a step
+ * back, a limited range) and as many different rhythms per measure as the rhythm variety asks
+ * for. Each generation keeps the best genomes, then fills the rest by tournament selection,
+ * one-point crossover and mutation by scale steps.
+ * 每个基因组每拍有两个基因：音高（根音下方一个八度到上方一个八度之间音阶音的索引）和节奏编码
+ * （整拍、半拍或四分之一拍的音符，或延续前一个音）。适应度奖励和弦音以及按MusicTheory.isConsonant
+ * 与和弦根音协和的音、易于演唱的轮廓（级进、跳进后反向级进、有限的音域），以及符合节奏变化
+ * 要求的每小节节奏种类数。每一代保留最佳基因组，其余通过锦标赛选择、单点交叉和按音阶级数的变异产生。
+ *
+ * Genomes live in flat byte arrays, and the per-beat harmony scores are computed once per
+ * run, so evaluating a genome allocates nothing. Breeding and evaluation run on a fork-join
+ * pool in fixed chunks of genomes, each chunk with its own random source reseeded every
+ * generation, so the result for a seed is the same for any number of threads.
+ * 基因组存放在平铺的字节数组中，每拍的和声得分每次运行只计算一次，因此评估基因组不分配任何内存。
+ * 繁殖和评估以固定大小的基因组块在fork-join池上运行，每块有自己的随机源并在每代重新设定种子，
+ * 因此对同一种子，无论线程数多少结果都相同。
+ */
+public class MelodyEvolver {
+    
+    private static final int CHUNK = 32;             // Genomes bred and evaluated per task
+    private static final int TOURNAMENT = 3;
+    
+    // Rhythm genes
+    // 节奏基因
+    private static final int WHOLE_BEAT = 0;
+    private static final int HALF_BEAT = 1;
+    private static final int QUARTER_BEAT = 2;
+    private static final int HOLD = 3;                // The previous note continues through this beat
+    private static final int RHYTHM_CODES = 4;
+    
+    // Fitness weights
+    // 适应度权重
+    private static final double CONSONANT = 1.0;
+    private static final double DISSONANT = -1.5;
+    private static final double CHORD_TONE = 1.0;
+    private static final double DOWNBEAT = 1.5;       // Multiplies the harmony score on beat 0
+    private static final double HELD_HARMONY = 0.5;   // Held notes count half against the new chord
+    private static final double LEAP_RECOVERY = 0.75;
+    private static final double SAME_DIRECTION_RUN = -0.5;   // Per note beyond four in one direction
+    private static final double WIDE_RANGE_PER_SEMITONE = -0.2;   // Beyond a tenth
+    private static final double NARROW_RANGE = -2.0;  // Under a fourth
+    private static final double RHYTHM_MISMATCH = -0.5;   // Per rhythm code off the target per measure
+    private static final double[] LEAP_SCORES = new double[128];
+    
+    static {
+        for (int leap = 0; leap < LEAP_SCORES.length; leap++) {
+            LEAP_SCORES[leap] = leap == 0 ? -0.75
+                    : leap <= 2 ? 1.0
+                    : leap <= 4 ? 0.5
+                    : leap <= 7 ? -0.25
+                    : -0.25 - 0.3 * (leap - 7);
+        }
+    }
+    
+    private final int threads;
+    private final int populationSize;
+    private final int generations;
+    private double mutationRate = 0.05;    // Per gene
+    private double crossoverRate = 0.9;
+    private int eliteCount = 2;
+    private int patience = 0;              // Stop after this many generations without improvement; 0 never stops early
+    
+    public MelodyEvolver() {
+        this(Runtime.getRuntime().availableProcessors(), 1000, 200);
+    }
+    
+    public MelodyEvolver(int threads, int populationSize, int generations) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be at least 1: " + threads);
+        }
+        if (populationSize < 2) {
+            throw new IllegalArgumentException("populationSize must be at least 2: " + populationSize);
+        }
+        if (generations < 0) {
+            throw new IllegalArgumentException("generations must not be negative: " + generations);
+        }
+        this.threads = threads;
+        this.populationSize = populationSize;
+        this.generations = generations;
+    }
+    
+    // Getters and setters
+    public int getThreads() { return threads; }
+    public int getPopulationSize() { return populationSize; }
+    public int getGenerations() { return generations; }
+    
+    public double getMutationRate() { return mutationRate; }
+    public void setMutationRate(double mutationRate) { this.mutationRate = checkRate("mutationRate", mutationRate); }
+    
+    public double getCrossoverRate() { return crossoverRate; }
+    public void setCrossoverRate(double crossoverRate) { this.crossoverRate = checkRate("crossoverRate", crossoverRate); }
+    
+    public int getEliteCount() { return eliteCount; }
+    public void setEliteCount(int eliteCount) {
+        if (eliteCount < 0 || eliteCount >= populationSize) {
+            throw new IllegalArgumentException("eliteCount must be between 0 and " + (populationSize - 1) + ": " + eliteCount);
+        }
+        this.eliteCount = eliteCount;
+    }
+    
+    public int getPatience() { return patience; }
+    public void setPatience(int patience) {
+        if (patience < 0) {
+            throw new IllegalArgumentException("patience must not be negative: " + patience);
+        }
+        this.patience = patience;
+    }
+    
+    private static double checkRate(String name, double rate) {
+        if (!(rate >= 0.0 && rate <= 1.0)) {
+            throw new IllegalArgumentException(name + " must be between 0 and 1: " + rate);
+        }
+        return rate;
+    }
+    
+    /**
+     * Evolve a melody over the chords, one chord per beat, and add the fittest to the melody track
+     * 在和弦（每拍一个）之上演化旋律，并将适应度最高者加入旋律轨道
+     *
+     * @param scale         scale of the chords, as returned by MusicTheory.getScale
+     * @param rhythmVariety 0.0 asks for one rhythm per measure, 1.0 for three
+     */
+    public Result evolve(ChordTrack chords, int[] scale, int timeSignature, int ticksPerBeat,
+                         double rhythmVariety, long seed, NoteTrack melody) {
+        Population population = new Population(chords, scale, timeSignature, rhythmVariety, seed);
+        double[] best = new double[generations + 1];
+        double[] mean = new double[generations + 1];
+        int threshold = Math.max(1, population.chunks / (threads * 4));
+        
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        long evaluations = 0;
+        int generation = 0;
+        int lastImprovement = 0;
+        long start = System.nanoTime();
+        try {
+            pool.invoke(new BreedTask(population, 0, population.chunks, threshold, 0));
+            evaluations += populationSize;
+            population.summarize(best, mean, 0);
+            
+            while (generation < generations && (patience == 0 || generation - lastImprovement < patience)) {
+                generation++;
+                pool.invoke(new BreedTask(population, 0, population.chunks, threshold, generation));
+                evaluations += populationSize - Math.min(eliteCount, populationSize);
+                population.summarize(best, mean, generation);
+                if (best[generation] > best[lastImprovement] + 1e-9) {
+                    lastImprovement = generation;
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+        long elapsed = System.nanoTime() - start;
+        
+        population.decode(population.elites[0], ticksPerBeat, melody);
+        return new Result(populationSize, generation, lastImprovement, evaluations, threads, elapsed,
+                          Arrays.copyOf(best, generation + 1), Arrays.copyOf(mean, generation + 1));
+    }
+    
+    /**
+     * Two generations of genomes in flat arrays, plus everything fitness needs precomputed
+     * 以平铺数组保存的两代基因组，以及适应度计算所需的全部预计算数据
+     */
+    private final class Population {
+        final int beats;
+        final int timeSignature;
+        final int chunks;
+        final int rhythmTarget;       // Different rhythm codes wanted per measure
+        final long seed;
+        final int[] candidates;       // Candidate pitches, ascending
+        final int candidateCount;
+        final double[] harmony;       // Per beat and candidate
+        final Random[] randoms;       // One per chunk, reseeded every generation
+        
+        byte[] pitches;
+        byte[] rhythms;
+        double[] fitness;
+        byte[] nextPitches;
+        byte[] nextRhythms;
+        double[] nextFitness;
+        final int[] elites;           // Indices of the best genomes of the current generation, best first
+        
+        Population(ChordTrack chords, int[] scale, int timeSignature, double rhythmVariety, long seed) {
+            this.beats = chords.size();
+            if (beats == 0) {
+                throw new IllegalArgumentException("No chords to evolve a melody over");
+            }
+            this.timeSignature = timeSignature;
+            this.chunks = (populationSize + CHUNK - 1) / CHUNK;
+            this.rhythmTarget = 1 + (int) Math.round(Math.max(0.0, Math.min(1.0, rhythmVariety)) * 2);
+            this.seed = seed;
+            
+            int degrees = scale.length - 1;   // The last scale entry is the octave
+            int[] pitches = new int[3 * degrees + 1];
+            int count = 0;
+            for (int octave = -1; octave <= 1; octave++) {
+                for (int degree = 0; degree < degrees; degree++) {
+                    int pitch = scale[degree] + 12 * octave;
+                    if (pitch >= 21 && pitch <= 108) {
+                        pitches[count++] = pitch;
+                    }
+                }
+            }
+            if (scale[degrees] + 12 <= 108) {
+                pitches[count++] = scale[degrees] + 12;
+            }
+            this.candidates = pitches;
+            this.candidateCount = count;
+            
+            // Harmony depends only on the beat and the pitch, so it is scored once here
+            // 和声得分只取决于拍和音高，因此在此只计算一次
+            this.harmony = new double[beats * candidateCount];
+            for (int i = 0; i < beats; i++) {
+                int noteCount = chords.getNoteCount(i);
+                int chordMask = 0;
+                for (int n = 0; n < noteCount; n++) {
+                    chordMask |= 1 << Math.floorMod(chords.getPitch(i, n), 12);
+                }
+                for (int c = 0; c < candidateCount; c++) {
+                    int pitch = candidates[c];
+                    double score = 0.0;
+                    if (noteCount > 0) {
+                        score += MusicTheory.isConsonant(pitch, chords.getRootPitch(i)) ? CONSONANT : DISSONANT;
+                    }
+                    if ((chordMask >>> (pitch % 12) & 1) != 0) {
+                        score += CHORD_TONE;
+                    }
+                    harmony[i * candidateCount + c] = i % timeSignature == 0 ? score * DOWNBEAT : score;
+                }
+            }
+            
+            this.randoms = new Random[chunks];
+            for (int i = 0; i < chunks; i++) {
+                randoms[i] = new Random();
+            }
+            long genes = (long) populationSize * beats;
+            if (genes > Integer.MAX_VALUE - 8) {
+                throw new IllegalArgumentException("Population too large: " + populationSize + " x " + beats + " beats");
+            }
+            this.pitches = new byte[(int) genes];
+            this.rhythms = new byte[(int) genes];
+            this.nextPitches = new byte[(int) genes];
+            this.nextRhythms = new byte[(int) genes];
+            this.fitness = new double[populationSize];
+            this.nextFitness = new double[populationSize];
+            this.elites = new int[Math.max(1, Math.min(eliteCount, populationSize))];
+        }
+        
+        /**
+         * Create (generation 0) or breed the genomes of one chunk into the next generation and evaluate them
+         * 创建（第0代）或繁殖一个块的基因组到下一代并评估它们
+         */
+        void breed(int chunk, int generation) {
+            Random random = randoms[chunk];
+            random.setSeed(BatchGenerator.pieceSeed(seed, generation * chunks + chunk));
+            int from = chunk * CHUNK;
+            int to = Math.min(populationSize, from + CHUNK);
+            for (int g = from; g < to; g++) {
+                int offset = g * beats;
+                if (generation == 0) {
+                    for (int i = 0; i < beats; i++) {
+                        nextPitches[offset + i] = (byte) random.nextInt(candidateCount);
+                        nextRhythms[offset + i] = (byte) (random.nextInt(4) == 0 ? random.nextInt(RHYTHM_CODES) : WHOLE_BEAT);
+                    }
+                } else if (g < eliteCount) {
+                    int elite = elites[g];
+                    System.arraycopy(pitches, elite * beats, nextPitches, offset, beats);
+                    System.arraycopy(rhythms, elite * beats, nextRhythms, offset, beats);
+                    nextFitness[g] = fitness[elite];
+                    continue;
+                } else {
+                    int first = select(random) * beats;
+                    int second = select(random) * beats;
+                    int cut = random.nextDouble() < crossoverRate ? 1 + random.nextInt(beats) : beats;
+                    System.arraycopy(pitches, first, nextPitches, offset, cut);
+                    System.arraycopy(rhythms, first, nextRhythms, offset, cut);
+                    System.arraycopy(pitches, second + cut, nextPitches, offset + cut, beats - cut);
+                    System.arraycopy(rhythms, second + cut, nextRhythms, offset + cut, beats - cut);
+                    mutate(random, offset);
+                }
+                nextFitness[g] = evaluate(nextPitches, nextRhythms, offset);
+            }
+        }
+        
+        private int select(Random random) {
+            int best = random.nextInt(populationSize);
+            for (int i = 1; i < TOURNAMENT; i++) {
+                int other = random.nextInt(populationSize);
+                if (fitness[other] > fitness[best]) {
+                    best = other;
+                }
+            }
+            return best;
+        }
+        
+        /**
+         * Move pitches by one or two scale steps, sometimes anywhere; redraw rhythms
+         * 将音高移动一到两个音阶级数，偶尔任意移动；重新抽取节奏
+         */
+        private void mutate(Random random, int offset) {
+            for (int i = offset; i < offset + beats; i++) {
+                if (random.nextDouble() < mutationRate) {
+                    int pitch;
+                    if (random.nextInt(4) == 0) {
+                        pitch = random.nextInt(candidateCount);
+                    } else {
+                        int step = random.nextBoolean() ? 1 + random.nextInt(2) : -1 - random.nextInt(2);
+                        pitch = Math.max(0, Math.min(candidateCount - 1, nextPitches[i] + step));
+                    }
+                    nextPitches[i] = (byte) pitch;
+                }
+                if (random.nextDouble() < mutationRate * 0.5) {
+                    nextRhythms[i] = (byte) random.nextInt(RHYTHM_CODES);
+                }
+            }
+        }
+        
+        /**
+         * Fitness per beat of one genome; reads only primitive arrays and allocates nothing
+         * 单个基因组每拍的适应度；只读取基本类型数组，不分配内存
+         */
+        double evaluate(byte[] genePitches, byte[] geneRhythms, int offset) {
+            double score = 0.0;
+            int previous = -1;           // Candidate index of the sounding note
+            int previousInterval = 0;
+            int run = 0;
+            int low = Integer.MAX_VALUE;
+            int high = Integer.MIN_VALUE;
+            int rhythmMask = 0;
+            for (int i = 0; i < beats; i++) {
+                int rhythm = geneRhythms[offset + i];
+                if (rhythm == HOLD && previous >= 0) {
+                    score += HELD_HARMONY * harmony[i * candidateCount + previous];
+                } else {
+                    int c = genePitches[offset + i];
+                    int pitch = candidates[c];
+                    score += harmony[i * candidateCount + c];
+                    if (previous >= 0) {
+                        int interval = pitch - candidates[previous];
+                        score += LEAP_SCORES[Math.abs(interval)];
+                        if (Math.abs(previousInterval) > 4 && Math.abs(interval) <= 2
+                                && (interval ^ previousInterval) < 0) {
+                            score += LEAP_RECOVERY;
+                        }
+                        run = interval != 0 && (interval ^ previousInterval) >= 0 && previousInterval != 0 ? run + 1 : 0;
+                        if (run >= 4) {
+                            score += SAME_DIRECTION_RUN;
+                        }
+                        previousInterval = interval;
+                    }
+                    low = Math.min(low, pitch);
+                    high = Math.max(high, pitch);
+                    previous = c;
+                }
+                rhythmMask |= 1 << rhythm;
+                if (i % timeSignature == timeSignature - 1 || i == beats - 1) {
+                    score += RHYTHM_MISMATCH * Math.abs(Integer.bitCount(rhythmMask) - rhythmTarget);
+                    rhythmMask = 0;
+                }
+            }
+            int range = high - low;
+            if (range > 16) {
+                score += WIDE_RANGE_PER_SEMITONE * (range - 16);
+            } else if (range < 5) {
+                score += NARROW_RANGE;
+            }
+            return score / beats;
+        }
+        
+        /**
+         * Swap in the bred generation, record its best and mean fitness and find its elites
+         * 换入新繁殖的一代，记录其最佳和平均适应度，并找出精英个体
+         */
+        void summarize(double[] best, double[] mean, int generation) {
+            byte[] swapPitches = pitches;
+            pitches = nextPitches;
+            nextPitches = swapPitches;
+            byte[] swapRhythms = rhythms;
+            rhythms = nextRhythms;
+            nextRhythms = swapRhythms;
+            double[] swapFitness = fitness;
+            fitness = nextFitness;
+            nextFitness = swapFitness;
+            
+            Arrays.fill(elites, -1);
+            double total = 0.0;
+            for (int g = 0; g < populationSize; g++) {
+                double value = fitness[g];
+                total += value;
+                int i = elites.length;
+                while (i > 0 && (elites[i - 1] < 0 || fitness[elites[i - 1]] < value)) {
+                    i--;
+                }
+                if (i < elites.length) {
+                    System.arraycopy(elites, i, elites, i + 1, elites.length - i - 1);
+                    elites[i] = g;
+                }
+            }
+            best[generation] = fitness[elites[0]];
+            mean[generation] = total / populationSize;
+        }
+        
+        /**
+         * Write one genome as melody notes
+         * 将一个基因组写为旋律音符
+         */
+        void decode(int genome, int ticksPerBeat, NoteTrack melody) {
+            int offset = genome * beats;
+            int velocity = 100;
+            int noteIndex = -1;
+            long noteStart = 0;
+            int notePitch = 0;
+            int noteDuration = 0;
+            for (int i = 0; i < beats; i++) {
+                int rhythm = rhythms[offset + i];
+                long start = (long) i * ticksPerBeat;
+                if (rhythm == HOLD && noteIndex >= 0) {
+                    noteDuration = (int) (start + ticksPerBeat - noteStart);
+                    continue;
+                }
+                if (noteIndex >= 0) {
+                    melody.add(notePitch, noteDuration, velocity, noteStart);
+                }
+                noteIndex = i;
+                noteStart = start;
+                notePitch = candidates[pitches[offset + i]];
+                noteDuration = rhythm == HALF_BEAT ? ticksPerBeat / 2 : rhythm == QUARTER_BEAT ? ticksPerBeat / 4 : ticksPerBeat;
+            }
+            if (noteIndex >= 0) {
+                melody.add(notePitch, noteDuration, velocity, noteStart);
+            }
+        }
+    }
+    
+    /**
+     * Recursively splits a range of chunks until it is small enough to breed directly
+     * 递归拆分块区间，直到足够小后直接繁殖
+     */
+    @SuppressWarnings("serial")   // Forked within one pool, never serialized
+    private static class BreedTask extends RecursiveAction {
+        private final Population population;
+        private final int from;
+        private final int to;
+        private final int threshold;
+        private final int generation;
+        
+        BreedTask(Population population, int from, int to, int threshold, int generation) {
+            this.population = population;
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+            this.generation = generation;
+        }
+        
+        @Override
+        protected void compute() {
+            if (to - from <= threshold) {
+                for (int chunk = from; chunk < to; chunk++) {
+                    population.breed(chunk, generation);
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new BreedTask(population, from, mid, threshold, generation),
+                      new BreedTask(population, mid, to, threshold, generation));
+        }
+    }
+    
+    /**
+     * Convergence and throughput of one evolution run
+     * 一次演化运行的收敛情况和吞吐量
+     */
+    public static class Result {
+        private final int populationSize;
+        private final int generations;
+        private final int lastImprovement;
+        private final long evaluations;
+        private final int threads;
+        private final long elapsedNanos;
+        private final double[] bestFitness;
+        private final double[] meanFitness;
+        MusicalPiece piece;
+        
+        Result(int populationSize, int generations, int lastImprovement, long evaluations, int threads,
+               long elapsedNanos, double[] bestFitness, double[] meanFitness) {
+            this.populationSize = populationSize;
+            this.generations = generations;
+            this.lastImprovement = lastImprovement;
+            this.evaluations = evaluations;
+            this.threads = threads;
+            this.elapsedNanos = elapsedNanos;
+            this.bestFitness = bestFitness;
+            this.meanFitness = meanFitness;
+        }
+        
+        // Getters
+        public int getPopulationSize() { return populationSize; }
+        public int getGenerations() { return generations; }
+        public long getEvaluations() { return evaluations; }
+        public int getThreads() { return threads; }
+        public long getElapsedNanos() { return elapsedNanos; }
+        public double getBestFitness() { return bestFitness[bestFitness.length - 1]; }
+        public MusicalPiece getPiece() { return piece; }
+        
+        /**
+         * Generation at which the best fitness last improved
+         * 最佳适应度最后一次提高时的代数
+         */
+        public int getConvergedGeneration() { return lastImprovement; }
+        
+        /**
+         * Best and mean fitness of generation 0 through getGenerations()
+         * 第0代到第getGenerations()代的最佳和平均适应度
+         */
+        public double[] getBestFitnessHistory() { return bestFitness.clone(); }
+        public double[] getMeanFitnessHistory() { return meanFitness.clone(); }
+        
+        /**
+         * Fitness evaluations per wall-clock second
+         * 每秒的适应度评估次数
+         */
+        public double getEvaluationsPerSecond() {
+            return elapsedNanos == 0 ? 0.0 : evaluations * 1_000_000_000.0 / elapsedNanos;
+        }
+        
+        @Override
+        public String toString() {
+            return String.format("Evolution{population=%d, generations=%d, converged=%d, best=%.3f, evaluations=%d, "
+                               + "threads=%d, elapsed=%.1fms, throughput=%.0f evaluations/s}",
+                               populationSize, generations, lastImprovement, getBestFitness(), evaluations,
+                               threads, elapsedNanos / 1_000_000.0, getEvaluationsPerSecond());
+        }
+    }
+    
+    /**
+     * Evolve one piece on the command line and report convergence and throughput
+     * 在命令行中演化一个作品，并报告收敛情况和吞吐量
+     *
+     * @return process exit code: 0 on success, 1 on I/O errors, 2 on bad arguments
+     */
+    public static int run(String[] args, PrintStream out) {
+        Path output = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int population = 1000;
+        int generationCount = 200;
+        int measures = 8;
+        long seed = System.nanoTime();
+        MusicTheory.ScaleType scale = null;
+        MelodyEvolver evolver;
+        try {
+            Double mutation = null;
+            Double crossover = null;
+            Integer patience = null;
+            for (int i = 0; i < args.length; i++) {
+                if (i + 1 >= args.length) {
+                    throw new IllegalArgumentException("Missing value for " + args[i]);
+                }
+                String value = args[++i];
+                switch (args[i - 1]) {
+                    case "--evolve": output = Paths.get(value); break;
+                    case "--threads": threads = Integer.parseInt(value); break;
+                    case "--population": population = Integer.parseInt(value); break;
+                    case "--generations": generationCount = Integer.parseInt(value); break;
+                    case "--measures": measures = Integer.parseInt(value); break;
+                    case "--seed": seed = Long.parseLong(value); break;
+                    case "--mutation": mutation = Double.parseDouble(value); break;
+                    case "--crossover": crossover = Double.parseDouble(value); break;
+                    case "--patience": patience = Integer.parseInt(value); break;
+                    case "--scale":
+                        try {
+                            scale = MusicTheory.ScaleType.valueOf(value.toUpperCase());
+                        } catch (IllegalArgumentException e) {
+                            throw new IllegalArgumentException("Unknown scale: " + value);
+                        }
+                        break;
+                    default: throw new IllegalArgumentException("Unknown option: " + args[i - 1]);
+                }
+            }
+            if (output == null) {
+                throw new IllegalArgumentException("--evolve FILE.mid is required");
+            }
+            if (measures < 1) {
+                throw new IllegalArgumentException("--measures must be at least 1: " + measures);
+            }
+            evolver = new MelodyEvolver(threads, population, generationCount);
+            if (mutation != null) {
+                evolver.setMutationRate(mutation);
+            }
+            if (crossover != null) {
+                evolver.setCrossoverRate(crossover);
+            }
+            if (patience != null) {
+                evolver.setPatience(patience);
+            }
+        } catch (IllegalArgumentException e) {
+            out.println("Error: " + e.getMessage());
+            out.println("Usage: MusicGeneratorApp --evolve FILE.mid [--population N] [--generations N] [--threads N]");
+            out.println("       [--measures N] [--scale TYPE] [--seed N] [--mutation RATE] [--crossover RATE] [--patience N]");
+            return 2;
+        }
+        
+        MusicGenerator generator = new MusicGenerator(seed);
+        if (scale != null) {
+            generator.setScale(scale, 60);
+        }
+        Result result = generator.generateEvolvedPiece(measures, 4, evolver);
+        try {
+            Files.write(output, new SmfWriter().toByteArray(result.getPiece()));
+        } catch (IOException e) {
+            out.println("Error: cannot write " + output + ": " + e.getMessage());
+            return 1;
+        }
+        
+        out.println("=== Evolution Summary ===");
+        out.println("Seed: " + seed);
+        out.println("Generation  best      mean");
+        double[] best = result.bestFitness;
+        double[] mean = result.meanFitness;
+        int step = Math.max(1, best.length / 10);
+        for (int g = 0; g < best.length; g += step) {
+            out.printf("%10d  %8.3f  %8.3f%n", g, best[g], mean[g]);
+        }
+        if ((best.length - 1) % step != 0) {
+            out.printf("%10d  %8.3f  %8.3f%n", best.length - 1, best[best.length - 1], mean[best.length - 1]);
+        }
+        out.printf("Converged at generation %d of %d%n", result.getConvergedGeneration(), result.getGenerations());
+        out.printf("Evaluations: %d in %.2fs on %d threads, %.0f evaluations/s%n", result.getEvaluations(),
+                   result.getElapsedNanos() / 1e9, result.getThreads(), result.getEvaluationsPerSecond());
+        out.println("Written to " + output.toAbsolutePath());
+        return 0;
+    }
+} 
\ No newline at end of file
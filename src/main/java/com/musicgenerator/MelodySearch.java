@@ -0,0 +1,347 @@
+package com.musicgenerator;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Beam-search melody: chooses the pitch of every beat for smooth voice leading over the chords
+ * 集束搜索旋律：为每一拍选择音高，使旋律在和弦之上声部进行平滑
+ *
+ * Candidates are the scale notes from an octave below to an octave above the root. A melody
+ * is scored note by note: chord tones score higher, more so on the downbeat; notes that
+ * MusicTheory.isConsonant finds consonant with the bass note (the chord root, which the bass
+ * line doubles) score higher; steps are preferred to leaps, and leaps beyond a fifth cost
+ * more the wider they are. A small seeded jitter, scaled by melody complexity, keeps pieces
+ * apart. The search keeps the beamWidth best partial melodies per beat, merging those that
+ * end on the same note, and the leap scores between candidates are memoized per scale.
+ * 候选音为根音下方一个八度到上方一个八度之间的音阶音。旋律逐音评分：和弦音得分更高，
+ * 强拍上更高；按MusicTheory.isConsonant与低音（即低音线所加倍的和弦根音）协和的音得分更高；
+ * 级进优于跳进，超过五度的跳进越宽代价越大。由旋律复杂度缩放的少量种子抖动使作品彼此不同。
+ * 搜索每拍保留beamWidth个最佳的部分旋律，并合并结束于同一音的旋律；候选音之间的跳进得分按音阶缓存。
+ *
+ * Every measure has a hard time budget. A greedy pass that only looks one note ahead runs
+ * first; if the beam search runs past the budget its result is dropped and the greedy melody
+ * is used, so the time per measure stays bounded. Because of that, with a budget the melody
+ * for a seed can depend on machine load; a budget of 0 means no limit and reproducible output.
+ * 每个小节都有严格的时间预算。先运行只向前看一个音的贪心搜索；若集束搜索超出预算，
+ * 则丢弃其结果并使用贪心旋律，因此每小节的耗时有界。也因此在有预算时，同一种子的旋律
+ * 可能取决于机器负载；预算为0表示不限时，输出可重现。
+ */
+public class MelodySearch {
+    
+    public static final int DEFAULT_BEAM_WIDTH = 8;
+    public static final long DEFAULT_BUDGET_NANOS = 200_000;
+    
+    // Score weights
+    // 评分权重
+    private static final double CHORD_TONE = 2.0;
+    private static final double DOWNBEAT_CHORD_TONE = 1.0;   // Added to CHORD_TONE on beat 0
+    private static final double CONSONANT = 1.0;
+    private static final double DISSONANT = -2.0;
+    private static final double REPEATED_NOTE = -1.0;
+    private static final double STEP = 1.0;                  // 1 or 2 semitones
+    private static final double THIRD = 0.5;                 // 3 or 4 semitones
+    private static final double FOURTH_OR_FIFTH = -0.5;      // 5 to 7 semitones
+    private static final double WIDE_LEAP_PER_SEMITONE = -0.35;
+    private static final double REGISTER_PER_SEMITONE = -0.04;   // Distance from the fifth above the root
+    private static final double JITTER = 1.5;
+    
+    private final int beamWidth;
+    private final long budgetNanos;
+    private final LongAdder searches = new LongAdder();
+    private final LongAdder fallbacks = new LongAdder();
+    
+    public MelodySearch() {
+        this(DEFAULT_BEAM_WIDTH, DEFAULT_BUDGET_NANOS);
+    }
+    
+    /**
+     * @param beamWidth   partial melodies kept per beat
+     * @param budgetNanos time limit per measure, or 0 for no limit
+     */
+    public MelodySearch(int beamWidth, long budgetNanos) {
+        if (beamWidth < 1) {
+            throw new IllegalArgumentException("beamWidth must be at least 1: " + beamWidth);
+        }
+        if (budgetNanos < 0) {
+            throw new IllegalArgumentException("budgetNanos must not be negative: " + budgetNanos);
+        }
+        this.beamWidth = beamWidth;
+        this.budgetNanos = budgetNanos;
+    }
+    
+    // Getters
+    public int getBeamWidth() { return beamWidth; }
+    public long getBudgetNanos() { return budgetNanos; }
+    
+    // Counters, shared by every generator using this search
+    public long getSearches() { return searches.sum(); }
+    public long getFallbacks() { return fallbacks.sum(); }
+    
+    /**
+     * Per-generator search buffers
+     * 每个生成器的搜索缓冲区
+     */
+    Searcher newSearcher() {
+        return new Searcher();
+    }
+    
+    // Searches are equal when they produce the same melodies; counters are not compared
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof MelodySearch)) {
+            return false;
+        }
+        MelodySearch other = (MelodySearch) o;
+        return beamWidth == other.beamWidth && budgetNanos == other.budgetNanos;
+    }
+    
+    @Override
+    public int hashCode() {
+        return Objects.hash(beamWidth, budgetNanos);
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("MelodySearch{beam=%d, budget=%s, searches=%d, fallbacks=%d}", beamWidth,
+                             budgetNanos == 0 ? "none" : budgetNanos / 1000 + "us", getSearches(), getFallbacks());
+    }
+    
+    private static double leapScore(int from, int to) {
+        int leap = Math.abs(to - from);
+        if (leap == 0) {
+            return REPEATED_NOTE;
+        } else if (leap <= 2) {
+            return STEP;
+        } else if (leap <= 4) {
+            return THIRD;
+        } else if (leap <= 7) {
+            return FOURTH_OR_FIFTH;
+        }
+        return FOURTH_OR_FIFTH + WIDE_LEAP_PER_SEMITONE * (leap - 7);
+    }
+    
+    /**
+     * Uniform value in [0, 1) from a seed and a position, via the SplitMix64 finalizer
+     * 通过SplitMix64混合函数，由种子和位置得到[0, 1)内的均匀值
+     */
+    private static double jitter(long salt, int beat, int candidate) {
+        long z = salt + 0x9E3779B97F4A7C15L * (beat * 64L + candidate + 1);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return ((z ^ (z >>> 31)) >>> 11) * 0x1.0p-53;
+    }
+    
+    /**
+     * Search buffers reused from measure to measure; not thread-safe
+     * 在小节之间复用的搜索缓冲区；不是线程安全的
+     */
+    final class Searcher {
+        private int[] scale;                        // Scale the candidates were built for, by identity
+        private int[] candidates = new int[0];
+        private int candidateCount;
+        private double[] leapScores = new double[0];   // Memoized, candidateCount x candidateCount
+        private double[] noteScores = new double[0];   // Per beat and candidate
+        private double[] pathScores = new double[0];   // Best melody ending on each beat and candidate
+        private int[] parents = new int[0];
+        private int[] beam = new int[beamWidth];
+        private int beamSize;
+        
+        /**
+         * Choose the pitches of the given beats of one measure
+         * 为一个小节中给定的拍选择音高
+         *
+         * @param beats         beat numbers within the measure that start a note, ascending
+         * @param firstChord    index of the chord on beat 0 of the measure; there is one chord per beat
+         * @param previousPitch last melody pitch before this measure, or -1
+         * @param salt          random seed for the jitter
+         * @param pitches       receives one pitch per entry of beats
+         */
+        void search(int[] scale, ChordTrack chords, int firstChord, int[] beats, int beatCount,
+                    int previousPitch, long salt, double complexity, int[] pitches) {
+            if (beatCount == 0) {
+                return;
+            }
+            long start = System.nanoTime();
+            long deadline = budgetNanos == 0 ? Long.MAX_VALUE : start + budgetNanos;
+            prepare(scale);
+            scoreNotes(scale[0] + 7, chords, firstChord, beats, beatCount, previousPitch, salt, complexity);
+            
+            greedy(beatCount, pitches);
+            boolean complete = System.nanoTime() < deadline && beamSearch(beatCount, deadline, pitches);
+            
+            searches.increment();
+            if (!complete) {
+                fallbacks.increment();
+            }
+            GenerationMetrics.getInstance().recordMelodySearch(System.nanoTime() - start, !complete);
+        }
+        
+        /**
+         * Build the candidates and their leap scores when the scale changes
+         * 音阶变化时重建候选音及其跳进得分
+         */
+        private void prepare(int[] scale) {
+            if (scale == this.scale) {
+                return;
+            }
+            this.scale = scale;
+            int degrees = scale.length - 1;   // The last scale entry is the octave
+            candidates = new int[3 * degrees + 1];
+            candidateCount = 0;
+            for (int octave = -1; octave <= 1; octave++) {
+                for (int degree = 0; degree < degrees; degree++) {
+                    addCandidate(scale[degree] + 12 * octave);
+                }
+            }
+            addCandidate(scale[degrees] + 12);
+            
+            leapScores = new double[candidateCount * candidateCount];
+            for (int from = 0; from < candidateCount; from++) {
+                for (int to = 0; to < candidateCount; to++) {
+                    leapScores[from * candidateCount + to] = leapScore(candidates[from], candidates[to]);
+                }
+            }
+            beam = new int[Math.min(beamWidth, candidateCount)];
+        }
+        
+        private void addCandidate(int pitch) {
+            if (pitch >= 21 && pitch <= 108) {
+                candidates[candidateCount++] = pitch;
+            }
+        }
+        
+        /**
+         * Everything that depends on one note only: harmony, register, jitter, and the leap
+         * from the previous measure's last note into the first beat
+         * 只依赖单个音的得分：和声、音区、抖动，以及从上一小节最后一个音进入第一拍的跳进
+         */
+        private void scoreNotes(int center, ChordTrack chords, int firstChord, int[] beats, int beatCount,
+                                int previousPitch, long salt, double complexity) {
+            int size = beatCount * candidateCount;
+            if (noteScores.length < size) {
+                noteScores = new double[size];
+                pathScores = new double[size];
+                parents = new int[size];
+            }
+            double jitterWeight = JITTER * (0.5 + complexity);
+            for (int k = 0; k < beatCount; k++) {
+                int chord = Math.min(firstChord + beats[k], chords.size() - 1);
+                int chordMask = 0;
+                int noteCount = chords.getNoteCount(chord);
+                for (int n = 0; n < noteCount; n++) {
+                    chordMask |= 1 << Math.floorMod(chords.getPitch(chord, n), 12);
+                }
+                int bass = noteCount == 0 ? -1 : chords.getRootPitch(chord);
+                double chordTone = beats[k] == 0 ? CHORD_TONE + DOWNBEAT_CHORD_TONE : CHORD_TONE;
+                
+                for (int c = 0; c < candidateCount; c++) {
+                    int pitch = candidates[c];
+                    double score = REGISTER_PER_SEMITONE * Math.abs(pitch - center)
+                                   + jitterWeight * jitter(salt, k, c);
+                    if ((chordMask >>> (pitch % 12) & 1) != 0) {
+                        score += chordTone;
+                    }
+                    if (bass >= 0) {
+                        score += MusicTheory.isConsonant(pitch, bass) ? CONSONANT : DISSONANT;
+                    }
+                    if (k == 0 && previousPitch >= 0) {
+                        score += leapScore(previousPitch, pitch);
+                    }
+                    noteScores[k * candidateCount + c] = score;
+                }
+            }
+        }
+        
+        /**
+         * Best next note at every beat; cheap, and the fallback when the budget runs out
+         * 每拍选择最佳的下一个音；代价低，也是预算用完时的后备结果
+         */
+        private void greedy(int beatCount, int[] pitches) {
+            int previous = -1;
+            for (int k = 0; k < beatCount; k++) {
+                int best = 0;
+                double bestScore = Double.NEGATIVE_INFINITY;
+                for (int c = 0; c < candidateCount; c++) {
+                    double score = noteScores[k * candidateCount + c]
+                                   + (previous < 0 ? 0.0 : leapScores[previous * candidateCount + c]);
+                    if (score > bestScore) {
+                        bestScore = score;
+                        best = c;
+                    }
+                }
+                pitches[k] = candidates[best];
+                previous = best;
+            }
+        }
+        
+        /**
+         * Beam search over the beats; leaves pitches untouched and returns false past the deadline
+         * 在各拍上进行集束搜索；超过截止时间时不修改pitches并返回false
+         */
+        private boolean beamSearch(int beatCount, long deadline, int[] pitches) {
+            System.arraycopy(noteScores, 0, pathScores, 0, candidateCount);
+            Arrays.fill(parents, 0, candidateCount, -1);
+            selectBeam(0);
+            
+            for (int k = 1; k < beatCount; k++) {
+                int row = k * candidateCount;
+                int previousRow = row - candidateCount;
+                Arrays.fill(pathScores, row, row + candidateCount, Double.NEGATIVE_INFINITY);
+                // Paths ending on the same candidate are merged, keeping the best
+                // 结束于同一候选音的路径被合并，保留最佳者
+                for (int b = 0; b < beamSize; b++) {
+                    int from = beam[b];
+                    double base = pathScores[previousRow + from];
+                    int leapRow = from * candidateCount;
+                    for (int c = 0; c < candidateCount; c++) {
+                        double score = base + leapScores[leapRow + c] + noteScores[row + c];
+                        if (score > pathScores[row + c]) {
+                            pathScores[row + c] = score;
+                            parents[row + c] = from;
+                        }
+                    }
+                }
+                selectBeam(k);
+                if (System.nanoTime() >= deadline) {
+                    return false;
+                }
+            }
+            
+            int best = beam[0];
+            for (int k = beatCount - 1; k >= 0; k--) {
+                pitches[k] = candidates[best];
+                best = parents[k * candidateCount + best];
+            }
+            return true;
+        }
+        
+        /**
+         * Keep the highest-scoring candidates of a beat, best first
+         * 保留该拍得分最高的候选音，最佳者在前
+         */
+        private void selectBeam(int k) {
+            int row = k * candidateCount;
+            beamSize = 0;
+            for (int c = 0; c < candidateCount; c++) {
+                double score = pathScores[row + c];
+                if (score == Double.NEGATIVE_INFINITY) {
+                    continue;
+                }
+                int i = beamSize < beam.length ? beamSize++ : beam.length;
+                if (i == beam.length && score <= pathScores[row + beam[i - 1]]) {
+                    continue;
+                }
+                if (i == beam.length) {
+                    i--;
+                }
+                while (i > 0 && pathScores[row + beam[i - 1]] < score) {
+                    beam[i] = beam[i - 1];
+                    i--;
+                }
+                beam[i] = c;
+            }
+        }
+    }
+} 
\ No newline at end of file
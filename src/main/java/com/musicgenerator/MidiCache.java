@@ -0,0 +1,220 @@
+package com.musicgenerator;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded LRU cache of encoded MIDI files keyed by seed and generation parameters
+ * 以种子和生成参数为键、有容量上限的已编码MIDI文件LRU缓存
+ *
+ * Seeded generation is deterministic as long as any melody search runs without a time
+ * budget, so a (seed, parameters) pair always encodes to the same bytes; callers must not
+ * cache pieces from a budgeted search. Entries are evicted least-recently-used first once their total size
+ * exceeds the byte budget. Concurrent requests for a key that is being generated wait
+ * for that one generation instead of starting their own.
+ * 只要旋律搜索不设时间预算，带种子的生成就是确定性的，因此（种子，参数）组合总是编码为相同的字节；
+ * 调用方不得缓存来自有预算搜索的作品。
+ * 当条目总大小超过字节预算时，按最近最少使用的顺序淘汰。
+ * 对正在生成的键的并发请求会等待同一次生成，而不是各自重新生成。
+ */
+public class MidiCache {
+    
+    private final long maxBytes;
+    private final LinkedHashMap<Key, byte[]> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private final ConcurrentHashMap<Key, CompletableFuture<byte[]>> inFlight = new ConcurrentHashMap<>();
+    private long currentBytes;
+    
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder collapsed = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    
+    public MidiCache(long maxBytes) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("maxBytes must not be negative: " + maxBytes);
+        }
+        this.maxBytes = maxBytes;
+    }
+    
+    /**
+     * Encoded MIDI for the seed and parameters, generating it on a miss.
+     * The returned array is shared with the cache and must not be modified.
+     * 返回种子和参数对应的已编码MIDI，未命中时生成。返回的数组与缓存共享，不得修改。
+     */
+    public byte[] get(GenerationParameters params, long seed) {
+        GenerationParameters snapshot = params.copy();
+        Key key = new Key(snapshot, seed);
+        synchronized (this) {
+            byte[] cached = entries.get(key);
+            if (cached != null) {
+                hits.increment();
+                return cached;
+            }
+        }
+        
+        CompletableFuture<byte[]> mine = new CompletableFuture<>();
+        CompletableFuture<byte[]> pending = inFlight.putIfAbsent(key, mine);
+        if (pending != null) {
+            collapsed.increment();
+            try {
+                return pending.join();
+            } catch (CompletionException e) {
+                throw rethrow(e.getCause());
+            }
+        }
+        
+        try {
+            // Another thread may have finished this key between the lookup and putIfAbsent
+            // 另一个线程可能在查找和putIfAbsent之间已完成该键
+            synchronized (this) {
+                byte[] cached = entries.get(key);
+                if (cached != null) {
+                    hits.increment();
+                    mine.complete(cached);
+                    return cached;
+                }
+            }
+            misses.increment();
+            byte[] midi = new SmfWriter().toByteArray(BatchGenerator.generateOne(snapshot, seed));
+            put(key, midi);
+            mine.complete(midi);
+            return midi;
+        } catch (RuntimeException | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+    
+    private synchronized void put(Key key, byte[] midi) {
+        if (midi.length > maxBytes) {
+            return; // Never cache an entry that would evict everything else
+        }
+        byte[] previous = entries.put(key, midi);
+        currentBytes += midi.length - (previous == null ? 0 : previous.length);
+        
+        Iterator<Map.Entry<Key, byte[]>> eldest = entries.entrySet().iterator();
+        while (currentBytes > maxBytes && eldest.hasNext()) {
+            Map.Entry<Key, byte[]> entry = eldest.next();
+            currentBytes -= entry.getValue().length;
+            eldest.remove();
+            evictions.increment();
+        }
+    }
+    
+    private static RuntimeException rethrow(Throwable cause) {
+        if (cause instanceof RuntimeException) {
+            return (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return new IllegalStateException(cause);
+    }
+    
+    /**
+     * Drop all cached entries; counters are kept
+     * 清除所有缓存条目；计数器保留
+     */
+    public synchronized void clear() {
+        entries.clear();
+        currentBytes = 0;
+    }
+    
+    // Getters
+    public long getMaxBytes() { return maxBytes; }
+    public synchronized long getCurrentBytes() { return currentBytes; }
+    public synchronized int size() { return entries.size(); }
+    public long getHits() { return hits.sum(); }
+    public long getMisses() { return misses.sum(); }
+    public long getCollapsed() { return collapsed.sum(); }
+    public long getEvictions() { return evictions.sum(); }
+    
+    /**
+     * Fraction of requests served without generating (hits and collapsed waits)
+     * 无需生成即得到响应的请求比例（命中和合并等待）
+     */
+    public double getHitRatio() {
+        long served = hits.sum() + collapsed.sum();
+        long total = served + misses.sum();
+        return total == 0 ? 0.0 : (double) served / total;
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("MidiCache{entries=%d, bytes=%d/%d, hits=%d, misses=%d, collapsed=%d, evictions=%d, hitRatio=%.2f}",
+                           size(), getCurrentBytes(), maxBytes, getHits(), getMisses(), getCollapsed(),
+                           getEvictions(), getHitRatio());
+    }
+    
+    /**
+     * Immutable snapshot of everything that determines the generated bytes
+     * 决定生成字节的所有因素的不可变快照
+     */
+    private static final class Key {
+        private final long seed;
+        private final MusicTheory.ScaleType scaleType;
+        private final int rootNote;
+        private final int tempo;
+        private final int ticksPerBeat;
+        private final int measures;
+        private final int timeSignature;
+        private final double melodyComplexity;
+        private final double harmonyComplexity;
+        private final double rhythmVariety;
+        private final MarkovMelodyModel melodyModel;   // Models are compared by identity
+        private final ChordProgressionModel progressionModel;
+        private final List<Voice.Spec> voices;         // Immutable
+        private final MelodySearch melodySearch;       // Compared by settings
+        
+        Key(GenerationParameters params, long seed) {
+            this.seed = seed;
+            this.scaleType = params.getScaleType();
+            // The root is ignored when the scale is chosen randomly
+            // 随机选择音阶时忽略根音
+            this.rootNote = scaleType == null ? -1 : params.getRootNote();
+            this.tempo = params.getTempo();
+            this.ticksPerBeat = params.getTicksPerBeat();
+            this.measures = params.getMeasures();
+            this.timeSignature = params.getTimeSignature();
+            this.melodyComplexity = params.getMelodyComplexity();
+            this.harmonyComplexity = params.getHarmonyComplexity();
+            this.rhythmVariety = params.getRhythmVariety();
+            this.melodyModel = params.getMelodyModel();
+            this.progressionModel = params.getProgressionModel();
+            this.voices = params.getVoices();
+            this.melodySearch = params.getMelodySearch();
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return seed == other.seed && scaleType == other.scaleType && rootNote == other.rootNote
+                    && tempo == other.tempo && ticksPerBeat == other.ticksPerBeat
+                    && measures == other.measures && timeSignature == other.timeSignature
+                    && Double.compare(melodyComplexity, other.melodyComplexity) == 0
+                    && Double.compare(harmonyComplexity, other.harmonyComplexity) == 0
+                    && Double.compare(rhythmVariety, other.rhythmVariety) == 0
+                    && melodyModel == other.melodyModel && progressionModel == other.progressionModel
+                    && voices.equals(other.voices) && Objects.equals(melodySearch, other.melodySearch);
+        }
+        
+        @Override
+        public int hashCode() {
+            return Objects.hash(seed, scaleType, rootNote, tempo, ticksPerBeat, measures, timeSignature,
+                                melodyComplexity, harmonyComplexity, rhythmVariety,
+                                System.identityHashCode(melodyModel), System.identityHashCode(progressionModel),
+                                voices, melodySearch);
+        }
+    }
+} 
\ No newline at end of file
@@ -3,7 +3,8 @@ package com.musicgenerator;
 import javax.sound.midi.*;
 import java.io.File;
 import java.io.IOException;
-import java.util.List;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 
 /**
  * Exports musical pieces to MIDI files
@@ -19,10 +20,48 @@ public class MidiExporter {
      * 将音乐作品导出为MIDI文件
      */
     public static void exportToMidi(MusicalPiece piece, String filename) throws Exception {
+        Sequence sequence = buildSequence(piece);
+        
+        // Write to file
+        // 写入文件
+        File file = new File(filename);
+        long start = System.nanoTime();
+        MidiSystem.write(sequence, 1, file);
+        GenerationMetrics.getInstance().getSequenceWrite().recordSince(start);
+        GenerationMetrics.getInstance().recordMidiOutput(countEvents(sequence), file.length());
+        System.out.println("MIDI file exported successfully: " + filename);
+    }
+    
+    /**
+     * Export a musical piece as a Standard MIDI File to an output stream
+     * 将音乐作品以标准MIDI文件格式写入输出流
+     */
+    public static void exportToMidi(MusicalPiece piece, OutputStream out) throws Exception {
+        Sequence sequence = buildSequence(piece);
+        long start = System.nanoTime();
+        int bytes = MidiSystem.write(sequence, 1, out);
+        GenerationMetrics.getInstance().getSequenceWrite().recordSince(start);
+        GenerationMetrics.getInstance().recordMidiOutput(countEvents(sequence), bytes);
+    }
+    
+    private static long countEvents(Sequence sequence) {
+        long events = 0;
+        for (Track track : sequence.getTracks()) {
+            events += track.size();
+        }
+        return events;
+    }
+    
+    /**
+     * Build the MIDI sequence for a musical piece
+     * 为音乐作品构建MIDI序列
+     */
+    private static Sequence buildSequence(MusicalPiece piece) throws InvalidMidiDataException {
+        long start = System.nanoTime();
+        
         // Create MIDI sequence
         // 创建MIDI序列
         Sequence sequence = new Sequence(Sequence.PPQ, piece.getTicksPerBeat());
-        Track[] tracks = sequence.getTracks();
         
         // Track 0: Meta events (tempo, time signature)
         // 轨道0：元事件（速度、拍号）
@@ -32,22 +71,30 @@ public class MidiExporter {
         // Track 1: Melody (usually piano or lead instrument)
         // 轨道1：旋律（通常是钢琴或主奏乐器）
         Track melodyTrack = sequence.createTrack();
-        addNotesToTrack(melodyTrack, piece.getMelody(), 0, 0); // Channel 0, Program 0 (Acoustic Grand Piano)
+        addNotesToTrack(melodyTrack, piece.getMelodyTrack(), 0, 0); // Channel 0, Program 0 (Acoustic Grand Piano)
         
         // Track 2: Chords (usually strings or pad)
         // 轨道2：和弦（通常是弦乐或合成器）
         Track chordTrack = sequence.createTrack();
-        addChordsToTrack(chordTrack, piece.getChords(), 1, 48); // Channel 1, Program 48 (String Ensemble 1)
+        addChordsToTrack(chordTrack, piece.getChordTrack(), 1, 48); // Channel 1, Program 48 (String Ensemble 1)
         
         // Track 3: Bass line
         // 轨道3：低音线
         Track bassTrack = sequence.createTrack();
-        addNotesToTrack(bassTrack, piece.getBassLine(), 2, 32); // Channel 2, Program 32 (Acoustic Bass)
+        addNotesToTrack(bassTrack, piece.getBassTrack(), 2, 32); // Channel 2, Program 32 (Acoustic Bass)
         
-        // Write to file
-        // 写入文件
-        MidiSystem.write(sequence, 1, new File(filename));
-        System.out.println("MIDI file exported successfully: " + filename);
+        // Tracks 4 and up: extra voices, each with its own channel and program, named after
+        // their role so that SmfReader can restore it
+        // 轨道4及以后：附加声部，各自使用自己的通道和音色，并以角色命名，以便SmfReader恢复角色
+        for (Voice voice : piece.getVoices()) {
+            Track voiceTrack = sequence.createTrack();
+            byte[] name = voice.getRole().name().getBytes(StandardCharsets.US_ASCII);
+            voiceTrack.add(new MidiEvent(new MetaMessage(0x03, name, name.length), 0));
+            addNotesToTrack(voiceTrack, voice.getTrack(), voice.getChannel(), voice.getProgram());
+        }
+        
+        GenerationMetrics.getInstance().getSequenceBuild().recordSince(start);
+        return sequence;
     }
     
     /**
@@ -92,7 +139,7 @@ public class MidiExporter {
      * Add notes to a MIDI track
      * 向MIDI轨道添加音符
      */
-    private static void addNotesToTrack(Track track, List<Note> notes, int channel, int program) 
+    private static void addNotesToTrack(Track track, NoteTrack notes, int channel, int program)
             throws InvalidMidiDataException {
         
         // Set instrument program
@@ -103,18 +150,30 @@ public class MidiExporter {
         
         // Add notes
         // 添加音符
-        for (Note note : notes) {
+        addNoteEvents(track, notes, 0, notes.size(), channel);
+    }
+    
+    /**
+     * Add note-on/note-off pairs for a range of a note track
+     * 为音符轨道的一段添加音符开始/结束事件对
+     */
+    private static void addNoteEvents(Track track, NoteTrack notes, int from, int to, int channel)
+            throws InvalidMidiDataException {
+        for (int i = from; i < to; i++) {
+            int pitch = notes.getPitch(i);
+            long startTime = notes.getStartTime(i);
+            
             // Note on
             // 音符开始
             ShortMessage noteOn = new ShortMessage();
-            noteOn.setMessage(ShortMessage.NOTE_ON, channel, note.getPitch(), note.getVelocity());
-            track.add(new MidiEvent(noteOn, note.getStartTime()));
+            noteOn.setMessage(ShortMessage.NOTE_ON, channel, pitch, notes.getVelocity(i));
+            track.add(new MidiEvent(noteOn, startTime));
             
             // Note off
             // 音符结束
             ShortMessage noteOff = new ShortMessage();
-            noteOff.setMessage(ShortMessage.NOTE_OFF, channel, note.getPitch(), 0);
-            track.add(new MidiEvent(noteOff, note.getStartTime() + note.getDuration()));
+            noteOff.setMessage(ShortMessage.NOTE_OFF, channel, pitch, 0);
+            track.add(new MidiEvent(noteOff, startTime + notes.getDuration(i)));
         }
     }
     
@@ -122,7 +181,7 @@ public class MidiExporter {
      * Add chords to a MIDI track
      * 向MIDI轨道添加和弦
      */
-    private static void addChordsToTrack(Track track, List<Chord> chords, int channel, int program) 
+    private static void addChordsToTrack(Track track, ChordTrack chords, int channel, int program)
             throws InvalidMidiDataException {
         
         // Set instrument program
@@ -133,21 +192,10 @@ public class MidiExporter {
         
         // Add chord notes
         // 添加和弦音符
-        for (Chord chord : chords) {
-            for (Note note : chord.getNotes()) {
-                // Note on
-                // 音符开始
-                ShortMessage noteOn = new ShortMessage();
-                noteOn.setMessage(ShortMessage.NOTE_ON, channel, note.getPitch(), note.getVelocity());
-                track.add(new MidiEvent(noteOn, note.getStartTime()));
-                
-                // Note off
-                // 音符结束
-                ShortMessage noteOff = new ShortMessage();
-                noteOff.setMessage(ShortMessage.NOTE_OFF, channel, note.getPitch(), 0);
-                track.add(new MidiEvent(noteOff, note.getStartTime() + note.getDuration()));
-            }
-        }
+        // Notes are produced from the shapes here, in chord order
+        // 音符在此处由形状按和弦顺序生成
+        NoteTrack notes = chords.getNotes();
+        addNoteEvents(track, notes, 0, notes.size(), channel);
     }
     
     /**
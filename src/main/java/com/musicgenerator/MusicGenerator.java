@@ -2,6 +2,7 @@ package com.musicgenerator;
 
 import java.util.*;
 import java.util.Random;
+import java.util.concurrent.ForkJoinTask;
 
 /**
  * Core music generator that creates AI-style melodies and harmonies
@@ -22,8 +23,46 @@ public class MusicGenerator {
     private double harmonyComplexity;     // 0.0 to 1.0
     private double rhythmVariety;         // 0.0 to 1.0
     
+    // Optional Markov melody model; null keeps the uniform random melody
+    // 可选的马尔可夫旋律模型；为null时保持均匀随机旋律
+    private MarkovMelodyModel melodyModel;
+    private int melodyStep;               // Scale steps above the root of the last melody note
+    private int melodyHistory;            // Recent intervals, encoded by the model
+    
+    // Optional beam search over the melody pitches; null keeps the per-beat random pick
+    // 可选的旋律音高集束搜索；为null时保持每拍随机选择
+    private MelodySearch melodySearch;
+    private MelodySearch.Searcher searcher;
+    private int lastSearchedPitch;        // Last pitch chosen by the search, or -1
+    private int[] searchBeats = new int[4];
+    private int[] searchPitches = new int[4];
+    
+    // Optional learned chord progressions; null uses MusicTheory's common progressions
+    // 可选的学习所得和弦进行；为null时使用MusicTheory中的常见和弦进行
+    private ChordProgressionModel progressionModel;
+    
+    // Extra voices generated over the chords, each on its own fork-join subtask
+    // 在和弦之上生成的附加声部，每个声部在独立的fork-join子任务中生成
+    private List<Voice.Spec> voices = Collections.emptyList();
+    
     public MusicGenerator() {
-        this.random = new Random();
+        this(new Random());
+    }
+    
+    /**
+     * Create a generator whose output is fully determined by the seed
+     * 创建输出完全由种子决定的生成器
+     */
+    public MusicGenerator(long seed) {
+        this(new Random(seed));
+    }
+    
+    /**
+     * Create a generator that draws all randomness from the given source
+     * 创建从指定随机源获取所有随机性的生成器
+     */
+    public MusicGenerator(Random random) {
+        this.random = random;
         this.tempo = 120;
         this.ticksPerBeat = 480;
         this.melodyComplexity = 0.7;
@@ -40,8 +79,8 @@ public class MusicGenerator {
      * 用随机音阶和根音初始化
      */
     private void initializeRandomScale() {
-        this.currentScaleType = MusicTheory.getRandomScaleType();
-        this.rootNote = MusicTheory.getRandomRootNote();
+        this.currentScaleType = MusicTheory.getRandomScaleType(random);
+        this.rootNote = MusicTheory.getRandomRootNote(random);
         this.currentScale = MusicTheory.getScale(currentScaleType, rootNote);
     }
     
@@ -55,6 +94,91 @@ public class MusicGenerator {
         this.rhythmVariety = Math.max(0.0, Math.min(1.0, rhythmVariety));
     }
     
+    /**
+     * Apply scale, tempo and complexity settings from a parameter set
+     * 应用参数集中的音阶、速度和复杂度设置
+     */
+    public void configure(GenerationParameters params) {
+        setParameters(params.getMelodyComplexity(), params.getHarmonyComplexity(), params.getRhythmVariety());
+        setTempo(params.getTempo(), params.getTicksPerBeat());
+        if (params.getScaleType() != null) {
+            setScale(params.getScaleType(), params.getRootNote());
+        }
+        setMelodyModel(params.getMelodyModel());
+        setMelodySearch(params.getMelodySearch());
+        setProgressionModel(params.getProgressionModel());
+        setVoices(params.getVoices());
+    }
+    
+    /**
+     * Generate these extra voices in every piece; an empty list keeps the three standard parts only
+     * 在每个作品中生成这些附加声部；空列表时只保留三个标准声部
+     */
+    public void setVoices(List<Voice.Spec> voices) {
+        this.voices = Collections.unmodifiableList(new ArrayList<>(voices));
+    }
+    
+    public List<Voice.Spec> getVoices() {
+        return voices;
+    }
+    
+    /**
+     * Use a Markov model for the melody, or the uniform random melody when null
+     * 使用马尔可夫模型生成旋律，为null时使用均匀随机旋律
+     */
+    public void setMelodyModel(MarkovMelodyModel melodyModel) {
+        this.melodyModel = melodyModel;
+        resetMelodyState();
+    }
+    
+    public MarkovMelodyModel getMelodyModel() {
+        return melodyModel;
+    }
+    
+    /**
+     * Choose melody pitches by beam search over each measure, or pick them at random when null.
+     * A Markov melody model takes precedence over the search.
+     * 对每个小节进行集束搜索以选择旋律音高，为null时随机选择。马尔可夫旋律模型优先于搜索。
+     */
+    public void setMelodySearch(MelodySearch melodySearch) {
+        this.melodySearch = melodySearch;
+        this.searcher = melodySearch == null ? null : melodySearch.newSearcher();
+        resetMelodyState();
+    }
+    
+    public MelodySearch getMelodySearch() {
+        return melodySearch;
+    }
+    
+    /**
+     * Sample chord progressions from a model, or pick common progressions when null
+     * 从模型中采样和弦进行，为null时选取常见和弦进行
+     */
+    public void setProgressionModel(ChordProgressionModel progressionModel) {
+        this.progressionModel = progressionModel;
+    }
+    
+    public ChordProgressionModel getProgressionModel() {
+        return progressionModel;
+    }
+    
+    private int[] nextProgression() {
+        if (progressionModel != null) {
+            return progressionModel.sampleProgression(random);
+        }
+        return MusicTheory.getRandomChordProgression(random);
+    }
+    
+    /**
+     * Start the next melody on the root, as if it had not moved yet
+     * 让下一段旋律从根音开始，如同尚未移动
+     */
+    private void resetMelodyState() {
+        melodyStep = 0;
+        lastSearchedPitch = -1;
+        melodyHistory = melodyModel == null ? 0 : melodyModel.getInitialHistory();
+    }
+    
     /**
      * Set tempo and time signature
      * 设置速度和拍号
@@ -69,122 +193,367 @@ public class MusicGenerator {
      * 生成完整的音乐作品
      */
     public MusicalPiece generatePiece(int measures, int timeSignature) {
+        GenerationMetrics metrics = GenerationMetrics.getInstance();
+        long start = System.nanoTime();
         MusicalPiece piece = new MusicalPiece();
         piece.setTempo(tempo);
         piece.setTimeSignature(timeSignature);
         piece.setTicksPerBeat(ticksPerBeat);
+        resetMelodyState();
         
         // Generate chord progression
         // 生成和弦进行
-        int[] chordProgression = MusicTheory.getRandomChordProgression();
-        List<Chord> chords = generateChordProgression(chordProgression, measures, timeSignature);
-        piece.setChords(chords);
-        
-        // Generate melody based on chords
-        // 基于和弦生成旋律
-        List<Note> melody = generateMelody(chords, measures, timeSignature);
-        piece.setMelody(melody);
+        int[] chordProgression = nextProgression();
+        ChordTrack chords = piece.getChordTrack();
+        generateChordProgression(chordProgression, measures, timeSignature, chords);
+        long chordsDone = System.nanoTime();
+        metrics.getChordPhase().record(chordsDone - start);
         
-        // Generate bass line
-        // 生成低音线
-        List<Note> bassLine = generateBassLine(chords, measures, timeSignature);
-        piece.setBassLine(bassLine);
+        if (voices.isEmpty()) {
+            // Generate melody based on chords
+            // 基于和弦生成旋律
+            generateMelody(measures, timeSignature, chords, piece.getMelodyTrack(), random);
+            long melodyDone = System.nanoTime();
+            metrics.getMelodyPhase().record(melodyDone - chordsDone);
+            
+            // Generate bass line
+            // 生成低音线
+            generateBassLine(chords, 0, chords.size(), piece.getBassTrack(), random);
+            metrics.getBassPhase().recordSince(melodyDone);
+        } else {
+            generateVoicesInParallel(piece, measures, timeSignature);
+        }
+        long bassDone = System.nanoTime();
         
+        metrics.getGeneratePiece().record(bassDone - start);
+        metrics.recordPiece(piece);
         return piece;
     }
     
+    /**
+     * Generate a piece whose melody is evolved by a genetic algorithm over its chord progression
+     * 生成一个作品，其旋律由遗传算法在其和弦进行之上演化得到
+     *
+     * Chords and bass are generated as in generatePiece; the result carries the piece and the
+     * evolution's convergence and throughput. Extra voices are not added.
+     * 和弦和低音的生成方式与generatePiece相同；结果包含作品以及演化的收敛情况和吞吐量。不添加附加声部。
+     */
+    public MelodyEvolver.Result generateEvolvedPiece(int measures, int timeSignature, MelodyEvolver evolver) {
+        GenerationMetrics metrics = GenerationMetrics.getInstance();
+        long start = System.nanoTime();
+        MusicalPiece piece = new MusicalPiece();
+        piece.setTempo(tempo);
+        piece.setTimeSignature(timeSignature);
+        piece.setTicksPerBeat(ticksPerBeat);
+        resetMelodyState();
+        
+        ChordTrack chords = piece.getChordTrack();
+        generateChordProgression(nextProgression(), measures, timeSignature, chords);
+        long chordsDone = System.nanoTime();
+        metrics.getChordPhase().record(chordsDone - start);
+        
+        MelodyEvolver.Result result = evolver.evolve(chords, currentScale, timeSignature, ticksPerBeat, rhythmVariety,
+                                                     random.nextLong(), piece.getMelodyTrack());
+        long melodyDone = System.nanoTime();
+        metrics.getMelodyPhase().record(melodyDone - chordsDone);
+        
+        generateBassLine(chords, 0, chords.size(), piece.getBassTrack(), random);
+        long bassDone = System.nanoTime();
+        metrics.getBassPhase().record(bassDone - melodyDone);
+        
+        metrics.getGeneratePiece().record(bassDone - start);
+        metrics.recordPiece(piece);
+        result.piece = piece;
+        return result;
+    }
+    
+    /**
+     * Generate melody, bass and every extra voice over the finished chords as parallel subtasks
+     * 在已完成的和弦之上，以并行子任务生成旋律、低音和每个附加声部
+     *
+     * Each part gets its own Random seeded from the generator's, drawn in a fixed order
+     * before any task starts, so the piece is the same for a given seed however the
+     * tasks are scheduled. Inside a fork-join worker (as in BatchGenerator) the subtasks
+     * run on that pool; elsewhere they run on the common pool.
+     * 每个声部都有由生成器随机源按固定顺序派生种子的独立Random，且在任何任务开始前取得，
+     * 因此无论任务如何调度，相同种子得到相同作品。在fork-join工作线程中（如BatchGenerator）
+     * 子任务运行在该线程池上，否则运行在公共线程池上。
+     */
+    private void generateVoicesInParallel(MusicalPiece piece, int measures, int timeSignature) {
+        GenerationMetrics metrics = GenerationMetrics.getInstance();
+        ChordTrack chords = piece.getChordTrack();
+        Random melodyRandom = new Random(random.nextLong());
+        Random bassRandom = new Random(random.nextLong());
+        
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(voices.size() + 2);
+        tasks.add(ForkJoinTask.adapt(() -> {
+            long start = System.nanoTime();
+            generateMelody(measures, timeSignature, chords, piece.getMelodyTrack(), melodyRandom);
+            metrics.getMelodyPhase().recordSince(start);
+        }));
+        tasks.add(ForkJoinTask.adapt(() -> {
+            long start = System.nanoTime();
+            generateBassLine(chords, 0, chords.size(), piece.getBassTrack(), bassRandom);
+            metrics.getBassPhase().recordSince(start);
+        }));
+        for (Voice.Spec spec : voices) {
+            Voice voice = new Voice(spec);
+            piece.addVoice(voice);
+            Random voiceRandom = new Random(random.nextLong());
+            tasks.add(ForkJoinTask.adapt(() -> generateVoice(voice, chords, timeSignature, voiceRandom)));
+        }
+        ForkJoinTask.invokeAll(tasks);
+    }
+    
+    /**
+     * Generate one extra voice from the chords: one chord per beat, timeSignature beats per measure
+     * 根据和弦生成一个附加声部：每拍一个和弦，每小节timeSignature拍
+     */
+    private void generateVoice(Voice voice, ChordTrack chords, int timeSignature, Random rnd) {
+        NoteTrack notes = voice.getTrack();
+        int step = Math.max(1, ticksPerBeat / 4);
+        
+        switch (voice.getRole()) {
+            case COUNTER_MELODY:
+                // Chord tones an octave up, sometimes a neighbouring scale note; splits beats with rhythm variety
+                // 高八度的和弦音，有时为相邻音阶音；根据节奏变化拆分拍子
+                int previous = -1;
+                for (int i = 0; i < chords.size(); i++) {
+                    int count = chords.getNoteCount(i);
+                    int parts = rnd.nextDouble() < rhythmVariety * 0.5 ? 2 : 1;
+                    int duration = ticksPerBeat / parts;
+                    for (int part = 0; part < parts; part++) {
+                        int pitch;
+                        if (count > 0 && rnd.nextDouble() < 0.7) {
+                            pitch = chords.getPitch(i, rnd.nextInt(count)) + 12;
+                        } else {
+                            pitch = currentScale[rnd.nextInt(currentScale.length)] + 12;
+                        }
+                        if (pitch == previous) {
+                            pitch += rnd.nextBoolean() ? 2 : -1;
+                        }
+                        previous = pitch;
+                        notes.add(clampPitch(pitch), duration, 60 + (int) (melodyComplexity * 30),
+                                  chords.getStartTime(i) + (long) part * duration);
+                    }
+                }
+                break;
+            case ARPEGGIO:
+                // Four sixteenths per beat through the chord tones, rising or rising then falling
+                // 每拍四个十六分音符遍历和弦音，上行或先上行后下行
+                for (int i = 0; i < chords.size(); i++) {
+                    int count = chords.getNoteCount(i);
+                    if (count == 0) {
+                        continue;
+                    }
+                    boolean turn = rnd.nextDouble() < harmonyComplexity * 0.5;
+                    for (int k = 0; k < 4; k++) {
+                        int index = turn && k == 3 ? 1 % count : k % count;
+                        int pitch = chords.getPitch(i, index) + (k >= count && !turn ? 12 : 0);
+                        notes.add(clampPitch(pitch), step, k == 0 ? 72 : 60, chords.getStartTime(i) + (long) k * step);
+                    }
+                }
+                break;
+            case PAD:
+                // The first chord of each measure held for the whole measure, root doubled below at random
+                // 每小节第一个和弦持续整个小节，随机在下方重复根音
+                for (int i = 0; i < chords.size(); i += timeSignature) {
+                    int duration = timeSignature * ticksPerBeat;
+                    for (int k = 0; k < chords.getNoteCount(i); k++) {
+                        notes.add(chords.getPitch(i, k), duration, 50, chords.getStartTime(i));
+                    }
+                    if (rnd.nextBoolean()) {
+                        notes.add(clampPitch(chords.getPitch(i, 0) - 12), duration, 45, chords.getStartTime(i));
+                    }
+                }
+                break;
+            case PERCUSSION:
+                // General MIDI kit: kick on the downbeat and mid-measure, snare on off beats, eighth hi-hats
+                // 通用MIDI鼓组：强拍和小节中部为底鼓，弱拍为军鼓，八分音符踩镲
+                for (int i = 0; i < chords.size(); i++) {
+                    int beat = i % timeSignature;
+                    long start = chords.getStartTime(i);
+                    if (i == 0) {
+                        notes.add(49, step, 100, start);   // Crash cymbal
+                    }
+                    if (beat == 0 || (timeSignature >= 4 && beat == timeSignature / 2)) {
+                        notes.add(36, step, 110, start);   // Bass drum
+                    } else if (beat % 2 == 1) {
+                        notes.add(38, step, 95, start);    // Acoustic snare
+                    }
+                    notes.add(42, step, 80, start);        // Closed hi-hat
+                    long offbeat = start + ticksPerBeat / 2;
+                    if (rnd.nextDouble() < rhythmVariety * 0.3) {
+                        notes.add(36, step, 90, offbeat);
+                    }
+                    notes.add(rnd.nextDouble() < rhythmVariety * 0.2 ? 46 : 42, step, 60, offbeat);
+                }
+                break;
+        }
+    }
+    
+    private static int clampPitch(int pitch) {
+        return Math.max(21, Math.min(108, pitch));
+    }
+    
+    /**
+     * Stream an endless sequence of measures with constant memory use
+     * 以恒定内存流式生成无限的小节序列
+     *
+     * Uses the same chord, melody and bass logic as generatePiece, one measure at a
+     * time, with long tick positions so arbitrarily long output never overflows.
+     * 与generatePiece使用相同的和弦、旋律和低音逻辑，逐小节生成；
+     * tick位置使用long，任意长度的输出都不会溢出。
+     */
+    public MeasureStream streamMeasures(int timeSignature) {
+        return streamMeasures(timeSignature, Long.MAX_VALUE);
+    }
+    
+    /**
+     * Stream a fixed number of measures with constant memory use
+     * 以恒定内存流式生成固定数量的小节
+     */
+    public MeasureStream streamMeasures(int timeSignature, long measures) {
+        resetMelodyState();
+        return new MeasureStream(this, nextProgression(), timeSignature, measures);
+    }
+    
+    /**
+     * Generate the chords, melody and bass of one measure into a fresh Measure
+     * 将一个小节的和弦、旋律和低音生成到新的Measure中
+     */
+    Measure generateMeasure(int[] progression, long measure, int timeSignature) {
+        long ticksPerMeasure = (long) timeSignature * ticksPerBeat;
+        Measure result = new Measure(measure, measure * ticksPerMeasure, ticksPerMeasure,
+                                     tempo, ticksPerBeat, timeSignature);
+        ChordTrack chords = result.getChordTrack();
+        generateMeasureChords(progression, measure, timeSignature, chords);
+        generateMeasureMelody(result.getStartTime(), timeSignature, chords, 0, result.getMelodyTrack(), random);
+        generateBassLine(chords, 0, chords.size(), result.getBassTrack(), random);
+        return result;
+    }
+    
     /**
      * Generate chord progression
      * 生成和弦进行
      */
-    private List<Chord> generateChordProgression(int[] progression, int measures, int timeSignature) {
-        List<Chord> chords = new ArrayList<>();
+    private void generateChordProgression(int[] progression, int measures, int timeSignature, ChordTrack chords) {
+        for (long measure = 0; measure < measures; measure++) {
+            generateMeasureChords(progression, measure, timeSignature, chords);
+        }
+    }
+    
+    /**
+     * Generate one chord per beat for a single measure
+     * 为单个小节每拍生成一个和弦
+     */
+    private void generateMeasureChords(int[] progression, long measure, int timeSignature, ChordTrack chords) {
         int beatsPerMeasure = timeSignature;
-        int ticksPerMeasure = beatsPerMeasure * ticksPerBeat;
+        long measureStartTime = measure * beatsPerMeasure * ticksPerBeat;
         
-        for (int measure = 0; measure < measures; measure++) {
-            for (int beat = 0; beat < beatsPerMeasure; beat++) {
-                int chordIndex = (measure * beatsPerMeasure + beat) % progression.length;
-                int chordRoot = currentScale[progression[chordIndex]];
-                
-                // Randomly choose chord type based on harmony complexity
-                // 基于和声复杂度随机选择和弦类型
-                Chord chord;
-                if (random.nextDouble() < harmonyComplexity) {
-                    if (random.nextBoolean()) {
-                        chord = Chord.createMajorChord(chordRoot, ticksPerBeat, 
-                                (measure * ticksPerMeasure) + (beat * ticksPerBeat));
-                    } else {
-                        chord = Chord.createMinorChord(chordRoot, ticksPerBeat, 
-                                (measure * ticksPerMeasure) + (beat * ticksPerBeat));
-                    }
-                } else {
-                    chord = Chord.createMajorChord(chordRoot, ticksPerBeat, 
-                            (measure * ticksPerMeasure) + (beat * ticksPerBeat));
-                }
-                
-                chords.add(chord);
+        for (int beat = 0; beat < beatsPerMeasure; beat++) {
+            int chordIndex = (int) ((measure * beatsPerMeasure + beat) % progression.length);
+            // Wrap the degree for scales shorter than the progression expects (pentatonic)
+            // 对于比和弦进行所需更短的音阶（五声音阶）回绕级数
+            int chordRoot = currentScale[progression[chordIndex] % currentScale.length];
+            long startTime = measureStartTime + (long) beat * ticksPerBeat;
+            
+            // Randomly choose chord type based on harmony complexity
+            // 基于和声复杂度随机选择和弦类型
+            ChordShape.Quality quality;
+            if (random.nextDouble() < harmonyComplexity) {
+                quality = random.nextBoolean() ? ChordShape.Quality.MAJOR : ChordShape.Quality.MINOR;
+            } else {
+                quality = ChordShape.Quality.MAJOR;
             }
+            
+            chords.add(ChordShape.of(quality, chordRoot), startTime, ticksPerBeat);
         }
-        
-        return chords;
     }
     
     /**
      * Generate melody based on chord progression
      * 基于和弦进行生成旋律
      */
-    private List<Note> generateMelody(List<Chord> chords, int measures, int timeSignature) {
-        List<Note> melody = new ArrayList<>();
-        int ticksPerMeasure = timeSignature * ticksPerBeat;
+    private void generateMelody(int measures, int timeSignature, ChordTrack chords, NoteTrack melody, Random random) {
+        long ticksPerMeasure = (long) timeSignature * ticksPerBeat;
         
-        for (int measure = 0; measure < measures; measure++) {
-            long measureStartTime = measure * ticksPerMeasure;
-            
+        for (long measure = 0; measure < measures; measure++) {
             // Generate melody notes for this measure
             // 为这一小节生成旋律音符
-            List<Note> measureMelody = generateMeasureMelody(measureStartTime, timeSignature);
-            melody.addAll(measureMelody);
+            generateMeasureMelody(measure * ticksPerMeasure, timeSignature, chords, (int) measure * timeSignature,
+                                  melody, random);
         }
-        
-        return melody;
     }
     
     /**
      * Generate melody for a single measure
      * 为单个小节生成旋律
      */
-    private List<Note> generateMeasureMelody(long measureStartTime, int timeSignature) {
-        List<Note> measureMelody = new ArrayList<>();
+    private void generateMeasureMelody(long measureStartTime, int timeSignature, ChordTrack chords, int firstChord,
+                                       NoteTrack melody, Random random) {
         int ticksPerBeat = this.ticksPerBeat;
         
         // Determine rhythm pattern based on rhythm variety
         // 基于节奏变化确定节奏模式
-        List<Integer> rhythmPattern = generateRhythmPattern(timeSignature);
+        int[] rhythmPattern = generateRhythmPattern(timeSignature, random);
+        
+        if (melodySearch != null && melodyModel == null) {
+            generateSearchedMeasure(measureStartTime, rhythmPattern, chords, firstChord, melody, random);
+            return;
+        }
         
         for (int beat = 0; beat < timeSignature; beat++) {
-            long beatStartTime = measureStartTime + (beat * ticksPerBeat);
-            int beatDuration = rhythmPattern.get(beat);
+            long beatStartTime = measureStartTime + ((long) beat * ticksPerBeat);
+            int beatDuration = rhythmPattern[beat];
             
             if (beatDuration > 0) {
                 // Generate note for this beat
                 // 为这一拍生成音符
-                Note note = generateMelodyNote(beatStartTime, beatDuration);
-                if (note != null) {
-                    measureMelody.add(note);
+                if (melodyModel != null) {
+                    generateMarkovNote(beatStartTime, beatDuration, melody, random);
+                } else {
+                    generateMelodyNote(beatStartTime, beatDuration, melody, random);
                 }
             }
         }
+    }
+    
+    /**
+     * Let the beam search choose the pitches of the beats the rhythm pattern plays
+     * 由集束搜索为节奏模式中演奏的各拍选择音高
+     */
+    private void generateSearchedMeasure(long measureStartTime, int[] rhythmPattern, ChordTrack chords,
+                                         int firstChord, NoteTrack melody, Random random) {
+        if (searchBeats.length < rhythmPattern.length) {
+            searchBeats = new int[rhythmPattern.length];
+            searchPitches = new int[rhythmPattern.length];
+        }
+        int count = 0;
+        for (int beat = 0; beat < rhythmPattern.length; beat++) {
+            if (rhythmPattern[beat] > 0) {
+                searchBeats[count++] = beat;
+            }
+        }
+        searcher.search(currentScale, chords, firstChord, searchBeats, count, lastSearchedPitch,
+                        random.nextLong(), melodyComplexity, searchPitches);
         
-        return measureMelody;
+        int velocity = 80 + (int)(melodyComplexity * 40);
+        for (int k = 0; k < count; k++) {
+            int beat = searchBeats[k];
+            melody.add(searchPitches[k], rhythmPattern[beat], velocity, measureStartTime + (long) beat * ticksPerBeat);
+        }
+        if (count > 0) {
+            lastSearchedPitch = searchPitches[count - 1];
+        }
     }
     
     /**
      * Generate rhythm pattern for a measure
      * 为小节生成节奏模式
      */
-    private List<Integer> generateRhythmPattern(int timeSignature) {
-        List<Integer> pattern = new ArrayList<>();
+    private int[] generateRhythmPattern(int timeSignature, Random random) {
+        int[] pattern = new int[timeSignature];
         
         for (int beat = 0; beat < timeSignature; beat++) {
             if (random.nextDouble() < rhythmVariety) {
@@ -192,14 +561,14 @@ public class MusicGenerator {
                 // 添加变化：短音符、休止符、切分音
                 double rand = random.nextDouble();
                 if (rand < 0.3) {
-                    pattern.add(ticksPerBeat / 2);  // Half note
+                    pattern[beat] = ticksPerBeat / 2;  // Half note
                 } else if (rand < 0.6) {
-                    pattern.add(ticksPerBeat / 4);  // Quarter note
+                    pattern[beat] = ticksPerBeat / 4;  // Quarter note
                 } else {
-                    pattern.add(ticksPerBeat);      // Whole note
+                    pattern[beat] = ticksPerBeat;      // Whole note
                 }
             } else {
-                pattern.add(ticksPerBeat);  // Standard beat
+                pattern[beat] = ticksPerBeat;  // Standard beat
             }
         }
         
@@ -210,7 +579,7 @@ public class MusicGenerator {
      * Generate a single melody note
      * 生成单个旋律音符
      */
-    private Note generateMelodyNote(long startTime, int duration) {
+    private void generateMelodyNote(long startTime, int duration, NoteTrack melody, Random random) {
         // Choose note from current scale
         // 从当前音阶中选择音符
         int pitch = currentScale[random.nextInt(currentScale.length)];
@@ -230,20 +599,43 @@ public class MusicGenerator {
         // 基于复杂度生成力度
         int velocity = 80 + (int)(melodyComplexity * 40);
         
-        return new Note(pitch, duration, velocity, startTime);
+        melody.add(pitch, duration, velocity, startTime);
+    }
+    
+    /**
+     * Generate a single melody note by sampling the next interval from the Markov model
+     * 从马尔可夫模型中采样下一个音程，生成单个旋律音符
+     */
+    private void generateMarkovNote(long startTime, int duration, NoteTrack melody, Random random) {
+        int degrees = currentScale.length - 1; // The last scale entry is the octave
+        int degree = Math.floorMod(melodyStep, degrees);
+        int interval = melodyModel.sampleInterval(melodyModel.context(degree, melodyHistory), random.nextDouble());
+        
+        // Stay within an octave below and above the scale by turning the interval around
+        // 通过反转音程，保持在音阶下方和上方一个八度之内
+        int step = melodyStep + interval;
+        if (step < -degrees || step >= 2 * degrees) {
+            interval = -interval;
+            step = melodyStep + interval;
+        }
+        melodyStep = step;
+        melodyHistory = melodyModel.nextHistory(melodyHistory, interval);
+        
+        int pitch = currentScale[Math.floorMod(step, degrees)] + 12 * Math.floorDiv(step, degrees);
+        pitch = Math.max(21, Math.min(108, pitch));
+        int velocity = 80 + (int)(melodyComplexity * 40);
+        melody.add(pitch, duration, velocity, startTime);
     }
     
     /**
      * Generate bass line based on chord roots
      * 基于和弦根音生成低音线
      */
-    private List<Note> generateBassLine(List<Chord> chords, int measures, int timeSignature) {
-        List<Note> bassLine = new ArrayList<>();
-        
-        for (Chord chord : chords) {
+    private void generateBassLine(ChordTrack chords, int from, int to, NoteTrack bassLine, Random random) {
+        for (int i = from; i < to; i++) {
             // Get root note of chord
             // 获取和弦的根音
-            int rootPitch = chord.getNotes().get(0).getPitch();
+            int rootPitch = chords.getRootPitch(i);
             
             // Lower by one or two octaves for bass
             // 降低一两个八度作为低音
@@ -256,11 +648,8 @@ public class MusicGenerator {
             // 确保音高在低音范围内
             bassPitch = Math.max(21, Math.min(60, bassPitch));
             
-            Note bassNote = new Note(bassPitch, chord.getDuration(), 90, chord.getStartTime());
-            bassLine.add(bassNote);
+            bassLine.add(bassPitch, chords.getDuration(i), 90, chords.getStartTime(i));
         }
-        
-        return bassLine;
     }
     
     /**
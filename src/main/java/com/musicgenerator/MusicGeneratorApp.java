@@ -1,7 +1,12 @@
 package com.musicgenerator;
 
+import javax.sound.midi.MidiSystem;
+import javax.sound.midi.Synthesizer;
+import javax.management.JMException;
+import java.io.IOException;
 import java.util.Scanner;
 import java.util.Random;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Main application class for the Random Music Generator
@@ -13,6 +18,26 @@ public class MusicGeneratorApp {
     private static Scanner scanner;
     
     public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("--server")) {
+            runServer(args);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--extract")) {
+            System.exit(PieceArchive.run(args, System.out));
+        }
+        if (args.length > 0 && args[0].equals("--piece")) {
+            System.exit(PieceId.run(args, System.out));
+        }
+        if (args.length > 0 && args[0].equals("--train")) {
+            System.exit(CorpusTrainer.run(args, System.out));
+        }
+        if (args.length > 0 && args[0].equals("--evolve")) {
+            System.exit(MelodyEvolver.run(args, System.out));
+        }
+        if (args.length > 0 && args[0].startsWith("-")) {
+            System.exit(BatchCli.run(args, System.out));
+        }
+        
         System.out.println("🎵 Random Music Generator - AI Style Composer 🎵");
         System.out.println("================================================");
         
@@ -24,7 +49,7 @@ public class MusicGeneratorApp {
         boolean running = true;
         while (running) {
             displayMainMenu();
-            int choice = getIntInput("Please select an option (1-6): ");
+            int choice = getIntInput("Please select an option (1-7): ");
             
             switch (choice) {
                 case 1:
@@ -43,6 +68,9 @@ public class MusicGeneratorApp {
                     showScaleInfo();
                     break;
                 case 6:
+                    playLive();
+                    break;
+                case 7:
                     running = false;
                     System.out.println("Thank you for using Random Music Generator! 👋");
                     break;
@@ -59,6 +87,24 @@ public class MusicGeneratorApp {
         scanner.close();
     }
     
+    /**
+     * Run the HTTP generation service until the process is stopped
+     * 运行HTTP生成服务，直到进程被停止
+     */
+    private static void runServer(String[] args) {
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : GenerationServer.DEFAULT_PORT;
+        try {
+            GenerationServer server = new GenerationServer(port);
+            GenerationMetrics.getInstance().registerMBean();
+            server.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> server.stop(1)));
+            System.out.println("Generation server listening on http://localhost:" + server.getPort() + "/generate");
+        } catch (IOException | JMException e) {
+            System.err.println("Cannot start server on port " + port + ": " + e.getMessage());
+            System.exit(1);
+        }
+    }
+    
     /**
      * Display main menu
      */
@@ -69,7 +115,8 @@ public class MusicGeneratorApp {
         System.out.println("3. Change Scale");
         System.out.println("4. Create Simple Melody");
         System.out.println("5. Display Current Scale Information");
-        System.out.println("6. Exit");
+        System.out.println("6. Play Live");
+        System.out.println("7. Exit");
         System.out.println("================");
     }
     
@@ -107,6 +154,42 @@ public class MusicGeneratorApp {
         }
     }
     
+    /**
+     * Generate and play measures live through the default synthesizer
+     * 通过默认合成器实时生成并播放小节
+     */
+    private static void playLive() {
+        System.out.println("\n=== Play Live ===");
+        
+        int measures = getIntInput("Please enter number of bars (4-64): ");
+        measures = Math.max(4, Math.min(64, measures));
+        
+        int timeSignature = getIntInput("Please enter time signature (3-6): ");
+        timeSignature = Math.max(3, Math.min(6, timeSignature));
+        
+        Synthesizer synthesizer = null;
+        try {
+            synthesizer = MidiSystem.getSynthesizer();
+            synthesizer.open();
+            
+            LivePlayer player = new LivePlayer(generator.streamMeasures(timeSignature, measures),
+                                               synthesizer.getReceiver(), 2, 2_000_000L);
+            System.out.println("Playing... (" + generator.getScaleInfo() + ")");
+            player.start();
+            player.awaitCompletion(1, TimeUnit.HOURS);
+            player.close();
+            
+            System.out.println(player.getReport());
+        
+        } catch (Exception e) {
+            System.err.println("Error playing music: " + e.getMessage());
+        } finally {
+            if (synthesizer != null) {
+                synthesizer.close();
+            }
+        }
+    }
+    
     /**
      * Customize generation parameters
      */
@@ -39,7 +39,20 @@ public class MusicTheory {
         {0, 3, 6, 4}      // I-vi-ii-IV
     };
     
-    private static final Random random = new Random();
+    // Source for the overloads without a Random parameter: one per thread, so seeding it
+    // with setSeed makes a thread's calls repeatable without other threads interfering.
+    // MusicGenerator never uses it and draws everything from its own Random.
+    // 不带Random参数的重载所使用的随机源：每个线程一个，因此用setSeed设定种子后，
+    // 该线程的调用可重复且不受其他线程干扰。MusicGenerator从不使用它，所有随机性都来自自身的Random。
+    private static final ThreadLocal<Random> DEFAULT_RANDOM = ThreadLocal.withInitial(Random::new);
+    
+    /**
+     * Seed the calling thread's source for the overloads without a Random parameter
+     * 为调用线程中不带Random参数的重载设定随机源种子
+     */
+    public static void setSeed(long seed) {
+        DEFAULT_RANDOM.get().setSeed(seed);
+    }
     
     /**
      * Get notes in a major scale starting from root note
@@ -94,6 +107,14 @@ public class MusicTheory {
      * 获取随机和弦进行
      */
     public static int[] getRandomChordProgression() {
+        return getRandomChordProgression(DEFAULT_RANDOM.get());
+    }
+    
+    /**
+     * Get a random chord progression using the given random source
+     * 使用指定的随机源获取随机和弦进行
+     */
+    public static int[] getRandomChordProgression(Random random) {
         return COMMON_PROGRESSIONS[random.nextInt(COMMON_PROGRESSIONS.length)];
     }
     
@@ -102,12 +123,10 @@ public class MusicTheory {
      * 检查两个音符是否和声协和
      */
     public static boolean isConsonant(int pitch1, int pitch2) {
-        int interval = Math.abs(pitch1 - pitch2) % 12;
         // Consonant intervals: unison, minor third, major third, perfect fourth, 
         // perfect fifth, minor sixth, major sixth, octave
         // 协和音程：同度、小三度、大三度、纯四度、纯五度、小六度、大六度、八度
-        return interval == 0 || interval == 3 || interval == 4 || interval == 5 || 
-               interval == 7 || interval == 8 || interval == 9;
+        return TheoryTables.isConsonant(pitch1, pitch2);
     }
     
     /**
@@ -115,11 +134,20 @@ public class MusicTheory {
      * 基于当前音符和音阶获取和声相关的音符
      */
     public static int getHarmonicNote(int currentNote, int[] scale, int direction) {
+        return getHarmonicNote(currentNote, scale, direction, DEFAULT_RANDOM.get());
+    }
+    
+    /**
+     * Get a harmonically related note using the given random source
+     * 使用指定的随机源获取和声相关的音符
+     */
+    public static int getHarmonicNote(int currentNote, int[] scale, int direction, Random random) {
         // Find current note in scale
         // 在音阶中找到当前音符
         int scaleIndex = -1;
+        int pitchClass = currentNote % 12;
         for (int i = 0; i < scale.length; i++) {
-            if (scale[i] % 12 == currentNote % 12) {
+            if (scale[i] % 12 == pitchClass) {
                 scaleIndex = i;
                 break;
             }
@@ -137,11 +165,41 @@ public class MusicTheory {
         return scale[newIndex];
     }
     
+    /**
+     * Get a harmonically related note in a known scale, using the lookup tables
+     * 使用查找表在已知音阶中获取和声相关的音符
+     */
+    public static int getHarmonicNote(int currentNote, ScaleType type, int rootNote, int direction) {
+        return getHarmonicNote(currentNote, type, rootNote, direction, DEFAULT_RANDOM.get());
+    }
+    
+    /**
+     * Table-based harmonic note using the given random source; same result as the
+     * array version for the same scale, in constant time
+     * 使用指定随机源、基于查找表的和声音符；与同一音阶的数组版本结果相同，但为常数时间
+     */
+    public static int getHarmonicNote(int currentNote, ScaleType type, int rootNote, int direction, Random random) {
+        int[] scale = TheoryTables.scale(type, rootNote);
+        int scaleIndex = TheoryTables.getDegree(type, rootNote, currentNote);
+        if (scaleIndex == -1) {
+            return scale[random.nextInt(scale.length)];
+        }
+        return scale[(scaleIndex + direction + scale.length) % scale.length];
+    }
+    
     /**
      * Get a random root note for a scale (C4 to C6 range)
      * 获取音阶的随机根音（C4到C6范围）
      */
     public static int getRandomRootNote() {
+        return getRandomRootNote(DEFAULT_RANDOM.get());
+    }
+    
+    /**
+     * Get a random root note using the given random source
+     * 使用指定的随机源获取随机根音
+     */
+    public static int getRandomRootNote(Random random) {
         // C4 = 60, C6 = 84
         return 60 + (random.nextInt(3) * 12) + random.nextInt(12);
     }
@@ -151,6 +209,14 @@ public class MusicTheory {
      * 获取随机音阶类型
      */
     public static ScaleType getRandomScaleType() {
+        return getRandomScaleType(DEFAULT_RANDOM.get());
+    }
+    
+    /**
+     * Get a random scale type using the given random source
+     * 使用指定的随机源获取随机音阶类型
+     */
+    public static ScaleType getRandomScaleType(Random random) {
         ScaleType[] types = ScaleType.values();
         return types[random.nextInt(types.length)];
     }
@@ -160,6 +226,9 @@ public class MusicTheory {
      * 基于音阶类型和根音获取音阶
      */
     public static int[] getScale(ScaleType type, int rootNote) {
+        if (rootNote >= TheoryTables.MIN_ROOT && rootNote <= TheoryTables.MAX_ROOT) {
+            return TheoryTables.getScale(type, rootNote);
+        }
         switch (type) {
             case MAJOR:
                 return getMajorScale(rootNote);
@@ -174,6 +243,24 @@ public class MusicTheory {
         }
     }
     
+    /**
+     * Interval pattern of a scale type, shared with TheoryTables (do not modify)
+     * 音阶类型的音程模式，与TheoryTables共享（不得修改）
+     */
+    static int[] getIntervals(ScaleType type) {
+        switch (type) {
+            case MINOR:
+                return MINOR_SCALE;
+            case PENTATONIC:
+                return PENTATONIC_SCALE;
+            case BLUES:
+                return BLUES_SCALE;
+            case MAJOR:
+            default:
+                return MAJOR_SCALE;
+        }
+    }
+    
     /**
      * Scale types enumeration
      * 音阶类型枚举
@@ -2,15 +2,19 @@ package com.musicgenerator;
 
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Collections;
 
 /**
  * Represents a complete musical piece with melody, harmony, and rhythm
  * 表示完整的音乐作品，包含旋律、和声和节奏
  */
 public class MusicalPiece {
-    private List<Note> melody;
-    private List<Chord> chords;
-    private List<Note> bassLine;
+    // Notes are stored in primitive columns; Note/Chord objects are built on demand
+    // 音符以原始类型列存储；Note/Chord对象按需创建
+    private final NoteTrack melody;
+    private final ChordTrack chords;
+    private final NoteTrack bassLine;
+    private final List<Voice> voices;     // Extra voices, exported after the bass track
     private int tempo;
     private int timeSignature;
     private int ticksPerBeat;
@@ -18,9 +22,10 @@ public class MusicalPiece {
     private String composer;
     
     public MusicalPiece() {
-        this.melody = new ArrayList<>();
-        this.chords = new ArrayList<>();
-        this.bassLine = new ArrayList<>();
+        this.melody = new NoteTrack();
+        this.chords = new ChordTrack();
+        this.bassLine = new NoteTrack();
+        this.voices = new ArrayList<>();
         this.tempo = 120;
         this.timeSignature = 4;
         this.ticksPerBeat = 480;
@@ -29,14 +34,33 @@ public class MusicalPiece {
     }
     
     // Getters and setters
-    public List<Note> getMelody() { return new ArrayList<>(melody); }
-    public void setMelody(List<Note> melody) { this.melody = new ArrayList<>(melody); }
+    public List<Note> getMelody() { return melody.toNoteList(); }
+    public void setMelody(List<Note> melody) { this.melody.setAll(melody); }
     
-    public List<Chord> getChords() { return new ArrayList<>(chords); }
-    public void setChords(List<Chord> chords) { this.chords = new ArrayList<>(chords); }
+    public List<Chord> getChords() { return chords.toChordList(); }
+    public void setChords(List<Chord> chords) { this.chords.setAll(chords); }
     
-    public List<Note> getBassLine() { return new ArrayList<>(bassLine); }
-    public void setBassLine(List<Note> bassLine) { this.bassLine = new ArrayList<>(bassLine); }
+    public List<Note> getBassLine() { return bassLine.toNoteList(); }
+    public void setBassLine(List<Note> bassLine) { this.bassLine.setAll(bassLine); }
+    
+    // Unmodifiable views: no copy of the track, elements are created on access
+    // 不可修改视图：不复制轨道，元素在访问时创建
+    public List<Note> getMelodyView() { return melody.asList(); }
+    public List<Chord> getChordsView() { return chords.asList(); }
+    public List<Note> getBassLineView() { return bassLine.asList(); }
+    
+    // Direct access to the backing tracks for exporters in this package
+    // 供本包内导出器直接访问底层轨道
+    NoteTrack getMelodyTrack() { return melody; }
+    ChordTrack getChordTrack() { return chords; }
+    NoteTrack getBassTrack() { return bassLine; }
+    
+    /**
+     * Extra voices (counter-melodies, arpeggios, pads, percussion) in track order
+     * 按轨道顺序排列的附加声部（对位旋律、琶音、铺底、打击乐）
+     */
+    public List<Voice> getVoices() { return Collections.unmodifiableList(voices); }
+    public void addVoice(Voice voice) { voices.add(voice); }
     
     public int getTempo() { return tempo; }
     public void setTempo(int tempo) { this.tempo = tempo; }
@@ -58,26 +82,14 @@ public class MusicalPiece {
      * 获取作品总时长（以tick为单位）
      */
     public long getTotalDuration() {
-        long maxDuration = 0;
-        
-        // Check melody duration
-        for (Note note : melody) {
-            long endTime = note.getStartTime() + note.getDuration();
-            maxDuration = Math.max(maxDuration, endTime);
-        }
-        
-        // Check chord duration
-        for (Chord chord : chords) {
-            long endTime = chord.getStartTime() + chord.getDuration();
-            maxDuration = Math.max(maxDuration, endTime);
-        }
-        
-        // Check bass line duration
-        for (Note note : bassLine) {
-            long endTime = note.getStartTime() + note.getDuration();
-            maxDuration = Math.max(maxDuration, endTime);
+        // Each track is a linear scan over its primitive columns
+        // 每个轨道都是对原始类型列的线性扫描
+        long maxDuration = melody.getEndTime();
+        maxDuration = Math.max(maxDuration, chords.getEndTime());
+        maxDuration = Math.max(maxDuration, bassLine.getEndTime());
+        for (Voice voice : voices) {
+            maxDuration = Math.max(maxDuration, voice.getTrack().getEndTime());
         }
-        
         return maxDuration;
     }
     
@@ -106,6 +118,9 @@ public class MusicalPiece {
         stats.append("Melody Notes: ").append(melody.size()).append("\n");
         stats.append("Chords: ").append(chords.size()).append("\n");
         stats.append("Bass Notes: ").append(bassLine.size()).append("\n");
+        for (Voice voice : voices) {
+            stats.append(voice.getRole()).append(" Notes: ").append(voice.getTrack().size()).append("\n");
+        }
         stats.append("Total Ticks: ").append(getTotalDuration()).append("\n");
         
         return stats.toString();
@@ -143,6 +158,7 @@ public class MusicalPiece {
         melody.clear();
         chords.clear();
         bassLine.clear();
+        voices.clear();
     }
     
     /**
@@ -150,7 +166,41 @@ public class MusicalPiece {
      * 检查作品是否有音乐内容
      */
     public boolean isEmpty() {
-        return melody.isEmpty() && chords.isEmpty() && bassLine.isEmpty();
+        return melody.isEmpty() && chords.isEmpty() && bassLine.isEmpty() && voices.isEmpty();
+    }
+    
+    /**
+     * Visit every melody note in order
+     * 按顺序访问每个旋律音符
+     */
+    public void forEachMelodyNote(NoteVisitor visitor) {
+        melody.forEach(visitor);
+    }
+    
+    /**
+     * Visit every chord note, chord by chord
+     * 逐个和弦访问每个和弦音符
+     */
+    public void forEachChordNote(NoteVisitor visitor) {
+        chords.forEachNote(visitor);
+    }
+    
+    /**
+     * Visit every bass note in order
+     * 按顺序访问每个低音音符
+     */
+    public void forEachBassNote(NoteVisitor visitor) {
+        bassLine.forEach(visitor);
+    }
+    
+    /**
+     * Visit all notes in the same order as getAllNotes (melody, bass, chords)
+     * 按与getAllNotes相同的顺序（旋律、低音、和弦）访问所有音符
+     */
+    public void forEachNote(NoteVisitor visitor) {
+        melody.forEach(visitor);
+        bassLine.forEach(visitor);
+        chords.forEachNote(visitor);
     }
     
     /**
@@ -158,18 +208,41 @@ public class MusicalPiece {
      * 获取所有轨道的所有音符
      */
     public List<Note> getAllNotes() {
-        List<Note> allNotes = new ArrayList<>();
-        allNotes.addAll(melody);
-        allNotes.addAll(bassLine);
+        List<Note> allNotes = new ArrayList<>(melody.size() + bassLine.size() + chords.getTotalNoteCount());
+        allNotes.addAll(melody.toNoteList());
+        allNotes.addAll(bassLine.toNoteList());
         
         // Add chord notes
-        for (Chord chord : chords) {
-            allNotes.addAll(chord.getNotes());
-        }
+        chords.forEachNote((pitch, duration, velocity, startTime) ->
+                allNotes.add(new Note(pitch, duration, velocity, startTime)));
         
         return allNotes;
     }
     
+    /**
+     * Pitches of all notes in the same order as getAllNotes, without creating Note objects
+     * 按与getAllNotes相同的顺序返回所有音符的音高，不创建Note对象
+     */
+    public int[] getAllPitches() {
+        int[] pitches = new int[melody.size() + bassLine.size() + chords.getTotalNoteCount()];
+        melody.copyPitches(pitches, 0);
+        bassLine.copyPitches(pitches, melody.size());
+        chords.copyPitches(pitches, melody.size() + bassLine.size());
+        return pitches;
+    }
+    
+    /**
+     * Velocities of all notes in the same order as getAllNotes, without creating Note objects
+     * 按与getAllNotes相同的顺序返回所有音符的力度，不创建Note对象
+     */
+    public int[] getAllVelocities() {
+        int[] velocities = new int[melody.size() + bassLine.size() + chords.getTotalNoteCount()];
+        melody.copyVelocities(velocities, 0);
+        bassLine.copyVelocities(velocities, melody.size());
+        chords.copyVelocities(velocities, melody.size() + bassLine.size());
+        return velocities;
+    }
+    
     @Override
     public String toString() {
         return String.format("MusicalPiece{title='%s', duration=%.2fs, melody=%d notes, chords=%d, bass=%d notes}", 
@@ -0,0 +1,207 @@
+package com.musicgenerator;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * Growable note storage backed by parallel primitive columns
+ * 由并行原始类型列支撑的可增长音符存储
+ *
+ * Holds pitch, velocity, duration and start tick of every note in its own array
+ * instead of one Note object per note. Note objects are only created on demand.
+ * 每个音符的音高、力度、时长和起始tick分别存放在各自的数组中，
+ * 而不是每个音符一个Note对象；Note对象仅在需要时创建。
+ */
+public class NoteTrack {
+    private int[] pitches;
+    private int[] velocities;
+    private int[] durations;
+    private long[] startTimes;
+    private int size;
+    
+    public NoteTrack() {
+        this(16);
+    }
+    
+    public NoteTrack(int initialCapacity) {
+        int capacity = Math.max(1, initialCapacity);
+        this.pitches = new int[capacity];
+        this.velocities = new int[capacity];
+        this.durations = new int[capacity];
+        this.startTimes = new long[capacity];
+        this.size = 0;
+    }
+    
+    /**
+     * Append a note given its components
+     * 按各字段追加一个音符
+     */
+    public void add(int pitch, int duration, int velocity, long startTime) {
+        if (size == pitches.length) {
+            grow();
+        }
+        pitches[size] = pitch;
+        velocities[size] = velocity;
+        durations[size] = duration;
+        startTimes[size] = startTime;
+        size++;
+    }
+    
+    /**
+     * Append a copy of a note
+     * 追加一个音符的副本
+     */
+    public void add(Note note) {
+        add(note.getPitch(), note.getDuration(), note.getVelocity(), note.getStartTime());
+    }
+    
+    /**
+     * Append copies of all notes in a list
+     * 追加列表中所有音符的副本
+     */
+    public void addAll(List<Note> notes) {
+        for (Note note : notes) {
+            add(note);
+        }
+    }
+    
+    /**
+     * Replace the contents with copies of the given notes
+     * 用给定音符的副本替换全部内容
+     */
+    public void setAll(List<Note> notes) {
+        if (notes instanceof ListView && ((ListView) notes).owner() == this) {
+            return; // A view of this track already holds exactly these notes
+        }
+        clear();
+        addAll(notes);
+    }
+    
+    private void grow() {
+        int capacity = pitches.length * 2;
+        pitches = Arrays.copyOf(pitches, capacity);
+        velocities = Arrays.copyOf(velocities, capacity);
+        durations = Arrays.copyOf(durations, capacity);
+        startTimes = Arrays.copyOf(startTimes, capacity);
+    }
+    
+    // Column accessors
+    public int getPitch(int index) { return pitches[Objects.checkIndex(index, size)]; }
+    public int getVelocity(int index) { return velocities[Objects.checkIndex(index, size)]; }
+    public int getDuration(int index) { return durations[Objects.checkIndex(index, size)]; }
+    public long getStartTime(int index) { return startTimes[Objects.checkIndex(index, size)]; }
+    
+    /**
+     * Copy all pitches, in order, into an array starting at an offset
+     * 将所有音高按顺序复制到数组中从指定偏移开始的位置
+     */
+    public void copyPitches(int[] target, int offset) {
+        System.arraycopy(pitches, 0, target, offset, size);
+    }
+    
+    /**
+     * Copy all velocities, in order, into an array starting at an offset
+     * 将所有力度按顺序复制到数组中从指定偏移开始的位置
+     */
+    public void copyVelocities(int[] target, int offset) {
+        System.arraycopy(velocities, 0, target, offset, size);
+    }
+    
+    public int size() { return size; }
+    public boolean isEmpty() { return size == 0; }
+    
+    /**
+     * Remove all notes, keeping the allocated capacity
+     * 删除所有音符，保留已分配的容量
+     */
+    public void clear() {
+        size = 0;
+    }
+    
+    /**
+     * Materialize the note at an index as a new Note object
+     * 将指定位置的音符实例化为新的Note对象
+     */
+    public Note getNote(int index) {
+        Objects.checkIndex(index, size);
+        return new Note(pitches[index], durations[index], velocities[index], startTimes[index]);
+    }
+    
+    /**
+     * Visit every note in order without creating Note objects
+     * 按顺序访问每个音符，不创建Note对象
+     */
+    public void forEach(NoteVisitor visitor) {
+        forEach(0, size, visitor);
+    }
+    
+    /**
+     * Visit a range of notes in order without creating Note objects
+     * 按顺序访问一段音符，不创建Note对象
+     */
+    public void forEach(int from, int to, NoteVisitor visitor) {
+        Objects.checkFromToIndex(from, to, size);
+        for (int i = from; i < to; i++) {
+            visitor.visit(pitches[i], durations[i], velocities[i], startTimes[i]);
+        }
+    }
+    
+    /**
+     * Unmodifiable live view of this track; each element is created on access
+     * 此轨道的不可修改实时视图；每个元素在访问时创建
+     */
+    public List<Note> asList() {
+        return new ListView();
+    }
+    
+    /**
+     * Materialize a range of notes as new Note objects
+     * 将一段音符实例化为新的Note对象
+     */
+    public List<Note> toNoteList(int from, int to) {
+        Objects.checkFromToIndex(from, to, size);
+        List<Note> notes = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            notes.add(new Note(pitches[i], durations[i], velocities[i], startTimes[i]));
+        }
+        return notes;
+    }
+    
+    /**
+     * Materialize all notes as new Note objects
+     * 将所有音符实例化为新的Note对象
+     */
+    public List<Note> toNoteList() {
+        return toNoteList(0, size);
+    }
+    
+    /**
+     * Latest end tick (start + duration) over all notes, 0 when empty
+     * 所有音符中最晚的结束tick（起始+时长），为空时返回0
+     */
+    public long getEndTime() {
+        long maxEnd = 0;
+        for (int i = 0; i < size; i++) {
+            maxEnd = Math.max(maxEnd, startTimes[i] + durations[i]);
+        }
+        return maxEnd;
+    }
+    
+    /**
+     * Read-only List adapter over the primitive columns
+     * 基于原始类型列的只读List适配器
+     */
+    private class ListView extends AbstractList<Note> implements RandomAccess {
+        NoteTrack owner() { return NoteTrack.this; }
+        
+        @Override
+        public Note get(int index) { return getNote(index); }
+        
+        @Override
+        public int size() { return size; }
+    }
+} 
\ No newline at end of file
@@ -0,0 +1,15 @@
+package com.musicgenerator;
+
+/**
+ * Callback for walking notes without creating Note objects
+ * 在不创建Note对象的情况下遍历音符的回调
+ */
+@FunctionalInterface
+public interface NoteVisitor {
+    
+    /**
+     * Visit one note; arguments follow the order of the Note constructor
+     * 访问一个音符；参数顺序与Note构造函数一致
+     */
+    void visit(int pitch, int duration, int velocity, long startTime);
+} 
\ No newline at end of file
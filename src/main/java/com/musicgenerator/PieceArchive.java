@@ -0,0 +1,565 @@
+package com.musicgenerator;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Append-only archive of many pieces in two files, read through memory maps
+ * 以两个文件保存大量作品的只追加归档，通过内存映射读取
+ *
+ * The data file (.mga) holds one record per piece: its length, then tempo, time signature,
+ * ticks per beat and the melody, chord and bass tracks as varints, with start ticks
+ * delta-encoded against the previous note. Chords placed from a ChordShape are stored as
+ * a single shape code. Pieces with extra voices append a voice count and, per voice, its role,
+ * channel, program and notes; records of pieces without voices end after the bass, as they
+ * always have. The index file (.mgi) holds one fixed-width 8-byte record offset
+ * per piece, so finding piece n is one index read. Records are decoded straight from the
+ * mapped data file into the tracks without copying them onto the heap.
+ * 数据文件（.mga）每个作品一条记录：记录长度，随后是速度、拍号、每拍tick数，以及以变长整数
+ * 存储的旋律、和弦和低音轨道，起始tick相对前一个音符做增量编码。由ChordShape放置的和弦
+ * 只存储一个形状编码。带附加声部的作品追加声部数量以及每个声部的角色、通道、音色和音符；
+ * 无附加声部的作品记录仍在低音之后结束，与以前一致。索引文件（.mgi）每个作品存储一个固定8字节的记录偏移量，因此查找第n个
+ * 作品只需读取一次索引。记录直接从映射的数据文件解码到轨道中，不会复制到堆上。
+ */
+public class PieceArchive implements Closeable {
+    
+    public static final String DATA_EXTENSION = ".mga";
+    public static final String INDEX_EXTENSION = ".mgi";
+    
+    private static final int DATA_MAGIC = 0x4D474131;    // "MGA1"
+    private static final int INDEX_MAGIC = 0x4D474931;   // "MGI1"
+    private static final int HEADER_SIZE = 8;            // Magic and version
+    private static final int VERSION = 1;
+    private static final int MAX_LENGTH_PREFIX = 5;      // Varint of a record length
+    
+    // The data file is mapped in 1 GB segments that overlap by 16 MB, so almost every
+    // record lies inside one segment; the rare record crossing an overlap is mapped alone
+    // 数据文件按1GB分段映射，相邻分段重叠16MB，因此几乎所有记录都位于单个分段内；
+    // 极少数跨越重叠区的记录单独映射
+    private static final long SEGMENT_SIZE = 1L << 30;
+    private static final long SEGMENT_OVERLAP = 16L << 20;
+    
+    private final FileChannel dataChannel;
+    private final MappedByteBuffer index;
+    private final MappedByteBuffer[] segments;
+    private final int size;
+    
+    private PieceArchive(FileChannel dataChannel, MappedByteBuffer index, MappedByteBuffer[] segments, int size) {
+        this.dataChannel = dataChannel;
+        this.index = index;
+        this.segments = segments;
+        this.size = size;
+    }
+    
+    /**
+     * Open an archive for reading; pieces appended later are not visible to this instance
+     * 打开归档用于读取；之后追加的作品对此实例不可见
+     */
+    public static PieceArchive open(Path dataFile) throws IOException {
+        Path indexFile = indexFile(dataFile);
+        int size;
+        MappedByteBuffer index;
+        try (FileChannel indexChannel = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+            if (indexChannel.size() < HEADER_SIZE) {
+                throw new IOException("Not a piece archive: " + indexFile);
+            }
+            long entries = (indexChannel.size() - HEADER_SIZE) / 8;
+            if (entries > (Integer.MAX_VALUE - HEADER_SIZE) / 8) {
+                throw new IOException("Archive index too large: " + indexFile);
+            }
+            size = (int) entries;
+            index = indexChannel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE + size * 8L);
+        }
+        checkHeader(index, INDEX_MAGIC, indexFile);
+        
+        FileChannel dataChannel = FileChannel.open(dataFile, StandardOpenOption.READ);
+        try {
+            long length = dataChannel.size();
+            MappedByteBuffer[] segments = new MappedByteBuffer[(int) ((length + SEGMENT_SIZE - 1) / SEGMENT_SIZE)];
+            for (int i = 0; i < segments.length; i++) {
+                long start = i * SEGMENT_SIZE;
+                segments[i] = dataChannel.map(FileChannel.MapMode.READ_ONLY, start,
+                                              Math.min(length - start, SEGMENT_SIZE + SEGMENT_OVERLAP));
+            }
+            if (segments.length == 0) {
+                throw new IOException("Empty archive data file: " + dataFile);
+            }
+            checkHeader(segments[0], DATA_MAGIC, dataFile);
+            return new PieceArchive(dataChannel, index, segments, size);
+        } catch (IOException | RuntimeException e) {
+            dataChannel.close();
+            throw e;
+        }
+    }
+    
+    private static void checkHeader(ByteBuffer buffer, int magic, Path file) throws IOException {
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != magic) {
+            throw new IOException("Not a piece archive: " + file);
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported archive version " + buffer.getInt(4) + ": " + file);
+        }
+    }
+    
+    /**
+     * The index file belonging to a data file: archive.mga -> archive.mgi
+     * 数据文件对应的索引文件：archive.mga -> archive.mgi
+     */
+    public static Path indexFile(Path dataFile) {
+        String name = dataFile.getFileName().toString();
+        if (name.endsWith(DATA_EXTENSION)) {
+            name = name.substring(0, name.length() - DATA_EXTENSION.length());
+        }
+        return dataFile.resolveSibling(name + INDEX_EXTENSION);
+    }
+    
+    /**
+     * Number of pieces in the archive
+     * 归档中的作品数量
+     */
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * Decode the piece at an index; safe to call from several threads at once
+     * 解码指定位置的作品；可以从多个线程同时调用
+     */
+    public MusicalPiece read(int pieceIndex) throws IOException {
+        long offset = index.getLong(HEADER_SIZE + 8 * Objects.checkIndex(pieceIndex, size));
+        int segment = (int) (offset / SEGMENT_SIZE);
+        ByteBuffer data = segments[segment];
+        int position = (int) (offset - segment * SEGMENT_SIZE);
+        int[] cursor = {position};
+        int length = readVarInt(data, cursor);
+        if (cursor[0] + (long) length > data.limit()) {
+            // The record crosses the end of the segment's overlap
+            // 记录跨越了分段重叠区的末尾
+            data = dataChannel.map(FileChannel.MapMode.READ_ONLY, offset, cursor[0] - position + (long) length);
+            cursor[0] -= position;
+        }
+        try {
+            return decode(data, cursor, cursor[0] + length);
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("Corrupt archive record " + pieceIndex, e);
+        }
+    }
+    
+    /**
+     * Write the piece at an index as a Standard MIDI File through MidiExporter
+     * 通过MidiExporter将指定位置的作品写为标准MIDI文件
+     */
+    public void extract(int pieceIndex, Path midiFile) throws IOException {
+        MusicalPiece piece = read(pieceIndex);
+        try (OutputStream out = Files.newOutputStream(midiFile)) {
+            MidiExporter.exportToMidi(piece, out);
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Cannot export piece " + pieceIndex + ": " + e.getMessage(), e);
+        }
+    }
+    
+    @Override
+    public void close() throws IOException {
+        dataChannel.close();
+    }
+    
+    private static MusicalPiece decode(ByteBuffer data, int[] cursor, int end) {
+        MusicalPiece piece = new MusicalPiece();
+        piece.setTempo(readVarInt(data, cursor));
+        piece.setTimeSignature(readVarInt(data, cursor));
+        piece.setTicksPerBeat(readVarInt(data, cursor));
+        decodeNotes(data, cursor, piece.getMelodyTrack());
+        
+        ChordTrack chords = piece.getChordTrack();
+        int chordCount = readVarInt(data, cursor);
+        long start = 0;
+        for (int i = 0; i < chordCount; i++) {
+            start += readZigZag(data, cursor);
+            int duration = readVarInt(data, cursor);
+            int shape = readVarInt(data, cursor);
+            if (shape > 0) {
+                chords.add(ChordShape.byId(shape - 1), start, duration);
+                continue;
+            }
+            chords.startChord(start, duration);
+            int noteCount = readVarInt(data, cursor);
+            for (int n = 0; n < noteCount; n++) {
+                int pitch = data.get(cursor[0]++);
+                int velocity = data.get(cursor[0]++);
+                chords.addNote(pitch, readVarInt(data, cursor), velocity, start + readZigZag(data, cursor));
+            }
+        }
+        
+        decodeNotes(data, cursor, piece.getBassTrack());
+        
+        if (cursor[0] < end) {
+            int voiceCount = readVarInt(data, cursor);
+            for (int i = 0; i < voiceCount; i++) {
+                Voice.Role role = Voice.Role.values()[readVarInt(data, cursor)];
+                int channel = readVarInt(data, cursor);
+                Voice voice = new Voice(new Voice.Spec(role, channel, readVarInt(data, cursor)));
+                decodeNotes(data, cursor, voice.getTrack());
+                piece.addVoice(voice);
+            }
+        }
+        return piece;
+    }
+    
+    private static void decodeNotes(ByteBuffer data, int[] cursor, NoteTrack track) {
+        int count = readVarInt(data, cursor);
+        long start = 0;
+        for (int i = 0; i < count; i++) {
+            int pitch = data.get(cursor[0]++);
+            int velocity = data.get(cursor[0]++);
+            int duration = readVarInt(data, cursor);
+            start += readZigZag(data, cursor);
+            track.add(pitch, duration, velocity, start);
+        }
+    }
+    
+    private static int readVarInt(ByteBuffer data, int[] cursor) {
+        return (int) readVarLong(data, cursor);
+    }
+    
+    private static long readVarLong(ByteBuffer data, int[] cursor) {
+        int position = cursor[0];
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = data.get(position++);
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        cursor[0] = position;
+        return value;
+    }
+    
+    private static long readZigZag(ByteBuffer data, int[] cursor) {
+        long value = readVarLong(data, cursor);
+        return (value >>> 1) ^ -(value & 1);
+    }
+    
+    /**
+     * Appends pieces to an archive, creating it if needed. Appends are serialized, so one
+     * writer can be shared by many generator threads; pieces are numbered in append order.
+     * 向归档追加作品，必要时创建归档。追加操作是串行的，因此多个生成线程可以共享一个写入器；
+     * 作品按追加顺序编号。
+     */
+    public static class Writer implements Closeable {
+        private final FileChannel data;
+        private final FileChannel index;
+        private final ByteBuffer indexEntry = ByteBuffer.allocate(8);
+        private byte[] buffer = new byte[8192];
+        private int length;
+        private long dataEnd;
+        private int size;
+        
+        public Writer(Path dataFile) throws IOException {
+            this.data = FileChannel.open(dataFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                         StandardOpenOption.WRITE);
+            try {
+                this.index = FileChannel.open(indexFile(dataFile), StandardOpenOption.CREATE,
+                                              StandardOpenOption.READ, StandardOpenOption.WRITE);
+            } catch (IOException e) {
+                data.close();
+                throw e;
+            }
+            try {
+                recover(dataFile);
+            } catch (IOException | RuntimeException e) {
+                closeChannels();
+                throw e;
+            }
+        }
+        
+        /**
+         * Write fresh headers, or drop anything past the last complete indexed record
+         * 写入新的文件头，或丢弃最后一条完整索引记录之后的内容
+         */
+        private void recover(Path dataFile) throws IOException {
+            if (data.size() == 0 && index.size() == 0) {
+                writeFully(data, header(DATA_MAGIC), 0);
+                writeFully(index, header(INDEX_MAGIC), 0);
+                dataEnd = HEADER_SIZE;
+                return;
+            }
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            readFully(index, header, 0);
+            checkHeader(header, INDEX_MAGIC, indexFile(dataFile));
+            readFully(data, header.clear(), 0);
+            checkHeader(header, DATA_MAGIC, dataFile);
+            
+            size = (int) Math.min(Integer.MAX_VALUE, (index.size() - HEADER_SIZE) / 8);
+            dataEnd = HEADER_SIZE;
+            if (size > 0) {
+                ByteBuffer last = ByteBuffer.allocate(8);
+                readFully(index, last, HEADER_SIZE + 8L * (size - 1));
+                long offset = last.getLong(0);
+                ByteBuffer prefix = ByteBuffer.allocate(5);
+                data.read(prefix, offset);
+                int[] cursor = {0};
+                int recordLength = readVarInt(prefix, cursor);
+                dataEnd = offset + cursor[0] + recordLength;
+                if (dataEnd > data.size()) {
+                    throw new IOException("Last archive record is incomplete: " + dataFile);
+                }
+            }
+            index.truncate(HEADER_SIZE + 8L * size);
+            data.truncate(dataEnd);
+        }
+        
+        private static ByteBuffer header(int magic) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(magic).putInt(VERSION).flip();
+            return header;
+        }
+        
+        /**
+         * Append a piece, returning its index in the archive
+         * 追加一个作品，返回其在归档中的位置
+         */
+        public synchronized int append(MusicalPiece piece) throws IOException {
+            if (size == Integer.MAX_VALUE) {
+                throw new IOException("Archive is full");
+            }
+            // Encode after room for the length prefix, then put the prefix right before
+            // the record so both are written in one call
+            // 在长度前缀的预留空间之后编码，再将前缀紧贴记录之前写入，两者一次写出
+            length = MAX_LENGTH_PREFIX;
+            encode(piece);
+            int recordLength = length - MAX_LENGTH_PREFIX;
+            int start = MAX_LENGTH_PREFIX - varIntSize(recordLength);
+            int end = length;
+            length = start;
+            writeVarLong(recordLength);
+            length = end;
+            writeFully(data, ByteBuffer.wrap(buffer, start, end - start), dataEnd);
+            
+            indexEntry.clear();
+            indexEntry.putLong(0, dataEnd);
+            writeFully(index, indexEntry, HEADER_SIZE + 8L * size);
+            dataEnd += end - start;
+            return size++;
+        }
+        
+        public synchronized int size() {
+            return size;
+        }
+        
+        /**
+         * Flush appended pieces to the storage device
+         * 将已追加的作品刷新到存储设备
+         */
+        public synchronized void force() throws IOException {
+            data.force(false);
+            index.force(false);
+        }
+        
+        @Override
+        public void close() throws IOException {
+            closeChannels();
+        }
+        
+        // Also used by the constructor, which must not call the overridable close()
+        // 构造函数也会调用；构造函数不能调用可被覆盖的close()
+        private void closeChannels() throws IOException {
+            try {
+                data.close();
+            } finally {
+                index.close();
+            }
+        }
+        
+        private void encode(MusicalPiece piece) {
+            writeVarLong(piece.getTempo());
+            writeVarLong(piece.getTimeSignature());
+            writeVarLong(piece.getTicksPerBeat());
+            encodeNotes(piece.getMelodyTrack());
+            
+            ChordTrack chords = piece.getChordTrack();
+            writeVarLong(chords.size());
+            long previousStart = 0;
+            for (int i = 0; i < chords.size(); i++) {
+                long start = chords.getStartTime(i);
+                writeZigZag(start - previousStart);
+                previousStart = start;
+                writeVarLong(checkDuration(chords.getDuration(i)));
+                ChordShape shape = chords.getShape(i);
+                if (shape != null) {
+                    writeVarLong(1 + shape.getId());
+                    continue;
+                }
+                writeVarLong(0);
+                writeVarLong(chords.getNoteCount(i));
+                chords.forEachNote(i, (pitch, duration, velocity, noteStart) -> {
+                    writeByte(checkData(pitch));
+                    writeByte(checkData(velocity));
+                    writeVarLong(checkDuration(duration));
+                    writeZigZag(noteStart - start);
+                });
+            }
+            
+            encodeNotes(piece.getBassTrack());
+            
+            if (!piece.getVoices().isEmpty()) {
+                writeVarLong(piece.getVoices().size());
+                for (Voice voice : piece.getVoices()) {
+                    writeVarLong(voice.getRole().ordinal());
+                    writeVarLong(voice.getChannel());
+                    writeVarLong(voice.getProgram());
+                    encodeNotes(voice.getTrack());
+                }
+            }
+        }
+        
+        private void encodeNotes(NoteTrack notes) {
+            writeVarLong(notes.size());
+            long previousStart = 0;
+            for (int i = 0; i < notes.size(); i++) {
+                writeByte(checkData(notes.getPitch(i)));
+                writeByte(checkData(notes.getVelocity(i)));
+                writeVarLong(checkDuration(notes.getDuration(i)));
+                long start = notes.getStartTime(i);
+                writeZigZag(start - previousStart);
+                previousStart = start;
+            }
+        }
+        
+        private static int checkData(int value) {
+            if (value < 0 || value > 127) {
+                throw new IllegalArgumentException("MIDI data byte out of range: " + value);
+            }
+            return value;
+        }
+        
+        private static int checkDuration(int duration) {
+            if (duration < 0) {
+                throw new IllegalArgumentException("Negative duration: " + duration);
+            }
+            return duration;
+        }
+        
+        private void writeZigZag(long value) {
+            writeVarLong((value << 1) ^ (value >> 63));
+        }
+        
+        /**
+         * Unsigned varint: 7 bits per byte, least significant group first
+         * 无符号变长整数：每字节7位，低位组在前
+         */
+        private void writeVarLong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                writeByte((int) (value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            writeByte((int) value);
+        }
+        
+        private static int varIntSize(int value) {
+            int bytes = 1;
+            while ((value & ~0x7F) != 0) {
+                value >>>= 7;
+                bytes++;
+            }
+            return bytes;
+        }
+        
+        private void writeByte(int value) {
+            ensureCapacity(length + 1);
+            buffer[length++] = (byte) value;
+        }
+        
+        private void ensureCapacity(int capacity) {
+            if (capacity > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(capacity, buffer.length * 2));
+            }
+        }
+        
+        private static void writeFully(FileChannel channel, ByteBuffer source, long position) throws IOException {
+            while (source.hasRemaining()) {
+                position += channel.write(source, position);
+            }
+        }
+        
+        private static void readFully(FileChannel channel, ByteBuffer target, long position) throws IOException {
+            while (target.hasRemaining()) {
+                int read = channel.read(target, position);
+                if (read < 0) {
+                    throw new IOException("Unexpected end of archive file");
+                }
+                position += read;
+            }
+        }
+    }
+    
+    /**
+     * Command line entry: --extract ARCHIVE [--index N --output FILE]
+     * 命令行入口：--extract ARCHIVE [--index N --output FILE]
+     *
+     * Without --index only the number of pieces is printed.
+     * 不指定--index时只输出作品数量。
+     *
+     * @return process exit code: 0 on success, 1 on read errors, 2 on bad arguments
+     */
+    public static int run(String[] args, PrintStream out) {
+        Path archive = null;
+        Integer pieceIndex = null;
+        Path output = null;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if (i + 1 >= args.length) {
+                    throw new IllegalArgumentException("Missing value for " + args[i]);
+                }
+                String value = args[++i];
+                switch (args[i - 1]) {
+                    case "--extract": archive = Paths.get(value); break;
+                    case "--index": pieceIndex = Integer.parseInt(value); break;
+                    case "--output": output = Paths.get(value); break;
+                    default: throw new IllegalArgumentException("Unknown option: " + args[i - 1]);
+                }
+            }
+            if (archive == null) {
+                throw new IllegalArgumentException("--extract ARCHIVE is required");
+            }
+        } catch (NumberFormatException e) {
+            out.println("Error: invalid number: " + e.getMessage());
+            return 2;
+        } catch (IllegalArgumentException e) {
+            out.println("Error: " + e.getMessage());
+            out.println("Usage: MusicGeneratorApp --extract ARCHIVE" + DATA_EXTENSION + " [--index N --output FILE.mid]");
+            return 2;
+        }
+        
+        try (PieceArchive pieces = open(archive)) {
+            if (pieceIndex == null) {
+                out.println(archive + ": " + pieces.size() + " pieces");
+                return 0;
+            }
+            if (pieceIndex < 0 || pieceIndex >= pieces.size()) {
+                out.println("Error: index " + pieceIndex + " out of range, archive has " + pieces.size() + " pieces");
+                return 2;
+            }
+            Path target = output != null ? output : Paths.get(String.format("piece_%06d.mid", pieceIndex));
+            pieces.extract(pieceIndex, target);
+            out.println("Extracted piece " + pieceIndex + " to " + target.toAbsolutePath());
+            return 0;
+        } catch (IOException e) {
+            out.println("Error: " + e.getMessage());
+            return 1;
+        }
+    }
+} 
\ No newline at end of file
@@ -0,0 +1,247 @@
+package com.musicgenerator;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Base64;
+
+/**
+ * Compact identifier from which a piece can be regenerated bit-exactly
+ * 可据以逐位精确重新生成作品的紧凑标识符
+ *
+ * Generation draws all randomness from one java.util.Random seeded with the piece seed,
+ * and java.util.Random's sequence is fixed by its specification, so the seed plus the
+ * settings below reproduce the same piece on any JVM. They are bit-packed into 19 bytes
+ * and written as 26 URL-safe Base64 characters:
+ *   version 3 | scale 3 (0 = random) | root 7 | tempo 9 | ticksPerBeat 15 | measures 16
+ *   | timeSignature 5 | melody 10 | harmony 10 | rhythm 10 | seed 64
+ * The root is stored as 0 when the scale is random, because generation ignores it then,
+ * so every piece has exactly one ID. Complexities are stored in thousandths, so only values that are multiples of 0.001 can
+ * be encoded; pieces generated with a learned melody or progression model cannot be
+ * encoded because the model is not part of the ID, nor can pieces with extra voices or
+ * a melody search, whose result may depend on its time budget.
+ * 生成过程的所有随机性都来自一个用作品种子初始化的java.util.Random，且其序列由规范固定，
+ * 因此种子加上以下设置可以在任何JVM上重现相同的作品。它们按位打包为19字节，
+ * 并写成26个URL安全的Base64字符。随机音阶时生成过程忽略根音，因此根音存储为0，使每个作品只有一个ID。复杂度以千分之一为单位存储，因此只能编码0.001整数倍的值；
+ * 使用学习所得旋律或和弦进行模型生成的作品无法编码，因为模型不包含在ID中，带附加声部或使用旋律搜索（其结果可能取决于时间预算）的作品也无法编码。
+ */
+public final class PieceId {
+    
+    public static final int LENGTH = 26;
+    
+    private static final int VERSION = 1;
+    private static final int BYTES = 19;
+    private static final double COMPLEXITY_SCALE = 1000.0;
+    
+    private final GenerationParameters params;
+    private final long seed;
+    private final String text;
+    
+    private PieceId(GenerationParameters params, long seed, String text) {
+        this.params = params;
+        this.seed = seed;
+        this.text = text;
+    }
+    
+    /**
+     * The ID of the piece generated from these parameters and piece seed
+     * 由这些参数和作品种子生成的作品的ID
+     */
+    public static PieceId of(GenerationParameters params, long seed) {
+        if (params.getMelodyModel() != null || params.getProgressionModel() != null) {
+            throw new IllegalArgumentException("Pieces generated with a learned model have no piece ID");
+        }
+        if (params.getMelodySearch() != null) {
+            throw new IllegalArgumentException("Pieces from a time-budgeted melody search have no piece ID");
+        }
+        if (!params.getVoices().isEmpty()) {
+            throw new IllegalArgumentException("Pieces with extra voices have no piece ID");
+        }
+        GenerationParameters canonical = params.copy();
+        if (canonical.getScaleType() == null) {
+            canonical.setRootNote(0);
+        }
+        BitPacker bits = new BitPacker(new byte[BYTES]);
+        bits.put(VERSION, 3);
+        bits.put(canonical.getScaleType() == null ? 0 : canonical.getScaleType().ordinal() + 1, 3);
+        bits.put(checkRange("root", canonical.getRootNote(), 0, 127), 7);
+        // The config's tempo range; below 4 BPM the microseconds per beat would overflow the 24-bit Set Tempo event
+        // 与配置相同的速度范围；低于4 BPM时每拍微秒数会超出24位的Set Tempo事件
+        bits.put(checkRange("tempo", canonical.getTempo(), GenerationParameters.MIN_TEMPO,
+                            GenerationParameters.MAX_TEMPO), 9);
+        bits.put(checkRange("ticksPerBeat", canonical.getTicksPerBeat(), 1, 32767), 15);
+        bits.put(checkRange("measures", canonical.getMeasures(), 1, 65535), 16);
+        bits.put(checkRange("timeSignature", canonical.getTimeSignature(), 1, 31), 5);
+        bits.put(thousandths("melody", canonical.getMelodyComplexity()), 10);
+        bits.put(thousandths("harmony", canonical.getHarmonyComplexity()), 10);
+        bits.put(thousandths("rhythm", canonical.getRhythmVariety()), 10);
+        bits.put(seed >>> 32, 32);
+        bits.put(seed & 0xFFFFFFFFL, 32);
+        String text = Base64.getUrlEncoder().withoutPadding().encodeToString(bits.bytes);
+        return new PieceId(canonical, seed, text);
+    }
+    
+    /**
+     * Decode an ID produced by toString
+     * 解码由toString生成的ID
+     */
+    public static PieceId parse(String text) {
+        String trimmed = text.trim();
+        if (trimmed.length() != LENGTH) {
+            throw new IllegalArgumentException("Piece ID must be " + LENGTH + " characters: " + text);
+        }
+        byte[] bytes;
+        try {
+            bytes = Base64.getUrlDecoder().decode(trimmed);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed piece ID: " + text);
+        }
+        BitPacker bits = new BitPacker(bytes);
+        int version = (int) bits.get(3);
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported piece ID version " + version + ": " + text);
+        }
+        GenerationParameters params = new GenerationParameters();
+        int scale = (int) bits.get(3);
+        MusicTheory.ScaleType[] types = MusicTheory.ScaleType.values();
+        if (scale > types.length) {
+            throw new IllegalArgumentException("Unknown scale in piece ID: " + text);
+        }
+        params.setScaleType(scale == 0 ? null : types[scale - 1]);
+        params.setRootNote((int) bits.get(7));
+        params.setTempo((int) bits.get(9));
+        params.setTicksPerBeat((int) bits.get(15));
+        params.setMeasures((int) bits.get(16));
+        params.setTimeSignature((int) bits.get(5));
+        params.setMelodyComplexity(bits.get(10) / COMPLEXITY_SCALE);
+        params.setHarmonyComplexity(bits.get(10) / COMPLEXITY_SCALE);
+        params.setRhythmVariety(bits.get(10) / COMPLEXITY_SCALE);
+        long seed = bits.get(32) << 32 | bits.get(32);
+        
+        // Re-encoding rejects out-of-range fields and gives the canonical text
+        // 重新编码会拒绝超出范围的字段并得到规范文本
+        PieceId id = of(params, seed);
+        if (!id.text.equals(trimmed)) {
+            throw new IllegalArgumentException("Malformed piece ID: " + text);
+        }
+        return id;
+    }
+    
+    private static int checkRange(String name, int value, int min, int max) {
+        if (value < min || value > max) {
+            throw new IllegalArgumentException(name + " must be between " + min + " and " + max
+                                               + " to have a piece ID: " + value);
+        }
+        return value;
+    }
+    
+    private static int thousandths(String name, double value) {
+        long scaled = Math.round(value * COMPLEXITY_SCALE);
+        if (!(value >= 0.0 && value <= 1.0) || scaled / COMPLEXITY_SCALE != value) {
+            throw new IllegalArgumentException(name + " must be a multiple of 0.001 between 0 and 1"
+                                               + " to have a piece ID: " + value);
+        }
+        return (int) scaled;
+    }
+    
+    /**
+     * Regenerate the piece; the result is identical every time and on every machine
+     * 重新生成作品；每次、在每台机器上结果都相同
+     */
+    public MusicalPiece generate() {
+        return BatchGenerator.generateOne(params, seed);
+    }
+    
+    // Getters
+    public long getSeed() { return seed; }
+    public GenerationParameters getParameters() { return params.copy(); }
+    
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof PieceId && ((PieceId) o).text.equals(text);
+    }
+    
+    @Override
+    public int hashCode() {
+        return text.hashCode();
+    }
+    
+    @Override
+    public String toString() {
+        return text;
+    }
+    
+    /**
+     * Regenerate a piece from its ID on the command line
+     * 在命令行中根据ID重新生成作品
+     *
+     * @return process exit code: 0 on success, 1 on I/O errors, 2 on bad arguments
+     */
+    public static int run(String[] args, PrintStream out) {
+        PieceId id = null;
+        Path output = null;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if (i + 1 >= args.length) {
+                    throw new IllegalArgumentException("Missing value for " + args[i]);
+                }
+                String value = args[++i];
+                switch (args[i - 1]) {
+                    case "--piece": id = parse(value); break;
+                    case "--output": output = Paths.get(value); break;
+                    default: throw new IllegalArgumentException("Unknown option: " + args[i - 1]);
+                }
+            }
+            if (id == null) {
+                throw new IllegalArgumentException("--piece ID is required");
+            }
+        } catch (IllegalArgumentException e) {
+            out.println("Error: " + e.getMessage());
+            out.println("Usage: MusicGeneratorApp --piece ID [--output FILE.mid]");
+            return 2;
+        }
+        
+        Path target = output != null ? output : Paths.get("piece_" + id + ".mid");
+        try {
+            Files.write(target, new SmfWriter().toByteArray(id.generate()));
+        } catch (IOException e) {
+            out.println("Error: cannot write " + target + ": " + e.getMessage());
+            return 1;
+        }
+        out.println("Regenerated " + id + " (" + id.params + ", seed " + id.seed + ") to " + target.toAbsolutePath());
+        return 0;
+    }
+    
+    /**
+     * Big-endian bit writer and reader over a fixed byte array
+     * 基于固定字节数组的大端位写入和读取器
+     */
+    private static class BitPacker {
+        private final byte[] bytes;
+        private int position;
+        
+        BitPacker(byte[] bytes) {
+            this.bytes = bytes;
+        }
+        
+        void put(long value, int width) {
+            for (int i = width - 1; i >= 0; i--) {
+                if ((value >>> i & 1) != 0) {
+                    bytes[position >>> 3] |= (byte) (0x80 >>> (position & 7));
+                }
+                position++;
+            }
+        }
+        
+        long get(int width) {
+            long value = 0;
+            for (int i = 0; i < width; i++) {
+                value = value << 1 | (bytes[position >>> 3] >>> (7 - (position & 7)) & 1);
+                position++;
+            }
+            return value;
+        }
+    }
+} 
\ No newline at end of file
@@ -0,0 +1,176 @@
+package com.musicgenerator;
+
+import java.util.Objects;
+
+/**
+ * Batch analysis kernels over primitive pitch and velocity arrays
+ * 基于原始类型音高和力度数组的批量分析内核
+ *
+ * Each kernel processes a whole array in one call instead of one Note at a time, e.g. the
+ * arrays from MusicalPiece.getAllPitches. When the JVM was started with
+ * --add-modules jdk.incubator.vector the kernels run on SIMD lanes through the Vector API;
+ * otherwise, or when the hardware has fewer than 4 int lanes, the scalar versions below are
+ * used. Both give identical results. Pitches passed to intervalClassHistogram and
+ * consonanceMask must be MIDI pitches 0-127; other values are rejected.
+ * 每个内核一次调用处理整个数组，而不是逐个Note处理，例如MusicalPiece.getAllPitches返回的数组。
+ * 当JVM以--add-modules jdk.incubator.vector启动时，内核通过Vector API在SIMD通道上运行；
+ * 否则，或硬件的int通道少于4个时，使用下面的标量版本。两者结果完全相同。
+ * 传给intervalClassHistogram和consonanceMask的音高必须是MIDI音高0-127，其他值会被拒绝。
+ */
+public final class PitchKernels {
+    
+    public static final int MIN_PITCH = 21;    // A0, lowest piano key
+    public static final int MAX_PITCH = 108;   // C8, highest piano key
+    public static final int INTERVAL_CLASSES = 7;   // 0 (unison/octave) to 6 (tritone)
+    
+    private static final boolean VECTORIZED = vectorApiUsable();
+    
+    private PitchKernels() {
+    }
+    
+    private static boolean vectorApiUsable() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return false;
+        }
+        try {
+            return VectorPitchKernels.lanes() >= 4;
+        } catch (LinkageError e) {
+            return false;
+        }
+    }
+    
+    /**
+     * Whether the kernels run on the Vector API rather than the scalar fallback
+     * 内核是否使用Vector API运行而非标量后备实现
+     */
+    public static boolean isVectorized() {
+        return VECTORIZED;
+    }
+    
+    /**
+     * Transpose pitches by a number of semitones, clamped to the piano range 21-108
+     * 将音高移调指定的半音数，并限制在钢琴音域21-108内
+     *
+     * @param target may be the source array to transpose in place
+     */
+    public static void transpose(int[] source, int[] target, int length, int semitones) {
+        addClamped(source, target, length, semitones, MIN_PITCH, MAX_PITCH);
+    }
+    
+    /**
+     * Add a constant to every value and clamp the result to [min, max], e.g. to scale
+     * velocities into 1-127
+     * 为每个值加上一个常数并将结果限制在[min, max]内，例如将力度调整到1-127
+     */
+    public static void addClamped(int[] source, int[] target, int length, int delta, int min, int max) {
+        checkLength(source, length);
+        checkLength(target, length);
+        if (VECTORIZED) {
+            VectorPitchKernels.addClamped(source, target, length, delta, min, max);
+        } else {
+            addClampedScalar(source, target, length, delta, min, max);
+        }
+    }
+    
+    /**
+     * Count the interval classes between consecutive pitches into histogram[0..6]
+     * 统计相邻音高之间的音程类别，累加到histogram[0..6]中
+     *
+     * The interval class of two pitches is their distance in semitones modulo 12, folded so
+     * that an interval and its inversion count the same: a fifth (7) counts as a fourth (5).
+     * 两个音高的音程类别是其半音距离模12，并折叠使音程与其转位计为同一类：五度（7）计为四度（5）。
+     *
+     * @param pitches MIDI pitches 0-127
+     * @param histogram at least INTERVAL_CLASSES long; counts are added to what it holds
+     * @throws IllegalArgumentException if a pitch is outside 0-127
+     */
+    public static void intervalClassHistogram(int[] pitches, int length, long[] histogram) {
+        checkLength(pitches, length);
+        checkHistogram(histogram);
+        checkPitches(pitches, length);
+        if (VECTORIZED) {
+            VectorPitchKernels.intervalClassHistogram(pitches, length, histogram);
+        } else {
+            intervalClassHistogramScalar(pitches, length, histogram);
+        }
+    }
+    
+    /**
+     * Mark which pitch pairs a[i], b[i] are consonant, as MusicTheory.isConsonant decides
+     * 按MusicTheory.isConsonant的判定，标记哪些音高对a[i]、b[i]是协和的
+     *
+     * @param a MIDI pitches 0-127
+     * @param b MIDI pitches 0-127
+     * @return the number of consonant pairs
+     * @throws IllegalArgumentException if a pitch is outside 0-127
+     */
+    public static int consonanceMask(int[] a, int[] b, int length, boolean[] mask) {
+        checkLength(a, length);
+        checkLength(b, length);
+        Objects.checkFromIndexSize(0, length, mask.length);
+        checkPitches(a, length);
+        checkPitches(b, length);
+        if (VECTORIZED) {
+            return VectorPitchKernels.consonanceMask(a, b, length, mask);
+        }
+        return consonanceMaskScalar(a, b, length, mask);
+    }
+    
+    // Scalar versions, always available; public so benchmarks can compare both paths
+    // 标量版本，始终可用；公开以便基准测试比较两种路径
+    
+    public static void transposeScalar(int[] source, int[] target, int length, int semitones) {
+        addClampedScalar(source, target, length, semitones, MIN_PITCH, MAX_PITCH);
+    }
+    
+    public static void addClampedScalar(int[] source, int[] target, int length, int delta, int min, int max) {
+        for (int i = 0; i < length; i++) {
+            target[i] = Math.max(min, Math.min(max, source[i] + delta));
+        }
+    }
+    
+    public static void intervalClassHistogramScalar(int[] pitches, int length, long[] histogram) {
+        for (int i = 1; i < length; i++) {
+            int semitones = Math.abs(pitches[i] - pitches[i - 1]) % 12;
+            histogram[Math.min(semitones, 12 - semitones)]++;
+        }
+    }
+    
+    public static int consonanceMaskScalar(int[] a, int[] b, int length, boolean[] mask) {
+        int consonant = 0;
+        for (int i = 0; i < length; i++) {
+            boolean isConsonant = TheoryTables.isConsonant(a[i], b[i]);
+            mask[i] = isConsonant;
+            if (isConsonant) {
+                consonant++;
+            }
+        }
+        return consonant;
+    }
+    
+    private static void checkLength(int[] array, int length) {
+        Objects.checkFromIndexSize(0, length, array.length);
+    }
+    
+    /**
+     * The vector mod 12 is only exact for small distances, so pitches are kept to the MIDI range
+     * 向量的模12运算只对较小的距离精确，因此音高限制在MIDI范围内
+     */
+    private static void checkPitches(int[] pitches, int length) {
+        int min = 0;
+        int max = 0;
+        for (int i = 0; i < length; i++) {
+            min = Math.min(min, pitches[i]);
+            max = Math.max(max, pitches[i]);
+        }
+        if (min < 0 || max > 127) {
+            throw new IllegalArgumentException("Pitches must be 0-127: found " + (min < 0 ? min : max));
+        }
+    }
+    
+    private static void checkHistogram(long[] histogram) {
+        if (histogram.length < INTERVAL_CLASSES) {
+            throw new IllegalArgumentException("histogram needs " + INTERVAL_CLASSES + " entries: " + histogram.length);
+        }
+    }
+} 
\ No newline at end of file
@@ -0,0 +1,441 @@
+package com.musicgenerator;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Decodes Standard MIDI Files straight from a ByteBuffer into a MusicalPiece
+ * 直接从ByteBuffer将标准MIDI文件解码为MusicalPiece
+ *
+ * The reverse of SmfWriter: variable-length deltas and running status are decoded in
+ * place, note-on/note-off pairs become notes, and tracks are filled with the channel
+ * layout MidiExporter writes: channel 0 is the melody, notes starting together on
+ * channel 1 are chords and channel 2 is the bass. Notes on any other channel become an
+ * extra voice, in the order of the first track using each channel. A voice's role is
+ * taken from its track name as SmfWriter writes it; without one, channel 9 is percussion
+ * and others are counter-melodies. No MidiEvent objects are created.
+ * Large files are memory-mapped; small ones are read into a pooled buffer. Instances
+ * reuse their buffers and are not thread-safe.
+ * SmfWriter的逆过程：就地解码变长增量时间和运行状态，将音符开始/结束事件配对为音符，
+ * 并按MidiExporter写入的声道布局填充轨道：声道0为旋律，声道1上同时开始的音符为和弦，
+ * 声道2为低音。其他声道上的音符成为附加声部，按首个使用该声道的轨道排序。声部角色取自SmfWriter写入的轨道名称；
+ * 没有名称时，声道9为打击乐，其他声道为对位旋律。不会创建MidiEvent对象。大文件使用内存映射，小文件读入池化缓冲区。
+ * 实例会复用缓冲区，不是线程安全的。
+ */
+public class SmfReader {
+    
+    public static final int MELODY_CHANNEL = 0;
+    public static final int CHORD_CHANNEL = 1;
+    public static final int BASS_CHANNEL = 2;
+    
+    private static final int MAP_THRESHOLD = 1 << 20;   // Memory-map files of 1 MB and more
+    
+    private static final int MTHD = 0x4D546864; // "MThd"
+    private static final int MTRK = 0x4D54726B; // "MTrk"
+    
+    // Pooled read buffer for small files
+    // 小文件使用的池化读取缓冲区
+    private ByteBuffer pooled = ByteBuffer.allocate(64 * 1024);
+    
+    // Decoded notes of all channels in note-on order, reused between files
+    // 所有声道按音符开始顺序解码的音符，在文件之间复用
+    private long[] starts = new long[1024];
+    private int[] durations = new int[1024];
+    private byte[] pitches = new byte[1024];
+    private byte[] velocities = new byte[1024];
+    private byte[] channels = new byte[1024];
+    private int noteCount;
+    
+    // Index of the sounding note per (channel, pitch), or -1
+    // 每个（声道，音高）正在发声的音符索引，或-1
+    private final int[] sounding = new int[16 * 128];
+    
+    // First program change per channel, or -1
+    // 每个声道的第一个音色变更，或-1
+    private final int[] programs = new int[16];
+    
+    // Index of the first MTrk chunk with an event on each channel, or -1, and the role
+    // named by that chunk's track name, or null
+    // 每个声道上第一个含有事件的MTrk块的序号（或-1），以及该块轨道名称所指的角色（或null）
+    private final int[] firstTracks = new int[16];
+    private final Voice.Role[] roles = new Voice.Role[16];
+    
+    private int tempoMPQ;
+    private int timeSignature;
+    
+    /**
+     * Read a MIDI file
+     * 读取MIDI文件
+     */
+    public MusicalPiece read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("MIDI file too large: " + file);
+            }
+            if (size >= MAP_THRESHOLD) {
+                return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+            }
+            if (pooled.capacity() < size) {
+                pooled = ByteBuffer.allocate(Integer.highestOneBit((int) size) << 1);
+            }
+            pooled.clear().limit((int) size);
+            while (pooled.hasRemaining()) {
+                if (channel.read(pooled) < 0) {
+                    throw new IOException("Unexpected end of file: " + file);
+                }
+            }
+            pooled.flip();
+            return read(pooled);
+        }
+    }
+    
+    /**
+     * Decode a MIDI file held in a byte array
+     * 解码保存在字节数组中的MIDI文件
+     */
+    public MusicalPiece read(byte[] data) throws IOException {
+        return read(ByteBuffer.wrap(data));
+    }
+    
+    /**
+     * Decode a MIDI file from the buffer's position to its limit; the position is not changed
+     * 解码缓冲区从position到limit之间的MIDI文件；不改变position
+     */
+    public MusicalPiece read(ByteBuffer data) throws IOException {
+        try {
+            return decode(data, data.position(), data.limit());
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IOException("Truncated MIDI file", e);
+        }
+    }
+    
+    private MusicalPiece decode(ByteBuffer data, int offset, int end) throws IOException {
+        if (end - offset < 14 || data.getInt(offset) != MTHD) {
+            throw new IOException("Not a Standard MIDI File");
+        }
+        int headerLength = data.getInt(offset + 4);
+        int trackCount = data.getShort(offset + 10) & 0xFFFF;
+        int division = data.getShort(offset + 12);
+        if (division <= 0) {
+            throw new IOException("SMPTE time division is not supported");
+        }
+        
+        noteCount = 0;
+        tempoMPQ = 0;
+        timeSignature = 0;
+        Arrays.fill(programs, -1);
+        Arrays.fill(firstTracks, -1);
+        Arrays.fill(roles, null);
+        int pos = offset + 8 + headerLength;
+        for (int track = 0; track < trackCount && pos + 8 <= end; ) {
+            int type = data.getInt(pos);
+            long length = data.getInt(pos + 4) & 0xFFFFFFFFL;
+            int chunkEnd = (int) Math.min(end, pos + 8 + length);
+            if (type == MTRK) {
+                decodeTrack(data, pos + 8, chunkEnd, track);
+                track++;
+            }
+            pos = chunkEnd; // Unknown chunks are skipped
+        }
+        
+        MusicalPiece piece = new MusicalPiece();
+        piece.setTicksPerBeat(division);
+        if (tempoMPQ > 0) {
+            piece.setTempo((int) Math.round(60_000_000.0 / tempoMPQ));
+        }
+        if (timeSignature > 0) {
+            piece.setTimeSignature(timeSignature);
+        }
+        int[] order = noteOrder();
+        fillNotes(order, MELODY_CHANNEL, piece.getMelodyTrack());
+        fillChords(order, piece.getChordTrack());
+        fillNotes(order, BASS_CHANNEL, piece.getBassTrack());
+        fillVoices(order, piece);
+        return piece;
+    }
+    
+    /**
+     * Decode the events of one MTrk chunk
+     * 解码一个MTrk块中的事件
+     */
+    private void decodeTrack(ByteBuffer data, int pos, int end, int track) throws IOException {
+        Arrays.fill(sounding, -1);
+        Voice.Role trackRole = null;
+        long tick = 0;
+        int runningStatus = 0;
+        while (pos < end) {
+            // Variable-length delta time
+            // 变长增量时间
+            int delta = 0;
+            int b;
+            do {
+                b = data.get(pos++);
+                delta = (delta << 7) | (b & 0x7F);
+            } while (b < 0);
+            tick += delta;
+            
+            int status = data.get(pos) & 0xFF;
+            if (status >= 0x80) {
+                pos++;
+            } else if (runningStatus != 0) {
+                status = runningStatus; // Running status: the byte is the first data byte
+            } else {
+                throw new IOException("Data byte without running status at offset " + pos);
+            }
+            
+            if (status == 0xFF) {
+                int type = data.get(pos++) & 0xFF;
+                int length = 0;
+                do {
+                    b = data.get(pos++);
+                    length = (length << 7) | (b & 0x7F);
+                } while (b < 0);
+                if (type == 0x51 && length >= 3 && tempoMPQ == 0) {
+                    tempoMPQ = (data.get(pos) & 0xFF) << 16 | (data.get(pos + 1) & 0xFF) << 8 | (data.get(pos + 2) & 0xFF);
+                } else if (type == 0x58 && length >= 1 && timeSignature == 0) {
+                    timeSignature = data.get(pos) & 0xFF;
+                } else if (type == 0x03) {
+                    trackRole = parseRole(data, pos, length);
+                } else if (type == 0x2F) {
+                    break; // End of track
+                }
+                pos += length;
+                continue;
+            }
+            if (status == 0xF0 || status == 0xF7) {
+                int length = 0;
+                do {
+                    b = data.get(pos++);
+                    length = (length << 7) | (b & 0x7F);
+                } while (b < 0);
+                pos += length;
+                runningStatus = 0;
+                continue;
+            }
+            if (status > 0xF0) {
+                pos += status == 0xF2 ? 2 : (status == 0xF1 || status == 0xF3) ? 1 : 0;
+                continue;
+            }
+            
+            runningStatus = status;
+            int command = status & 0xF0;
+            int channel = status & 0x0F;
+            if (firstTracks[channel] < 0) {
+                firstTracks[channel] = track;
+                roles[channel] = trackRole;
+            }
+            int data1 = data.get(pos++) & 0x7F;
+            if (command == 0xC0 || command == 0xD0) {
+                if (command == 0xC0 && programs[channel] < 0) {
+                    programs[channel] = data1;
+                }
+                continue; // One data byte: program change, channel pressure
+            }
+            int data2 = data.get(pos++) & 0x7F;
+            if (command == 0x90 && data2 > 0) {
+                noteOn(tick, channel, data1, data2);
+            } else if (command == 0x80 || command == 0x90) {
+                noteOff(tick, channel, data1);
+            }
+        }
+        
+        // Notes still sounding at the end of the track end there
+        // 轨道结束时仍在发声的音符在此结束
+        for (int key = 0; key < sounding.length; key++) {
+            if (sounding[key] >= 0) {
+                noteOff(tick, key >>> 7, key & 0x7F);
+            }
+        }
+    }
+    
+    private static Voice.Role parseRole(ByteBuffer data, int pos, int length) {
+        for (Voice.Role role : Voice.Role.values()) {
+            String name = role.name();
+            boolean same = name.length() == length;
+            for (int i = 0; i < length && same; i++) {
+                same = data.get(pos + i) == name.charAt(i);
+            }
+            if (same) {
+                return role;
+            }
+        }
+        return null;
+    }
+    
+    private void noteOn(long tick, int channel, int pitch, int velocity) {
+        noteOff(tick, channel, pitch); // A repeated note-on ends the sounding note
+        if (noteCount == starts.length) {
+            int capacity = noteCount * 2;
+            starts = Arrays.copyOf(starts, capacity);
+            durations = Arrays.copyOf(durations, capacity);
+            pitches = Arrays.copyOf(pitches, capacity);
+            velocities = Arrays.copyOf(velocities, capacity);
+            channels = Arrays.copyOf(channels, capacity);
+        }
+        starts[noteCount] = tick;
+        pitches[noteCount] = (byte) pitch;
+        velocities[noteCount] = (byte) velocity;
+        channels[noteCount] = (byte) channel;
+        sounding[channel << 7 | pitch] = noteCount++;
+    }
+    
+    private void noteOff(long tick, int channel, int pitch) {
+        int key = channel << 7 | pitch;
+        int index = sounding[key];
+        if (index >= 0) {
+            durations[index] = (int) Math.min(Integer.MAX_VALUE, tick - starts[index]);
+            sounding[key] = -1;
+        }
+    }
+    
+    /**
+     * Notes are in start order within each track; only notes of one channel spread over
+     * several tracks need a stable sort. Returns null when no sort is needed.
+     * 每个轨道内的音符已按开始时间排序；只有分布在多个轨道上的同一声道音符需要稳定排序。
+     * 无需排序时返回null。
+     */
+    private int[] noteOrder() {
+        long[] lastStart = new long[16];
+        boolean sorted = true;
+        for (int i = 0; i < noteCount && sorted; i++) {
+            sorted = starts[i] >= lastStart[channels[i]];
+            lastStart[channels[i]] = starts[i];
+        }
+        if (sorted) {
+            return null;
+        }
+        Integer[] order = new Integer[noteCount];
+        for (int i = 0; i < noteCount; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingLong(i -> starts[i]));
+        int[] result = new int[noteCount];
+        for (int i = 0; i < noteCount; i++) {
+            result[i] = order[i];
+        }
+        return result;
+    }
+    
+    private void fillNotes(int[] order, int channel, NoteTrack track) {
+        for (int n = 0; n < noteCount; n++) {
+            int i = order == null ? n : order[n];
+            if (channels[i] == channel) {
+                track.add(pitches[i], durations[i], velocities[i], starts[i]);
+            }
+        }
+    }
+    
+    /**
+     * One voice per remaining channel that has notes or a role-named track, in the order of
+     * the first track using each channel, so voices come back in the order they were written
+     * 每个其余有音符或有以角色命名轨道的声道对应一个声部，按首个使用该声道的轨道排序，
+     * 因此声部按写入时的顺序恢复
+     */
+    private void fillVoices(int[] order, MusicalPiece piece) {
+        int used = 0;
+        for (int i = 0; i < noteCount; i++) {
+            used |= 1 << channels[i];
+        }
+        int[] voiceChannels = new int[16];
+        int voiceCount = 0;
+        for (int channel = BASS_CHANNEL + 1; channel < 16; channel++) {
+            if ((used & 1 << channel) == 0 && roles[channel] == null) {
+                continue;
+            }
+            // Insertion sort by first track; channels are visited in ascending order, so ties keep it
+            // 按首个轨道插入排序；声道按升序访问，因此相同时保持声道顺序
+            int k = voiceCount++;
+            while (k > 0 && firstTracks[voiceChannels[k - 1]] > firstTracks[channel]) {
+                voiceChannels[k] = voiceChannels[k - 1];
+                k--;
+            }
+            voiceChannels[k] = channel;
+        }
+        for (int v = 0; v < voiceCount; v++) {
+            int channel = voiceChannels[v];
+            Voice.Role role = roles[channel] != null ? roles[channel]
+                            : channel == Voice.PERCUSSION_CHANNEL ? Voice.Role.PERCUSSION : Voice.Role.COUNTER_MELODY;
+            int program = programs[channel] >= 0 ? programs[channel] : role.getDefaultProgram();
+            Voice voice = new Voice(new Voice.Spec(role, channel, program));
+            fillNotes(order, channel, voice.getTrack());
+            piece.addVoice(voice);
+        }
+    }
+    
+    /**
+     * Group chord-channel notes that start on the same tick into chords, restoring the
+     * shared ChordShape when the notes are exactly one
+     * 将和弦声道上同一tick开始的音符组成和弦，若音符恰好构成某个共享ChordShape则恢复该形状
+     */
+    private void fillChords(int[] order, ChordTrack chords) {
+        int groupStart = -1;   // Position in order of the first note of the current group
+        int groupSize = 0;
+        for (int n = 0; n <= noteCount; n++) {
+            int i = n == noteCount ? -1 : order == null ? n : order[n];
+            if (i >= 0 && channels[i] != CHORD_CHANNEL) {
+                continue;
+            }
+            if (groupSize > 0 && (i < 0 || starts[i] != starts[noteAt(order, groupStart)])) {
+                addChord(order, groupStart, n, groupSize, chords);
+                groupSize = 0;
+            }
+            if (i >= 0) {
+                if (groupSize == 0) {
+                    groupStart = n;
+                }
+                groupSize++;
+            }
+        }
+    }
+    
+    private int noteAt(int[] order, int n) {
+        return order == null ? n : order[n];
+    }
+    
+    private void addChord(int[] order, int from, int to, int size, ChordTrack chords) {
+        int first = noteAt(order, from);
+        ChordShape shape = matchShape(order, from, to, size);
+        if (shape != null) {
+            chords.add(shape, starts[first], durations[first]);
+            return;
+        }
+        chords.startChord(starts[first], durations[first]);
+        for (int n = from; n < to; n++) {
+            int i = noteAt(order, n);
+            if (channels[i] == CHORD_CHANNEL) {
+                chords.addNote(pitches[i], durations[i], velocities[i], starts[i]);
+            }
+        }
+    }
+    
+    private ChordShape matchShape(int[] order, int from, int to, int size) {
+        int first = noteAt(order, from);
+        for (ChordShape.Quality quality : ChordShape.Quality.values()) {
+            ChordShape shape = ChordShape.of(quality, pitches[first]);
+            if (shape.getNoteCount() != size) {
+                continue;
+            }
+            int k = 0;
+            for (int n = from; n < to && k >= 0; n++) {
+                int i = noteAt(order, n);
+                if (channels[i] != CHORD_CHANNEL) {
+                    continue;
+                }
+                boolean same = pitches[i] == shape.getPitch(k) && velocities[i] == ChordShape.VELOCITY
+                        && durations[i] == durations[first];
+                k = same ? k + 1 : -1;
+            }
+            if (k == size) {
+                return shape;
+            }
+        }
+        return null;
+    }
+} 
\ No newline at end of file
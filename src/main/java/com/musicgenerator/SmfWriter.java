@@ -0,0 +1,388 @@
+package com.musicgenerator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Encodes musical pieces directly as Standard MIDI Files (format 1)
+ * 直接将音乐作品编码为标准MIDI文件（格式1）
+ *
+ * Produces the same tracks, channels, programs and event order as MidiExporter,
+ * but without building a javax.sound.midi Sequence: each track is encoded with
+ * variable-length delta times and running status into a reusable buffer and then
+ * written straight to the output. Instances reuse their buffers and are not thread-safe.
+ * 生成与MidiExporter相同的轨道、通道、音色和事件顺序，但不构建Sequence对象：
+ * 每个轨道使用变长增量时间和运行状态编码到可复用的缓冲区中，然后直接写出。
+ * 实例会复用缓冲区，不是线程安全的。
+ */
+public class SmfWriter {
+    
+    private static final int NOTE_OFF = 0x80;
+    private static final int NOTE_ON = 0x90;
+    private static final int PROGRAM_CHANGE = 0xC0;
+    private static final int META = 0xFF;
+    
+    // Encoded track data, reused between tracks and pieces
+    // 编码后的轨道数据，在轨道和作品之间复用
+    private byte[] buffer = new byte[8192];
+    private int length;
+    private long lastTick;
+    private int runningStatus;
+    private long eventCount;
+    
+    // Min-heap of pending note-offs ordered by (tick, insertion sequence)
+    // 待发送的音符结束事件最小堆，按（tick，插入顺序）排序
+    private long[] offTicks = new long[64];
+    private long[] offSeqs = new long[64];
+    private int[] offPitches = new int[64];
+    private int offCount;
+    
+    // Chord notes produced from their shapes, reused between pieces
+    // 由和弦形状生成的和弦音符，在作品之间复用
+    private final NoteTrack chordNotes = new NoteTrack();
+    
+    /**
+     * Write a piece as a Standard MIDI File to an output stream
+     * 将作品以标准MIDI文件格式写入输出流
+     */
+    public void write(MusicalPiece piece, OutputStream out) throws IOException {
+        long start = System.nanoTime();
+        writeHeader(piece);
+        long bytes = length;
+        out.write(buffer, 0, length);
+        for (int track = 0; track < trackCount(piece); track++) {
+            encodeTrack(piece, track);
+            bytes += length;
+            out.write(buffer, 0, length);
+        }
+        recordMetrics(start, bytes);
+    }
+    
+    /**
+     * Write a piece as a Standard MIDI File to a byte channel
+     * 将作品以标准MIDI文件格式写入字节通道
+     */
+    public void write(MusicalPiece piece, WritableByteChannel channel) throws IOException {
+        long start = System.nanoTime();
+        writeHeader(piece);
+        long bytes = length;
+        writeFully(channel);
+        for (int track = 0; track < trackCount(piece); track++) {
+            encodeTrack(piece, track);
+            bytes += length;
+            writeFully(channel);
+        }
+        recordMetrics(start, bytes);
+    }
+    
+    private void recordMetrics(long start, long bytes) {
+        GenerationMetrics metrics = GenerationMetrics.getInstance();
+        metrics.getSmfWrite().recordSince(start);
+        metrics.recordMidiOutput(eventCount, bytes);
+    }
+    
+    /**
+     * Encode a piece into a new byte array
+     * 将作品编码为新的字节数组
+     */
+    public byte[] toByteArray(MusicalPiece piece) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            write(piece, out);
+        } catch (IOException e) {
+            throw new IllegalStateException("In-memory write failed", e);
+        }
+        return out.toByteArray();
+    }
+    
+    private void writeFully(WritableByteChannel channel) throws IOException {
+        ByteBuffer data = ByteBuffer.wrap(buffer, 0, length);
+        while (data.hasRemaining()) {
+            channel.write(data);
+        }
+    }
+    
+    /**
+     * Meta, melody, chord and bass tracks followed by one track per extra voice
+     * 元事件、旋律、和弦和低音轨道，随后每个附加声部一个轨道
+     */
+    private static int trackCount(MusicalPiece piece) {
+        return 4 + piece.getVoices().size();
+    }
+    
+    /**
+     * Encode the MThd chunk: format 1, one track per part, PPQ division
+     * 编码MThd块：格式1、每个声部一个轨道、PPQ分辨率
+     */
+    private void writeHeader(MusicalPiece piece) {
+        length = 0;
+        eventCount = 0;
+        writeInt(0x4D546864); // "MThd"
+        writeInt(6);
+        writeShort(1);
+        writeShort(trackCount(piece));
+        writeShort(piece.getTicksPerBeat());
+    }
+    
+    /**
+     * Encode one complete MTrk chunk into the buffer
+     * 将一个完整的MTrk块编码到缓冲区
+     */
+    private void encodeTrack(MusicalPiece piece, int track) {
+        length = 0;
+        writeInt(0x4D54726B); // "MTrk"
+        writeInt(0);          // Length, patched below
+        lastTick = 0;
+        runningStatus = -1;
+        
+        switch (track) {
+            case 0:
+                encodeMetaEvents(piece);
+                break;
+            case 1:
+                encodeNotes(piece.getMelodyTrack(), 0, 0); // Channel 0, Program 0 (Acoustic Grand Piano)
+                break;
+            case 2:
+                // Chord notes are stored flat in chord order, matching MidiExporter's insertion order
+                // 和弦音符按和弦顺序平铺存储，与MidiExporter的插入顺序一致
+                chordNotes.clear();
+                piece.getChordTrack().copyNotesTo(chordNotes);
+                encodeNotes(chordNotes, 1, 48); // Channel 1, Program 48 (String Ensemble 1)
+                break;
+            case 3:
+                encodeNotes(piece.getBassTrack(), 2, 32); // Channel 2, Program 32 (Acoustic Bass)
+                break;
+            default:
+                Voice voice = piece.getVoices().get(track - 4);
+                encodeTrackName(voice.getRole().name());
+                encodeNotes(voice.getTrack(), voice.getChannel(), voice.getProgram());
+                break;
+        }
+        
+        int trackLength = length - 8;
+        buffer[4] = (byte) (trackLength >>> 24);
+        buffer[5] = (byte) (trackLength >>> 16);
+        buffer[6] = (byte) (trackLength >>> 8);
+        buffer[7] = (byte) trackLength;
+    }
+    
+    /**
+     * Tempo, time signature and end of track at the piece's total duration
+     * 速度、拍号，以及位于作品总时长处的轨道结束事件
+     */
+    private void encodeMetaEvents(MusicalPiece piece) {
+        int tempoMPQ = 60000000 / piece.getTempo();
+        writeMetaHeader(0, 0x51, 3);
+        writeByte(tempoMPQ >> 16);
+        writeByte(tempoMPQ >> 8);
+        writeByte(tempoMPQ);
+        
+        writeMetaHeader(0, 0x58, 4);
+        writeByte(piece.getTimeSignature());
+        writeByte(2);  // Denominator (power of 2: 2 = quarter note)
+        writeByte(24); // MIDI clocks per click
+        writeByte(8);  // 32nd notes per quarter note
+        
+        writeMetaHeader(Math.max(lastTick, piece.getTotalDuration()), 0x2F, 0);
+    }
+    
+    /**
+     * Track name meta event at tick 0; voice tracks are named after their role so that
+     * SmfReader can restore it
+     * 位于tick 0的轨道名称元事件；声部轨道以其角色命名，以便SmfReader恢复角色
+     */
+    private void encodeTrackName(String name) {
+        writeMetaHeader(0, 0x03, name.length());
+        for (int i = 0; i < name.length(); i++) {
+            writeByte(name.charAt(i));
+        }
+    }
+    
+    /**
+     * Program change followed by merged note-on/note-off events
+     * 音色变更，随后是合并排序的音符开始/结束事件
+     *
+     * Events are emitted in the order javax.sound.midi.Track keeps them:
+     * by tick, then by insertion order (on, off, on, off, ... per note).
+     * 事件顺序与Track一致：先按tick排序，同一tick内按插入顺序（每个音符先开始后结束）。
+     */
+    private void encodeNotes(NoteTrack notes, int channel, int program) {
+        writeShortEvent(0, PROGRAM_CHANGE | channel, program, -1);
+        
+        // Notes are normally already in start order; otherwise visit them through a
+        // stable sort so that equal start times keep their insertion order
+        // 音符通常已按开始时间排序；否则通过稳定排序访问，相同开始时间保持插入顺序
+        Integer[] order = null;
+        if (!isSortedByStart(notes)) {
+            order = new Integer[notes.size()];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, Comparator.comparingLong(notes::getStartTime));
+        }
+        
+        offCount = 0;
+        for (int i = 0; i < notes.size(); i++) {
+            int index = order == null ? i : order[i];
+            long onTick = notes.getStartTime(index);
+            int pitch = notes.getPitch(index);
+            long onSeq = 2L * index;
+            while (offCount > 0 && (offTicks[0] < onTick || (offTicks[0] == onTick && offSeqs[0] < onSeq))) {
+                writeShortEvent(offTicks[0], NOTE_OFF | channel, offPitches[0], 0);
+                popOff();
+            }
+            writeShortEvent(onTick, NOTE_ON | channel, checkData(pitch), checkData(notes.getVelocity(index)));
+            pushOff(onTick + notes.getDuration(index), onSeq + 1, pitch);
+        }
+        while (offCount > 0) {
+            writeShortEvent(offTicks[0], NOTE_OFF | channel, offPitches[0], 0);
+            popOff();
+        }
+        
+        writeMetaHeader(lastTick, 0x2F, 0);
+    }
+    
+    private static boolean isSortedByStart(NoteTrack notes) {
+        for (int i = 1; i < notes.size(); i++) {
+            if (notes.getStartTime(i) < notes.getStartTime(i - 1)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private static int checkData(int value) {
+        if (value < 0 || value > 127) {
+            throw new IllegalArgumentException("MIDI data byte out of range: " + value);
+        }
+        return value;
+    }
+    
+    private void pushOff(long tick, long seq, int pitch) {
+        if (offCount == offTicks.length) {
+            int capacity = offCount * 2;
+            offTicks = Arrays.copyOf(offTicks, capacity);
+            offSeqs = Arrays.copyOf(offSeqs, capacity);
+            offPitches = Arrays.copyOf(offPitches, capacity);
+        }
+        int i = offCount++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (offTicks[parent] < tick || (offTicks[parent] == tick && offSeqs[parent] < seq)) {
+                break;
+            }
+            offTicks[i] = offTicks[parent];
+            offSeqs[i] = offSeqs[parent];
+            offPitches[i] = offPitches[parent];
+            i = parent;
+        }
+        offTicks[i] = tick;
+        offSeqs[i] = seq;
+        offPitches[i] = pitch;
+    }
+    
+    private void popOff() {
+        int last = --offCount;
+        long tick = offTicks[last];
+        long seq = offSeqs[last];
+        int pitch = offPitches[last];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= offCount) {
+                break;
+            }
+            if (child + 1 < offCount && (offTicks[child + 1] < offTicks[child]
+                    || (offTicks[child + 1] == offTicks[child] && offSeqs[child + 1] < offSeqs[child]))) {
+                child++;
+            }
+            if (tick < offTicks[child] || (tick == offTicks[child] && seq < offSeqs[child])) {
+                break;
+            }
+            offTicks[i] = offTicks[child];
+            offSeqs[i] = offSeqs[child];
+            offPitches[i] = offPitches[child];
+            i = child;
+        }
+        offTicks[i] = tick;
+        offSeqs[i] = seq;
+        offPitches[i] = pitch;
+    }
+    
+    /**
+     * Channel message with running status; data2 < 0 means a one-data-byte message
+     * 使用运行状态的通道消息；data2 < 0 表示只有一个数据字节
+     */
+    private void writeShortEvent(long tick, int status, int data1, int data2) {
+        writeDelta(tick);
+        if (status != runningStatus) {
+            runningStatus = status;
+            writeByte(status);
+        }
+        writeByte(data1);
+        if (data2 >= 0) {
+            writeByte(data2);
+        }
+    }
+    
+    /**
+     * Meta events always carry their status byte and reset running status
+     * 元事件总是带状态字节，并重置运行状态
+     */
+    private void writeMetaHeader(long tick, int type, int dataLength) {
+        writeDelta(tick);
+        runningStatus = META;
+        writeByte(META);
+        writeByte(type);
+        writeVarInt(dataLength);
+    }
+    
+    private void writeDelta(long tick) {
+        eventCount++;
+        writeVarInt(tick - lastTick);
+        lastTick = tick;
+    }
+    
+    /**
+     * Variable-length quantity: 7 bits per byte, most significant group first
+     * 变长数值：每字节7位，高位组在前
+     */
+    private void writeVarInt(long value) {
+        if (value < 0 || value > 0x0FFFFFFFL) {
+            throw new IllegalArgumentException("Delta time out of SMF range: " + value);
+        }
+        int shift = 21;
+        while (shift > 0 && (value >>> shift) == 0) {
+            shift -= 7;
+        }
+        while (shift > 0) {
+            writeByte((int) ((value >>> shift) & 0x7F) | 0x80);
+            shift -= 7;
+        }
+        writeByte((int) (value & 0x7F));
+    }
+    
+    private void writeInt(int value) {
+        writeByte(value >>> 24);
+        writeByte(value >>> 16);
+        writeByte(value >>> 8);
+        writeByte(value);
+    }
+    
+    private void writeShort(int value) {
+        writeByte(value >>> 8);
+        writeByte(value);
+    }
+    
+    private void writeByte(int value) {
+        if (length == buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        buffer[length++] = (byte) value;
+    }
+} 
\ No newline at end of file
@@ -0,0 +1,139 @@
+package com.musicgenerator;
+
+import java.util.Arrays;
+
+/**
+ * Immutable music theory lookup tables, built once when the class is loaded
+ * 不可变的乐理查找表，在类加载时构建一次
+ *
+ * Scales are precomputed for every scale type and MIDI root 0-127, together with a
+ * 12-bit pitch-class mask and a pitch-class to scale-degree index per scale, so
+ * membership, degree and consonance queries are O(1) and allocate nothing. The
+ * tables are never written after initialization and can be shared by any thread.
+ * 为每种音阶类型和MIDI根音0-127预先计算音阶，以及每个音阶的12位音级掩码和
+ * 音级到音阶级数的索引，因此成员、级数和协和查询均为O(1)且不分配内存。
+ * 这些表在初始化后不再写入，可被任意线程共享。
+ */
+public final class TheoryTables {
+    
+    public static final int MIN_ROOT = 0;
+    public static final int MAX_ROOT = 127;
+    
+    // Bit n set = an interval of n semitones (mod 12) is consonant:
+    // unison/octave, minor and major third, perfect fourth and fifth, minor and major sixth
+    // 第n位为1表示n个半音（模12）的音程协和：同度/八度、小三度、大三度、纯四度、纯五度、小六度、大六度
+    static final int CONSONANT_MASK = (1 << 0) | (1 << 3) | (1 << 4) | (1 << 5)
+                                            | (1 << 7) | (1 << 8) | (1 << 9);
+    
+    private static final MusicTheory.ScaleType[] TYPES = MusicTheory.ScaleType.values();
+    
+    // [type][root] -> scale pitches, shared and never modified
+    // [类型][根音] -> 音阶音高，共享且从不修改
+    private static final int[][][] SCALES = new int[TYPES.length][MAX_ROOT + 1][];
+    
+    // [type][root pitch class] -> 12-bit pitch-class membership mask
+    // [类型][根音音级] -> 12位音级成员掩码
+    private static final int[][] MASKS = new int[TYPES.length][12];
+    
+    // [type][root pitch class][pitch class] -> first scale index with that pitch class, or -1
+    // [类型][根音音级][音级] -> 具有该音级的第一个音阶索引，不存在则为-1
+    private static final byte[][][] DEGREES = new byte[TYPES.length][12][12];
+    
+    static {
+        for (MusicTheory.ScaleType type : TYPES) {
+            int t = type.ordinal();
+            int[] intervals = MusicTheory.getIntervals(type);
+            
+            for (int root = MIN_ROOT; root <= MAX_ROOT; root++) {
+                int[] scale = new int[intervals.length];
+                for (int i = 0; i < intervals.length; i++) {
+                    scale[i] = root + intervals[i];
+                }
+                SCALES[t][root] = scale;
+            }
+            
+            for (int rootClass = 0; rootClass < 12; rootClass++) {
+                byte[] degrees = DEGREES[t][rootClass];
+                Arrays.fill(degrees, (byte) -1);
+                int mask = 0;
+                for (int i = 0; i < intervals.length; i++) {
+                    int pitchClass = (rootClass + intervals[i]) % 12;
+                    mask |= 1 << pitchClass;
+                    if (degrees[pitchClass] < 0) {
+                        degrees[pitchClass] = (byte) i;
+                    }
+                }
+                MASKS[t][rootClass] = mask;
+            }
+        }
+    }
+    
+    private TheoryTables() {
+    }
+    
+    /**
+     * Shared scale array for a type and root; callers must not modify it
+     * 指定类型和根音的共享音阶数组；调用者不得修改
+     */
+    static int[] scale(MusicTheory.ScaleType type, int rootNote) {
+        return SCALES[type.ordinal()][checkRoot(rootNote)];
+    }
+    
+    /**
+     * Copy of the scale for a type and root
+     * 指定类型和根音的音阶副本
+     */
+    public static int[] getScale(MusicTheory.ScaleType type, int rootNote) {
+        return scale(type, rootNote).clone();
+    }
+    
+    /**
+     * Number of notes in a scale of this type, including the octave
+     * 该类型音阶的音符数，包括八度音
+     */
+    public static int getScaleLength(MusicTheory.ScaleType type) {
+        return SCALES[type.ordinal()][MIN_ROOT].length;
+    }
+    
+    /**
+     * 12-bit mask with bit n set when pitch class n (C = 0) belongs to the scale
+     * 12位掩码，音级n（C = 0）属于该音阶时第n位为1
+     */
+    public static int getScaleMask(MusicTheory.ScaleType type, int rootNote) {
+        return MASKS[type.ordinal()][checkRoot(rootNote) % 12];
+    }
+    
+    /**
+     * Check whether a pitch (in any octave) belongs to the scale
+     * 检查某音高（任意八度）是否属于该音阶
+     */
+    public static boolean isInScale(MusicTheory.ScaleType type, int rootNote, int pitch) {
+        return pitch >= 0 && (getScaleMask(type, rootNote) >>> (pitch % 12) & 1) != 0;
+    }
+    
+    /**
+     * Index of the first scale note sharing the pitch's pitch class, or -1 if none
+     * 与该音高音级相同的第一个音阶音符的索引，若不存在则为-1
+     */
+    public static int getDegree(MusicTheory.ScaleType type, int rootNote, int pitch) {
+        if (pitch < 0) {
+            return -1;
+        }
+        return DEGREES[type.ordinal()][checkRoot(rootNote) % 12][pitch % 12];
+    }
+    
+    /**
+     * Check if two pitches form a consonant interval
+     * 检查两个音高是否构成协和音程
+     */
+    public static boolean isConsonant(int pitch1, int pitch2) {
+        return (CONSONANT_MASK >>> (Math.abs(pitch1 - pitch2) % 12) & 1) != 0;
+    }
+    
+    private static int checkRoot(int rootNote) {
+        if (rootNote < MIN_ROOT || rootNote > MAX_ROOT) {
+            throw new IllegalArgumentException("Root note out of MIDI range: " + rootNote);
+        }
+        return rootNote;
+    }
+} 
\ No newline at end of file
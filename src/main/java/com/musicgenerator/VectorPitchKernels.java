@@ -0,0 +1,88 @@
+package com.musicgenerator;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Vector API versions of the PitchKernels; only loaded when jdk.incubator.vector is present
+ * PitchKernels的Vector API版本；仅在jdk.incubator.vector存在时加载
+ *
+ * Each loop processes as many pitches per step as the preferred int species has lanes and
+ * finishes the remainder with the scalar code. The semitone distance d modulo 12 is
+ * computed as d - 12 * (d * 43691 >>> 19), exact for 0 <= d < 49152, because the lanes
+ * have no integer division; PitchKernels only passes pitches 0-127, so d < 128.
+ * 每次循环处理的音高数等于首选int向量种类的通道数，剩余部分用标量代码完成。
+ * 由于通道没有整数除法，半音距离d模12按d - 12 * (d * 43691 >>> 19)计算，对0 <= d < 49152精确；
+ * PitchKernels只传入0-127的音高，因此d < 128。
+ */
+final class VectorPitchKernels {
+    
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+    
+    private VectorPitchKernels() {
+    }
+    
+    static int lanes() {
+        return SPECIES.length();
+    }
+    
+    static void addClamped(int[] source, int[] target, int length, int delta, int min, int max) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            IntVector.fromArray(SPECIES, source, i).add(delta).max(min).min(max).intoArray(target, i);
+        }
+        for (; i < length; i++) {
+            target[i] = Math.max(min, Math.min(max, source[i] + delta));
+        }
+    }
+    
+    static void intervalClassHistogram(int[] pitches, int length, long[] histogram) {
+        int intervals = Math.max(0, length - 1);
+        int i = 0;
+        for (int bound = SPECIES.loopBound(intervals); i < bound; i += SPECIES.length()) {
+            IntVector from = IntVector.fromArray(SPECIES, pitches, i);
+            IntVector to = IntVector.fromArray(SPECIES, pitches, i + 1);
+            IntVector semitones = mod12(to.sub(from).lanewise(VectorOperators.ABS));
+            // Fold inversions: min(d, 12 - d)
+            // 折叠转位：min(d, 12 - d)
+            IntVector intervalClass = semitones.min(semitones.neg().add(12));
+            for (int c = 0; c < PitchKernels.INTERVAL_CLASSES; c++) {
+                histogram[c] += intervalClass.eq(c).trueCount();
+            }
+        }
+        for (; i < intervals; i++) {
+            int semitones = Math.abs(pitches[i + 1] - pitches[i]) % 12;
+            histogram[Math.min(semitones, 12 - semitones)]++;
+        }
+    }
+    
+    static int consonanceMask(int[] a, int[] b, int length, boolean[] mask) {
+        IntVector consonantBits = IntVector.broadcast(SPECIES, TheoryTables.CONSONANT_MASK);
+        int consonant = 0;
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            IntVector semitones = mod12(IntVector.fromArray(SPECIES, a, i)
+                                                .sub(IntVector.fromArray(SPECIES, b, i))
+                                                .lanewise(VectorOperators.ABS));
+            VectorMask<Integer> isConsonant = consonantBits.lanewise(VectorOperators.LSHR, semitones)
+                                                           .and(1)
+                                                           .compare(VectorOperators.NE, 0);
+            isConsonant.intoArray(mask, i);
+            consonant += isConsonant.trueCount();
+        }
+        for (; i < length; i++) {
+            boolean isConsonant = TheoryTables.isConsonant(a[i], b[i]);
+            mask[i] = isConsonant;
+            if (isConsonant) {
+                consonant++;
+            }
+        }
+        return consonant;
+    }
+    
+    private static IntVector mod12(IntVector d) {
+        return d.sub(d.mul(43691).lanewise(VectorOperators.LSHR, 19).mul(12));
+    }
+} 
\ No newline at end of file
@@ -0,0 +1,160 @@
+package com.musicgenerator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * An additional voice of a piece beyond melody, chords and bass, on its own MIDI channel
+ * 作品中旋律、和弦和低音之外的附加声部，使用独立的MIDI通道
+ */
+public class Voice {
+    
+    public static final int PERCUSSION_CHANNEL = 9;
+    public static final int FIRST_VOICE_CHANNEL = 3;   // 0, 1 and 2 carry melody, chords and bass
+    
+    /**
+     * What a voice plays over the chord progression
+     * 声部在和弦进行之上演奏的内容
+     */
+    public enum Role {
+        COUNTER_MELODY(73),   // Flute
+        ARPEGGIO(46),         // Orchestral Harp
+        PAD(89),              // Pad 2 (warm)
+        PERCUSSION(0);        // Standard drum kit on channel 9
+        
+        private final int defaultProgram;
+        
+        Role(int defaultProgram) {
+            this.defaultProgram = defaultProgram;
+        }
+        
+        public int getDefaultProgram() { return defaultProgram; }
+    }
+    
+    private final Spec spec;
+    private final NoteTrack notes;
+    
+    public Voice(Spec spec) {
+        this.spec = spec;
+        this.notes = new NoteTrack();
+    }
+    
+    // Getters
+    public Spec getSpec() { return spec; }
+    public Role getRole() { return spec.role; }
+    public int getChannel() { return spec.channel; }
+    public int getProgram() { return spec.program; }
+    public List<Note> getNotes() { return notes.toNoteList(); }
+    public List<Note> getNotesView() { return notes.asList(); }
+    
+    // Direct access to the backing track for generators and exporters in this package
+    // 供本包内生成器和导出器直接访问底层轨道
+    NoteTrack getTrack() { return notes; }
+    
+    @Override
+    public String toString() {
+        return spec + "[" + notes.size() + " notes]";
+    }
+    
+    /**
+     * Immutable role, channel and program of a voice, used to request voices from the generator
+     * 声部的角色、通道和音色（不可变），用于向生成器请求声部
+     */
+    public static final class Spec {
+        private final Role role;
+        private final int channel;
+        private final int program;
+        
+        public Spec(Role role, int channel, int program) {
+            if (channel < 0 || channel > 15) {
+                throw new IllegalArgumentException("channel must be between 0 and 15: " + channel);
+            }
+            if (program < 0 || program > 127) {
+                throw new IllegalArgumentException("program must be between 0 and 127: " + program);
+            }
+            this.role = Objects.requireNonNull(role, "role");
+            this.channel = channel;
+            this.program = program;
+        }
+        
+        /**
+         * Parse a comma-separated list of ROLE or ROLE:program, e.g. "ARPEGGIO,PAD:92,PERCUSSION".
+         * Pitched voices get channels 3 to 15 in order, skipping 9; percussion always uses 9,
+         * so at most one percussion voice is allowed.
+         * 解析以逗号分隔的ROLE或ROLE:program列表，例如"ARPEGGIO,PAD:92,PERCUSSION"。
+         * 有音高的声部按顺序使用通道3到15（跳过9）；打击乐始终使用通道9，因此最多只能有一个打击乐声部。
+         */
+        public static List<Spec> parseList(String text) {
+            List<Spec> specs = new ArrayList<>();
+            int nextChannel = FIRST_VOICE_CHANNEL;
+            boolean percussion = false;
+            for (String item : text.split(",")) {
+                String trimmed = item.trim();
+                if (trimmed.isEmpty()) {
+                    continue;
+                }
+                int colon = trimmed.indexOf(':');
+                String name = colon < 0 ? trimmed : trimmed.substring(0, colon).trim();
+                Role role;
+                try {
+                    role = Role.valueOf(name.toUpperCase());
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Unknown voice role: " + name);
+                }
+                int program = role.getDefaultProgram();
+                if (colon >= 0) {
+                    try {
+                        program = Integer.parseInt(trimmed.substring(colon + 1).trim());
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("Voice program must be an integer: " + trimmed);
+                    }
+                }
+                
+                int channel;
+                if (role == Role.PERCUSSION) {
+                    if (percussion) {
+                        throw new IllegalArgumentException("Only one PERCUSSION voice fits on channel 9");
+                    }
+                    percussion = true;
+                    channel = PERCUSSION_CHANNEL;
+                } else {
+                    if (nextChannel == PERCUSSION_CHANNEL) {
+                        nextChannel++;
+                    }
+                    if (nextChannel > 15) {
+                        throw new IllegalArgumentException("At most 12 pitched voices fit on the free MIDI channels");
+                    }
+                    channel = nextChannel++;
+                }
+                specs.add(new Spec(role, channel, program));
+            }
+            return Collections.unmodifiableList(specs);
+        }
+        
+        // Getters
+        public Role getRole() { return role; }
+        public int getChannel() { return channel; }
+        public int getProgram() { return program; }
+        
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Spec)) {
+                return false;
+            }
+            Spec other = (Spec) o;
+            return role == other.role && channel == other.channel && program == other.program;
+        }
+        
+        @Override
+        public int hashCode() {
+            return Objects.hash(role, channel, program);
+        }
+        
+        @Override
+        public String toString() {
+            return role + ":" + program + "@" + channel;
+        }
+    }
+} 
\ No newline at end of file
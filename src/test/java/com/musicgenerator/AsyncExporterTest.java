@@ -0,0 +1,38 @@
+package com.musicgenerator;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Writes that fail with a runtime exception must be counted and must not strand submitters
+ * 因运行时异常而失败的写入必须被计数，并且不能让提交者卡住
+ */
+class AsyncExporterTest {
+    
+    @Test
+    void runtimeWriteFailuresReleaseTheirBuffers() {
+        // The read-only jrt file system rejects FileChannel.open with an unchecked exception
+        // 只读的jrt文件系统以非受检异常拒绝FileChannel.open
+        Path readOnly = FileSystems.getFileSystem(URI.create("jrt:/")).getPath("/piece.mid");
+        MusicalPiece piece = BatchGenerator.generateOne(new GenerationParameters(), 1);
+        AsyncExporter exporter = new AsyncExporter(1, 2);
+        assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+            try (AsyncExporter closing = exporter) {
+                for (int i = 0; i < 10; i++) {
+                    closing.submit(piece, readOnly);
+                }
+            }
+        });
+        assertEquals(10, exporter.getFailures());
+        assertEquals(0, exporter.getFilesWritten());
+        assertTrue(exporter.getFirstFailure() instanceof RuntimeException, String.valueOf(exporter.getFirstFailure()));
+    }
+}
@@ -0,0 +1,114 @@
+package com.musicgenerator;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Batch options must name keys the tool reads, and output file names follow the config
+ * 批处理选项必须是工具读取的键，输出文件名遵循配置
+ */
+class BatchCliTest {
+    
+    @TempDir
+    Path dir;
+    
+    @Test
+    void misspelledConfigKeyIsRejected() throws IOException {
+        ByteArrayOutputStream text = new ByteArrayOutputStream();
+        int code = BatchCli.run(new String[] {"--config", emptyConfig().toString(), "--count", "1",
+                                              "--out-dir", dir.toString(), "--default.temp", "100"},
+                                new PrintStream(text, true, StandardCharsets.UTF_8));
+        assertEquals(2, code);
+        assertTrue(text.toString(StandardCharsets.UTF_8).contains("Unknown option: --default.temp"));
+    }
+    
+    @Test
+    void timestampedFileNamesKeepTheIndex() throws IOException {
+        Path out = dir.resolve("out");
+        int code = BatchCli.run(new String[] {"--config", emptyConfig().toString(), "--count", "2", "--threads", "1",
+                                              "--seed", "7", "--out-dir", out.toString(),
+                                              "--output.filename.timestamp", "true", "--default.tempo", "100"},
+                                new PrintStream(new ByteArrayOutputStream(), true, StandardCharsets.UTF_8));
+        assertEquals(0, code);
+        List<String> names;
+        try (Stream<Path> files = Files.list(out)) {
+            names = files.map(file -> file.getFileName().toString()).sorted().collect(Collectors.toList());
+        }
+        assertEquals(2, names.size());
+        for (int i = 0; i < names.size(); i++) {
+            assertTrue(names.get(i).matches("generated_music_\\d{8}_\\d{6}_00000" + i + "\\.mid"), names.get(i));
+        }
+    }
+    
+    @Test
+    void metricsFileIsWrittenAfterTheBatch() throws IOException, JMException {
+        Path metrics = dir.resolve("batch.prom");
+        int code = BatchCli.run(new String[] {"--config", emptyConfig().toString(), "--count", "3",
+                                              "--out-dir", dir.resolve("out").toString(), "--metrics", metrics.toString()},
+                                new PrintStream(new ByteArrayOutputStream(), true, StandardCharsets.UTF_8));
+        assertEquals(0, code);
+        String text = new String(Files.readAllBytes(metrics), StandardCharsets.UTF_8);
+        assertTrue(text.contains("musicgen_pieces_generated_total"), text);
+        assertTrue(ManagementFactory.getPlatformMBeanServer().isRegistered(new ObjectName(GenerationMetrics.OBJECT_NAME)));
+    }
+    
+    @Test
+    void shippedConfigAndIgnoredKeysAreAccepted() {
+        ByteArrayOutputStream text = new ByteArrayOutputStream();
+        int code = BatchCli.run(new String[] {"--config", "config.properties", "--count", "1",
+                                              "--out-dir", dir.toString(), "--midi.export.format", "1"},
+                                new PrintStream(text, true, StandardCharsets.UTF_8));
+        assertEquals(0, code, text.toString(StandardCharsets.UTF_8));
+        assertTrue(text.toString(StandardCharsets.UTF_8).contains("Warning: --midi.export.format is not used"));
+    }
+    
+    @Test
+    void dedupDetectorIsSizedForTheExpectedCount() throws IOException {
+        ByteArrayOutputStream text = new ByteArrayOutputStream();
+        int code = BatchCli.run(new String[] {"--config", emptyConfig().toString(), "--count", "4", "--seed", "3",
+                                              "--dedup", "flag", "--dedup-expected", "100",
+                                              "--ids", dir.resolve("ids.txt").toString()},
+                                new PrintStream(text, true, StandardCharsets.UTF_8));
+        assertEquals(0, code);
+        assertTrue(text.toString(StandardCharsets.UTF_8).contains("detector memory 0.0 MB"), text.toString());
+    }
+    
+    @Test
+    void seededBeamBatchIsReproducible() throws IOException {
+        for (String run : new String[] {"a", "b"}) {
+            ByteArrayOutputStream text = new ByteArrayOutputStream();
+            int code = BatchCli.run(new String[] {"--config", emptyConfig().toString(), "--count", "6", "--threads", "3",
+                                                  "--seed", "11", "--beam", "8", "--measures", "4",
+                                                  "--out-dir", dir.resolve(run).toString()},
+                                    new PrintStream(text, true, StandardCharsets.UTF_8));
+            assertEquals(0, code);
+            assertTrue(text.toString(StandardCharsets.UTF_8).contains("the unlimited budget"), text.toString());
+        }
+        for (int i = 0; i < 6; i++) {
+            String name = String.format("generated_music_%06d.mid", i);
+            assertArrayEquals(Files.readAllBytes(dir.resolve("a").resolve(name)),
+                              Files.readAllBytes(dir.resolve("b").resolve(name)), name);
+        }
+    }
+    
+    private Path emptyConfig() throws IOException {
+        return Files.write(dir.resolve("empty.properties"), new byte[0]);
+    }
+}
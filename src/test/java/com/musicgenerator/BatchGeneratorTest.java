@@ -0,0 +1,47 @@
+package com.musicgenerator;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * Batches are reproducible for any thread count and report which pieces failed
+ * 批次对任何线程数都可重现，并报告哪些作品失败
+ */
+class BatchGeneratorTest {
+    
+    @Test
+    void sameSeedGivesTheSamePiecesOnAnyThreadCount() {
+        GenerationParameters params = new GenerationParameters();
+        params.setMeasures(2);
+        BatchGenerator.Result one = new BatchGenerator(1).generate(12, params, 99);
+        BatchGenerator.Result four = new BatchGenerator(4).generate(12, params, 99);
+        assertEquals(0, four.getFailures());
+        assertEquals(0, four.getFailedIndices().length);
+        List<MusicalPiece> pieces = four.getPieces();
+        assertEquals(12, pieces.size());
+        SmfWriter writer = new SmfWriter();
+        for (int i = 0; i < pieces.size(); i++) {
+            assertNotNull(pieces.get(i));
+            assertArrayEquals(writer.toByteArray(one.getPieces().get(i)), writer.toByteArray(pieces.get(i)), "piece " + i);
+            assertArrayEquals(writer.toByteArray(BatchGenerator.generateOne(params, BatchGenerator.pieceSeed(99, i))),
+                              writer.toByteArray(pieces.get(i)), "piece " + i);
+        }
+    }
+    
+    @Test
+    void failedIndicesAreReported() {
+        BatchGenerator.Result result = new BatchGenerator(3).generate(20, new GenerationParameters(), 5, (index, piece) -> {
+            if (index % 7 == 3) {
+                throw new IllegalStateException("piece " + index);
+            }
+        });
+        assertEquals(3, result.getFailures());
+        assertArrayEquals(new int[] {3, 10, 17}, result.getFailedIndices());
+        assertEquals(IllegalStateException.class, result.getFirstFailure().getClass());
+    }
+}
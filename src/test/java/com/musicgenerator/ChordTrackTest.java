@@ -0,0 +1,94 @@
+package com.musicgenerator;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Placed shapes must read back as the same shape and the same notes
+ * 放置的形状必须能读回相同的形状和相同的音符
+ */
+class ChordTrackTest {
+    
+    @Test
+    void placedShapesReadBackTheirNotes() {
+        ChordTrack track = new ChordTrack(1);
+        ChordShape.Quality[] qualities = ChordShape.Quality.values();
+        for (int i = 0; i < 40; i++) {
+            track.add(ChordShape.of(qualities[i % qualities.length], 40 + i), i * 480L, 480 - i);
+        }
+        assertEquals(40, track.size());
+        assertEquals(120, track.getTotalNoteCount());
+        
+        NoteTrack notes = track.getNotes();
+        assertEquals(120, notes.size());
+        int row = 0;
+        for (int i = 0; i < track.size(); i++) {
+            ChordShape shape = ChordShape.of(qualities[i % qualities.length], 40 + i);
+            assertSame(shape, track.getShape(i));
+            assertEquals(40 + i, track.getRootPitch(i));
+            assertEquals(shape.getNoteCount(), track.getNoteCount(i));
+            for (int k = 0; k < shape.getNoteCount(); k++, row++) {
+                assertEquals(shape.getPitch(k), track.getPitch(i, k));
+                assertEquals(shape.getPitch(k), notes.getPitch(row));
+                assertEquals(480 - i, notes.getDuration(row));
+                assertEquals(ChordShape.VELOCITY, notes.getVelocity(row));
+                assertEquals(i * 480L, notes.getStartTime(row));
+            }
+            assertNotes(shape.toChord(480 - i, i * 480L), track.getChord(i));
+            assertNotes(track.getChord(i), track.asList().get(i));
+        }
+    }
+    
+    @Test
+    void chordsKeepTheirShapeOrTheirNotes() {
+        Chord major = Chord.createMajorChord(60, 480, 0);
+        Chord loud = new Chord(Arrays.asList(new Note(62, 480, 90, 480), new Note(65, 480, 90, 480),
+                                             new Note(69, 480, 90, 480)), 480, 480);
+        ChordTrack track = new ChordTrack();
+        track.add(major);
+        track.add(loud);
+        track.add(ChordShape.of(ChordShape.Quality.MINOR, 57), 960, 240);
+        
+        assertSame(ChordShape.of(ChordShape.Quality.MAJOR, 60), track.getShape(0));
+        assertNull(track.getShape(1));
+        assertEquals(3, track.getNoteCount(1));
+        assertEquals(65, track.getPitch(1, 1));
+        assertNotes(major, track.getChord(0));
+        assertNotes(loud, track.getChord(1));
+        
+        ChordTrack copy = new ChordTrack();
+        for (int i = 0; i < track.size(); i++) {
+            copy.add(track, i);
+        }
+        assertSame(track.getShape(2), copy.getShape(2));
+        assertNull(copy.getShape(1));
+        for (int i = 0; i < track.size(); i++) {
+            assertNotes(track.getChord(i), copy.getChord(i));
+        }
+        assertEquals(track.getTotalNoteCount(), copy.getNotes().size());
+        
+        track.clear();
+        assertEquals(0, track.getTotalNoteCount());
+        assertEquals(0, track.getNotes().size());
+    }
+    
+    private static void assertNotes(Chord expected, Chord actual) {
+        assertEquals(expected.getStartTime(), actual.getStartTime());
+        assertEquals(expected.getDuration(), actual.getDuration());
+        List<Note> want = expected.getNotesView();
+        List<Note> got = actual.getNotesView();
+        assertEquals(want.size(), got.size());
+        for (int k = 0; k < want.size(); k++) {
+            assertEquals(want.get(k).getPitch(), got.get(k).getPitch());
+            assertEquals(want.get(k).getDuration(), got.get(k).getDuration());
+            assertEquals(want.get(k).getVelocity(), got.get(k).getVelocity());
+            assertEquals(want.get(k).getStartTime(), got.get(k).getStartTime());
+        }
+    }
+}
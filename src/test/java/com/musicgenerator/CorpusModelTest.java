@@ -0,0 +1,105 @@
+package com.musicgenerator;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A trained model must not depend on the thread count and must survive a save and load
+ * 训练出的模型不能依赖线程数，且保存再加载后保持不变
+ */
+class CorpusModelTest {
+    
+    @TempDir
+    Path dir;
+    
+    @Test
+    void trainedModelRoundTripsThroughItsFile() throws IOException {
+        Path corpus = Files.createDirectory(dir.resolve("corpus"));
+        SmfWriter writer = new SmfWriter();
+        for (int seed = 0; seed < 24; seed++) {
+            MusicGenerator generator = new MusicGenerator(seed);
+            Files.write(corpus.resolve(seed + ".mid"), writer.toByteArray(generator.generatePiece(4 + seed % 5, 4)));
+        }
+        Files.write(corpus.resolve("broken.mid"), new byte[] {1, 2, 3});
+        Files.write(corpus.resolve("notes.txt"), new byte[] {1, 2, 3});
+        
+        CorpusTrainer.Result single = new CorpusTrainer(1, 2).train(corpus);
+        CorpusTrainer.Result parallel = new CorpusTrainer(4, 2).train(corpus);
+        assertEquals(25, parallel.getFiles());
+        assertEquals(1, parallel.getFailures());
+        assertTrue(parallel.getFirstFailure().getMessage().contains("broken.mid"));
+        CorpusModel model = parallel.getModel();
+        assertEquals(24, model.getPieces());
+        assertTrue(model.getNotes() > 0);
+        assertSameCounts(single.getModel(), model);
+        
+        Path file = dir.resolve("model" + CorpusModel.FILE_EXTENSION);
+        model.write(file);
+        CorpusModel read = CorpusModel.read(file);
+        assertEquals(model.getMelodyOrder(), read.getMelodyOrder());
+        assertEquals(model.getPieces(), read.getPieces());
+        assertEquals(model.getNotes(), read.getNotes());
+        assertSameCounts(model, read);
+        
+        // The loaded model generates the same piece as the trained one
+        // 加载的模型与训练得到的模型生成相同的作品
+        GenerationParameters trained = new GenerationParameters();
+        model.applyTo(trained);
+        GenerationParameters loaded = new GenerationParameters();
+        read.applyTo(loaded);
+        assertArrayEquals(writer.toByteArray(BatchGenerator.generateOne(trained, 17)),
+                          writer.toByteArray(BatchGenerator.generateOne(loaded, 17)));
+    }
+    
+    @Test
+    void countsOfAnySizeRoundTrip() throws IOException {
+        long[] melody = new long[MarkovMelodyModel.contextCount(1) * MarkovMelodyModel.INTERVALS];
+        long[] chords = new long[ChordProgressionModel.DEGREES * ChordProgressionModel.DEGREES];
+        for (int i = 0; i < melody.length; i++) {
+            melody[i] = i % 3 == 0 ? 0 : Long.MAX_VALUE >>> (i % 63);
+        }
+        Arrays.fill(chords, 127);
+        chords[0] = 128;
+        CorpusModel model = new CorpusModel(1, melody, chords, Long.MAX_VALUE, 0);
+        Path file = dir.resolve("counts.mgm");
+        model.write(file);
+        CorpusModel read = CorpusModel.read(file);
+        assertEquals(Long.MAX_VALUE, read.getPieces());
+        assertSameCounts(model, read);
+    }
+    
+    @Test
+    void damagedFilesAreRejected() throws IOException {
+        Path file = dir.resolve("model.mgm");
+        CorpusModel model = new CorpusModel(1, new long[MarkovMelodyModel.contextCount(1) * MarkovMelodyModel.INTERVALS],
+                                            new long[ChordProgressionModel.DEGREES * ChordProgressionModel.DEGREES], 0, 0);
+        model.write(file);
+        byte[] data = Files.readAllBytes(file);
+        
+        Files.write(file, Arrays.copyOf(data, data.length - 1));
+        assertTrue(assertThrows(IOException.class, () -> CorpusModel.read(file)).getMessage().startsWith("Truncated"));
+        data[0] = 'X';
+        Files.write(file, data);
+        assertTrue(assertThrows(IOException.class, () -> CorpusModel.read(file)).getMessage().startsWith("Not a model"));
+    }
+    
+    private static void assertSameCounts(CorpusModel expected, CorpusModel actual) {
+        int melody = MarkovMelodyModel.contextCount(expected.getMelodyOrder()) * MarkovMelodyModel.INTERVALS;
+        for (int i = 0; i < melody; i++) {
+            assertEquals(expected.getMelodyCount(i), actual.getMelodyCount(i), "melody " + i);
+        }
+        for (int i = 0; i < ChordProgressionModel.DEGREES * ChordProgressionModel.DEGREES; i++) {
+            assertEquals(expected.getChordCount(i), actual.getChordCount(i), "chord " + i);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.musicgenerator;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+/**
+ * Pieces checked again after a full batch must come back as exact duplicates
+ * 整批检查完成后再次检查的作品必须判定为完全重复
+ */
+class DuplicateDetectorTest {
+    
+    private static final int PIECES = 200_000;
+    
+    @Test
+    void recheckedPiecesAreDuplicates() {
+        DuplicateDetector detector = new DuplicateDetector(PIECES, 0.001);
+        for (int i = 0; i < PIECES; i++) {
+            assertNotEquals(DuplicateDetector.Verdict.DUPLICATE, detector.check(piece(i, 0)), "piece " + i);
+        }
+        
+        // Early pieces are the ones later pieces would have overwritten
+        // 较早的作品最容易被后续作品覆盖
+        for (int i = 0; i < PIECES; i += PIECES / 2000) {
+            assertEquals(DuplicateDetector.Verdict.DUPLICATE, detector.check(piece(i, 0)), "piece " + i);
+        }
+    }
+    
+    @Test
+    void transposedPiecesAreDuplicates() {
+        DuplicateDetector detector = new DuplicateDetector(1000, 0.001);
+        for (int i = 0; i < 1000; i++) {
+            detector.check(piece(i, 0));
+        }
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(DuplicateDetector.Verdict.DUPLICATE, detector.check(piece(i, 5)), "piece " + i);
+        }
+    }
+    
+    /**
+     * A random melody and chord progression, the same for the same number, shifted by transpose semitones
+     * 随机旋律和和弦进行，相同编号得到相同作品，并移调transpose个半音
+     */
+    private static MusicalPiece piece(int number, int transpose) {
+        Random random = new Random(number);
+        MusicalPiece piece = new MusicalPiece();
+        for (int beat = 0; beat < 32; beat++) {
+            piece.addMelodyNote(new Note(48 + random.nextInt(36) + transpose, 480, 80, beat * 480L));
+        }
+        for (int measure = 0; measure < 8; measure++) {
+            int root = 48 + random.nextInt(12) + transpose;
+            List<Note> notes = List.of(new Note(root, 1920, 70, measure * 1920L),
+                                       new Note(root + 4, 1920, 70, measure * 1920L),
+                                       new Note(root + 7, 1920, 70, measure * 1920L));
+            piece.addChord(new Chord(notes, 1920, measure * 1920L));
+        }
+        return piece;
+    }
+} 
\ No newline at end of file
@@ -0,0 +1,59 @@
+package com.musicgenerator;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URI;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Endpoints answer only their own path, not every path that starts with it
+ * 端点只应答自己的路径，而不是所有以其开头的路径
+ */
+class GenerationServerTest {
+    
+    private GenerationServer server;
+    
+    @BeforeEach
+    void start() throws IOException {
+        server = new GenerationServer(0);
+        server.start();
+    }
+    
+    @AfterEach
+    void stop() {
+        server.close();
+    }
+    
+    @Test
+    void onlyExactPathsAreServed() throws IOException {
+        assertEquals(200, status("/generate?seed=1&measures=1"));
+        assertEquals(200, status("/metrics"));
+        assertEquals(200, status("/metrics/prometheus"));
+        assertEquals(404, status("/generatefoo"));
+        assertEquals(404, status("/generate/"));
+        assertEquals(404, status("/metricsXYZ"));
+        assertEquals(404, status("/metrics/prometheus2"));
+        assertEquals(404, status("/"));
+    }
+    
+    @Test
+    void piecePrefixStillServesIds() throws IOException {
+        GenerationParameters params = new GenerationParameters();
+        params.setMeasures(1);
+        assertEquals(200, status("/piece/" + PieceId.of(params, 42)));
+    }
+    
+    private int status(String path) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) URI.create("http://localhost:" + server.getPort() + path).toURL().openConnection();
+        try {
+            return connection.getResponseCode();
+        } finally {
+            connection.disconnect();
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.musicgenerator;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Every row is a probability distribution, and unseen contexts fall back to wider counts
+ * 每一行都是概率分布，未出现的上下文回退到更宽泛的计数
+ */
+class MarkovMelodyModelTest {
+    
+    private static final int I = MarkovMelodyModel.INTERVALS;
+    
+    @Test
+    void everyRowSumsToOne() {
+        Random random = new Random(3);
+        for (int order = 1; order <= MarkovMelodyModel.MAX_ORDER; order++) {
+            long[] counts = new long[MarkovMelodyModel.contextCount(order) * I];
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = random.nextInt(4) == 0 ? 0 : random.nextInt(1000);
+            }
+            assertRowsSumToOne(MarkovMelodyModel.fromCounts(order, counts));
+            assertRowsSumToOne(MarkovMelodyModel.createDefault(order));
+        }
+    }
+    
+    @Test
+    void unseenContextsFallBackToTheirDegreeThenToAllCounts() {
+        int order = 2;
+        int histories = MarkovMelodyModel.contextCount(order) / MarkovMelodyModel.DEGREES;
+        long[] counts = new long[MarkovMelodyModel.contextCount(order) * I];
+        MarkovMelodyModel probe = MarkovMelodyModel.createDefault(order);
+        // Degree 0 was seen once, stepping up, in one history
+        // 级数0只在一个历史中出现过一次，向上级进
+        counts[probe.context(0, 5) * I + 1 + MarkovMelodyModel.MAX_INTERVAL] = 3;
+        // Degree 1 was seen stepping down
+        // 级数1出现过向下级进
+        counts[probe.context(1, 0) * I - 1 + MarkovMelodyModel.MAX_INTERVAL] = 1;
+        MarkovMelodyModel model = MarkovMelodyModel.fromCounts(order, counts);
+        
+        for (int history = 0; history < histories; history++) {
+            // Any history of degree 0 uses degree 0's counts
+            // 级数0的任何历史都使用级数0的计数
+            assertEquals(1.0, model.getProbability(model.context(0, history), 1), 1e-6);
+            assertEquals(1.0, model.getProbability(model.context(1, history), -1), 1e-6);
+            // Degrees never seen use all counts: three steps up to one step down
+            // 从未出现的级数使用全部计数：三次向上级进对一次向下级进
+            assertEquals(0.75, model.getProbability(model.context(7, history), 1), 1e-6);
+            assertEquals(0.25, model.getProbability(model.context(7, history), -1), 1e-6);
+        }
+        
+        // With no counts at all every interval is equally likely
+        // 完全没有计数时每个音程概率相同
+        MarkovMelodyModel empty = MarkovMelodyModel.fromCounts(1, new long[MarkovMelodyModel.contextCount(1) * I]);
+        for (int interval = -MarkovMelodyModel.MAX_INTERVAL; interval <= MarkovMelodyModel.MAX_INTERVAL; interval++) {
+            assertEquals(1.0 / I, empty.getProbability(0, interval), 1e-6);
+        }
+    }
+    
+    @Test
+    void samplingFollowsTheRow() {
+        MarkovMelodyModel model = MarkovMelodyModel.createDefault(1);
+        int context = model.context(4, model.getInitialHistory());
+        int[] hits = new int[I];
+        int samples = 200000;
+        Random random = new Random(11);
+        for (int n = 0; n < samples; n++) {
+            hits[model.sampleInterval(context, random.nextDouble()) + MarkovMelodyModel.MAX_INTERVAL]++;
+        }
+        for (int i = 0; i < I; i++) {
+            double expected = model.getProbability(context, i - MarkovMelodyModel.MAX_INTERVAL);
+            assertEquals(expected, (double) hits[i] / samples, 0.01, "interval " + (i - MarkovMelodyModel.MAX_INTERVAL));
+        }
+        assertEquals(-MarkovMelodyModel.MAX_INTERVAL, model.sampleInterval(context, 0.0));
+        assertEquals(MarkovMelodyModel.MAX_INTERVAL, model.sampleInterval(context, Math.nextDown(1.0)));
+    }
+    
+    @Test
+    void badCountsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> MarkovMelodyModel.fromCounts(1, new long[3]));
+        assertThrows(IllegalArgumentException.class, () -> MarkovMelodyModel.createDefault(MarkovMelodyModel.MAX_ORDER + 1));
+        long[] counts = new long[MarkovMelodyModel.contextCount(1) * I];
+        counts[5] = -1;
+        assertThrows(IllegalArgumentException.class, () -> MarkovMelodyModel.fromCounts(1, counts));
+    }
+    
+    private static void assertRowsSumToOne(MarkovMelodyModel model) {
+        for (int context = 0; context < MarkovMelodyModel.contextCount(model.getOrder()); context++) {
+            double sum = 0;
+            for (int interval = -MarkovMelodyModel.MAX_INTERVAL; interval <= MarkovMelodyModel.MAX_INTERVAL; interval++) {
+                double p = model.getProbability(context, interval);
+                assertTrue(p >= 0, model + " context " + context);
+                sum += p;
+            }
+            assertEquals(1.0, sum, 1e-6, model + " context " + context);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.musicgenerator;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Evolution is deterministic for a seed on any number of threads
+ * 对同一种子，无论线程数多少，演化结果都是确定的
+ */
+class MelodyEvolverTest {
+    
+    @Test
+    void sameSeedGivesTheSameMelodyOnAnyThreadCount() {
+        for (long seed = 0; seed < 4; seed++) {
+            // 150 genomes: the last chunk is only partly filled
+            // 150个基因组：最后一块只填充了一部分
+            MelodyEvolver.Result single = evolve(1, seed);
+            MelodyEvolver.Result parallel = evolve(4, seed);
+            MelodyEvolver.Result again = evolve(4, seed);
+            byte[] bytes = new SmfWriter().toByteArray(single.getPiece());
+            assertArrayEquals(bytes, new SmfWriter().toByteArray(parallel.getPiece()), "seed " + seed);
+            assertArrayEquals(bytes, new SmfWriter().toByteArray(again.getPiece()), "seed " + seed);
+            assertArrayEquals(single.getBestFitnessHistory(), parallel.getBestFitnessHistory());
+            assertArrayEquals(single.getMeanFitnessHistory(), parallel.getMeanFitnessHistory());
+            assertEquals(single.getEvaluations(), parallel.getEvaluations());
+            assertFalse(single.getPiece().getMelodyView().isEmpty());
+        }
+        assertFalse(Arrays.equals(new SmfWriter().toByteArray(evolve(2, 1).getPiece()),
+                                 new SmfWriter().toByteArray(evolve(2, 2).getPiece())));
+    }
+    
+    @Test
+    void elitesKeepTheBestFitnessFromFalling() {
+        double[] best = evolve(3, 9).getBestFitnessHistory();
+        assertEquals(26, best.length);
+        for (int g = 1; g < best.length; g++) {
+            assertTrue(best[g] >= best[g - 1], "generation " + g);
+        }
+    }
+    
+    @Test
+    void badSettingsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new MelodyEvolver(0, 10, 10));
+        assertThrows(IllegalArgumentException.class, () -> new MelodyEvolver(1, 1, 10));
+        assertThrows(IllegalArgumentException.class, () -> new MelodyEvolver(1, 10, -1));
+        MelodyEvolver evolver = new MelodyEvolver(1, 10, 10);
+        assertThrows(IllegalArgumentException.class, () -> evolver.setMutationRate(1.5));
+        assertThrows(IllegalArgumentException.class, () -> evolver.setCrossoverRate(Double.NaN));
+        assertThrows(IllegalArgumentException.class, () -> evolver.setEliteCount(10));
+        assertThrows(IllegalArgumentException.class, () -> evolver.setPatience(-1));
+    }
+    
+    private static MelodyEvolver.Result evolve(int threads, long seed) {
+        return new MusicGenerator(seed).generateEvolvedPiece(4, 4, new MelodyEvolver(threads, 150, 25));
+    }
+}
@@ -0,0 +1,92 @@
+package com.musicgenerator;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * The cache evicts least-recently-used entries and generates each key only once at a time
+ * 缓存淘汰最近最少使用的条目，且同一时刻每个键只生成一次
+ */
+class MidiCacheTest {
+    
+    @Test
+    void leastRecentlyUsedEntryIsEvicted() {
+        GenerationParameters params = new GenerationParameters();
+        params.setMeasures(4);
+        byte[] a = new SmfWriter().toByteArray(BatchGenerator.generateOne(params, 1));
+        byte[] b = new SmfWriter().toByteArray(BatchGenerator.generateOne(params, 2));
+        byte[] c = new SmfWriter().toByteArray(BatchGenerator.generateOne(params, 3));
+        
+        // Room for a and the larger of b and c, but not for all three
+        // 能容纳a以及b和c中较大者，但容纳不下全部三个
+        MidiCache cache = new MidiCache(a.length + Math.max(b.length, c.length));
+        assertArrayEquals(a, cache.get(params, 1));
+        assertArrayEquals(b, cache.get(params, 2));
+        cache.get(params, 1);                      // a is now more recent than b
+        assertArrayEquals(c, cache.get(params, 3));
+        
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictions());
+        assertEquals(a.length + c.length, cache.getCurrentBytes());
+        assertEquals(1, cache.getHits());
+        assertEquals(3, cache.getMisses());
+        
+        cache.get(params, 1);
+        cache.get(params, 3);
+        assertEquals(3, cache.getHits());
+        cache.get(params, 2);
+        assertEquals(4, cache.getMisses());
+    }
+    
+    @Test
+    void entryLargerThanTheBudgetIsNotCached() {
+        MidiCache cache = new MidiCache(0);
+        GenerationParameters params = new GenerationParameters();
+        byte[] first = cache.get(params, 5);
+        assertArrayEquals(first, cache.get(params, 5));
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getCurrentBytes());
+        assertEquals(2, cache.getMisses());
+    }
+    
+    @Test
+    void concurrentRequestsForOneKeyGenerateItOnce() throws Exception {
+        MidiCache cache = new MidiCache(GenerationServer.DEFAULT_CACHE_BYTES);
+        GenerationParameters params = new GenerationParameters();
+        params.setMeasures(GenerationParameters.MAX_MEASURES);
+        int threads = 8;
+        CountDownLatch ready = new CountDownLatch(threads);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<byte[]>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                results.add(pool.submit(() -> {
+                    ready.countDown();
+                    ready.await();
+                    return cache.get(params, 99);
+                }));
+            }
+            byte[] first = results.get(0).get();
+            for (Future<byte[]> result : results) {
+                assertSame(first, result.get());
+            }
+        } finally {
+            pool.shutdown();
+        }
+        // Every other request either waited for the one generation or hit its result
+        // 其余请求要么等待那一次生成，要么命中其结果
+        assertEquals(1, cache.getMisses());
+        assertEquals(threads - 1, cache.getCollapsed() + cache.getHits());
+        assertEquals(1, cache.size());
+    }
+}
@@ -0,0 +1,79 @@
+package com.musicgenerator;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Track views are live and read-only, and the visitors see the same notes as the copies
+ * 轨道视图是实时且只读的，访问器看到的音符与副本相同
+ */
+class MusicalPieceTest {
+    
+    @Test
+    void viewsAreLiveAndReadOnly() {
+        MusicalPiece piece = new MusicalPiece();
+        List<Note> melody = piece.getMelodyView();
+        List<Chord> chords = piece.getChordsView();
+        List<Note> bass = piece.getBassLineView();
+        
+        piece.addMelodyNote(new Note(72, 240, 90, 0));
+        piece.addChord(Chord.createMajorChord(60, 960, 0));
+        piece.addBassNote(new Note(36, 960, 80, 0));
+        assertEquals(1, melody.size());
+        assertEquals(72, melody.get(0).getPitch());
+        assertEquals(60, chords.get(0).getRootPitch());
+        assertEquals(36, bass.get(0).getPitch());
+        
+        assertThrows(UnsupportedOperationException.class, () -> melody.add(new Note(60, 1, 1, 0)));
+        assertThrows(UnsupportedOperationException.class, () -> chords.remove(0));
+        assertThrows(UnsupportedOperationException.class, () -> bass.clear());
+        
+        // Setting a track from its own view keeps it; the copying getter is detached
+        // 用轨道自身的视图设置轨道时保持不变；复制型getter返回的列表与轨道分离
+        piece.setMelody(piece.getMelodyView());
+        piece.setChords(piece.getChordsView());
+        assertEquals(1, melody.size());
+        assertEquals(1, chords.size());
+        List<Note> copy = piece.getMelody();
+        piece.clear();
+        assertEquals(0, melody.size());
+        assertEquals(0, chords.size());
+        assertEquals(1, copy.size());
+    }
+    
+    @Test
+    void visitorsSeeTheSameNotesAsTheCopies() {
+        MusicalPiece piece = new MusicGenerator(21).generatePiece(4, 4);
+        List<Note> all = piece.getAllNotes();
+        List<Note> visited = new ArrayList<>();
+        piece.forEachNote((pitch, duration, velocity, startTime) ->
+                visited.add(new Note(pitch, duration, velocity, startTime)));
+        assertEquals(all.size(), visited.size());
+        int[] pitches = piece.getAllPitches();
+        int[] velocities = piece.getAllVelocities();
+        for (int i = 0; i < all.size(); i++) {
+            assertEquals(all.get(i).getPitch(), visited.get(i).getPitch());
+            assertEquals(all.get(i).getDuration(), visited.get(i).getDuration());
+            assertEquals(all.get(i).getVelocity(), visited.get(i).getVelocity());
+            assertEquals(all.get(i).getStartTime(), visited.get(i).getStartTime());
+            assertEquals(all.get(i).getPitch(), pitches[i]);
+            assertEquals(all.get(i).getVelocity(), velocities[i]);
+        }
+        
+        List<Integer> melody = new ArrayList<>();
+        piece.forEachMelodyNote((pitch, duration, velocity, startTime) -> melody.add(pitch));
+        List<Integer> chordNotes = new ArrayList<>();
+        piece.forEachChordNote((pitch, duration, velocity, startTime) -> chordNotes.add(pitch));
+        assertArrayEquals(piece.getMelody().stream().mapToInt(Note::getPitch).toArray(),
+                          melody.stream().mapToInt(Integer::intValue).toArray());
+        assertArrayEquals(piece.getChords().stream().flatMap(chord -> chord.getNotesView().stream())
+                               .mapToInt(Note::getPitch).toArray(),
+                          chordNotes.stream().mapToInt(Integer::intValue).toArray());
+    }
+}
@@ -0,0 +1,76 @@
+package com.musicgenerator;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Notes stored in columns must read back field by field, in order, past any growth
+ * 以列存储的音符必须按顺序逐字段读回，扩容后亦然
+ */
+class NoteTrackTest {
+    
+    @Test
+    void columnsKeepEveryFieldPastGrowth() {
+        NoteTrack track = new NoteTrack(1);
+        for (int i = 0; i < 1000; i++) {
+            track.add(i % 128, 10 + i, i % 127 + 1, i * 7L);
+        }
+        assertEquals(1000, track.size());
+        int[] pitches = new int[1002];
+        int[] velocities = new int[1002];
+        track.copyPitches(pitches, 2);
+        track.copyVelocities(velocities, 2);
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i % 128, track.getPitch(i));
+            assertEquals(10 + i, track.getDuration(i));
+            assertEquals(i % 127 + 1, track.getVelocity(i));
+            assertEquals(i * 7L, track.getStartTime(i));
+            assertEquals(i % 128, pitches[i + 2]);
+            assertEquals(i % 127 + 1, velocities[i + 2]);
+        }
+        assertEquals(999 * 7L + 1009, track.getEndTime());
+        assertThrows(IndexOutOfBoundsException.class, () -> track.getPitch(1000));
+        
+        track.clear();
+        assertTrue(track.isEmpty());
+        assertEquals(0, track.getEndTime());
+        assertThrows(IndexOutOfBoundsException.class, () -> track.getPitch(0));
+    }
+    
+    @Test
+    void notesRoundTripThroughObjects() {
+        List<Note> notes = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            notes.add(new Note(40 + i, 120 * (1 + i % 4), 60 + i, 240L * i));
+        }
+        NoteTrack track = new NoteTrack();
+        track.setAll(notes);
+        List<Note> copy = track.toNoteList();
+        assertEquals(notes.size(), copy.size());
+        for (int i = 0; i < notes.size(); i++) {
+            assertNote(notes.get(i), copy.get(i));
+            assertNote(notes.get(i), track.getNote(i));
+        }
+        
+        // A later change to the track must not reach notes already handed out
+        // 之后对轨道的修改不能影响已经返回的音符
+        track.add(new Note(100, 1, 1, 0));
+        assertEquals(40, copy.size());
+        track.setAll(copy.subList(0, 5));
+        assertEquals(5, track.size());
+        assertNote(notes.get(4), track.getNote(4));
+    }
+    
+    private static void assertNote(Note expected, Note actual) {
+        assertEquals(expected.getPitch(), actual.getPitch());
+        assertEquals(expected.getDuration(), actual.getDuration());
+        assertEquals(expected.getVelocity(), actual.getVelocity());
+        assertEquals(expected.getStartTime(), actual.getStartTime());
+    }
+}
@@ -0,0 +1,106 @@
+package com.musicgenerator;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Appended pieces must read back, from the mapped archive, as the same MIDI bytes
+ * 追加的作品从映射归档中读回后必须得到相同的MIDI字节
+ */
+class PieceArchiveTest {
+    
+    @TempDir
+    Path dir;
+    
+    @Test
+    void appendedPiecesReadBackAndExtract() throws IOException {
+        Path file = dir.resolve("pieces" + PieceArchive.DATA_EXTENSION);
+        List<byte[]> expected = new ArrayList<>();
+        SmfWriter writer = new SmfWriter();
+        try (PieceArchive.Writer archive = new PieceArchive.Writer(file)) {
+            for (int seed = 0; seed < 30; seed++) {
+                MusicalPiece piece = generate(seed);
+                assertEquals(seed, archive.append(piece));
+                expected.add(writer.toByteArray(piece));
+            }
+        }
+        // Reopening appends after the existing pieces
+        // 重新打开后在已有作品之后追加
+        try (PieceArchive.Writer archive = new PieceArchive.Writer(file)) {
+            assertEquals(30, archive.size());
+            MusicalPiece piece = generate(30);
+            assertEquals(30, archive.append(piece));
+            expected.add(writer.toByteArray(piece));
+        }
+        
+        try (PieceArchive archive = PieceArchive.open(file)) {
+            assertEquals(expected.size(), archive.size());
+            for (int i = 0; i < archive.size(); i++) {
+                assertArrayEquals(expected.get(i), writer.toByteArray(archive.read(i)), "piece " + i);
+            }
+            Path midi = dir.resolve("piece.mid");
+            archive.extract(7, midi);
+            assertArrayEquals(expected.get(7), Files.readAllBytes(midi));
+            assertThrows(IndexOutOfBoundsException.class, () -> archive.read(expected.size()));
+        }
+    }
+    
+    @Test
+    void piecesAppendedAfterOpeningAreNotVisible() throws IOException {
+        Path file = dir.resolve("live" + PieceArchive.DATA_EXTENSION);
+        try (PieceArchive.Writer writer = new PieceArchive.Writer(file)) {
+            writer.append(generate(1));
+            writer.force();
+            try (PieceArchive archive = PieceArchive.open(file)) {
+                writer.append(generate(2));
+                assertEquals(1, archive.size());
+                archive.read(0);
+            }
+        }
+        try (PieceArchive archive = PieceArchive.open(file)) {
+            assertEquals(2, archive.size());
+        }
+    }
+    
+    @Test
+    void bytesPastTheLastIndexedRecordAreDropped() throws IOException {
+        Path file = dir.resolve("torn" + PieceArchive.DATA_EXTENSION);
+        try (PieceArchive.Writer writer = new PieceArchive.Writer(file)) {
+            writer.append(generate(3));
+        }
+        long length = Files.size(file);
+        // A record written without its index entry, as after a crash
+        // 只写入记录而没有索引项，如同崩溃之后
+        Files.write(file, new byte[] {40, 1, 2, 3}, StandardOpenOption.APPEND);
+        try (PieceArchive.Writer writer = new PieceArchive.Writer(file)) {
+            assertEquals(1, writer.size());
+            assertEquals(length, Files.size(file));
+            writer.append(generate(4));
+        }
+        try (PieceArchive archive = PieceArchive.open(file)) {
+            assertArrayEquals(new SmfWriter().toByteArray(generate(4)), new SmfWriter().toByteArray(archive.read(1)));
+        }
+        
+        Files.write(file, new byte[] {0, 0, 0, 0, 0, 0, 0, 0});
+        assertThrows(IOException.class, () -> new PieceArchive.Writer(file).close());
+    }
+    
+    private static MusicalPiece generate(int seed) {
+        MusicGenerator generator = new MusicGenerator(seed);
+        if (seed % 3 == 0) {
+            generator.setVoices(Voice.Spec.parseList("ARPEGGIO,PERCUSSION"));
+        }
+        return generator.generatePiece(1 + seed % 6, 3 + seed % 2);
+    }
+}
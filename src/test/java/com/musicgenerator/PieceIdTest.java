@@ -0,0 +1,59 @@
+package com.musicgenerator;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Piece IDs must parse back to themselves and regenerate the same bytes
+ * 作品ID必须能解析回自身，并重新生成相同的字节
+ */
+class PieceIdTest {
+    
+    @Test
+    void idsRoundTripAndRegenerateTheSamePiece() {
+        MusicTheory.ScaleType[] types = MusicTheory.ScaleType.values();
+        for (int seed = 0; seed < 50; seed++) {
+            GenerationParameters params = new GenerationParameters();
+            params.setScaleType(seed % 4 == 0 ? null : types[seed % types.length]);
+            params.setRootNote(params.getScaleType() == null ? 0 : 48 + seed % 24);
+            params.setTempo(GenerationParameters.MIN_TEMPO + seed * 7);
+            params.setMeasures(1 + seed % 9);
+            params.setTimeSignature(3 + seed % 4);
+            params.setMelodyComplexity(seed % 10 / 10.0);
+            params.setHarmonyComplexity(seed % 7 / 1000.0);
+            params.setRhythmVariety(seed % 3 / 4.0);
+            
+            PieceId id = PieceId.of(params, seed * 0x9E3779B97F4A7C15L);
+            assertEquals(PieceId.LENGTH, id.toString().length());
+            PieceId parsed = PieceId.parse(id.toString());
+            assertEquals(id, parsed);
+            assertArrayEquals(new SmfWriter().toByteArray(BatchGenerator.generateOne(params, id.getSeed())),
+                              new SmfWriter().toByteArray(parsed.generate()), "seed " + seed);
+        }
+    }
+    
+    @Test
+    void tempoOutsideTheConfigRangeHasNoId() {
+        GenerationParameters params = new GenerationParameters();
+        params.setTempo(3);
+        assertThrows(IllegalArgumentException.class, () -> PieceId.of(params, 1));
+        params.setTempo(GenerationParameters.MAX_TEMPO + 1);
+        assertThrows(IllegalArgumentException.class, () -> PieceId.of(params, 1));
+    }
+    
+    @Test
+    void randomScaleIgnoresTheRoot() {
+        GenerationParameters params = new GenerationParameters();
+        params.setScaleType(null);
+        params.setRootNote(60);
+        PieceId id = PieceId.of(params, 42);
+        params.setRootNote(67);
+        assertEquals(id, PieceId.of(params, 42));
+        assertEquals(0, id.getParameters().getRootNote());
+        assertArrayEquals(new SmfWriter().toByteArray(BatchGenerator.generateOne(params, 42)),
+                          new SmfWriter().toByteArray(id.generate()));
+    }
+} 
\ No newline at end of file
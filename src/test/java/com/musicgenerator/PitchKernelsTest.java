@@ -0,0 +1,88 @@
+package com.musicgenerator;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * The Vector API kernels must give exactly the scalar results for every length
+ * Vector API内核对任何长度都必须给出与标量版本完全相同的结果
+ */
+class PitchKernelsTest {
+    
+    @Test
+    void vectorPathMatchesScalarPath() {
+        assumeTrue(ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent(),
+                   "run with --add-modules jdk.incubator.vector");
+        Random random = new Random(25);
+        int lanes = VectorPitchKernels.lanes();
+        int[] lengths = {0, 1, 2, lanes - 1, lanes, lanes + 1, 2 * lanes + 3, 1000, 1001};
+        for (int length : lengths) {
+            for (int round = 0; round < 20; round++) {
+                int[] a = pitches(random, length, round);
+                int[] b = pitches(random, length, round + 1);
+                
+                long[] vectorHistogram = new long[PitchKernels.INTERVAL_CLASSES];
+                long[] scalarHistogram = new long[PitchKernels.INTERVAL_CLASSES];
+                VectorPitchKernels.intervalClassHistogram(a, length, vectorHistogram);
+                PitchKernels.intervalClassHistogramScalar(a, length, scalarHistogram);
+                assertArrayEquals(scalarHistogram, vectorHistogram, "histogram, length " + length);
+                
+                boolean[] vectorMask = new boolean[length];
+                boolean[] scalarMask = new boolean[length];
+                assertEquals(PitchKernels.consonanceMaskScalar(a, b, length, scalarMask),
+                             VectorPitchKernels.consonanceMask(a, b, length, vectorMask));
+                assertArrayEquals(scalarMask, vectorMask, "mask, length " + length);
+                
+                int delta = random.nextInt(61) - 30;
+                int[] vectorTarget = new int[length];
+                int[] scalarTarget = new int[length];
+                VectorPitchKernels.addClamped(a, vectorTarget, length, delta, PitchKernels.MIN_PITCH, PitchKernels.MAX_PITCH);
+                PitchKernels.transposeScalar(a, scalarTarget, length, delta);
+                assertArrayEquals(scalarTarget, vectorTarget, "transpose, length " + length);
+            }
+        }
+    }
+    
+    @Test
+    void publicKernelsMatchScalarKernels() {
+        int[] pitches = {0, 127, 0, 127, 60, 67, 64, 72, 59, 48, 71, 1, 126};
+        long[] histogram = new long[PitchKernels.INTERVAL_CLASSES];
+        long[] expected = new long[PitchKernels.INTERVAL_CLASSES];
+        PitchKernels.intervalClassHistogram(pitches, pitches.length, histogram);
+        PitchKernels.intervalClassHistogramScalar(pitches, pitches.length, expected);
+        assertArrayEquals(expected, histogram);
+        assertEquals(pitches.length - 1, Arrays.stream(histogram).sum());
+    }
+    
+    @Test
+    void pitchesOutsideTheMidiRangeAreRejected() {
+        long[] histogram = new long[PitchKernels.INTERVAL_CLASSES];
+        assertThrows(IllegalArgumentException.class,
+                     () -> PitchKernels.intervalClassHistogram(new int[] {60, 50000}, 2, histogram));
+        assertThrows(IllegalArgumentException.class,
+                     () -> PitchKernels.consonanceMask(new int[] {60}, new int[] {-1}, 1, new boolean[1]));
+        // Values past the given length are not looked at
+        // 超出给定长度的值不会被检查
+        PitchKernels.intervalClassHistogram(new int[] {60, 64, -5}, 2, histogram);
+        assertEquals(1, histogram[4]);
+    }
+    
+    /**
+     * Random pitches, every other round mixed with the extremes 0 and 127
+     * 随机音高，每隔一轮混入极值0和127
+     */
+    private static int[] pitches(Random random, int length, int round) {
+        int[] pitches = new int[length];
+        for (int i = 0; i < length; i++) {
+            pitches[i] = round % 2 == 0 || random.nextBoolean() ? random.nextInt(128) : (random.nextBoolean() ? 0 : 127);
+        }
+        return pitches;
+    }
+}
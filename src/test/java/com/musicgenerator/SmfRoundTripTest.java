@@ -0,0 +1,71 @@
+package com.musicgenerator;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * SmfWriter -> SmfReader -> SmfWriter must reproduce the file byte for byte
+ * SmfWriter -> SmfReader -> SmfWriter 必须逐字节重现原文件
+ */
+class SmfRoundTripTest {
+    
+    private static final String[] VOICE_LISTS = {
+        "COUNTER_MELODY",
+        "PERCUSSION,ARPEGGIO",
+        "PAD:92,PERCUSSION,COUNTER_MELODY",
+        "ARPEGGIO,ARPEGGIO:11,PAD,COUNTER_MELODY:40",
+    };
+    
+    @Test
+    void seededPiecesRoundTrip() throws IOException {
+        for (int seed = 0; seed < 100; seed++) {
+            MusicGenerator generator = new MusicGenerator(seed);
+            generator.setParameters(seed % 10 / 10.0, seed % 7 / 7.0, seed % 5 / 5.0);
+            assertRoundTrip(generator.generatePiece(1 + seed % 17, 3 + seed % 4), "seed " + seed);
+        }
+    }
+    
+    @Test
+    void seededPiecesWithVoicesRoundTrip() throws IOException {
+        for (int seed = 0; seed < 100; seed++) {
+            String voices = VOICE_LISTS[seed % VOICE_LISTS.length];
+            MusicGenerator generator = new MusicGenerator(seed);
+            generator.setVoices(Voice.Spec.parseList(voices));
+            MusicalPiece piece = generator.generatePiece(1 + seed % 9, 3 + seed % 2);
+            MusicalPiece read = assertRoundTrip(piece, "seed " + seed + ", voices " + voices);
+            
+            // Voices come back in track order with their role, channel and program
+            // 声部按轨道顺序恢复，且角色、通道和音色不变
+            List<Voice> expected = piece.getVoices();
+            assertEquals(expected.size(), read.getVoices().size(), voices);
+            for (int v = 0; v < expected.size(); v++) {
+                assertEquals(expected.get(v).getSpec(), read.getVoices().get(v).getSpec(), voices);
+            }
+        }
+    }
+    
+    @Test
+    void exporterWritesTheSameBytes() throws Exception {
+        for (int seed = 0; seed < 20; seed++) {
+            MusicGenerator generator = new MusicGenerator(seed);
+            generator.setVoices(Voice.Spec.parseList(VOICE_LISTS[seed % VOICE_LISTS.length]));
+            MusicalPiece piece = generator.generatePiece(4, 4);
+            ByteArrayOutputStream exported = new ByteArrayOutputStream();
+            MidiExporter.exportToMidi(piece, exported);
+            assertArrayEquals(new SmfWriter().toByteArray(piece), exported.toByteArray(), "seed " + seed);
+        }
+    }
+    
+    private static MusicalPiece assertRoundTrip(MusicalPiece piece, String message) throws IOException {
+        byte[] written = new SmfWriter().toByteArray(piece);
+        MusicalPiece read = new SmfReader().read(written);
+        assertArrayEquals(written, new SmfWriter().toByteArray(read), message);
+        return read;
+    }
+} 
\ No newline at end of file
@@ -0,0 +1,92 @@
+package com.musicgenerator;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Note events use running status and are ordered by tick, then by the order notes were added
+ * 音符事件使用运行状态，先按tick排序，再按音符的添加顺序排序
+ */
+class SmfWriterTest {
+    
+    @Test
+    void noteEventsUseRunningStatusAndEndBeforeTheNextStart() {
+        MusicalPiece piece = new MusicalPiece();
+        piece.addMelodyNote(new Note(60, 480, 100, 0));
+        piece.addMelodyNote(new Note(64, 240, 90, 0));
+        piece.addMelodyNote(new Note(67, 240, 80, 240));
+        
+        assertArrayEquals(bytes(
+            0x00, 0xC0, 0x00,             // Program change
+            0x00, 0x90, 60, 100,          // On 60
+            0x00, 64, 90,                 // On 64, running status
+            0x81, 0x70, 0x80, 64, 0x00,   // Off 64 at 240 before...
+            0x00, 0x90, 67, 80,           // ...on 67 at 240
+            0x81, 0x70, 0x80, 60, 0x00,   // Off 60 at 480, added before 67
+            0x00, 67, 0x00,               // Off 67, running status
+            0x00, 0xFF, 0x2F, 0x00),      // End of track
+            track(new SmfWriter().toByteArray(piece), 1));
+    }
+    
+    @Test
+    void unsortedNotesFollowInsertionOrderAtEqualTicks() {
+        MusicalPiece piece = new MusicalPiece();
+        piece.addBassNote(new Note(40, 120, 70, 120));
+        piece.addBassNote(new Note(36, 120, 70, 0));
+        piece.addBassNote(new Note(43, 120, 70, 120));
+        
+        assertArrayEquals(bytes(
+            0x00, 0xC2, 32,               // Program change
+            0x00, 0x92, 36, 70,           // On 36
+            0x78, 40, 70,                 // On 40 at 120, added before 36...
+            0x00, 0x82, 36, 0x00,         // ...so it goes before off 36
+            0x00, 0x92, 43, 70,           // On 43, added after 36
+            0x78, 0x82, 40, 0x00,         // Off 40 and 43 at 240 in insertion order
+            0x00, 43, 0x00,
+            0x00, 0xFF, 0x2F, 0x00),
+            track(new SmfWriter().toByteArray(piece), 3));
+    }
+    
+    @Test
+    void writerCanBeReusedForAnotherPiece() {
+        MusicGenerator generator = new MusicGenerator(5);
+        MusicalPiece first = generator.generatePiece(4, 4);
+        MusicalPiece second = generator.generatePiece(2, 3);
+        SmfWriter writer = new SmfWriter();
+        writer.toByteArray(first);
+        assertArrayEquals(new SmfWriter().toByteArray(second), writer.toByteArray(second));
+    }
+    
+    /**
+     * Event bytes of the n-th MTrk chunk, without its header
+     * 第n个MTrk块的事件字节，不含块头
+     */
+    private static byte[] track(byte[] file, int n) {
+        int offset = 14;
+        for (int i = 0; ; i++) {
+            assertEquals(0x4D54726B, readInt(file, offset));
+            int length = readInt(file, offset + 4);
+            if (i == n) {
+                return Arrays.copyOfRange(file, offset + 8, offset + 8 + length);
+            }
+            offset += 8 + length;
+        }
+    }
+    
+    private static int readInt(byte[] data, int offset) {
+        return (data[offset] & 0xFF) << 24 | (data[offset + 1] & 0xFF) << 16
+             | (data[offset + 2] & 0xFF) << 8 | (data[offset + 3] & 0xFF);
+    }
+    
+    private static byte[] bytes(int... values) {
+        byte[] data = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            data[i] = (byte) values[i];
+        }
+        return data;
+    }
+}
@@ -0,0 +1,94 @@
+package com.musicgenerator;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * The lookup tables must answer exactly like the scale arrays MusicTheory builds
+ * 查找表的结果必须与MusicTheory构建的音阶数组完全一致
+ */
+class TheoryTablesTest {
+    
+    @Test
+    void tablesMatchTheScaleArrays() {
+        for (MusicTheory.ScaleType type : MusicTheory.ScaleType.values()) {
+            for (int root = TheoryTables.MIN_ROOT; root <= TheoryTables.MAX_ROOT; root++) {
+                int[] scale = buildScale(type, root);
+                assertArrayEquals(scale, TheoryTables.getScale(type, root), type + " " + root);
+                assertArrayEquals(scale, MusicTheory.getScale(type, root), type + " " + root);
+                assertEquals(scale.length, TheoryTables.getScaleLength(type));
+                for (int pitch = 0; pitch <= 127; pitch++) {
+                    int degree = -1;
+                    for (int i = 0; i < scale.length && degree < 0; i++) {
+                        if (scale[i] % 12 == pitch % 12) {
+                            degree = i;
+                        }
+                    }
+                    String message = type + " " + root + " pitch " + pitch;
+                    assertEquals(degree, TheoryTables.getDegree(type, root, pitch), message);
+                    assertEquals(degree >= 0, TheoryTables.isInScale(type, root, pitch), message);
+                }
+            }
+        }
+    }
+    
+    @Test
+    void consonanceMatchesTheIntervalList() {
+        for (int a = 0; a <= 127; a++) {
+            for (int b = 0; b <= 127; b++) {
+                int interval = Math.abs(a - b) % 12;
+                boolean expected = interval == 0 || interval == 3 || interval == 4 || interval == 5
+                        || interval == 7 || interval == 8 || interval == 9;
+                assertEquals(expected, TheoryTables.isConsonant(a, b), a + " " + b);
+                assertEquals(expected, MusicTheory.isConsonant(a, b), a + " " + b);
+            }
+        }
+    }
+    
+    @Test
+    void harmonicNoteMatchesTheArrayVersionAndItsRandomDraws() {
+        MusicTheory.ScaleType[] types = MusicTheory.ScaleType.values();
+        Random arrays = new Random(42);
+        Random tables = new Random(42);
+        Random inputs = new Random(7);
+        for (int i = 0; i < 20000; i++) {
+            MusicTheory.ScaleType type = types[inputs.nextInt(types.length)];
+            int root = inputs.nextInt(128);
+            int pitch = inputs.nextInt(128);
+            int direction = inputs.nextInt(5) - 2;
+            assertEquals(MusicTheory.getHarmonicNote(pitch, buildScale(type, root), direction, arrays),
+                         MusicTheory.getHarmonicNote(pitch, type, root, direction, tables),
+                         type + " " + root + " pitch " + pitch);
+        }
+        // Both versions drew the same random numbers
+        // 两个版本抽取了相同的随机数
+        assertEquals(arrays.nextLong(), tables.nextLong());
+    }
+    
+    @Test
+    void rootsOutsideTheMidiRange() {
+        assertThrows(IllegalArgumentException.class, () -> TheoryTables.getScale(MusicTheory.ScaleType.MAJOR, 128));
+        assertThrows(IllegalArgumentException.class, () -> TheoryTables.isInScale(MusicTheory.ScaleType.MINOR, -1, 60));
+        assertArrayEquals(buildScale(MusicTheory.ScaleType.BLUES, 130),
+                          MusicTheory.getScale(MusicTheory.ScaleType.BLUES, 130));
+    }
+    
+    private static int[] buildScale(MusicTheory.ScaleType type, int root) {
+        switch (type) {
+            case MINOR:
+                return MusicTheory.getMinorScale(root);
+            case PENTATONIC:
+                return MusicTheory.getPentatonicScale(root);
+            case BLUES:
+                return MusicTheory.getBluesScale(root);
+            case MAJOR:
+            default:
+                return MusicTheory.getMajorScale(root);
+        }
+    }
+}